@@ -0,0 +1,55 @@
+package com.andrewlalis.perfin.benchmark;
+
+import com.andrewlalis.perfin.data.AccountRepository;
+import com.andrewlalis.perfin.model.MoneyValue;
+import com.andrewlalis.perfin.model.Timestamped;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for deriving account balances and history.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountBenchmarks {
+    // Each invocation uses different arguments, since H2 caches the results of identical queries.
+    private final Random rand = new Random(1);
+    private AccountRepository accountRepo;
+
+    @Setup(Level.Trial)
+    public void setUp(ProfileState profile) {
+        accountRepo = profile.dataSource.getAccountRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        accountRepo.close();
+    }
+
+    @Benchmark
+    public BigDecimal deriveBalance(ProfileState profile) {
+        return accountRepo.deriveBalance(
+                profile.randomAccountId(rand),
+                profile.randomTimestamp(rand).toInstant(ZoneOffset.UTC)
+        );
+    }
+
+    @Benchmark
+    public List<Timestamped> findEventsBefore(ProfileState profile) {
+        return accountRepo.findEventsBefore(profile.randomAccountId(rand), profile.randomTimestamp(rand), 50);
+    }
+
+    @Benchmark
+    public List<MoneyValue> getCombinedAccountBalances(ProfileState profile) {
+        return profile.dataSource.getCombinedAccountBalances().join();
+    }
+}
@@ -0,0 +1,75 @@
+package com.andrewlalis.perfin.benchmark;
+
+import com.andrewlalis.perfin.data.AnalyticsRepository;
+import com.andrewlalis.perfin.data.TimestampRange;
+import com.andrewlalis.perfin.data.util.Pair;
+import com.andrewlalis.perfin.model.TransactionCategory;
+import com.andrewlalis.perfin.model.TransactionVendor;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the analytics queries, over ranges of different lengths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AnalyticsBenchmarks {
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Param({"30", "365"})
+    public int rangeDays;
+
+    private final Random rand = new Random(1);
+    private AnalyticsRepository analyticsRepo;
+
+    @Setup(Level.Trial)
+    public void setUp(ProfileState profile) {
+        analyticsRepo = profile.dataSource.getAnalyticsRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        analyticsRepo.close();
+    }
+
+    private TimestampRange randomRange(ProfileState profile) {
+        LocalDateTime start = profile.options.startDate().atStartOfDay()
+                .plusDays(rand.nextInt(profile.options.days() - rangeDays));
+        return new TimestampRange(start, start.plusDays(rangeDays));
+    }
+
+    @Benchmark
+    public List<Pair<TransactionCategory, BigDecimal>> getSpendByCategory(ProfileState profile) {
+        return analyticsRepo.getSpendByCategory(randomRange(profile), USD);
+    }
+
+    @Benchmark
+    public List<Pair<TransactionCategory, BigDecimal>> getSpendByRootCategory(ProfileState profile) {
+        return analyticsRepo.getSpendByRootCategory(randomRange(profile), USD);
+    }
+
+    @Benchmark
+    public List<Pair<TransactionCategory, BigDecimal>> getIncomeByCategory(ProfileState profile) {
+        return analyticsRepo.getIncomeByCategory(randomRange(profile), USD);
+    }
+
+    @Benchmark
+    public List<Pair<TransactionCategory, BigDecimal>> getIncomeByRootCategory(ProfileState profile) {
+        return analyticsRepo.getIncomeByRootCategory(randomRange(profile), USD);
+    }
+
+    @Benchmark
+    public List<Pair<TransactionVendor, BigDecimal>> getSpendByVendor(ProfileState profile) {
+        return analyticsRepo.getSpendByVendor(randomRange(profile), USD);
+    }
+}
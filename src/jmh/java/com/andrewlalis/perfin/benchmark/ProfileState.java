@@ -0,0 +1,88 @@
+package com.andrewlalis.perfin.benchmark;
+
+import com.andrewlalis.perfin.data.DataSource;
+import com.andrewlalis.perfin.data.impl.JdbcDataSourceFactory;
+import com.andrewlalis.perfin.data.impl.ProfileGenerator;
+import com.andrewlalis.perfin.data.util.FileUtil;
+import com.andrewlalis.perfin.model.Profile;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A generated profile that benchmarks run against. It's made by the
+ * {@link ProfileGenerator} in a temporary home directory that's deleted
+ * afterward, and opened through {@link JdbcDataSourceFactory}, just like a
+ * profile the app opens.
+ */
+@State(Scope.Benchmark)
+public class ProfileState {
+    @Param({"1000", "100000"})
+    public int transactions;
+
+    public ProfileGenerator.Options options;
+    public ProfileGenerator.Result result;
+    public DataSource dataSource;
+
+    private Path homeDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        homeDir = Files.createTempDirectory("perfin-benchmark");
+        // This must be set before the Profile class is loaded.
+        System.setProperty("user.home", homeDir.toString());
+        if (!Profile.APP_DIR.startsWith(homeDir)) {
+            throw new IllegalStateException("The app directory was already set to " + Profile.APP_DIR);
+        }
+        var defaults = ProfileGenerator.Options.defaults();
+        // Attachment files don't affect any of the benchmarked queries, so they're skipped.
+        options = defaults.toBuilder()
+                .transactionsPerDay((double) transactions / defaults.days())
+                .attachmentRatio(0)
+                .build();
+        String profileName = "benchmark";
+        result = new ProfileGenerator(options).generate(profileName);
+        dataSource = new JdbcDataSourceFactory().getDataSource(profileName);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (dataSource instanceof AutoCloseable c) c.close();
+        FileUtil.deleteDirRecursive(homeDir);
+    }
+
+    public List<Long> accountIds() {
+        return result.accountIds();
+    }
+
+    /**
+     * Gets a random account's id.
+     * @param rand The random generator to use.
+     * @return The account id.
+     */
+    public long randomAccountId(Random rand) {
+        return accountIds().get(rand.nextInt(accountIds().size()));
+    }
+
+    /**
+     * Gets a random generated transaction's id.
+     * @param rand The random generator to use.
+     * @return The transaction id.
+     */
+    public long randomTransactionId(Random rand) {
+        return result.firstTransactionId() + rand.nextLong(result.transactionCount());
+    }
+
+    /**
+     * Gets a random time within the profile's range of transactions.
+     * @param rand The random generator to use.
+     * @return The timestamp, in UTC.
+     */
+    public LocalDateTime randomTimestamp(Random rand) {
+        return options.startDate().atStartOfDay().plusSeconds(rand.nextLong(options.days() * 86_400L));
+    }
+}
@@ -0,0 +1,91 @@
+package com.andrewlalis.perfin.benchmark;
+
+import com.andrewlalis.perfin.data.impl.JdbcDataSource;
+import com.andrewlalis.perfin.data.pagination.Cursor;
+import com.andrewlalis.perfin.data.pagination.KeysetPage;
+import com.andrewlalis.perfin.data.pagination.KeysetPageRequest;
+import com.andrewlalis.perfin.data.pagination.Page;
+import com.andrewlalis.perfin.data.pagination.PageRequest;
+import com.andrewlalis.perfin.data.search.JdbcTransactionSearcher;
+import com.andrewlalis.perfin.data.search.SearchFilter;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.AccountType;
+import com.andrewlalis.perfin.model.Transaction;
+import com.andrewlalis.perfin.model.TransactionVendor;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for searching transactions, as the transactions view does.
+ * Result counts aren't cached, so each search does the full count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionSearchBenchmarks {
+    private static final int PAGE_SIZE = 50;
+
+    private final Random rand = new Random(1);
+    private Connection conn;
+    private List<TransactionVendor> vendors;
+
+    @Setup(Level.Trial)
+    public void setUp(ProfileState profile) throws Exception {
+        conn = ((JdbcDataSource) profile.dataSource).getConnection();
+        try (var vendorRepo = profile.dataSource.getTransactionVendorRepository()) {
+            vendors = vendorRepo.findAll();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    private List<SearchFilter> randomFilters() {
+        return new JdbcTransactionSearcher.FilterBuilder()
+                .byVendors(Set.of(vendors.get(rand.nextInt(vendors.size()))), false)
+                .byAccountTypes(Set.of(AccountType.values()[rand.nextInt(AccountType.values().length)]), false)
+                .build();
+    }
+
+    @Benchmark
+    public KeysetPage<Transaction> searchFirstPage() {
+        return new JdbcTransactionSearcher(conn).search(
+                KeysetPageRequest.first(PAGE_SIZE, JdbcTransactionSearcher.NEWEST_FIRST),
+                randomFilters()
+        );
+    }
+
+    @Benchmark
+    public KeysetPage<Transaction> searchPageAtCursor(ProfileState profile) {
+        var cursor = Cursor.after(List.of(
+                DbUtil.timestampFromUtcLDT(profile.randomTimestamp(rand)),
+                Long.MAX_VALUE
+        ));
+        return new JdbcTransactionSearcher(conn).search(
+                KeysetPageRequest.first(PAGE_SIZE, JdbcTransactionSearcher.NEWEST_FIRST).withCursor(cursor),
+                randomFilters()
+        );
+    }
+
+    @Benchmark
+    public Page<Transaction> searchOffsetPage(ProfileState profile) {
+        int pages = Math.max(1, profile.transactions / PAGE_SIZE / 10);
+        var request = new PageRequest(rand.nextInt(pages), PAGE_SIZE, JdbcTransactionSearcher.NEWEST_FIRST);
+        return new JdbcTransactionSearcher(conn).search(request, randomFilters());
+    }
+
+    @Benchmark
+    public long resultCount() {
+        return new JdbcTransactionSearcher(conn).resultCount(randomFilters());
+    }
+}
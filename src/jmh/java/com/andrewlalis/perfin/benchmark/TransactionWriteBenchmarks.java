@@ -0,0 +1,95 @@
+package com.andrewlalis.perfin.benchmark;
+
+import com.andrewlalis.perfin.data.TransactionRepository;
+import com.andrewlalis.perfin.model.Account;
+import com.andrewlalis.perfin.model.CreditAndDebitAccounts;
+import com.andrewlalis.perfin.model.Transaction;
+import com.andrewlalis.perfin.model.TransactionSummary;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for adding and editing transactions, including the upkeep of
+ * balance snapshots, rollups, and the search index that goes with them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionWriteBenchmarks {
+    private final Random rand = new Random(1);
+    private TransactionRepository transactionRepo;
+    private List<Account> accounts;
+    private List<TransactionSummary> updateTargets;
+
+    @Setup(Level.Trial)
+    public void setUp(ProfileState profile) throws Exception {
+        transactionRepo = profile.dataSource.getTransactionRepository();
+        try (var accountRepo = profile.dataSource.getAccountRepository()) {
+            accounts = profile.accountIds().stream()
+                    .map(id -> accountRepo.findById(id).orElseThrow())
+                    .toList();
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            transactions.add(transactionRepo.findById(profile.randomTransactionId(rand)).orElseThrow());
+        }
+        updateTargets = transactionRepo.findSummaries(transactions);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        transactionRepo.close();
+    }
+
+    @Benchmark
+    public long insert(ProfileState profile) {
+        Account account = accounts.get(rand.nextInt(accounts.size()));
+        return transactionRepo.insert(
+                profile.randomTimestamp(rand),
+                BigDecimal.valueOf(rand.nextInt(100_000), 2),
+                account.getCurrency(),
+                "Benchmark transaction",
+                new CreditAndDebitAccounts(account, null),
+                "Vendor " + rand.nextInt(profile.options.vendors()),
+                null,
+                Set.of("benchmark"),
+                Collections.emptyList(),
+                Collections.emptyList()
+        );
+    }
+
+    /**
+     * Updates a transaction's amount, description, and vendor, which are the
+     * most common edits.
+     */
+    @Benchmark
+    public void update(ProfileState profile) {
+        TransactionSummary target = updateTargets.get(rand.nextInt(updateTargets.size()));
+        Transaction tx = target.transaction();
+        transactionRepo.update(
+                tx.id,
+                tx.getTimestamp(),
+                BigDecimal.valueOf(rand.nextInt(100_000), 2),
+                tx.getCurrency(),
+                "Updated transaction",
+                target.linkedAccounts(),
+                "Vendor " + rand.nextInt(profile.options.vendors()),
+                target.category() == null ? null : target.category().getName(),
+                new HashSet<>(target.tags()),
+                Collections.emptyList(),
+                Collections.emptyList(),
+                Collections.emptyList()
+        );
+    }
+}
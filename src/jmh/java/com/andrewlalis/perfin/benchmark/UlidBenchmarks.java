@@ -0,0 +1,28 @@
+package com.andrewlalis.perfin.benchmark;
+
+import com.andrewlalis.perfin.data.ulid.Ulid;
+import com.andrewlalis.perfin.data.ulid.UlidCreator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for generating the ULIDs that identify attachments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UlidBenchmarks {
+    @Benchmark
+    public Ulid getUlid() {
+        return UlidCreator.getUlid();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Ulid getUlidContended() {
+        return UlidCreator.getUlid();
+    }
+}
@@ -20,7 +20,6 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URL;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -29,7 +28,6 @@ import java.util.function.Consumer;
  */
 public class PerfinApp extends Application {
     private static final Logger log = LoggerFactory.getLogger(PerfinApp.class);
-    public static final Path APP_DIR = Path.of(System.getProperty("user.home", "."), ".perfin");
     public static PerfinApp instance;
     public static ProfileLoader profileLoader;
 
@@ -111,14 +109,14 @@ public class PerfinApp extends Application {
 
     private static void initAppDir(Consumer<String> msgConsumer) throws Exception {
         msgConsumer.accept("Validating application files.");
-        if (Files.notExists(APP_DIR)) {
-            msgConsumer.accept(APP_DIR + " doesn't exist yet. Creating it now.");
-            Files.createDirectory(APP_DIR);
+        if (Files.notExists(Profile.APP_DIR)) {
+            msgConsumer.accept(Profile.APP_DIR + " doesn't exist yet. Creating it now.");
+            Files.createDirectory(Profile.APP_DIR);
             Files.createDirectory(Profile.getProfilesDir());
-        } else if (Files.exists(APP_DIR) && Files.isRegularFile(APP_DIR)) {
-            msgConsumer.accept(APP_DIR + " is a file, when it should be a directory. Deleting it and creating new directory.");
-            Files.delete(APP_DIR);
-            Files.createDirectory(APP_DIR);
+        } else if (Files.exists(Profile.APP_DIR) && Files.isRegularFile(Profile.APP_DIR)) {
+            msgConsumer.accept(Profile.APP_DIR + " is a file, when it should be a directory. Deleting it and creating new directory.");
+            Files.delete(Profile.APP_DIR);
+            Files.createDirectory(Profile.APP_DIR);
         }
     }
 
@@ -13,7 +13,10 @@ import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.layout.FlowPane;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.andrewlalis.perfin.PerfinApp.router;
 
@@ -50,9 +53,12 @@ public class AccountsViewController implements RouteSelectionListener {
         Profile.whenLoaded(profile -> {
             profile.dataSource().useRepoAsync(AccountRepository.class, repo -> {
                 List<Account> accounts = repo.findAllOrderedByRecentHistory();
+                Map<Long, BigDecimal> balances = repo.deriveCurrentBalances(
+                        accounts.stream().map(a -> a.id).collect(Collectors.toSet())
+                );
                 Platform.runLater(() -> accountsPane.getChildren()
                         .setAll(accounts.stream()
-                                .map(AccountTile::new)
+                                .map(account -> new AccountTile(account, balances.get(account.id)))
                                 .toList()
                         ));
             });
@@ -30,7 +30,10 @@ public class DashboardController implements RouteSelectionListener {
         var m4 = new VendorSpendChartModule(modulesFlowPane);
         m4.columnsProperty.set(2);
 
-        modulesFlowPane.getChildren().addAll(accountsModule, transactionsModule, m3, m4);
+        var m5 = new NetWorthChartModule(modulesFlowPane);
+        m5.columnsProperty.set(1);
+
+        modulesFlowPane.getChildren().addAll(accountsModule, transactionsModule, m3, m4, m5);
     }
 
     @Override
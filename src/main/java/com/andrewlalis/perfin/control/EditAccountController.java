@@ -1,6 +1,7 @@
 package com.andrewlalis.perfin.control;
 
 import com.andrewlalis.javafx_scene_router.RouteSelectionListener;
+import com.andrewlalis.perfin.data.DataSession;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
 import com.andrewlalis.perfin.model.Account;
 import com.andrewlalis.perfin.model.AccountType;
@@ -109,15 +110,9 @@ public class EditAccountController implements RouteSelectionListener {
         String number = accountNumberField.getText().strip();
         AccountType type = accountTypeChoiceBox.getValue();
         Currency currency = accountCurrencyComboBox.getValue();
-        String description = descriptionField.getText();
-        if (description != null) {
-            description = description.strip();
-            if (description.isBlank()) description = null;
-        }
-        try (
-                var accountRepo = Profile.getCurrent().dataSource().getAccountRepository();
-                var balanceRepo = Profile.getCurrent().dataSource().getBalanceRecordRepository()
-        ) {
+        String rawDescription = descriptionField.getText();
+        String description = rawDescription == null || rawDescription.isBlank() ? null : rawDescription.strip();
+        try {
             if (creatingNewAccount.get()) {
                 BigDecimal initialBalance = new BigDecimal(initialBalanceField.getText().strip());
                 List<Path> attachments = Collections.emptyList();
@@ -131,19 +126,26 @@ public class EditAccountController implements RouteSelectionListener {
                 );
                 boolean success = Popups.confirm(accountNameField, prompt);
                 if (success) {
-                    long id = accountRepo.insert(type, number, name, currency, description);
-                    balanceRepo.insert(LocalDateTime.now(ZoneOffset.UTC), id, initialBalance, currency, attachments);
+                    // Create the account and its initial balance record together, or not at all.
+                    Account newAccount = Profile.getCurrent().dataSource().withSession(DataSession.Options.TRANSACTION, session -> {
+                        var accountRepo = session.getAccountRepository();
+                        long id = accountRepo.insert(type, number, name, currency, description);
+                        session.getBalanceRecordRepository().insert(LocalDateTime.now(ZoneOffset.UTC), id, initialBalance, currency, attachments);
+                        return accountRepo.findById(id).orElseThrow();
+                    });
                     // Once we create the new account, go to the account.
-                    Account newAccount = accountRepo.findById(id).orElseThrow();
                     router.replace("account", newAccount);
                 }
             } else {
-                accountRepo.update(account.id, type, number, name, currency, description);
-                Account updatedAccount = accountRepo.findById(account.id).orElseThrow();
+                Account updatedAccount = Profile.getCurrent().dataSource().withSession(DataSession.Options.TRANSACTION, session -> {
+                    var accountRepo = session.getAccountRepository();
+                    accountRepo.update(account.id, type, number, name, currency, description);
+                    return accountRepo.findById(account.id).orElseThrow();
+                });
                 router.replace("account", updatedAccount);
             }
         } catch (Exception e) {
-            log.error("Failed to save (or update) account " + account.id, e);
+            log.error("Failed to save (or update) account " + (account == null ? null : account.id), e);
             Popups.error(accountNameField, "Failed to save the account: " + e.getMessage());
         }
     }
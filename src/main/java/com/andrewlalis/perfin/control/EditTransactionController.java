@@ -1,10 +1,9 @@
 package com.andrewlalis.perfin.control;
 
 import com.andrewlalis.javafx_scene_router.RouteSelectionListener;
+import com.andrewlalis.perfin.data.DataSession;
 import com.andrewlalis.perfin.data.DataSource;
 import com.andrewlalis.perfin.data.TransactionRepository;
-import com.andrewlalis.perfin.data.pagination.PageRequest;
-import com.andrewlalis.perfin.data.pagination.Sort;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
 import com.andrewlalis.perfin.data.util.DateUtil;
 import com.andrewlalis.perfin.model.*;
@@ -222,85 +221,86 @@ public class EditTransactionController implements RouteSelectionListener {
         // Fetch some account-specific data.
         container.setDisable(true);
         DataSource ds = Profile.getCurrent().dataSource();
-        Thread.ofVirtual().start(() -> {
-            try (
-                    var accountRepo = ds.getAccountRepository();
-                    var transactionRepo = ds.getTransactionRepository();
-                    var vendorRepo = ds.getTransactionVendorRepository();
-                    var categoryRepo = ds.getTransactionCategoryRepository();
-                    var lineItemRepo = ds.getTransactionLineItemRepository()
-            ) {
-                // First fetch all the data.
-                List<Currency> currencies = accountRepo.findAllUsedCurrencies().stream()
-                        .sorted(Comparator.comparing(Currency::getCurrencyCode))
-                        .toList();
-                List<Account> accounts = accountRepo.findAll(PageRequest.unpaged(Sort.asc("name"))).items();
-                final List<Attachment> attachments;
-                final var categoryTreeNodes = categoryRepo.findTree();
-                final List<String> availableTags = transactionRepo.findAllTags();
-                final List<String> tags;
-                final CreditAndDebitAccounts linkedAccounts;
-                final String vendorName;
-                final TransactionCategory category;
-                final List<TransactionLineItem> existingLineItems;
-                if (transaction == null) {
-                    attachments = Collections.emptyList();
-                    tags = Collections.emptyList();
-                    linkedAccounts = new CreditAndDebitAccounts(null, null);
+        ds.withSessionAsync(DataSession.Options.READ_ONLY, session -> {
+            var accountRepo = session.getAccountRepository();
+            var transactionRepo = session.getTransactionRepository();
+            var vendorRepo = session.getTransactionVendorRepository();
+            var categoryRepo = session.getTransactionCategoryRepository();
+            var lineItemRepo = session.getTransactionLineItemRepository();
+            // First fetch all the data.
+            List<Currency> currencies = accountRepo.findAllUsedCurrencies().stream()
+                    .sorted(Comparator.comparing(Currency::getCurrencyCode))
+                    .toList();
+            List<Account> accounts = accountRepo.findAllOrderedByName();
+            final List<Attachment> attachments;
+            final var categoryTreeNodes = categoryRepo.findTree();
+            final List<String> availableTags = transactionRepo.findAllTags();
+            final List<String> tags;
+            final CreditAndDebitAccounts linkedAccounts;
+            final String vendorName;
+            final TransactionCategory category;
+            final List<TransactionLineItem> existingLineItems;
+            if (transaction == null) {
+                attachments = Collections.emptyList();
+                tags = Collections.emptyList();
+                linkedAccounts = new CreditAndDebitAccounts(null, null);
+                vendorName = null;
+                category = null;
+                existingLineItems = Collections.emptyList();
+            } else {
+                attachments = transactionRepo.findAttachments(transaction.id);
+                tags = transactionRepo.findTags(transaction.id);
+                linkedAccounts = transactionRepo.findLinkedAccounts(transaction.id);
+                if (transaction.getVendorId() != null) {
+                    vendorName = vendorRepo.findById(transaction.getVendorId())
+                            .map(TransactionVendor::getName).orElse(null);
+                } else {
                     vendorName = null;
+                }
+                if (transaction.getCategoryId() != null) {
+                    category = categoryRepo.findById(transaction.getCategoryId()).orElse(null);
+                } else {
                     category = null;
-                    existingLineItems = Collections.emptyList();
+                }
+                existingLineItems = lineItemRepo.findItems(transaction.id);
+            }
+            final List<TransactionVendor> availableVendors = vendorRepo.findAll();
+            // Then make updates to the view.
+            Platform.runLater(() -> {
+                currencyChoiceBox.getItems().setAll(currencies);
+                creditAccountSelector.setAccounts(accounts);
+                debitAccountSelector.setAccounts(accounts);
+                vendorComboBox.getItems().setAll(availableVendors.stream().map(TransactionVendor::getName).toList());
+                vendorComboBox.setValue(vendorName);
+                categoryComboBox.loadCategories(categoryTreeNodes);
+                categoryComboBox.select(category);
+                tagsComboBox.getItems().setAll(availableTags);
+                attachmentsSelectionArea.clear();
+                attachmentsSelectionArea.addAttachments(attachments);
+                selectedTags.clear();
+                selectedTags.addAll(tags);
+                if (transaction == null) {
+                    currencyChoiceBox.getSelectionModel().selectFirst();
+                    creditAccountSelector.select(null);
+                    debitAccountSelector.select(null);
                 } else {
-                    attachments = transactionRepo.findAttachments(transaction.id);
-                    tags = transactionRepo.findTags(transaction.id);
-                    linkedAccounts = transactionRepo.findLinkedAccounts(transaction.id);
-                    if (transaction.getVendorId() != null) {
-                        vendorName = vendorRepo.findById(transaction.getVendorId())
-                                .map(TransactionVendor::getName).orElse(null);
-                    } else {
-                        vendorName = null;
-                    }
-                    if (transaction.getCategoryId() != null) {
-                        category = categoryRepo.findById(transaction.getCategoryId()).orElse(null);
-                    } else {
-                        category = null;
-                    }
-                    existingLineItems = lineItemRepo.findItems(transaction.id);
+                    currencyChoiceBox.getSelectionModel().select(transaction.getCurrency());
+                    creditAccountSelector.select(linkedAccounts.creditAccount());
+                    debitAccountSelector.select(linkedAccounts.debitAccount());
                 }
-                final List<TransactionVendor> availableVendors = vendorRepo.findAll();
-                // Then make updates to the view.
-                Platform.runLater(() -> {
-                    currencyChoiceBox.getItems().setAll(currencies);
-                    creditAccountSelector.setAccounts(accounts);
-                    debitAccountSelector.setAccounts(accounts);
-                    vendorComboBox.getItems().setAll(availableVendors.stream().map(TransactionVendor::getName).toList());
-                    vendorComboBox.setValue(vendorName);
-                    categoryComboBox.loadCategories(categoryTreeNodes);
-                    categoryComboBox.select(category);
-                    tagsComboBox.getItems().setAll(availableTags);
-                    attachmentsSelectionArea.clear();
-                    attachmentsSelectionArea.addAttachments(attachments);
-                    selectedTags.clear();
-                    selectedTags.addAll(tags);
-                    if (transaction == null) {
-                        currencyChoiceBox.getSelectionModel().selectFirst();
-                        creditAccountSelector.select(null);
-                        debitAccountSelector.select(null);
-                    } else {
-                        currencyChoiceBox.getSelectionModel().select(transaction.getCurrency());
-                        creditAccountSelector.select(linkedAccounts.creditAccount());
-                        debitAccountSelector.select(linkedAccounts.debitAccount());
-                    }
-                    lineItemCategoryComboBox.loadCategories(categoryTreeNodes);
-                    lineItemCategoryComboBox.select(null);
-                    lineItems.setAll(existingLineItems);
-                    container.setDisable(false);
-                });
-            } catch (Exception e) {
-                log.error("Failed to get repositories.", e);
-                Platform.runLater(() -> Popups.error(container, "Failed to fetch account-specific data: " + e.getMessage()));
+                lineItemCategoryComboBox.loadCategories(categoryTreeNodes);
+                lineItemCategoryComboBox.select(null);
+                lineItems.setAll(existingLineItems);
+                container.setDisable(false);
+            });
+            return null;
+        }).exceptionally(e -> {
+            log.error("Failed to fetch account-specific data.", e);
+            Platform.runLater(() -> {
+                Popups.error(container, "Failed to fetch account-specific data: " + e.getMessage());
                 router.navigateBackAndClear();
-            }
+            });
+            return null;
         });
     }
 
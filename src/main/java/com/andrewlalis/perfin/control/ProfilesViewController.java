@@ -1,7 +1,10 @@
 package com.andrewlalis.perfin.control;
 
 import com.andrewlalis.perfin.PerfinApp;
+import com.andrewlalis.perfin.data.AccountBalanceSnapshotRepository;
+import com.andrewlalis.perfin.data.DataSource;
 import com.andrewlalis.perfin.data.ProfileLoadException;
+import com.andrewlalis.perfin.data.TransactionRollupRepository;
 import com.andrewlalis.perfin.data.util.FileUtil;
 import com.andrewlalis.perfin.model.Profile;
 import com.andrewlalis.perfin.model.ProfileBackups;
@@ -9,6 +12,7 @@ import com.andrewlalis.perfin.model.ProfileLoader;
 import com.andrewlalis.perfin.view.ProfilesStage;
 import com.andrewlalis.perfin.view.component.validation.ValidationApplier;
 import com.andrewlalis.perfin.view.component.validation.validators.PredicateValidator;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
@@ -97,6 +101,14 @@ public class ProfilesViewController {
             Button backupButton = new Button("Backup");
             backupButton.setOnAction(event -> makeBackup(profileName));
             buttonBox.getChildren().add(backupButton);
+            if (isCurrent) {
+                Button checkBalancesButton = new Button("Check Balances");
+                checkBalancesButton.setOnAction(event -> checkBalanceSnapshots());
+                buttonBox.getChildren().add(checkBalancesButton);
+                Button checkAnalyticsButton = new Button("Check Analytics");
+                checkAnalyticsButton.setOnAction(event -> checkTransactionRollup());
+                buttonBox.getChildren().add(checkAnalyticsButton);
+            }
             Button deleteButton = new Button("Delete");
             deleteButton.setOnAction(event -> deleteProfile(profileName));
             buttonBox.getChildren().add(deleteButton);
@@ -131,6 +143,66 @@ public class ProfilesViewController {
         }
     }
 
+    private void checkBalanceSnapshots() {
+        DataSource dataSource = Profile.getCurrent().dataSource();
+        dataSource.mapRepoAsync(
+                AccountBalanceSnapshotRepository.class,
+                AccountBalanceSnapshotRepository::findInconsistencies
+        ).thenAccept(inconsistencies -> Platform.runLater(() -> {
+            if (inconsistencies.isEmpty()) {
+                Popups.message(profilesVBox, "All account balances are consistent.");
+                return;
+            }
+            for (var inconsistency : inconsistencies) {
+                log.warn("Inconsistent account balance snapshot: {}", inconsistency);
+            }
+            boolean rebuild = Popups.confirm(profilesVBox, "Found " + inconsistencies.size() + " account balance snapshot(s) that don't match the account's history. Do you want to rebuild all balance snapshots?");
+            if (rebuild) {
+                dataSource.useRepoAsync(AccountBalanceSnapshotRepository.class, AccountBalanceSnapshotRepository::rebuildAll)
+                        .thenRun(() -> Platform.runLater(() -> Popups.message(profilesVBox, "Account balance snapshots have been rebuilt.")))
+                        .exceptionally(e -> {
+                            log.error("Failed to rebuild account balance snapshots.", e);
+                            Platform.runLater(() -> Popups.error(profilesVBox, "Failed to rebuild account balance snapshots: " + e.getMessage()));
+                            return null;
+                        });
+            }
+        })).exceptionally(e -> {
+            log.error("Failed to check account balance snapshots.", e);
+            Platform.runLater(() -> Popups.error(profilesVBox, "Failed to check account balance snapshots: " + e.getMessage()));
+            return null;
+        });
+    }
+
+    private void checkTransactionRollup() {
+        DataSource dataSource = Profile.getCurrent().dataSource();
+        dataSource.mapRepoAsync(
+                TransactionRollupRepository.class,
+                TransactionRollupRepository::findInconsistencies
+        ).thenAccept(inconsistencies -> Platform.runLater(() -> {
+            if (inconsistencies.isEmpty()) {
+                Popups.message(profilesVBox, "All transaction analytics are consistent.");
+                return;
+            }
+            for (var inconsistency : inconsistencies) {
+                log.warn("Inconsistent transaction rollup: {}", inconsistency);
+            }
+            boolean rebuild = Popups.confirm(profilesVBox, "Found " + inconsistencies.size() + " transaction rollup amount(s) that don't match the transactions. Do you want to rebuild the transaction rollup?");
+            if (rebuild) {
+                dataSource.useRepoAsync(TransactionRollupRepository.class, TransactionRollupRepository::rebuildAll)
+                        .thenRun(() -> Platform.runLater(() -> Popups.message(profilesVBox, "The transaction rollup has been rebuilt.")))
+                        .exceptionally(e -> {
+                            log.error("Failed to rebuild the transaction rollup.", e);
+                            Platform.runLater(() -> Popups.error(profilesVBox, "Failed to rebuild the transaction rollup: " + e.getMessage()));
+                            return null;
+                        });
+            }
+        })).exceptionally(e -> {
+            log.error("Failed to check the transaction rollup.", e);
+            Platform.runLater(() -> Popups.error(profilesVBox, "Failed to check the transaction rollup: " + e.getMessage()));
+            return null;
+        });
+    }
+
     private void deleteProfile(String name) {
         boolean confirmA = Popups.confirm(profilesVBox, "Are you sure you want to delete the profile \"" + name + "\"? This will permanently delete ALL accounts, transactions, files, and other data for this profile, and it cannot be recovered.");
         if (confirmA) {
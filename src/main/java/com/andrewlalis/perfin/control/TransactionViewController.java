@@ -1,5 +1,6 @@
 package com.andrewlalis.perfin.control;
 
+import com.andrewlalis.perfin.data.DataSession;
 import com.andrewlalis.perfin.data.TransactionRepository;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
 import com.andrewlalis.perfin.data.util.DateUtil;
@@ -144,31 +145,30 @@ public class TransactionViewController {
 
     private void updateLinkedData(Transaction tx) {
         var ds = Profile.getCurrent().dataSource();
-        Thread.ofVirtual().start(() -> {
-            try (
-                var transactionRepo = ds.getTransactionRepository();
-                var vendorRepo = ds.getTransactionVendorRepository();
-                var categoryRepo = ds.getTransactionCategoryRepository();
-                var lineItemsRepo = ds.getTransactionLineItemRepository()
-            ) {
-                final var linkedAccounts = transactionRepo.findLinkedAccounts(tx.id);
-                final var vendor = tx.getVendorId() == null ? null : vendorRepo.findById(tx.getVendorId()).orElse(null);
-                final var category = tx.getCategoryId() == null ? null : categoryRepo.findById(tx.getCategoryId()).orElse(null);
-                final var attachments = transactionRepo.findAttachments(tx.id);
-                final var tags = transactionRepo.findTags(tx.id);
-                final var lineItems = lineItemsRepo.findItems(tx.id);
-                Platform.runLater(() -> {
-                    linkedAccountsProperty.set(linkedAccounts);
-                    vendorProperty.set(vendor);
-                    categoryProperty.set(category);
-                    attachmentsList.setAll(attachments);
-                    tagsList.setAll(tags);
-                    lineItemsList.setAll(lineItems);
-                });
-            } catch (Exception e) {
-                log.error("Failed to fetch additional transaction data.", e);
-                Popups.errorLater(titleLabel, e);
-            }
+        ds.withSessionAsync(DataSession.Options.READ_ONLY, session -> {
+            var transactionRepo = session.getTransactionRepository();
+            var vendorRepo = session.getTransactionVendorRepository();
+            var categoryRepo = session.getTransactionCategoryRepository();
+            var lineItemsRepo = session.getTransactionLineItemRepository();
+            final var linkedAccounts = transactionRepo.findLinkedAccounts(tx.id);
+            final var vendor = tx.getVendorId() == null ? null : vendorRepo.findById(tx.getVendorId()).orElse(null);
+            final var category = tx.getCategoryId() == null ? null : categoryRepo.findById(tx.getCategoryId()).orElse(null);
+            final var attachments = transactionRepo.findAttachments(tx.id);
+            final var tags = transactionRepo.findTags(tx.id);
+            final var lineItems = lineItemsRepo.findItems(tx.id);
+            Platform.runLater(() -> {
+                linkedAccountsProperty.set(linkedAccounts);
+                vendorProperty.set(vendor);
+                categoryProperty.set(category);
+                attachmentsList.setAll(attachments);
+                tagsList.setAll(tags);
+                lineItemsList.setAll(lineItems);
+            });
+            return null;
+        }).exceptionally(e -> {
+            log.error("Failed to fetch additional transaction data.", e);
+            Platform.runLater(() -> Popups.error(titleLabel, "Failed to fetch transaction data: " + e.getMessage()));
+            return null;
         });
     }
 
@@ -4,97 +4,122 @@ import com.andrewlalis.javafx_scene_router.RouteSelectionListener;
 import com.andrewlalis.perfin.data.AccountRepository;
 import com.andrewlalis.perfin.data.TransactionRepository;
 import com.andrewlalis.perfin.data.impl.JdbcDataSource;
-import com.andrewlalis.perfin.data.pagination.Page;
+import com.andrewlalis.perfin.data.impl.JdbcTransactionRepository;
+import com.andrewlalis.perfin.data.impl.JdbcTransactionSearchIndex;
+import com.andrewlalis.perfin.data.pagination.Cursor;
+import com.andrewlalis.perfin.data.pagination.KeysetPageRequest;
+import com.andrewlalis.perfin.data.pagination.LazyKeysetList;
 import com.andrewlalis.perfin.data.pagination.PageRequest;
 import com.andrewlalis.perfin.data.pagination.Sort;
 import com.andrewlalis.perfin.data.search.JdbcTransactionSearcher;
+import com.andrewlalis.perfin.data.search.SearchCountCache;
 import com.andrewlalis.perfin.data.search.SearchFilter;
 import com.andrewlalis.perfin.data.util.DateUtil;
 import com.andrewlalis.perfin.data.util.Pair;
+import com.andrewlalis.perfin.data.util.QueryCanceller;
 import com.andrewlalis.perfin.model.Account;
 import com.andrewlalis.perfin.model.Profile;
 import com.andrewlalis.perfin.model.Transaction;
+import com.andrewlalis.perfin.model.TransactionSummary;
 import com.andrewlalis.perfin.view.BindingUtil;
 import com.andrewlalis.perfin.view.SceneUtil;
 import com.andrewlalis.perfin.view.component.AccountSelectionBox;
-import com.andrewlalis.perfin.view.component.DataSourcePaginationControls;
 import com.andrewlalis.perfin.view.component.TransactionTile;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
-import javafx.scene.Node;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
+import javafx.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 import static com.andrewlalis.perfin.PerfinApp.router;
 
 /**
  * Controller for the view of all transactions in a user's profile.
- * Transactions are displayed in a paginated manner, and this controller
- * accepts as a route context a {@link PageRequest} to initialize the results
- * to a specific page.
+ * Transactions are displayed in a virtualized list, which only loads the
+ * transactions that are scrolled into view, and this controller accepts as a
+ * route context a {@link RouteContext} to scroll to and select a specific
+ * transaction. Transactions are listed newest-first, except when searching
+ * by text, when the best matches are listed first.
  */
 public class TransactionsViewController implements RouteSelectionListener {
-    public static List<Sort> DEFAULT_SORTS = List.of(Sort.desc("timestamp"));
+    private static final Logger log = LoggerFactory.getLogger(TransactionsViewController.class);
+
+    public static List<Sort> DEFAULT_SORTS = JdbcTransactionSearcher.NEWEST_FIRST;
+    private static final Duration SEARCH_DEBOUNCE_DELAY = Duration.millis(250);
+    /**
+     * The number of transactions to load at once. This is a bit more than
+     * fits on a tall screen, so that scrolling rarely has to wait.
+     */
+    private static final int CHUNK_SIZE = 50;
+    /**
+     * The maximum number of chunks to keep loaded, which limits how many
+     * transactions are held in memory, no matter how far the user scrolls.
+     */
+    private static final int MAX_CHUNKS = 10;
     public record RouteContext(Long selectedTransactionId) {}
 
     @FXML public BorderPane transactionsListBorderPane;
     @FXML public TextField searchField;
     @FXML public AccountSelectionBox filterByAccountComboBox;
-    @FXML public VBox transactionsVBox;
-    private DataSourcePaginationControls paginationControls;
-
+    @FXML public ListView<TransactionSummary> transactionsListView;
+    @FXML public Label resultCountLabel;
+    /**
+     * Result counts for the searches done in this view. Transactions are only
+     * ever changed from other views, or from the detail panel which re-routes
+     * to this view afterwards, so we discard the counts each time this view
+     * is shown.
+     */
+    private final SearchCountCache searchCountCache = new SearchCountCache();
+    /**
+     * The canceller for the most recent search. Only that search's results
+     * are ever shown, and starting a new search cancels it.
+     */
+    private QueryCanceller currentSearch;
+    private LazyKeysetList<TransactionSummary> transactions;
 
     @FXML public VBox detailPanel;
     private final ObjectProperty<Transaction> selectedTransaction = new SimpleObjectProperty<>(null);
 
     @FXML public void initialize() {
-        // Initialize the left-hand paginated transactions list.
+        // Initialize the left-hand transactions list.
         filterByAccountComboBox.valueProperty().addListener((observable, oldValue, newValue) -> {
-            paginationControls.setPage(1);
+            search(null);
             selectedTransaction.set(null);
         });
-        searchField.textProperty().addListener((observable, oldValue, newValue) -> {
-            paginationControls.setPage(1);
+        // Wait until the user stops typing for a moment before searching.
+        PauseTransition searchDebounce = new PauseTransition(SEARCH_DEBOUNCE_DELAY);
+        searchDebounce.setOnFinished(event -> {
+            search(null);
             selectedTransaction.set(null);
         });
-
-        this.paginationControls = new DataSourcePaginationControls(
-                transactionsVBox.getChildren(),
-                new DataSourcePaginationControls.PageFetcherFunction() {
-                    @Override
-                    public Page<? extends Node> fetchPage(PageRequest pagination) throws Exception {
-                        JdbcDataSource ds = (JdbcDataSource) Profile.getCurrent().dataSource();
-                        try (var conn = ds.getConnection()) {
-                            JdbcTransactionSearcher searcher = new JdbcTransactionSearcher(conn);
-                            return searcher.search(pagination, getCurrentSearchFilters())
-                                    .map(TransactionsViewController.this::makeTile);
-                        }
-                    }
-
-                    @Override
-                    public int getTotalCount() throws Exception {
-                        JdbcDataSource ds = (JdbcDataSource) Profile.getCurrent().dataSource();
-                        try (var conn = ds.getConnection()) {
-                            JdbcTransactionSearcher searcher = new JdbcTransactionSearcher(conn);
-                            return (int) searcher.resultCount(getCurrentSearchFilters());
-                        }
-                    }
-                }
-        );
-        transactionsListBorderPane.setBottom(paginationControls);
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> searchDebounce.playFromStart());
+        transactionsListView.setCellFactory(listView -> new TransactionCell());
+        transactionsListView.setPlaceholder(new Label("No transactions."));
 
         // Initialize the right-hand transaction detail view.
         HBox container = (HBox) detailPanel.getParent();
@@ -112,19 +137,19 @@ public class TransactionsViewController implements RouteSelectionListener {
 
         // Clear the transactions when a new profile is loaded.
         Profile.whenLoaded(profile -> {
-            transactionsVBox.getChildren().clear();
+            showTransactions(null, 0);
             onRouteSelected(null);
         });
     }
 
     @Override
     public void onRouteSelected(Object context) {
-        paginationControls.sorts.setAll(DEFAULT_SORTS);
+        searchCountCache.invalidate();
         selectedTransaction.set(null); // Initially set the selected transaction as null.
 
         // Refresh account filter options.
         Profile.getCurrent().dataSource().useRepoAsync(AccountRepository.class, repo -> {
-            List<Account> accounts = repo.findAll(PageRequest.unpaged(Sort.asc("name"))).items();
+            List<Account> accounts = repo.findAllOrderedByName();
             Platform.runLater(() -> {
                 filterByAccountComboBox.setAccounts(accounts);
                 filterByAccountComboBox.select(null);
@@ -132,21 +157,270 @@ public class TransactionsViewController implements RouteSelectionListener {
         });
 
 
-        // If a transaction id is given in the route context, navigate to the page it's on and select it.
+        // If a transaction id is given in the route context, scroll to it and select it.
         if (context instanceof RouteContext ctx && ctx.selectedTransactionId != null) {
             Profile.getCurrent().dataSource().useRepoAsync(
                     TransactionRepository.class,
-                    repo -> repo.findById(ctx.selectedTransactionId).ifPresent(tx -> {
-                        long offset = repo.countAllAfter(tx.id);
-                        int pageNumber = (int) (offset / paginationControls.getItemsPerPage()) + 1;
-                        Platform.runLater(() -> {
-                            paginationControls.setPage(pageNumber);
-                            selectedTransaction.set(tx);
-                        });
-                    })
+                    repo -> repo.findById(ctx.selectedTransactionId).ifPresent(tx -> Platform.runLater(() -> {
+                        search(tx);
+                        selectedTransaction.set(tx);
+                    }))
             );
         } else {
-            paginationControls.setPage(1);
+            search(null);
+        }
+    }
+
+    /**
+     * Searches for transactions with the current filters in the background,
+     * and shows the results once they're ready. If another search is started
+     * before this one is done, this one's queries are cancelled.
+     * @param scrollTo A transaction to start the list at, or null to start at
+     *                 the top.
+     */
+    private void search(Transaction scrollTo) {
+        if (currentSearch != null) currentSearch.cancel();
+        QueryCanceller canceller = new QueryCanceller();
+        currentSearch = canceller;
+        List<SearchFilter> filters = getCurrentSearchFilters();
+        boolean ranked = isRankedSearch();
+        Thread.ofVirtual().start(() -> {
+            long start = System.nanoTime();
+            JdbcDataSource ds = (JdbcDataSource) Profile.getCurrent().dataSource();
+            try (var conn = ds.getConnection()) {
+                JdbcTransactionSearcher searcher = new JdbcTransactionSearcher(conn, searchCountCache, canceller);
+                var results = ranked
+                        ? findRankedTransactions(searcher, conn, ds, filters)
+                        : findTransactions(searcher, conn, ds, filters, scrollTo);
+                log.debug("Searched transactions in {} ms.", String.format("%.2f", (System.nanoTime() - start) / 1_000_000.0));
+                Platform.runLater(() -> {
+                    if (currentSearch != canceller) {
+                        results.list().dispose();
+                        return;
+                    }
+                    currentSearch = null;
+                    showTransactions(results.list(), results.count());
+                });
+            } catch (CancellationException e) {
+                log.debug("Transaction search was cancelled.");
+            } catch (Exception e) {
+                log.error("Failed to search transactions.", e);
+                Platform.runLater(() -> {
+                    if (currentSearch == canceller) showTransactions(null, 0);
+                });
+            }
+        });
+    }
+
+    private record SearchResults(LazyKeysetList<TransactionSummary> list, long count) {}
+
+    private static SearchResults findTransactions(
+            JdbcTransactionSearcher searcher,
+            Connection conn,
+            JdbcDataSource ds,
+            List<SearchFilter> filters,
+            Transaction scrollTo
+    ) {
+        var fetcher = new TransactionChunkFetcher(filters, false);
+        if (scrollTo != null) {
+            // Seek straight to the transaction, and load the ones before it as they're scrolled to.
+            var request = KeysetPageRequest.first(CHUNK_SIZE, DEFAULT_SORTS)
+                    .withCursor(JdbcTransactionSearcher.cursorAt(scrollTo));
+            var pageAndCount = searcher.searchWithCount(request, filters);
+            if (!pageAndCount.first().items().isEmpty()) {
+                var list = LazyKeysetList.startingAt(
+                        toChunk(conn, ds, pageAndCount.first().items()),
+                        CHUNK_SIZE,
+                        MAX_CHUNKS,
+                        DEFAULT_SORTS,
+                        fetcher,
+                        ds.getRepositoryExecutor(),
+                        Platform::runLater
+                );
+                return new SearchResults(list, pageAndCount.second());
+            }
+        }
+        var pageAndCount = searcher.searchWithCount(KeysetPageRequest.first(CHUNK_SIZE, DEFAULT_SORTS), filters);
+        var list = new LazyKeysetList<>(
+                pageAndCount.second().intValue(),
+                CHUNK_SIZE,
+                MAX_CHUNKS,
+                DEFAULT_SORTS,
+                fetcher,
+                ds.getRepositoryExecutor(),
+                Platform::runLater
+        );
+        // Nothing is listening to the list yet, so it's fine to set this here.
+        list.setFirstChunk(toChunk(conn, ds, pageAndCount.first().items()));
+        return new SearchResults(list, pageAndCount.second());
+    }
+
+    /**
+     * Finds the transactions for a text search, with the best matches first.
+     * A relevance score isn't part of a transaction, so we can't make cursors
+     * for these results, and the list fetches all of its chunks by offset.
+     */
+    private static SearchResults findRankedTransactions(
+            JdbcTransactionSearcher searcher,
+            Connection conn,
+            JdbcDataSource ds,
+            List<SearchFilter> filters
+    ) {
+        var request = new PageRequest(0, CHUNK_SIZE, JdbcTransactionSearcher.MOST_RELEVANT_FIRST);
+        var pageAndCount = searcher.searchWithCount(request, filters);
+        var list = new LazyKeysetList<>(
+                pageAndCount.second().intValue(),
+                CHUNK_SIZE,
+                MAX_CHUNKS,
+                JdbcTransactionSearcher.MOST_RELEVANT_FIRST,
+                new TransactionChunkFetcher(filters, true),
+                ds.getRepositoryExecutor(),
+                Platform::runLater
+        );
+        list.setFirstChunk(toRankedChunk(conn, ds, pageAndCount.first().items()));
+        return new SearchResults(list, pageAndCount.second());
+    }
+
+    private void showTransactions(LazyKeysetList<TransactionSummary> list, long count) {
+        if (transactions != null) transactions.dispose();
+        transactions = list;
+        if (list == null) {
+            transactionsListView.getItems().clear();
+            resultCountLabel.setText(null);
+            return;
+        }
+        transactionsListView.setItems(list);
+        transactionsListView.scrollTo(0);
+        // Registered after the list view's own listener, so it sees the new item count.
+        list.addListener((ListChangeListener<TransactionSummary>) c -> {
+            while (c.next()) {
+                if (c.wasAdded() && c.getFrom() == 0) keepScrollPosition(c.getAddedSize());
+            }
+        });
+        resultCountLabel.setText(count + (count == 1 ? " transaction" : " transactions"));
+    }
+
+    /**
+     * Scrolls the transactions list so that the same rows stay in view after
+     * some rows were added before them.
+     * @param addedCount The number of rows that were added to the top.
+     */
+    private void keepScrollPosition(int addedCount) {
+        if (transactionsListView.lookup(".virtual-flow") instanceof VirtualFlow<?> flow) {
+            IndexedCell<?> firstCell = flow.getFirstVisibleCell();
+            if (firstCell != null) transactionsListView.scrollTo(firstCell.getIndex() + addedCount);
+        }
+    }
+
+    /**
+     * Loads the summaries for some transactions, as a chunk of rows for the
+     * transactions list.
+     */
+    private static LazyKeysetList.Chunk<TransactionSummary> toChunk(
+            Connection conn,
+            JdbcDataSource ds,
+            List<Transaction> transactions
+    ) {
+        var summaries = new JdbcTransactionRepository(conn, ds.getContentDir(), ds.getReferenceDataCache()).findSummaries(transactions);
+        if (transactions.isEmpty()) return new LazyKeysetList.Chunk<>(summaries, null, null);
+        return new LazyKeysetList.Chunk<>(
+                summaries,
+                Cursor.before(JdbcTransactionSearcher.cursorAt(transactions.getFirst()).keys()),
+                Cursor.after(JdbcTransactionSearcher.cursorAt(transactions.getLast()).keys())
+        );
+    }
+
+    /**
+     * Loads the summaries for some transactions from a ranked search, as a
+     * chunk without cursors, so that the next chunk is fetched by offset.
+     */
+    private static LazyKeysetList.Chunk<TransactionSummary> toRankedChunk(
+            Connection conn,
+            JdbcDataSource ds,
+            List<Transaction> transactions
+    ) {
+        var summaries = new JdbcTransactionRepository(conn, ds.getContentDir(), ds.getReferenceDataCache()).findSummaries(transactions);
+        return new LazyKeysetList.Chunk<>(summaries, null, null);
+    }
+
+    /**
+     * Fetches chunks of the transactions list, using the search filters that
+     * were set when the list was created.
+     * @param filters The search filters.
+     * @param ranked Whether the filters are for a ranked text search, whose
+     *               chunks are always fetched by offset.
+     */
+    private record TransactionChunkFetcher(List<SearchFilter> filters, boolean ranked) implements LazyKeysetList.ChunkFetcher<TransactionSummary> {
+        @Override
+        public LazyKeysetList.Chunk<TransactionSummary> fetch(KeysetPageRequest request, QueryCanceller canceller) throws Exception {
+            if (ranked) {
+                // Ranked chunks have no cursors, so this can only be the first chunk.
+                if (request.cursor() != null) throw new IllegalStateException("Ranked searches can't be continued from a cursor.");
+                return fetch(new PageRequest(0, request.size(), request.sorts()), canceller);
+            }
+            JdbcDataSource ds = (JdbcDataSource) Profile.getCurrent().dataSource();
+            try (var conn = ds.getConnection()) {
+                var page = new JdbcTransactionSearcher(conn, null, canceller).search(request, filters);
+                List<Transaction> items = page.items();
+                if (request.isReversed() && page.request().cursor() == null) {
+                    // Going back past the start gives the first page instead, so keep only the rows before the cursor.
+                    List<Object> keys = request.cursor().keys();
+                    int end = 0;
+                    while (end < items.size() && !JdbcTransactionSearcher.cursorAt(items.get(end)).keys().equals(keys)) end++;
+                    items = items.subList(0, end);
+                }
+                return toChunk(conn, ds, items);
+            }
+        }
+
+        @Override
+        public LazyKeysetList.Chunk<TransactionSummary> fetch(PageRequest request, QueryCanceller canceller) throws Exception {
+            JdbcDataSource ds = (JdbcDataSource) Profile.getCurrent().dataSource();
+            try (var conn = ds.getConnection()) {
+                var page = new JdbcTransactionSearcher(conn, null, canceller).search(request, filters);
+                return ranked ? toRankedChunk(conn, ds, page.items()) : toChunk(conn, ds, page.items());
+            }
+        }
+    }
+
+    /**
+     * A cell in the transactions list, which reuses a single tile for every
+     * transaction that it shows.
+     */
+    private class TransactionCell extends ListCell<TransactionSummary> {
+        private final TransactionTile tile = new TransactionTile();
+        private final Label loadingLabel = new Label("Loading...");
+
+        public TransactionCell() {
+            setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+            tile.selected.bind(Bindings.createBooleanBinding(
+                    () -> getItem() != null && getItem().transaction().equals(selectedTransaction.get()),
+                    itemProperty(),
+                    selectedTransaction
+            ));
+            tile.setOnMouseClicked(event -> {
+                Transaction transaction = getItem() == null ? null : getItem().transaction();
+                if (transaction == null) return;
+                if (selectedTransaction.get() == null || !selectedTransaction.get().equals(transaction)) {
+                    selectedTransaction.set(transaction);
+                } else {
+                    selectedTransaction.set(null);
+                }
+            });
+        }
+
+        @Override
+        protected void updateItem(TransactionSummary item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty) {
+                setGraphic(null);
+            } else if (item == null) {
+                // The row isn't loaded yet.
+                setGraphic(loadingLabel);
+            } else {
+                tile.setSummary(item);
+                setGraphic(tile);
+            }
         }
     }
 
@@ -182,24 +456,19 @@ public class TransactionsViewController implements RouteSelectionListener {
         }
     }
 
+    /**
+     * Determines if the current search is by text, so its results are ranked
+     * by relevance.
+     * @return True if the search field has any terms to search for.
+     */
+    private boolean isRankedSearch() {
+        return !JdbcTransactionSearchIndex.tokenize(searchField.getText()).isEmpty();
+    }
+
     private List<SearchFilter> getCurrentSearchFilters() {
         List<SearchFilter> filters = new ArrayList<>();
-        if (searchField.getText() != null && !searchField.getText().isBlank()) {
-            var likeTerms = Arrays.stream(searchField.getText().strip().toLowerCase().split("\\s+"))
-                    .map(t -> '%'+t+'%')
-                    .toList();
-            var builder = new SearchFilter.Builder();
-            List<String> orClauses = new ArrayList<>(likeTerms.size());
-            for (var term : likeTerms) {
-                orClauses.add("LOWER(transaction.description) LIKE ? OR LOWER(sfv.name) LIKE ? OR LOWER(sfc.name) LIKE ?");
-                builder.withArg(term);
-                builder.withArg(term);
-                builder.withArg(term);
-            }
-            builder.where(String.join(" OR ", orClauses));
-            builder.withJoin("LEFT JOIN transaction_vendor sfv ON sfv.id = transaction.vendor_id");
-            builder.withJoin("LEFT JOIN transaction_category sfc ON sfc.id = transaction.category_id");
-            filters.add(builder.build());
+        if (isRankedSearch()) {
+            filters.addAll(new JdbcTransactionSearcher.FilterBuilder().byRankedText(searchField.getText()).build());
         }
         if (filterByAccountComboBox.getValue() != null) {
             Account filteredAccount = filterByAccountComboBox.getValue();
@@ -219,17 +488,4 @@ public class TransactionsViewController implements RouteSelectionListener {
                 .byHasLineItems(true)
                 .build();
     }
-
-    private TransactionTile makeTile(Transaction transaction) {
-        var tile = new TransactionTile(transaction);
-        tile.setOnMouseClicked(event -> {
-            if (selectedTransaction.get() == null || !selectedTransaction.get().equals(transaction)) {
-                selectedTransaction.set(transaction);
-            } else {
-                selectedTransaction.set(null);
-            }
-        });
-        tile.selected.bind(selectedTransaction.map(t -> t != null && t.equals(transaction)));
-        return tile;
-    }
 }
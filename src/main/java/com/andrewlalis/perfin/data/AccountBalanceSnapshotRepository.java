@@ -0,0 +1,50 @@
+package com.andrewlalis.perfin.data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for managing the account balance snapshots, which record the
+ * derived balance of an account at the end of each (UTC) day on which the
+ * account had some activity. Snapshots are maintained automatically whenever
+ * account entries or balance records are added or removed, and they're used
+ * to speed up balance derivation, so normally you won't need to use this
+ * repository directly, except to repair or verify the snapshots.
+ */
+public interface AccountBalanceSnapshotRepository extends Repository, AutoCloseable {
+    /**
+     * A snapshot whose stored balance doesn't match the balance that's derived
+     * from the account's entries and balance records.
+     * @param accountId The id of the account.
+     * @param utcTimestamp The timestamp of the snapshot.
+     * @param snapshotBalance The balance that's stored in the snapshot.
+     * @param derivedBalance The balance that should be stored.
+     */
+    record Inconsistency(
+            long accountId,
+            LocalDateTime utcTimestamp,
+            BigDecimal snapshotBalance,
+            BigDecimal derivedBalance
+    ) {}
+
+    /**
+     * Discards and re-computes all snapshots for a single account.
+     * @param accountId The id of the account.
+     */
+    void rebuild(long accountId);
+
+    /**
+     * Discards and re-computes all snapshots for all accounts.
+     */
+    void rebuildAll();
+
+    /**
+     * Checks every snapshot against the balance derived without the use of
+     * any snapshots, and finds any that don't match.
+     * @return The list of inconsistent snapshots, which should be empty.
+     */
+    List<Inconsistency> findInconsistencies();
+
+    long countAll();
+}
@@ -2,6 +2,7 @@ package com.andrewlalis.perfin.data;
 
 import com.andrewlalis.perfin.data.pagination.Page;
 import com.andrewlalis.perfin.data.pagination.PageRequest;
+import com.andrewlalis.perfin.data.util.Pair;
 import com.andrewlalis.perfin.model.Account;
 import com.andrewlalis.perfin.model.AccountType;
 import com.andrewlalis.perfin.model.Timestamped;
@@ -12,17 +13,26 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Currency;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 public interface AccountRepository extends Repository, AutoCloseable {
     long insert(AccountType type, String accountNumber, String name, Currency currency, String description);
     Page<Account> findAll(PageRequest pagination);
+
+    /**
+     * Finds all accounts which aren't archived, ordered by name. The result
+     * is cached until accounts are changed, so it's cheap to call often.
+     * @return An unmodifiable list of the accounts.
+     */
+    List<Account> findAllOrderedByName();
     List<Account> findAllOrderedByRecentHistory();
     List<Account> findTopNOrderedByRecentHistory(int n);
     List<Account> findTopNRecentlyActive(int n, int daysSinceLastActive);
     List<Account> findAllByCurrency(Currency currency);
     Optional<Account> findById(long id);
+
     void update(long accountId, AccountType type, String accountNumber, String name, Currency currency, String description);
     void delete(Account account);
     void archive(long accountId);
@@ -32,6 +42,46 @@ public interface AccountRepository extends Repository, AutoCloseable {
     default BigDecimal deriveCurrentBalance(long accountId) {
         return deriveBalance(accountId, Instant.now(Clock.systemUTC()));
     }
+
+    /**
+     * Derives the balance of each of a set of accounts at a given time. This
+     * is equivalent to calling {@link #deriveBalance(long, Instant)} for each
+     * account, but all balances are computed at once.
+     * @param accountIds The ids of the accounts to derive balances for.
+     * @param timestamp The time at which to derive the balances.
+     * @return A map of account ids to balances. Ids of accounts that don't
+     * exist are not included.
+     */
+    Map<Long, BigDecimal> deriveBalances(Set<Long> accountIds, Instant timestamp);
+    default Map<Long, BigDecimal> deriveCurrentBalances(Set<Long> accountIds) {
+        return deriveBalances(accountIds, Instant.now(Clock.systemUTC()));
+    }
+    /**
+     * Gets an account's balance over a range of time, with one point at the
+     * start of the range, one at the start of each period within the range,
+     * and one at the end of the range. Each balance is the same as what
+     * {@link #deriveBalance(long, Instant)} would give at that point.
+     * @param accountId The id of the account.
+     * @param range The range of time to get balances for.
+     * @param granularity The size of the periods between points.
+     * @return The list of (UTC timestamp, balance) points, in order.
+     */
+    List<Pair<LocalDateTime, BigDecimal>> getBalanceSeries(long accountId, TimestampRange range, TimeGranularity granularity);
+
     Set<Currency> findAllUsedCurrencies();
     List<Timestamped> findEventsBefore(long accountId, LocalDateTime utcTimestamp, int maxResults);
+
+    /**
+     * Finds the events in an account's history (its entries, balance records
+     * and history items) that come before a given event, newest first. Events
+     * are ordered by timestamp, and then by kind and id, so this can be used
+     * to page through the whole history without skipping or repeating events
+     * that share a timestamp.
+     * @param accountId The id of the account.
+     * @param lastEvent The last event of the previous page, or null to start
+     *                  with the newest events.
+     * @param maxResults The maximum number of events to get.
+     * @return The events.
+     */
+    List<Timestamped> findOlderEvents(long accountId, Timestamped lastEvent, int maxResults);
 }
@@ -0,0 +1,134 @@
+package com.andrewlalis.perfin.data;
+
+import com.andrewlalis.perfin.model.TransactionCategory;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of all transaction categories, arranged as a tree. It
+ * offers constant-time lookups of a category's parent and root, and of the set
+ * of ids of a category and all its descendants, so that callers don't need to
+ * query the database for each level of the tree.
+ */
+public class CategoryTree {
+    private final Map<Long, TransactionCategory> categories;
+    private final Map<Long, TransactionCategory> roots;
+    private final Map<Long, Set<Long>> descendantIds;
+    private final Map<Long, TransactionCategoryRepository.CategoryTreeNode> nodes;
+    private final List<TransactionCategoryRepository.CategoryTreeNode> rootNodes;
+
+    private CategoryTree(Collection<TransactionCategory> allCategories) {
+        int size = allCategories.size();
+        categories = HashMap.newHashMap(size);
+        roots = HashMap.newHashMap(size);
+        descendantIds = HashMap.newHashMap(size);
+        nodes = HashMap.newHashMap(size);
+        Map<Long, List<TransactionCategory>> childrenByParentId = new HashMap<>();
+        List<TransactionCategory> rootCategories = new ArrayList<>();
+        for (var category : allCategories) {
+            categories.put(category.id, category);
+            if (category.getParentId() == null) {
+                rootCategories.add(category);
+            } else {
+                childrenByParentId.computeIfAbsent(category.getParentId(), k -> new ArrayList<>()).add(category);
+            }
+        }
+        List<TransactionCategoryRepository.CategoryTreeNode> rootNodesList = new ArrayList<>(rootCategories.size());
+        for (var root : sortedByName(rootCategories)) {
+            rootNodesList.add(buildNode(root, root, childrenByParentId));
+        }
+        rootNodes = Collections.unmodifiableList(rootNodesList);
+    }
+
+    /**
+     * Builds a tree from a list of all categories.
+     * @param categories All categories. Categories whose parent isn't in the
+     *                   list are left out of the tree.
+     * @return The category tree.
+     */
+    public static CategoryTree of(Collection<TransactionCategory> categories) {
+        return new CategoryTree(categories);
+    }
+
+    private TransactionCategoryRepository.CategoryTreeNode buildNode(
+            TransactionCategory category,
+            TransactionCategory root,
+            Map<Long, List<TransactionCategory>> childrenByParentId
+    ) {
+        List<TransactionCategoryRepository.CategoryTreeNode> children = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        ids.add(category.id);
+        for (var child : sortedByName(childrenByParentId.getOrDefault(category.id, Collections.emptyList()))) {
+            var childNode = buildNode(child, root, childrenByParentId);
+            children.add(childNode);
+            ids.addAll(descendantIds.get(child.id));
+        }
+        var node = new TransactionCategoryRepository.CategoryTreeNode(category, Collections.unmodifiableList(children));
+        roots.put(category.id, root);
+        descendantIds.put(category.id, Collections.unmodifiableSet(ids));
+        nodes.put(category.id, node);
+        return node;
+    }
+
+    private static List<TransactionCategory> sortedByName(List<TransactionCategory> categories) {
+        List<TransactionCategory> sorted = new ArrayList<>(categories);
+        sorted.sort(Comparator.comparing(TransactionCategory::getName));
+        return sorted;
+    }
+
+    public Optional<TransactionCategory> findById(long id) {
+        return Optional.ofNullable(categories.get(id));
+    }
+
+    /**
+     * Gets the parent of a category.
+     * @param id The category's id.
+     * @return The parent category, or null if the category is a root category
+     * or doesn't exist.
+     */
+    public TransactionCategory getParent(long id) {
+        TransactionCategory category = categories.get(id);
+        if (category == null || category.getParentId() == null) return null;
+        return categories.get(category.getParentId());
+    }
+
+    /**
+     * Gets the root category of a category, which is the category itself if
+     * it has no parent.
+     * @param id The category's id.
+     * @return The root category, or null if the category doesn't exist.
+     */
+    public TransactionCategory getRoot(long id) {
+        return roots.get(id);
+    }
+
+    /**
+     * Gets the ids of a category and all of its descendants.
+     * @param id The category's id.
+     * @return The set of ids, which is empty if the category doesn't exist.
+     */
+    public Set<Long> getDescendantIds(long id) {
+        return descendantIds.getOrDefault(id, Collections.emptySet());
+    }
+
+    /**
+     * Finds the tree node of a category.
+     * @param id The category's id.
+     * @return The tree node, if the category exists.
+     */
+    public Optional<TransactionCategoryRepository.CategoryTreeNode> findNode(long id) {
+        return Optional.ofNullable(nodes.get(id));
+    }
+
+    /**
+     * Gets the tree nodes of all root categories, ordered by name.
+     * @return The list of root nodes.
+     */
+    public List<TransactionCategoryRepository.CategoryTreeNode> getRootNodes() {
+        return rootNodes;
+    }
+
+    public Collection<TransactionCategory> getAll() {
+        return Collections.unmodifiableCollection(categories.values());
+    }
+}
@@ -0,0 +1,44 @@
+package com.andrewlalis.perfin.data;
+
+/**
+ * A unit of work on a data source, in which every repository shares a single
+ * connection, and optionally a single database transaction. Sessions are
+ * obtained with {@link DataSource#withSession(Options, java.util.function.Function)},
+ * which closes them afterward, so repositories obtained from a session must
+ * not be used outside of it, and don't need to be closed.
+ */
+public interface DataSession {
+    /**
+     * Options for how a session works.
+     * @param readOnly Whether the session only reads data. This is passed on
+     *                 to the database as a hint.
+     * @param transactional Whether to do the session's work in a single
+     *                      transaction, which is committed if the session
+     *                      completes normally, and rolled back otherwise.
+     */
+    record Options(boolean readOnly, boolean transactional) {
+        public Options {
+            if (readOnly && transactional) {
+                throw new IllegalArgumentException("A read-only session doesn't need a transaction.");
+            }
+        }
+
+        public static final Options READ_ONLY = new Options(true, false);
+        public static final Options READ_WRITE = new Options(false, false);
+        public static final Options TRANSACTION = new Options(false, true);
+    }
+
+    Options getOptions();
+
+    AccountRepository getAccountRepository();
+    BalanceRecordRepository getBalanceRecordRepository();
+    TransactionRepository getTransactionRepository();
+    TransactionVendorRepository getTransactionVendorRepository();
+    TransactionCategoryRepository getTransactionCategoryRepository();
+    TransactionLineItemRepository getTransactionLineItemRepository();
+    AttachmentRepository getAttachmentRepository();
+    HistoryRepository getHistoryRepository();
+    AccountBalanceSnapshotRepository getAccountBalanceSnapshotRepository();
+    TransactionRollupRepository getTransactionRollupRepository();
+    AnalyticsRepository getAnalyticsRepository();
+}
@@ -14,6 +14,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Interface for methods to obtain any data from a {@link com.andrewlalis.perfin.model.Profile}
@@ -35,9 +36,54 @@ public interface DataSource {
     TransactionLineItemRepository getTransactionLineItemRepository();
     AttachmentRepository getAttachmentRepository();
     HistoryRepository getHistoryRepository();
+    AccountBalanceSnapshotRepository getAccountBalanceSnapshotRepository();
+    TransactionRollupRepository getTransactionRollupRepository();
 
     AnalyticsRepository getAnalyticsRepository();
 
+    /**
+     * Gets the executor that runs this data source's asynchronous repository
+     * work, like {@link #mapRepoAsync(Class, Function)}.
+     * @return The repository executor.
+     */
+    RepositoryExecutor getRepositoryExecutor();
+
+    /**
+     * Does some work in a {@link DataSession}, in which all repositories
+     * share one connection.
+     * @param options The session's options.
+     * @param action The work to do.
+     * @return The result of the work.
+     * @param <T> The result type.
+     */
+    <T> T withSession(DataSession.Options options, Function<DataSession, T> action);
+
+    default <T> T withSession(Function<DataSession, T> action) {
+        return withSession(DataSession.Options.READ_WRITE, action);
+    }
+
+    /**
+     * Does some work in a {@link DataSession} on this data source's
+     * {@link RepositoryExecutor}.
+     * @param options The session's options.
+     * @param priority The priority of the work.
+     * @param action The work to do.
+     * @return A future that completes with the result of the work, or
+     * exceptionally if it failed.
+     * @param <T> The result type.
+     */
+    default <T> CompletableFuture<T> withSessionAsync(
+            DataSession.Options options,
+            RepositoryExecutor.Priority priority,
+            Function<DataSession, T> action
+    ) {
+        return getRepositoryExecutor().submit(priority, () -> withSession(options, action));
+    }
+
+    default <T> CompletableFuture<T> withSessionAsync(DataSession.Options options, Function<DataSession, T> action) {
+        return withSessionAsync(options, RepositoryExecutor.Priority.INTERACTIVE, action);
+    }
+
     // Repository helper methods:
 
     @SuppressWarnings("unchecked")
@@ -59,11 +105,26 @@ public interface DataSource {
     }
 
     default <R extends Repository, T> CompletableFuture<T> mapRepoAsync(Class<R> repoType, Function<R, T> action) {
-        CompletableFuture<T> cf = new CompletableFuture<>();
-        Thread.ofVirtual().start(() -> {
-            cf.complete(mapRepo(repoType, action));
-        });
-        return cf;
+        return mapRepoAsync(repoType, RepositoryExecutor.Priority.INTERACTIVE, action);
+    }
+
+    /**
+     * Does something with a repository on this data source's
+     * {@link RepositoryExecutor}.
+     * @param repoType The type of repository to use.
+     * @param priority The priority of the work.
+     * @param action The action to do.
+     * @return A future that completes with the action's result, or
+     * exceptionally if it failed.
+     * @param <R> The repository type.
+     * @param <T> The result type.
+     */
+    default <R extends Repository, T> CompletableFuture<T> mapRepoAsync(
+            Class<R> repoType,
+            RepositoryExecutor.Priority priority,
+            Function<R, T> action
+    ) {
+        return getRepositoryExecutor().submit(priority, () -> mapRepo(repoType, action));
     }
 
     default <R extends Repository> void useRepo(Class<R> repoType, Consumer<R> action) {
@@ -74,7 +135,15 @@ public interface DataSource {
     }
 
     default <R extends Repository> CompletableFuture<Void> useRepoAsync(Class<R> repoType, Consumer<R> action) {
-        return mapRepoAsync(repoType, repo -> {
+        return useRepoAsync(repoType, RepositoryExecutor.Priority.INTERACTIVE, action);
+    }
+
+    default <R extends Repository> CompletableFuture<Void> useRepoAsync(
+            Class<R> repoType,
+            RepositoryExecutor.Priority priority,
+            Consumer<R> action
+    ) {
+        return mapRepoAsync(repoType, priority, repo -> {
             action.accept(repo);
             return null;
         });
@@ -82,16 +151,18 @@ public interface DataSource {
 
     @SuppressWarnings("unchecked")
     private <R extends Repository> Supplier<R> getRepo(Class<R> type) {
-        final Map<Class<? extends Repository>, Supplier<? extends Repository>> repoSuppliers = Map.of(
-                AccountRepository.class, this::getAccountRepository,
-                BalanceRecordRepository.class, this::getBalanceRecordRepository,
-                TransactionRepository.class, this::getTransactionRepository,
-                TransactionVendorRepository.class, this::getTransactionVendorRepository,
-                TransactionCategoryRepository.class, this::getTransactionCategoryRepository,
-                TransactionLineItemRepository.class, this::getTransactionLineItemRepository,
-                AttachmentRepository.class, this::getAttachmentRepository,
-                HistoryRepository.class, this::getHistoryRepository,
-                AnalyticsRepository.class, this::getAnalyticsRepository
+        final Map<Class<? extends Repository>, Supplier<? extends Repository>> repoSuppliers = Map.ofEntries(
+                Map.entry(AccountRepository.class, this::getAccountRepository),
+                Map.entry(BalanceRecordRepository.class, this::getBalanceRecordRepository),
+                Map.entry(TransactionRepository.class, this::getTransactionRepository),
+                Map.entry(TransactionVendorRepository.class, this::getTransactionVendorRepository),
+                Map.entry(TransactionCategoryRepository.class, this::getTransactionCategoryRepository),
+                Map.entry(TransactionLineItemRepository.class, this::getTransactionLineItemRepository),
+                Map.entry(AttachmentRepository.class, this::getAttachmentRepository),
+                Map.entry(HistoryRepository.class, this::getHistoryRepository),
+                Map.entry(AccountBalanceSnapshotRepository.class, this::getAccountBalanceSnapshotRepository),
+                Map.entry(TransactionRollupRepository.class, this::getTransactionRollupRepository),
+                Map.entry(AnalyticsRepository.class, this::getAnalyticsRepository)
         );
         return (Supplier<R>) repoSuppliers.get(type);
     }
@@ -116,10 +187,13 @@ public interface DataSource {
     default CompletableFuture<List<MoneyValue>> getCombinedAccountBalances() {
         return mapRepoAsync(AccountRepository.class, repo -> {
             List<Account> accounts = repo.findAll(PageRequest.unpaged()).items();
+            Map<Long, BigDecimal> balances = repo.deriveCurrentBalances(
+                    accounts.stream().map(a -> a.id).collect(Collectors.toSet())
+            );
             Map<Currency, BigDecimal> totals = new HashMap<>();
             for (var account : accounts) {
                 BigDecimal currencyTotal = totals.computeIfAbsent(account.getCurrency(), c -> BigDecimal.ZERO);
-                BigDecimal accountBalance = repo.deriveCurrentBalance(account.id);
+                BigDecimal accountBalance = balances.get(account.id);
                 if (account.getType() == AccountType.CREDIT_CARD) accountBalance = accountBalance.negate();
                 totals.put(account.getCurrency(), currencyTotal.add(accountBalance));
             }
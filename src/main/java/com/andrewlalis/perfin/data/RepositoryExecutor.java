@@ -0,0 +1,210 @@
+package com.andrewlalis.perfin.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a data source's asynchronous repository work, like that of
+ * {@link DataSource#mapRepoAsync(Class, java.util.function.Function)}, on a
+ * limited number of threads, so that opening a view can't start hundreds of
+ * database sessions at once.
+ * <p>
+ *     Queued tasks run in order of their {@link Priority}, and then in the
+ *     order they were submitted, so that anything the user is waiting for
+ *     runs before background work. To keep the queue from growing without
+ *     bound, background tasks are rejected while too many tasks are queued.
+ * </p>
+ * <p>
+ *     Cancelling a task's future removes it from the queue. A task that's
+ *     already running isn't interrupted, since an interrupted thread can
+ *     close the database's file channel, but its result is discarded.
+ * </p>
+ */
+public class RepositoryExecutor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RepositoryExecutor.class);
+
+    public enum Priority {
+        /**
+         * Work that the user is waiting for, like loading the current view.
+         */
+        INTERACTIVE,
+        /**
+         * Work that can wait, like prefetching or rebuilding derived data.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * Statistics about the executor.
+     * @param queued The number of tasks waiting to run.
+     * @param active The number of tasks that are running.
+     * @param completed The number of tasks that completed normally.
+     * @param failed The number of tasks that threw an exception.
+     * @param cancelled The number of tasks that were cancelled before running.
+     * @param rejected The number of background tasks rejected because the
+     *                 queue was full.
+     * @param averageWaitMillis The average time that tasks waited in the queue.
+     * @param maxWaitMillis The longest time that a task waited in the queue.
+     * @param averageRunMillis The average time that tasks took to run.
+     */
+    public record Metrics(
+            int queued,
+            int active,
+            long completed,
+            long failed,
+            long cancelled,
+            long rejected,
+            double averageWaitMillis,
+            double maxWaitMillis,
+            double averageRunMillis
+    ) {}
+
+    private final ThreadPoolExecutor executor;
+    private final int maxQueuedBackground;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private long completed = 0;
+    private long failed = 0;
+    private long cancelled = 0;
+    private long rejected = 0;
+    private long started = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long totalRunNanos = 0;
+
+    /**
+     * Creates an executor.
+     * @param maxConcurrency The maximum number of tasks to run at once.
+     * @param maxQueuedBackground The number of queued tasks beyond which
+     *                            background tasks are rejected.
+     */
+    public RepositoryExecutor(int maxConcurrency, int maxQueuedBackground) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be at least 1.");
+        this.maxQueuedBackground = maxQueuedBackground;
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrency,
+                maxConcurrency,
+                30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                Thread.ofVirtual().name("perfin-repo-", 0).factory()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submits a task to run.
+     * @param priority The task's priority.
+     * @param task The task to run.
+     * @return A future that completes with the task's result, or
+     * exceptionally if it failed or was rejected. Cancelling it cancels the
+     * task if it hasn't started yet.
+     * @param <T> The type of the task's result.
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Callable<T> task) {
+        CompletableFuture<T> cf = new CompletableFuture<>();
+        if (priority == Priority.BACKGROUND && executor.getQueue().size() >= maxQueuedBackground) {
+            synchronized (this) {
+                rejected++;
+            }
+            log.warn("Rejected a background repository task because the queue is full.");
+            cf.completeExceptionally(new RejectedExecutionException("Too many queued repository tasks."));
+            return cf;
+        }
+        Task<T> t = new Task<>(priority, sequence.getAndIncrement(), task, cf);
+        try {
+            executor.execute(t);
+        } catch (RejectedExecutionException e) {
+            cf.completeExceptionally(e);
+            return cf;
+        }
+        cf.whenComplete((result, e) -> {
+            if (cf.isCancelled() && executor.remove(t)) {
+                synchronized (this) {
+                    cancelled++;
+                }
+            }
+        });
+        return cf;
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(
+                executor.getQueue().size(),
+                executor.getActiveCount(),
+                completed,
+                failed,
+                cancelled,
+                rejected,
+                started == 0 ? 0 : totalWaitNanos / (started * 1_000_000.0),
+                maxWaitNanos / 1_000_000.0,
+                completed + failed == 0 ? 0 : totalRunNanos / ((completed + failed) * 1_000_000.0)
+        );
+    }
+
+    /**
+     * Stops accepting tasks, and discards any that are still queued. Running
+     * tasks are allowed to finish.
+     */
+    @Override
+    public void close() {
+        for (Runnable r : executor.shutdownNow()) {
+            if (r instanceof Task<?> t) t.cf.cancel(false);
+        }
+    }
+
+    private synchronized void recordStart(long waitNanos) {
+        started++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    private synchronized void recordEnd(long runNanos, boolean success) {
+        totalRunNanos += runNanos;
+        if (success) {
+            completed++;
+        } else {
+            failed++;
+        }
+    }
+
+    private class Task<T> implements Runnable, Comparable<Task<?>> {
+        private final Priority priority;
+        private final long sequence;
+        private final Callable<T> callable;
+        private final CompletableFuture<T> cf;
+        private final long submittedAt = System.nanoTime();
+
+        Task(Priority priority, long sequence, Callable<T> callable, CompletableFuture<T> cf) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.callable = callable;
+            this.cf = cf;
+        }
+
+        @Override
+        public void run() {
+            if (cf.isDone()) return; // It was cancelled while it was queued.
+            long start = System.nanoTime();
+            recordStart(start - submittedAt);
+            try {
+                T result = callable.call();
+                recordEnd(System.nanoTime() - start, true);
+                cf.complete(result);
+            } catch (Throwable e) {
+                recordEnd(System.nanoTime() - start, false);
+                log.error("Repository task failed.", e);
+                cf.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int result = priority.compareTo(other.priority);
+            if (result != 0) return result;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.andrewlalis.perfin.data;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * The size of the periods that a time series is divided into.
+ */
+public enum TimeGranularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    /**
+     * Gets the start of the period containing the given timestamp. Weeks start
+     * on Monday.
+     * @param timestamp The timestamp.
+     * @return The start of the period.
+     */
+    public LocalDateTime truncate(LocalDateTime timestamp) {
+        LocalDateTime startOfDay = timestamp.toLocalDate().atStartOfDay();
+        return switch (this) {
+            case DAY -> startOfDay;
+            case WEEK -> startOfDay.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> startOfDay.withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * Gets the start of the period after the one starting at the given
+     * timestamp.
+     * @param periodStart The start of a period.
+     * @return The start of the next period.
+     */
+    public LocalDateTime next(LocalDateTime periodStart) {
+        return switch (this) {
+            case DAY -> periodStart.plusDays(1);
+            case WEEK -> periodStart.plusWeeks(1);
+            case MONTH -> periodStart.plusMonths(1);
+        };
+    }
+}
@@ -32,4 +32,12 @@ public interface TransactionCategoryRepository extends Repository, AutoCloseable
 
     List<CategoryTreeNode> findTree();
     CategoryTreeNode findTree(TransactionCategory root);
+
+    /**
+     * Gets a snapshot of all categories as a tree. The snapshot is cached, so
+     * prefer this over repeated calls to {@link #findById(long)} or
+     * {@link #findRoot(long)} when looking at many categories.
+     * @return The category tree.
+     */
+    CategoryTree getCategoryTree();
 }
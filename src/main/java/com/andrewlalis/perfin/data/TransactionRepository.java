@@ -6,6 +6,7 @@ import com.andrewlalis.perfin.model.Attachment;
 import com.andrewlalis.perfin.model.CreditAndDebitAccounts;
 import com.andrewlalis.perfin.model.Transaction;
 import com.andrewlalis.perfin.model.TransactionLineItem;
+import com.andrewlalis.perfin.model.TransactionSummary;
 
 import java.math.BigDecimal;
 import java.nio.file.Path;
@@ -36,12 +37,27 @@ public interface TransactionRepository extends Repository, AutoCloseable {
     long countAllByAccounts(Set<Long> accountIds);
     Page<Transaction> findAllByAccounts(Set<Long> accountIds, PageRequest pagination);
     CreditAndDebitAccounts findLinkedAccounts(long transactionId);
+
+    /**
+     * Loads everything that's needed to show a list of transactions, using a
+     * fixed number of queries no matter how many transactions there are.
+     * @param transactions The transactions to summarize.
+     * @return The summaries, in the same order as the given transactions.
+     */
+    List<TransactionSummary> findSummaries(List<Transaction> transactions);
     List<Attachment> findAttachments(long transactionId);
     List<String> findTags(long transactionId);
     List<String> findAllTags();
     void deleteTag(String name);
     long countTagUsages(String name);
     void delete(long transactionId);
+
+    /**
+     * Discards and re-computes the full-text search index of all
+     * transactions. This is only needed to repair the index, since it's
+     * otherwise kept up-to-date automatically.
+     */
+    void rebuildSearchIndex();
     void update(
             long id,
             LocalDateTime utcTimestamp,
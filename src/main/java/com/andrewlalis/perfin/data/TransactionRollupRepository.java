@@ -0,0 +1,58 @@
+package com.andrewlalis.perfin.data;
+
+import com.andrewlalis.perfin.model.AccountEntry;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Repository for managing the transaction rollup, which holds the total amount
+ * of transactions for each day, currency, account entry type, category and
+ * vendor. The rollup is maintained automatically whenever transactions are
+ * added, changed or removed, and it's used by the {@link AnalyticsRepository}
+ * so that it doesn't need to look at every transaction in a range of time.
+ * Normally you won't need to use this repository directly, except to repair
+ * or verify the rollup.
+ */
+public interface TransactionRollupRepository extends Repository, AutoCloseable {
+    /**
+     * A rollup amount that doesn't match the amount that's computed from the
+     * transactions themselves.
+     * @param day The day of the rollup row.
+     * @param currency The currency of the rollup row.
+     * @param type The account entry type of the rollup row.
+     * @param categoryId The category id of the rollup row, which may be null.
+     * @param vendorId The vendor id of the rollup row, which may be null.
+     * @param rollupAmount The amount that's stored in the rollup.
+     * @param transactionAmount The amount that should be stored.
+     */
+    record Inconsistency(
+            LocalDate day,
+            Currency currency,
+            AccountEntry.Type type,
+            Long categoryId,
+            Long vendorId,
+            BigDecimal rollupAmount,
+            BigDecimal transactionAmount
+    ) {}
+
+    /**
+     * Discards and re-computes the entire rollup.
+     */
+    void rebuildAll();
+
+    /**
+     * Checks the whole rollup against the amounts computed directly from the
+     * transactions, and finds any that don't match.
+     * @return The list of inconsistent rollup amounts, which should be empty.
+     */
+    List<Inconsistency> findInconsistencies();
+
+    /**
+     * Counts the number of rows in the rollup.
+     * @return The number of rows.
+     */
+    long countAll();
+}
@@ -7,6 +7,7 @@ import java.util.Optional;
 
 public interface TransactionVendorRepository extends Repository, AutoCloseable {
     Optional<TransactionVendor> findById(long id);
+
     Optional<TransactionVendor> findByName(String name);
     List<TransactionVendor> findAll();
     long insert(String name, String description);
@@ -0,0 +1,82 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cumulative sums of an account's signed entry amounts (debits positive and
+ * credits negative), ordered by time, so that the sum over any range of time
+ * can be found quickly after a single pass over the account's entries.
+ */
+class AccountEntryTotals {
+    private final LocalDateTime[] timestamps;
+    private final BigDecimal[] cumulativeSums;
+
+    private AccountEntryTotals(LocalDateTime[] timestamps, BigDecimal[] cumulativeSums) {
+        this.timestamps = timestamps;
+        this.cumulativeSums = cumulativeSums;
+    }
+
+    /**
+     * Loads the totals for an account's entries.
+     * @param conn The connection to use.
+     * @param accountId The id of the account.
+     * @param utcMin The earliest entry timestamp to include, or null.
+     * @param utcMax The latest entry timestamp to include, or null.
+     * @return The entry totals.
+     */
+    static AccountEntryTotals load(Connection conn, long accountId, LocalDateTime utcMin, LocalDateTime utcMax) {
+        StringBuilder query = new StringBuilder("""
+                SELECT timestamp, SUM(CASE WHEN type = 'DEBIT' THEN amount ELSE -amount END)
+                FROM account_entry
+                WHERE account_id = ?""");
+        List<Object> args = new ArrayList<>(3);
+        args.add(accountId);
+        if (utcMin != null) {
+            query.append(" AND timestamp >= ?");
+            args.add(DbUtil.timestampFromUtcLDT(utcMin));
+        }
+        if (utcMax != null) {
+            query.append(" AND timestamp <= ?");
+            args.add(DbUtil.timestampFromUtcLDT(utcMax));
+        }
+        query.append("\nGROUP BY timestamp\nORDER BY timestamp ASC");
+        List<LocalDateTime> timestamps = new ArrayList<>();
+        List<BigDecimal> sums = new ArrayList<>();
+        BigDecimal[] sum = {BigDecimal.ZERO};
+        DbUtil.findAll(conn, query.toString(), args, rs -> {
+            timestamps.add(DbUtil.utcLDTFromTimestamp(rs.getTimestamp(1)));
+            sum[0] = sum[0].add(rs.getBigDecimal(2));
+            sums.add(sum[0]);
+            return null;
+        });
+        return new AccountEntryTotals(timestamps.toArray(new LocalDateTime[0]), sums.toArray(new BigDecimal[0]));
+    }
+
+    /**
+     * Gets the distinct timestamps of all entries, in order.
+     * @return The list of timestamps.
+     */
+    List<LocalDateTime> getTimestamps() {
+        return Arrays.asList(timestamps);
+    }
+
+    /**
+     * Gets the sum of all entries before (or at, if inclusive) a time.
+     * @param t The time.
+     * @param inclusive Whether to include entries exactly at the given time.
+     * @return The sum of entries.
+     */
+    BigDecimal sumUpTo(LocalDateTime t, boolean inclusive) {
+        int idx = Arrays.binarySearch(timestamps, t);
+        // Find the number of entries to include.
+        int count = idx >= 0 ? (inclusive ? idx + 1 : idx) : -(idx + 1);
+        return count == 0 ? BigDecimal.ZERO : cumulativeSums[count - 1];
+    }
+}
@@ -0,0 +1,234 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.AccountBalanceSnapshotRepository;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.AccountType;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * JDBC implementation of the account balance snapshot repository. Besides the
+ * public repository methods, this class offers a few methods that other JDBC
+ * repositories call to keep snapshots up-to-date, from within the same
+ * transaction as the change that they make.
+ * <p>
+ *     Each snapshot holds the balance of an account as of midnight (UTC) at
+ *     the end of a day on which the account has entries or balance records,
+ *     exactly as {@link JdbcAccountRepository#deriveBalances(Set, java.time.Instant, boolean)}
+ *     would compute it without snapshots.
+ * </p>
+ */
+public record JdbcAccountBalanceSnapshotRepository(Connection conn) implements AccountBalanceSnapshotRepository {
+    @Override
+    public void rebuild(long accountId) {
+        DbUtil.doTransaction(conn, () -> rebuildAccount(accountId));
+    }
+
+    @Override
+    public void rebuildAll() {
+        DbUtil.doTransaction(conn, () -> {
+            List<Long> accountIds = DbUtil.findAll(conn, "SELECT id FROM account ORDER BY id", rs -> rs.getLong(1));
+            for (long accountId : accountIds) rebuildAccount(accountId);
+        });
+    }
+
+    @Override
+    public List<Inconsistency> findInconsistencies() {
+        record Snapshot(long accountId, LocalDateTime timestamp, BigDecimal balance) {}
+        List<Snapshot> snapshots = DbUtil.findAll(
+                conn,
+                "SELECT account_id, timestamp, balance FROM account_balance_snapshot ORDER BY timestamp, account_id",
+                rs -> new Snapshot(rs.getLong(1), DbUtil.utcLDTFromTimestamp(rs.getTimestamp(2)), rs.getBigDecimal(3))
+        );
+        // Check all snapshots at the same time in one go.
+        Map<LocalDateTime, List<Snapshot>> snapshotsByTimestamp = new TreeMap<>();
+        for (var snapshot : snapshots) {
+            snapshotsByTimestamp.computeIfAbsent(snapshot.timestamp(), t -> new ArrayList<>()).add(snapshot);
+        }
+        List<Inconsistency> inconsistencies = new ArrayList<>();
+        for (var entry : snapshotsByTimestamp.entrySet()) {
+            Set<Long> accountIds = new HashSet<>();
+            for (var snapshot : entry.getValue()) accountIds.add(snapshot.accountId());
+            Map<Long, BigDecimal> derivedBalances = JdbcAccountRepository.deriveBalances(
+                    conn,
+                    accountIds,
+                    entry.getKey().toInstant(ZoneOffset.UTC),
+                    false
+            );
+            for (var snapshot : entry.getValue()) {
+                BigDecimal derived = derivedBalances.get(snapshot.accountId());
+                if (derived == null || derived.compareTo(snapshot.balance()) != 0) {
+                    inconsistencies.add(new Inconsistency(snapshot.accountId(), snapshot.timestamp(), snapshot.balance(), derived));
+                }
+            }
+        }
+        return inconsistencies;
+    }
+
+    @Override
+    public long countAll() {
+        return DbUtil.count(conn, "SELECT COUNT(*) FROM account_balance_snapshot");
+    }
+
+    @Override
+    public void close() throws Exception {
+        conn.close();
+    }
+
+    /**
+     * Updates snapshots after an account entry was added or removed. This
+     * should be called after the entry has been inserted or deleted.
+     * @param accountId The id of the entry's account.
+     * @param utcTimestamp The entry's timestamp.
+     * @param amount The entry's signed amount, where debits are positive and
+     *               credits negative. If the entry was removed, this should
+     *               be negated.
+     */
+    void entryChanged(long accountId, LocalDateTime utcTimestamp, BigDecimal amount) {
+        AccountInfo account = findAccountInfo(accountId);
+        if (account == null) return;
+        BigDecimal effectiveAmount = account.type().areDebitsPositive() ? amount : amount.negate();
+        Timestamp ts = DbUtil.timestampFromUtcLDT(utcTimestamp);
+        boolean hasRecordBefore = DbUtil.count(
+                conn,
+                "SELECT COUNT(id) FROM balance_record WHERE account_id = ? AND timestamp < ?",
+                accountId, ts
+        ) > 0;
+        Optional<Timestamp> nextRecordTimestamp = DbUtil.findOne(
+                conn,
+                "SELECT timestamp FROM balance_record WHERE account_id = ? AND timestamp >= ? ORDER BY timestamp ASC LIMIT 1",
+                List.of(accountId, ts),
+                rs -> rs.getTimestamp(1)
+        );
+        if (hasRecordBefore || nextRecordTimestamp.isEmpty()) {
+            // Snapshots from the entry up to the next balance record are derived forwards, so the entry adds to them.
+            if (nextRecordTimestamp.isPresent()) {
+                DbUtil.update(
+                        conn,
+                        "UPDATE account_balance_snapshot SET balance = balance + ? WHERE account_id = ? AND timestamp >= ? AND timestamp < ?",
+                        effectiveAmount, accountId, ts, nextRecordTimestamp.get()
+                );
+            } else if (hasRecordBefore || utcTimestamp.isAfter(account.createdAt())) {
+                DbUtil.update(
+                        conn,
+                        "UPDATE account_balance_snapshot SET balance = balance + ? WHERE account_id = ? AND timestamp >= ?",
+                        effectiveAmount, accountId, ts
+                );
+            }
+        } else if (nextRecordTimestamp.get().after(ts)) {
+            // Snapshots before the account's first balance record are derived backwards from it.
+            DbUtil.update(
+                    conn,
+                    "UPDATE account_balance_snapshot SET balance = balance - ? WHERE account_id = ? AND timestamp <= ?",
+                    effectiveAmount, accountId, ts
+            );
+        }
+        ensureSnapshotExists(account, utcTimestamp);
+    }
+
+    /**
+     * Updates snapshots after a balance record was added or removed. Since
+     * balance records are rare compared to entries, and may affect the
+     * derivation of many snapshots, we just rebuild the account's snapshots.
+     * @param accountId The id of the balance record's account.
+     */
+    void balanceRecordChanged(long accountId) throws SQLException {
+        rebuildAccount(accountId);
+    }
+
+    private record AccountInfo(long id, LocalDateTime createdAt, AccountType type) {}
+
+    private AccountInfo findAccountInfo(long accountId) {
+        return DbUtil.findOne(
+                conn,
+                "SELECT id, created_at, account_type FROM account WHERE id = ?",
+                List.of(accountId),
+                rs -> new AccountInfo(
+                        rs.getLong(1),
+                        DbUtil.utcLDTFromTimestamp(rs.getTimestamp(2)),
+                        AccountType.valueOf(rs.getString(3).toUpperCase())
+                )
+        ).orElse(null);
+    }
+
+    private static LocalDateTime snapshotTimestamp(LocalDateTime utcTimestamp) {
+        return utcTimestamp.toLocalDate().plusDays(1).atStartOfDay();
+    }
+
+    private void ensureSnapshotExists(AccountInfo account, LocalDateTime utcTimestamp) {
+        LocalDateTime snapshotTimestamp = snapshotTimestamp(utcTimestamp);
+        if (snapshotTimestamp.isBefore(account.createdAt())) return;
+        Timestamp ts = DbUtil.timestampFromUtcLDT(snapshotTimestamp);
+        boolean exists = DbUtil.count(
+                conn,
+                "SELECT COUNT(account_id) FROM account_balance_snapshot WHERE account_id = ? AND timestamp = ?",
+                account.id(), ts
+        ) > 0;
+        if (exists) return;
+        // The existing snapshots are up-to-date, so it's safe to use them when deriving the new one.
+        BigDecimal balance = JdbcAccountRepository.deriveBalances(
+                conn,
+                Set.of(account.id()),
+                snapshotTimestamp.toInstant(ZoneOffset.UTC),
+                true
+        ).get(account.id());
+        DbUtil.insertOne(
+                conn,
+                "INSERT INTO account_balance_snapshot (account_id, timestamp, balance) VALUES (?, ?, ?)",
+                account.id(), ts, balance
+        );
+    }
+
+    /**
+     * Re-computes all of an account's snapshots in a single pass over its
+     * entries and balance records.
+     * @param accountId The id of the account.
+     */
+    private void rebuildAccount(long accountId) throws SQLException {
+        DbUtil.update(conn, "DELETE FROM account_balance_snapshot WHERE account_id = ?", accountId);
+        AccountInfo account = findAccountInfo(accountId);
+        if (account == null) return;
+        record Record(LocalDateTime timestamp, BigDecimal balance) {}
+        List<Record> records = DbUtil.findAll(
+                conn,
+                "SELECT timestamp, balance FROM balance_record WHERE account_id = ? ORDER BY timestamp ASC, id ASC",
+                List.of(accountId),
+                rs -> new Record(DbUtil.utcLDTFromTimestamp(rs.getTimestamp(1)), rs.getBigDecimal(2))
+        );
+        AccountEntryTotals totals = AccountEntryTotals.load(conn, accountId, null, null);
+
+        SortedSet<LocalDateTime> snapshotTimestamps = new TreeSet<>();
+        for (var r : records) snapshotTimestamps.add(snapshotTimestamp(r.timestamp()));
+        for (var t : totals.getTimestamps()) snapshotTimestamps.add(snapshotTimestamp(t));
+        snapshotTimestamps = snapshotTimestamps.tailSet(account.createdAt());
+
+        BigDecimal sign = account.type().areDebitsPositive() ? BigDecimal.ONE : BigDecimal.ONE.negate();
+        int recordIdx = -1; // Index of the last record at or before the current snapshot.
+        try (var stmt = conn.prepareStatement("INSERT INTO account_balance_snapshot (account_id, timestamp, balance) VALUES (?, ?, ?)")) {
+            for (var t : snapshotTimestamps) {
+                while (recordIdx + 1 < records.size() && !records.get(recordIdx + 1).timestamp().isAfter(t)) {
+                    recordIdx++;
+                }
+                BigDecimal balance;
+                if (recordIdx >= 0) {
+                    Record prev = records.get(recordIdx);
+                    balance = prev.balance().add(sign.multiply(totals.sumUpTo(t, true).subtract(totals.sumUpTo(prev.timestamp(), true))));
+                } else if (!records.isEmpty()) {
+                    Record next = records.getFirst();
+                    balance = next.balance().subtract(sign.multiply(totals.sumUpTo(next.timestamp(), false).subtract(totals.sumUpTo(t, false))));
+                } else {
+                    balance = sign.multiply(totals.sumUpTo(t, true).subtract(totals.sumUpTo(account.createdAt(), true)));
+                }
+                DbUtil.setArgs(stmt, accountId, DbUtil.timestampFromUtcLDT(t), balance);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
@@ -16,20 +16,53 @@ import java.util.Optional;
 public record JdbcAccountEntryRepository(Connection conn) implements AccountEntryRepository {
     @Override
     public long insert(LocalDateTime timestamp, long accountId, long transactionId, BigDecimal amount, AccountEntry.Type type, Currency currency) {
-        return DbUtil.insertOne(
-                conn,
-                """
-                        INSERT INTO account_entry (timestamp, account_id, transaction_id, amount, type, currency)
-                        VALUES (?, ?, ?, ?, ?, ?)""",
-                List.of(
-                        DbUtil.timestampFromUtcLDT(timestamp),
-                        accountId,
-                        transactionId,
-                        amount,
-                        type.name(),
-                        currency.getCurrencyCode()
-                )
-        );
+        return DbUtil.doTransaction(conn, () -> {
+            long entryId = DbUtil.insertOne(
+                    conn,
+                    """
+                            INSERT INTO account_entry (timestamp, account_id, transaction_id, amount, type, currency)
+                            VALUES (?, ?, ?, ?, ?, ?)""",
+                    List.of(
+                            DbUtil.timestampFromUtcLDT(timestamp),
+                            accountId,
+                            transactionId,
+                            amount,
+                            type.name(),
+                            currency.getCurrencyCode()
+                    )
+            );
+            new JdbcAccountBalanceSnapshotRepository(conn).entryChanged(
+                    accountId,
+                    timestamp,
+                    type == AccountEntry.Type.DEBIT ? amount : amount.negate()
+            );
+            return entryId;
+        });
+    }
+
+    /**
+     * Deletes all account entries belonging to a transaction, and updates the
+     * affected accounts' balance snapshots.
+     * @param transactionId The id of the transaction.
+     */
+    public void deleteAllByTransactionId(long transactionId) {
+        DbUtil.doTransaction(conn, () -> {
+            List<AccountEntry> entries = DbUtil.findAll(
+                    conn,
+                    "SELECT * FROM account_entry WHERE transaction_id = ?",
+                    List.of(transactionId),
+                    JdbcAccountEntryRepository::parse
+            );
+            DbUtil.update(conn, "DELETE FROM account_entry WHERE transaction_id = ?", List.of(transactionId));
+            var snapshotRepo = new JdbcAccountBalanceSnapshotRepository(conn);
+            for (var entry : entries) {
+                snapshotRepo.entryChanged(
+                        entry.getAccountId(),
+                        entry.getTimestamp(),
+                        entry.getType() == AccountEntry.Type.DEBIT ? entry.getAmount().negate() : entry.getAmount()
+                );
+            }
+        });
     }
 
     @Override
@@ -5,7 +5,10 @@ import com.andrewlalis.perfin.data.pagination.Page;
 import com.andrewlalis.perfin.data.pagination.PageRequest;
 import com.andrewlalis.perfin.data.util.DateUtil;
 import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.data.util.Pair;
 import com.andrewlalis.perfin.model.*;
+import com.andrewlalis.perfin.model.history.HistoryItem;
+import com.andrewlalis.perfin.model.history.HistoryTextItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,17 +17,25 @@ import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 
-public record JdbcAccountRepository(Connection conn, Path contentDir) implements AccountRepository {
+public record JdbcAccountRepository(Connection conn, Path contentDir, ReferenceDataCache cache) implements AccountRepository {
     private static final Logger log = LoggerFactory.getLogger(JdbcAccountRepository.class);
 
+    // The kinds of account events, in ascending order. Events are listed by
+    // timestamp, then kind, then id, all descending.
+    private static final String EVENT_ACCOUNT_ENTRY = "ACCOUNT_ENTRY";
+    private static final String EVENT_BALANCE_RECORD = "BALANCE_RECORD";
+    private static final String EVENT_HISTORY_ITEM = "HISTORY_ITEM";
+
     @Override
     public long insert(AccountType type, String accountNumber, String name, Currency currency, String description) {
-        return DbUtil.doTransaction(conn, () -> {
+        long id = DbUtil.doTransaction(conn, () -> {
 
             long accountId = DbUtil.insertOne(
                     conn,
@@ -42,6 +53,8 @@ public record JdbcAccountRepository(Connection conn, Path contentDir) implements
             historyRepo.addTextItem(historyId, "Account added to your Perfin profile.");
             return accountId;
         });
+        cache.invalidate(ReferenceDataCache.ACCOUNTS);
+        return id;
     }
 
     @Override
@@ -49,6 +62,15 @@ public record JdbcAccountRepository(Connection conn, Path contentDir) implements
         return DbUtil.findAll(conn, "SELECT * FROM account WHERE NOT archived", pagination, JdbcAccountRepository::parseAccount);
     }
 
+    @Override
+    public List<Account> findAllOrderedByName() {
+        return cache.get(conn, ReferenceDataCache.ACCOUNTS, () -> List.copyOf(DbUtil.findAll(
+                conn,
+                "SELECT * FROM account WHERE NOT archived ORDER BY name ASC",
+                JdbcAccountRepository::parseAccount
+        )));
+    }
+
     @Override
     public List<Account> findAllOrderedByRecentHistory() {
         return DbUtil.findAll(
@@ -115,98 +137,353 @@ public record JdbcAccountRepository(Connection conn, Path contentDir) implements
 
     @Override
     public BigDecimal deriveBalance(long accountId, Instant timestamp) {
-        // First find the account itself, since its properties influence the balance.
-        Account account = findById(accountId).orElse(null);
-        if (account == null) throw new EntityNotFoundException(Account.class, accountId);
-        LocalDateTime utcTimestamp = timestamp.atZone(ZoneOffset.UTC).toLocalDateTime();
-        BalanceRecordRepository balanceRecordRepo = new JdbcBalanceRecordRepository(conn, contentDir);
-        AccountEntryRepository accountEntryRepo = new JdbcAccountEntryRepository(conn);
-        // Find the most recent balance record before timestamp.
-        Optional<BalanceRecord> closestPastRecord = balanceRecordRepo.findClosestBefore(account.id, utcTimestamp);
-        if (closestPastRecord.isPresent()) {
-            // Then find any entries on the account since that balance record and the timestamp.
-            List<AccountEntry> entriesBetweenRecentRecordAndNow = accountEntryRepo.findAllByAccountIdBetween(
-                    account.id,
-                    closestPastRecord.get().getTimestamp(),
-                    utcTimestamp
-            );
-            return computeBalanceWithEntries(account.getType(), closestPastRecord.get(), entriesBetweenRecentRecordAndNow);
-        } else {
-            // There is no balance record present before the given timestamp. Try and find the closest one after.
-            Optional<BalanceRecord> closestFutureRecord = balanceRecordRepo.findClosestAfter(account.id, utcTimestamp);
-            if (closestFutureRecord.isPresent()) {
-                // Now find any entries on the account from the timestamp until that balance record.
-                List<AccountEntry> entriesBetweenNowAndFutureRecord = accountEntryRepo.findAllByAccountIdBetween(
-                        account.id,
-                        utcTimestamp,
-                        closestFutureRecord.get().getTimestamp()
-                );
-                return computeBalanceWithEntries(account.getType(), closestFutureRecord.get(), entriesBetweenNowAndFutureRecord);
+        BigDecimal balance = deriveBalances(Set.of(accountId), timestamp).get(accountId);
+        if (balance == null) throw new EntityNotFoundException(Account.class, accountId);
+        return balance;
+    }
+
+    /**
+     * Derives the balances of a set of accounts in a single query. For each
+     * account, the balance is anchored to the closest balance record before
+     * the timestamp (or if there is none, the closest one after it, or else a
+     * balance of zero when the account was created), and then the signed sum
+     * of all account entries between the anchor and the timestamp is applied.
+     * If there's a balance snapshot that's more recent than the anchor, it's
+     * used instead, so only a few entries need to be summed.
+     * @param accountIds The ids of the accounts to derive balances for.
+     * @param timestamp The time at which to derive the balances.
+     * @return A map of account ids to their balance.
+     */
+    @Override
+    public Map<Long, BigDecimal> deriveBalances(Set<Long> accountIds, Instant timestamp) {
+        return deriveBalances(accountIds, timestamp, true);
+    }
+
+    /**
+     * Derives the balances of a set of accounts, optionally without making
+     * use of any balance snapshots.
+     * @param accountIds The ids of the accounts to derive balances for.
+     * @param timestamp The time at which to derive the balances.
+     * @param useSnapshots Whether to anchor balances to snapshots.
+     * @return A map of account ids to their balance.
+     * @see JdbcAccountBalanceSnapshotRepository
+     */
+    public Map<Long, BigDecimal> deriveBalances(Set<Long> accountIds, Instant timestamp, boolean useSnapshots) {
+        return deriveBalances(conn, accountIds, timestamp, useSnapshots);
+    }
+
+    /**
+     * Derives the balances of a set of accounts, like
+     * {@link #deriveBalances(Set, Instant, boolean)}, for use by other
+     * repositories that don't need a whole account repository.
+     * @param conn The connection to use.
+     * @param accountIds The ids of the accounts to derive balances for.
+     * @param timestamp The time at which to derive the balances.
+     * @param useSnapshots Whether to anchor balances to snapshots.
+     * @return A map of account ids to their balance.
+     */
+    static Map<Long, BigDecimal> deriveBalances(Connection conn, Set<Long> accountIds, Instant timestamp, boolean useSnapshots) {
+        if (accountIds.isEmpty()) return Collections.emptyMap();
+        Map<Long, BigDecimal> balances = new HashMap<>(accountIds.size());
+        Timestamp ts = DbUtil.timestampFromInstant(timestamp);
+        Long[] ids = accountIds.toArray(new Long[0]);
+        DbUtil.findAll(
+                conn,
+                """
+                SELECT
+                    anchor.id,
+                    anchor.account_type,
+                    anchor.anchor_balance,
+                    anchor.subtract,
+                    COALESCE(SUM(CASE WHEN ae.type = 'DEBIT' THEN ae.amount ELSE -ae.amount END), 0) AS entry_total
+                FROM (
+                    SELECT
+                        c.id,
+                        c.account_type,
+                        CASE
+                            WHEN c.snap_timestamp IS NOT NULL THEN c.snap_balance
+                            ELSE COALESCE(c.prev_balance, c.next_balance, 0)
+                        END AS anchor_balance,
+                        (c.snap_timestamp IS NULL AND c.prev_timestamp IS NULL AND c.next_timestamp IS NOT NULL) AS subtract,
+                        (c.prev_timestamp IS NULL AND c.next_timestamp IS NOT NULL) AS include_start,
+                        CASE
+                            WHEN c.snap_timestamp IS NOT NULL THEN c.snap_timestamp
+                            WHEN c.prev_timestamp IS NOT NULL THEN c.prev_timestamp
+                            WHEN c.next_timestamp IS NOT NULL THEN c.at
+                            ELSE c.created_at
+                        END AS range_start,
+                        CASE
+                            WHEN c.snap_timestamp IS NULL AND c.prev_timestamp IS NULL AND c.next_timestamp IS NOT NULL THEN c.next_timestamp
+                            ELSE c.at
+                        END AS range_end
+                    FROM (
+                        SELECT
+                            a.id,
+                            a.account_type,
+                            a.created_at,
+                            CAST(? AS TIMESTAMP) AS at,
+                            prev.balance AS prev_balance,
+                            prev.timestamp AS prev_timestamp,
+                            next.balance AS next_balance,
+                            next.timestamp AS next_timestamp,
+                            snap.balance AS snap_balance,
+                            snap.timestamp AS snap_timestamp
+                        FROM account a
+                        LEFT JOIN (
+                            SELECT br.account_id, br.balance, br.timestamp,
+                                ROW_NUMBER() OVER (PARTITION BY br.account_id ORDER BY br.account_id DESC, br.timestamp DESC, br.id DESC) AS rn
+                            FROM balance_record br
+                            WHERE br.account_id = ANY(?) AND br.timestamp <= ?
+                        ) prev ON prev.account_id = a.id AND prev.rn = 1
+                        LEFT JOIN (
+                            SELECT br.account_id, br.balance, br.timestamp,
+                                ROW_NUMBER() OVER (PARTITION BY br.account_id ORDER BY br.timestamp ASC, br.id ASC) AS rn
+                            FROM balance_record br
+                            WHERE br.account_id = ANY(?) AND br.timestamp >= ?
+                        ) next ON next.account_id = a.id AND next.rn = 1
+                        LEFT JOIN account_balance_snapshot snap ON
+                            ? AND
+                            snap.account_id = a.id AND
+                            snap.timestamp = (
+                                SELECT MAX(s.timestamp) FROM account_balance_snapshot s
+                                WHERE s.account_id = a.id AND s.timestamp <= ?
+                            ) AND
+                            snap.timestamp >= a.created_at AND
+                            (prev.timestamp IS NULL OR snap.timestamp > prev.timestamp)
+                        WHERE a.id = ANY(?)
+                    ) c
+                ) anchor
+                LEFT JOIN account_entry ae ON
+                    ae.account_id = anchor.id AND
+                    ae.timestamp >= anchor.range_start AND
+                    ae.timestamp <= anchor.range_end AND
+                    (ae.timestamp > anchor.range_start OR anchor.include_start) AND
+                    (ae.timestamp < anchor.range_end OR NOT anchor.include_start)
+                GROUP BY anchor.id, anchor.account_type, anchor.anchor_balance, anchor.subtract""",
+                List.of(ts, ids, ts, ids, ts, useSnapshots, ts, ids),
+                rs -> {
+                    long accountId = rs.getLong(1);
+                    AccountType type = AccountType.valueOf(rs.getString(2).toUpperCase());
+                    BigDecimal anchorBalance = rs.getBigDecimal(3);
+                    boolean subtract = rs.getBoolean(4);
+                    BigDecimal entryTotal = rs.getBigDecimal(5);
+                    // Entry totals are debits minus credits, so flip them for accounts where debits are negative.
+                    if (!type.areDebitsPositive()) entryTotal = entryTotal.negate();
+                    BigDecimal balance = subtract ? anchorBalance.subtract(entryTotal) : anchorBalance.add(entryTotal);
+                    balances.put(accountId, balance);
+                    return accountId;
+                }
+        );
+        return balances;
+    }
+
+    /**
+     * Computes an account's balance series in a single pass over the entries
+     * in the range. Each point is anchored to the latest balance record in the
+     * range before it, or if there is none, to the balance at the start of the
+     * range, which is derived (usually from a snapshot) just once.
+     */
+    @Override
+    public List<Pair<LocalDateTime, BigDecimal>> getBalanceSeries(long accountId, TimestampRange range, TimeGranularity granularity) {
+        Account account = findById(accountId).orElseThrow(() -> new EntityNotFoundException(Account.class, accountId));
+        List<LocalDateTime> points = new ArrayList<>();
+        points.add(range.start());
+        LocalDateTime periodStart = granularity.next(granularity.truncate(range.start()));
+        while (periodStart.isBefore(range.end())) {
+            points.add(periodStart);
+            periodStart = granularity.next(periodStart);
+        }
+        if (range.end().isAfter(range.start())) points.add(range.end());
+
+        BigDecimal startBalance = deriveBalance(accountId, range.start().toInstant(ZoneOffset.UTC));
+        record Record(LocalDateTime timestamp, BigDecimal balance) {}
+        List<Record> records = DbUtil.findAll(
+                conn,
+                "SELECT timestamp, balance FROM balance_record WHERE account_id = ? AND timestamp >= ? AND timestamp <= ? ORDER BY timestamp ASC, id ASC",
+                List.of(accountId, DbUtil.timestampFromUtcLDT(range.start()), DbUtil.timestampFromUtcLDT(range.end())),
+                rs -> new Record(DbUtil.utcLDTFromTimestamp(rs.getTimestamp(1)), rs.getBigDecimal(2))
+        );
+        // Until the first record in the range, balances are derived from the start balance in the same way that it was derived.
+        boolean derivedBackwards = DbUtil.count(
+                conn,
+                "SELECT COUNT(id) FROM balance_record WHERE account_id = ? AND timestamp <= ?",
+                accountId, DbUtil.timestampFromUtcLDT(range.start())
+        ) == 0 && DbUtil.count(
+                conn,
+                "SELECT COUNT(id) FROM balance_record WHERE account_id = ?",
+                accountId
+        ) > 0;
+        LocalDateTime forwardAnchor = account.getCreatedAt().isAfter(range.start()) ? account.getCreatedAt() : range.start();
+        AccountEntryTotals totals = AccountEntryTotals.load(conn, accountId, range.start(), range.end());
+        BigDecimal sign = account.getType().areDebitsPositive() ? BigDecimal.ONE : BigDecimal.ONE.negate();
+
+        List<Pair<LocalDateTime, BigDecimal>> series = new ArrayList<>(points.size());
+        int recordIdx = -1; // Index of the last record at or before the current point.
+        for (var t : points) {
+            while (recordIdx + 1 < records.size() && !records.get(recordIdx + 1).timestamp().isAfter(t)) {
+                recordIdx++;
+            }
+            BigDecimal entrySum;
+            BigDecimal balance;
+            if (recordIdx >= 0) {
+                Record prev = records.get(recordIdx);
+                entrySum = totals.sumUpTo(t, true).subtract(totals.sumUpTo(prev.timestamp(), true));
+                balance = prev.balance();
+            } else if (derivedBackwards) {
+                entrySum = totals.sumUpTo(t, false);
+                balance = startBalance;
             } else {
-                // No balance records exist for the account! Assume balance of 0 when the account was created.
-                log.warn("No balance record exists for account {}! Assuming balance was 0 at account creation.", account.getShortName());
-                BalanceRecord placeholder = new BalanceRecord(-1, account.getCreatedAt(), account.id, BigDecimal.ZERO, account.getCurrency());
-                List<AccountEntry> entriesSinceAccountCreated = accountEntryRepo.findAllByAccountIdBetween(account.id, account.getCreatedAt(), utcTimestamp);
-                return computeBalanceWithEntries(account.getType(), placeholder, entriesSinceAccountCreated);
+                entrySum = t.isAfter(forwardAnchor)
+                        ? totals.sumUpTo(t, true).subtract(totals.sumUpTo(forwardAnchor, true))
+                        : BigDecimal.ZERO;
+                balance = startBalance;
             }
+            series.add(Pair.of(t, balance.add(sign.multiply(entrySum))));
         }
+        return series;
     }
 
     @Override
     public Set<Currency> findAllUsedCurrencies() {
-        return new HashSet<>(DbUtil.findAll(
-                conn,
-                "SELECT currency FROM account WHERE NOT archived ORDER BY currency ASC",
-                rs -> Currency.getInstance(rs.getString(1))
-        ));
+        Set<Currency> currencies = new HashSet<>();
+        for (Account account : findAllOrderedByName()) currencies.add(account.getCurrency());
+        return currencies;
     }
 
     @Override
     public List<Timestamped> findEventsBefore(long accountId, LocalDateTime utcTimestamp, int maxResults) {
-        var entryRepo = new JdbcAccountEntryRepository(conn);
-        var historyRepo = new JdbcHistoryRepository(conn);
-        var balanceRecordRepo = new JdbcBalanceRecordRepository(conn, contentDir);
+        return findEvents(accountId, utcTimestamp, null, 0, maxResults);
+    }
+
+    @Override
+    public List<Timestamped> findOlderEvents(long accountId, Timestamped lastEvent, int maxResults) {
+        if (lastEvent == null) return findEvents(accountId, DateUtil.nowAsUTC(), null, 0, maxResults);
+        return switch (lastEvent) {
+            case AccountEntry e -> findEvents(accountId, e.getTimestamp(), EVENT_ACCOUNT_ENTRY, e.id, maxResults);
+            case BalanceRecord r -> findEvents(accountId, r.getTimestamp(), EVENT_BALANCE_RECORD, r.id, maxResults);
+            case HistoryItem h -> findEvents(accountId, h.getTimestamp(), EVENT_HISTORY_ITEM, h.id, maxResults);
+            default -> throw new IllegalArgumentException("Unsupported account event: " + lastEvent.getClass().getName());
+        };
+    }
+
+    /**
+     * Finds an account's events that come after a cursor, in one query. Each
+     * branch of the union has the account and cursor conditions applied
+     * directly, and is ordered to match its descending (account, timestamp,
+     * id) index, so it only reads as many rows as are in the page. Each also
+     * selects everything needed to build the event, so no further queries
+     * are needed.
+     * @param accountId The id of the account.
+     * @param utcTimestamp The timestamp of the cursor.
+     * @param lastKind The kind of the cursor's event, or null to include all
+     *                 events at the cursor's timestamp.
+     * @param lastId The id of the cursor's event.
+     * @param maxResults The maximum number of events to get.
+     * @return The events, newest first.
+     */
+    private List<Timestamped> findEvents(long accountId, LocalDateTime utcTimestamp, String lastKind, long lastId, int maxResults) {
+        Timestamp ts = DbUtil.timestampFromUtcLDT(utcTimestamp);
+        List<Object> args = new ArrayList<>();
         String query = """
-                SELECT id, type
-                FROM (
-                    SELECT id, timestamp, 'ACCOUNT_ENTRY' AS type, account_id
-                    FROM account_entry
-                        UNION ALL
-                    SELECT id, timestamp, 'HISTORY_ITEM' AS type, account_id
-                    FROM history_item
-                    LEFT JOIN history_account ha ON history_item.history_id = ha.history_id
-                        UNION ALL
-                    SELECT id, timestamp, 'BALANCE_RECORD' AS type, account_id
-                    FROM balance_record
+                SELECT * FROM (
+                    (
+                        SELECT 'ACCOUNT_ENTRY' AS kind, ae.id, ae.timestamp, ae.transaction_id AS ref_id, ae.amount,
+                            CAST(ae.type AS VARCHAR) AS sub_type, ae.currency, CAST(NULL AS VARCHAR) AS description
+                        FROM account_entry ae
+                        WHERE ae.account_id = ? AND %s
+                        ORDER BY ae.account_id DESC, ae.timestamp DESC, ae.id DESC
+                        LIMIT ?
+                    ) UNION ALL (
+                        SELECT 'BALANCE_RECORD', br.id, br.timestamp, NULL, br.balance,
+                            NULL, br.currency, NULL
+                        FROM balance_record br
+                        WHERE br.account_id = ? AND %s
+                        ORDER BY br.account_id DESC, br.timestamp DESC, br.id DESC
+                        LIMIT ?
+                    ) UNION ALL (
+                        SELECT 'HISTORY_ITEM', hi.id, hi.timestamp, hi.history_id, NULL,
+                            hi.type, NULL, hit.description
+                        FROM history_item hi
+                        LEFT JOIN history_item_text hit ON hit.id = hi.id
+                        WHERE hi.history_id = (SELECT ha.history_id FROM history_account ha WHERE ha.account_id = ?) AND %s
+                        ORDER BY hi.history_id DESC, hi.timestamp DESC, hi.id DESC
+                        LIMIT ?
+                    )
                 )
-                WHERE account_id = ? AND timestamp <= ?
-                ORDER BY timestamp DESC
-                LIMIT\s""" + maxResults;
-        try (var stmt = conn.prepareStatement(query)) {
-            stmt.setLong(1, accountId);
-            stmt.setTimestamp(2, DbUtil.timestampFromUtcLDT(utcTimestamp));
-            ResultSet rs = stmt.executeQuery();
-            List<Timestamped> entities = new ArrayList<>();
-            while (rs.next()) {
-                long id = rs.getLong(1);
-                String type = rs.getString(2);
-                Timestamped entity = switch (type) {
-                    case "HISTORY_ITEM" -> historyRepo.getItem(id).orElse(null);
-                    case "ACCOUNT_ENTRY" -> entryRepo.findById(id).orElse(null);
-                    case "BALANCE_RECORD" -> balanceRecordRepo.findById(id).orElse(null);
-                    default -> null;
-                };
-                if (entity == null) {
-                    log.warn("Failed to find entity with id {} and type {}.", id, type);
-                } else {
-                    entities.add(entity);
+                ORDER BY timestamp DESC, kind DESC, id DESC
+                LIMIT ?""".formatted(
+                        eventSeekCondition("ae", EVENT_ACCOUNT_ENTRY, lastKind, ts, lastId, args, accountId, maxResults),
+                        eventSeekCondition("br", EVENT_BALANCE_RECORD, lastKind, ts, lastId, args, accountId, maxResults),
+                        eventSeekCondition("hi", EVENT_HISTORY_ITEM, lastKind, ts, lastId, args, accountId, maxResults)
+                );
+        args.add(maxResults);
+        return DbUtil.findAll(conn, query, args, rs -> parseEvent(rs, accountId));
+    }
+
+    /**
+     * Gets the condition for one branch of the account events query, which
+     * selects the events of that kind that come after the cursor, and adds
+     * the branch's arguments.
+     */
+    private static String eventSeekCondition(
+            String alias,
+            String kind,
+            String lastKind,
+            Timestamp ts,
+            long lastId,
+            List<Object> args,
+            long accountId,
+            int maxResults
+    ) {
+        args.add(accountId);
+        String condition;
+        if (lastKind == null || kind.compareTo(lastKind) < 0) {
+            // This kind is listed after the cursor's kind, so includes the cursor's timestamp.
+            condition = alias + ".timestamp <= ?";
+            args.add(ts);
+        } else if (kind.compareTo(lastKind) > 0) {
+            condition = alias + ".timestamp < ?";
+            args.add(ts);
+        } else {
+            condition = alias + ".timestamp <= ? AND (" + alias + ".timestamp < ? OR " + alias + ".id < ?)";
+            args.add(ts);
+            args.add(ts);
+            args.add(lastId);
+        }
+        args.add(maxResults);
+        return condition;
+    }
+
+    private static Timestamped parseEvent(ResultSet rs, long accountId) throws SQLException {
+        long id = rs.getLong("id");
+        LocalDateTime timestamp = DbUtil.utcLDTFromTimestamp(rs.getTimestamp("timestamp"));
+        String kind = rs.getString("kind");
+        return switch (kind) {
+            case EVENT_ACCOUNT_ENTRY -> new AccountEntry(
+                    id,
+                    timestamp,
+                    accountId,
+                    rs.getLong("ref_id"),
+                    rs.getBigDecimal("amount"),
+                    AccountEntry.Type.valueOf(rs.getString("sub_type")),
+                    Currency.getInstance(rs.getString("currency"))
+            );
+            case EVENT_BALANCE_RECORD -> new BalanceRecord(
+                    id,
+                    timestamp,
+                    accountId,
+                    rs.getBigDecimal("amount"),
+                    Currency.getInstance(rs.getString("currency"))
+            );
+            case EVENT_HISTORY_ITEM -> {
+                String type = rs.getString("sub_type");
+                if (!type.equalsIgnoreCase(HistoryItem.Type.TEXT.name())) {
+                    throw new SQLException("Unknown history item type: " + type);
                 }
+                yield new HistoryTextItem(id, rs.getLong("ref_id"), timestamp, rs.getString("description"));
             }
-            return entities;
-        } catch (SQLException e) {
-            log.error("Failed to find account events.", e);
-            return Collections.emptyList();
-        }
+            default -> throw new SQLException("Unknown account event kind: " + kind);
+        };
     }
 
     @Override
@@ -241,11 +518,22 @@ public record JdbcAccountRepository(Connection conn, Path contentDir) implements
                 historyRepo.addTextItem(historyId, String.join("\n", updateMessages));
             }
         });
+        cache.invalidate(ReferenceDataCache.ACCOUNTS);
     }
 
     @Override
     public void delete(Account account) {
-        DbUtil.updateOne(conn, "DELETE FROM account WHERE id = ?", List.of(account.id));
+        DbUtil.doTransaction(conn, () -> {
+            // The account's entries are deleted too, which affects analytics for their transactions.
+            var rollupRepo = new JdbcTransactionRollupRepository(conn);
+            List<LocalDate> affectedDays = rollupRepo.findDays(
+                    "EXISTS (SELECT ae.id FROM account_entry ae WHERE ae.transaction_id = t.id AND ae.account_id = ?)",
+                    account.id
+            );
+            DbUtil.updateOne(conn, "DELETE FROM account WHERE id = ?", List.of(account.id));
+            rollupRepo.daysChanged(affectedDays);
+        });
+        cache.invalidate(ReferenceDataCache.ACCOUNTS);
     }
 
     @Override
@@ -256,6 +544,7 @@ public record JdbcAccountRepository(Connection conn, Path contentDir) implements
             long historyId = historyRepo.getOrCreateHistoryForAccount(accountId);
             historyRepo.addTextItem(historyId, "Account has been archived.");
         });
+        cache.invalidate(ReferenceDataCache.ACCOUNTS);
     }
 
     @Override
@@ -266,6 +555,7 @@ public record JdbcAccountRepository(Connection conn, Path contentDir) implements
             long historyId = historyRepo.getOrCreateHistoryForAccount(accountId);
             historyRepo.addTextItem(historyId, "Account has been unarchived.");
         });
+        cache.invalidate(ReferenceDataCache.ACCOUNTS);
     }
 
     public static Account parseAccount(ResultSet rs) throws SQLException {
@@ -284,21 +574,4 @@ public record JdbcAccountRepository(Connection conn, Path contentDir) implements
     public void close() throws Exception {
         conn.close();
     }
-
-    private BigDecimal computeBalanceWithEntries(AccountType accountType, BalanceRecord balanceRecord, List<AccountEntry> entries) {
-        List<AccountEntry> entriesBeforeRecord = entries.stream()
-                .filter(entry -> entry.getTimestamp().isBefore(balanceRecord.getTimestamp()))
-                .toList();
-        List<AccountEntry> entriesAfterRecord = entries.stream()
-                .filter(entry -> entry.getTimestamp().isAfter(balanceRecord.getTimestamp()))
-                .toList();
-        BigDecimal balance = balanceRecord.getBalance();
-        for (AccountEntry entry : entriesBeforeRecord) {
-            balance = balance.subtract(entry.getEffectiveValue(accountType));
-        }
-        for (AccountEntry entry : entriesAfterRecord) {
-            balance = balance.add(entry.getEffectiveValue(accountType));
-        }
-        return balance;
-    }
 }
@@ -1,21 +1,22 @@
 package com.andrewlalis.perfin.data.impl;
 
 import com.andrewlalis.perfin.data.AnalyticsRepository;
+import com.andrewlalis.perfin.data.CategoryTree;
 import com.andrewlalis.perfin.data.TimestampRange;
 import com.andrewlalis.perfin.data.util.DbUtil;
 import com.andrewlalis.perfin.data.util.Pair;
 import com.andrewlalis.perfin.model.AccountEntry;
 import com.andrewlalis.perfin.model.TransactionCategory;
 import com.andrewlalis.perfin.model.TransactionVendor;
-import javafx.scene.paint.Color;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
 
-public record JdbcAnalyticsRepository(Connection conn) implements AnalyticsRepository {
+public record JdbcAnalyticsRepository(Connection conn, ReferenceDataCache referenceDataCache) implements AnalyticsRepository {
     @Override
     public List<Pair<TransactionCategory, BigDecimal>> getSpendByCategory(TimestampRange range, Currency currency) {
         return getTransactionAmountByCategoryAndType(range, currency, AccountEntry.Type.CREDIT);
@@ -38,38 +39,47 @@ public record JdbcAnalyticsRepository(Connection conn) implements AnalyticsRepos
 
     @Override
     public List<Pair<TransactionVendor, BigDecimal>> getSpendByVendor(TimestampRange range, Currency currency) {
-        return DbUtil.findAll(
-                conn,
-                """
-                SELECT
-                    SUM(transaction.amount) AS total,
-                    tv.id, tv.name, tv.description
-                FROM transaction
-                LEFT JOIN transaction_vendor tv ON tv.id = transaction.vendor_id
-                LEFT JOIN account_entry ae ON ae.transaction_id = transaction.id
-                WHERE
-                    transaction.currency = ? AND
-                    transaction.timestamp >= ? AND
-                    transaction.timestamp <= ? AND
-                    ae.type = 'CREDIT' AND
-                    '!exclude' NOT IN (
-                        SELECT tt.name
-                        FROM transaction_tag tt
-                        LEFT JOIN transaction_tag_join ttj ON tt.id = ttj.tag_id
-                        WHERE ttj.transaction_id = transaction.id
-                    )
-                GROUP BY tv.id
-                ORDER BY total DESC""",
-                List.of(currency.getCurrencyCode(), range.start(), range.end()),
-                rs -> {
-                    BigDecimal total = rs.getBigDecimal(1);
-                    long vendorId = rs.getLong(2);
-                    if (rs.wasNull()) return new Pair<>(null, total);
-                    String name = rs.getString(3);
-                    String description = rs.getString(4);
-                    return new Pair<>(new TransactionVendor(vendorId, name, description), total);
-                }
+        Map<Long, BigDecimal> totals = sumFromRollupAndTransactions(
+                range,
+                (firstDay, endDay) -> sumAmounts(
+                        """
+                        SELECT vendor_id, SUM(amount)
+                        FROM transaction_rollup
+                        WHERE currency = ? AND type = 'CREDIT' AND transaction_date >= ? AND transaction_date < ?
+                        GROUP BY vendor_id""",
+                        List.of(currency.getCurrencyCode(), firstDay, endDay)
+                ),
+                (start, end, endOperator) -> sumAmounts(
+                        """
+                        SELECT transaction.vendor_id, SUM(transaction.amount)
+                        FROM transaction
+                        JOIN account_entry ae ON ae.transaction_id = transaction.id
+                        WHERE
+                            transaction.currency = ? AND
+                            transaction.timestamp >= ? AND
+                            transaction.timestamp %s ? AND
+                            ae.type = 'CREDIT' AND
+                            NOT EXISTS (
+                                SELECT ttj.tag_id
+                                FROM transaction_tag_join ttj
+                                JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                                WHERE ttj.transaction_id = transaction.id AND tt.name = '!exclude'
+                            )
+                        GROUP BY transaction.vendor_id""".formatted(endOperator),
+                        List.of(currency.getCurrencyCode(), start, end)
+                )
         );
+        Map<Long, TransactionVendor> vendors = new HashMap<>();
+        for (var vendor : new JdbcTransactionVendorRepository(conn, referenceDataCache).findAll()) {
+            vendors.put(vendor.id, vendor);
+        }
+        List<Pair<TransactionVendor, BigDecimal>> amountsByVendor = new ArrayList<>();
+        for (var entry : totals.entrySet()) {
+            TransactionVendor vendor = entry.getKey() == null ? null : vendors.get(entry.getKey());
+            amountsByVendor.add(new Pair<>(vendor, entry.getValue()));
+        }
+        amountsByVendor.sort((p1, p2) -> p2.second().compareTo(p1.second()));
+        return amountsByVendor;
     }
 
     @Override
@@ -77,114 +87,166 @@ public record JdbcAnalyticsRepository(Connection conn) implements AnalyticsRepos
         conn.close();
     }
 
+    /**
+     * Gets the total amount of all transactions with an account entry of the
+     * given type, grouped by category. Transactions with line items have each
+     * line item's value counted towards the line item's category, and any
+     * value that's left over counted towards the transaction's category.
+     * @param range The range of time to look at.
+     * @param currency The currency of transactions to look at.
+     * @param type The type of account entry that transactions must have.
+     * @return The list of amounts by category, in descending order.
+     */
     private List<Pair<TransactionCategory, BigDecimal>> getTransactionAmountByCategoryAndType(TimestampRange range, Currency currency, AccountEntry.Type type) {
-        // First find totals for each category, using only transactions without any line items (should be most).
-        List<Pair<TransactionCategory, BigDecimal>> totalsBeforeLineItems = DbUtil.findAll(
-                conn,
-                """
-                SELECT
-                    SUM(transaction.amount) AS total,
-                    tc.id, tc.parent_id, tc.name, tc.color
-                FROM transaction
-                LEFT JOIN transaction_category tc ON tc.id = transaction.category_id
-                LEFT JOIN account_entry ae ON ae.transaction_id = transaction.id
-                WHERE
-                    transaction.currency = ? AND
-                    ae.type = ? AND
-                    transaction.timestamp >= ? AND
-                    transaction.timestamp <= ? AND
-                    '!exclude' NOT IN (
-                        SELECT tt.name
-                        FROM transaction_tag tt
-                        LEFT JOIN transaction_tag_join ttj ON tt.id = ttj.tag_id
-                        WHERE ttj.transaction_id = transaction.id
-                    ) AND
-                    (
-                        SELECT COUNT(tli.id) = 0
-                        FROM transaction_line_item tli
-                        WHERE tli.transaction_id = transaction.id
-                    )
-                GROUP BY tc.id
-                ORDER BY total DESC;""",
-                List.of(currency.getCurrencyCode(), type.name(), range.start(), range.end()),
-                this::parseAmountAndCategory
-        );
-        // Then augment the data for any transactions which do have line items.
-        List<Pair<TransactionCategory, BigDecimal>> totalsFromLineItemsOnly = DbUtil.findAll(
-                conn,
-                """
-                    SELECT SUM(tli.value_per_item * tli.quantity) AS s, tc.*
-                    FROM transaction_line_item tli
-                    LEFT JOIN transaction_category tc ON tc.id = tli.category_id
-                    LEFT JOIN transaction t ON t.id = tli.transaction_id
-                    LEFT JOIN account_entry ae ON ae.transaction_id = t.id
-                    WHERE
-                        t.currency = ? AND
-                        ae.type = ? AND
-                        t.timestamp >= ? AND
-                        t.timestamp <= ? AND
-                        '!exclude' NOT IN (
-                            SELECT tt.name
-                            FROM transaction_tag tt
-                            LEFT JOIN transaction_tag_join ttj ON tt.id = ttj.tag_id
-                            WHERE ttj.transaction_id = t.id
-                        )
-                    GROUP BY tli.category_id
-                    ORDER BY s DESC""",
-                List.of(currency.getCurrencyCode(), type.name(), range.start(), range.end()),
-                this::parseAmountAndCategory
-        );
-        // Finally add data for any remaining value in transactions with line items, which wasn't accounted for in line items.
-        List<Pair<TransactionCategory, BigDecimal>> totalsFromLeftoverTransactions = DbUtil.findAll(
-                conn,
-                """
-                SELECT SUM(s), c_id, c_parent_id, c_name, c_color
-                FROM (
-                    SELECT transaction.amount - SUM(tli.value_per_item * tli.quantity) AS s,
-                           tc.id AS c_id, tc.parent_id AS c_parent_id, tc.name AS c_name, tc.color AS c_color
-                    FROM transaction
-                    LEFT JOIN transaction_line_item tli ON tli.transaction_id = transaction.id
-                    LEFT JOIN transaction_category tc ON tc.id = transaction.category_id
-                    LEFT JOIN account_entry ae ON ae.transaction_id = transaction.id
-                    WHERE
-                        transaction.currency = ? AND
-                        ae.type = ? AND
-                        transaction.timestamp >= ? AND
-                        transaction.timestamp <= ? AND
-                        '!exclude' NOT IN (
-                            SELECT tt.name
-                            FROM transaction_tag tt
-                            LEFT JOIN transaction_tag_join ttj ON tt.id = ttj.tag_id
-                            WHERE ttj.transaction_id = transaction.id
-                        ) AND
-                        (
-                            SELECT COUNT(tli.id) > 0
+        Map<Long, BigDecimal> totals = sumFromRollupAndTransactions(
+                range,
+                (firstDay, endDay) -> sumAmounts(
+                        """
+                        SELECT category_id, SUM(amount)
+                        FROM transaction_rollup
+                        WHERE currency = ? AND type = ? AND transaction_date >= ? AND transaction_date < ?
+                        GROUP BY category_id""",
+                        List.of(currency.getCurrencyCode(), type.name(), firstDay, endDay)
+                ),
+                (start, end, endOperator) -> sumAmounts(
+                        """
+                        SELECT part.category_id, SUM(part.amount)
+                        FROM (
+                            SELECT
+                                t.category_id AS category_id,
+                                t.amount - COALESCE(
+                                    (
+                                        SELECT SUM(tli.value_per_item * tli.quantity)
+                                        FROM transaction_line_item tli
+                                        WHERE tli.transaction_id = t.id
+                                    ),
+                                    0
+                                ) AS amount
+                            FROM transaction t
+                            WHERE
+                                t.currency = ? AND
+                                t.timestamp >= ? AND
+                                t.timestamp %1$s ? AND
+                                EXISTS (
+                                    SELECT ae.id
+                                    FROM account_entry ae
+                                    WHERE ae.transaction_id = t.id AND ae.type = ?
+                                ) AND
+                                NOT EXISTS (
+                                    SELECT ttj.tag_id
+                                    FROM transaction_tag_join ttj
+                                    JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                                    WHERE ttj.transaction_id = t.id AND tt.name = '!exclude'
+                                )
+                                UNION ALL
+                            SELECT
+                                tli.category_id AS category_id,
+                                tli.value_per_item * tli.quantity AS amount
                             FROM transaction_line_item tli
-                            WHERE tli.transaction_id = transaction.id
+                            JOIN transaction t ON t.id = tli.transaction_id
+                            WHERE
+                                t.currency = ? AND
+                                t.timestamp >= ? AND
+                                t.timestamp %1$s ? AND
+                                EXISTS (
+                                    SELECT ae.id
+                                    FROM account_entry ae
+                                    WHERE ae.transaction_id = t.id AND ae.type = ?
+                                ) AND
+                                NOT EXISTS (
+                                    SELECT ttj.tag_id
+                                    FROM transaction_tag_join ttj
+                                    JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                                    WHERE ttj.transaction_id = t.id AND tt.name = '!exclude'
+                                )
+                        ) part
+                        GROUP BY part.category_id""".formatted(endOperator),
+                        List.of(
+                                currency.getCurrencyCode(), start, end, type.name(),
+                                currency.getCurrencyCode(), start, end, type.name()
                         )
-                    GROUP BY transaction.id
                 )
-                GROUP BY c_id""",
-                List.of(currency.getCurrencyCode(), type.name(), range.start(), range.end()),
-                this::parseAmountAndCategory
         );
-        return combineCategorizedAmounts(List.of(
-                totalsBeforeLineItems,
-                totalsFromLineItemsOnly,
-                totalsFromLeftoverTransactions
-        ));
+        CategoryTree categoryTree = new JdbcTransactionCategoryRepository(conn, referenceDataCache).getCategoryTree();
+        List<Pair<TransactionCategory, BigDecimal>> amounts = new ArrayList<>();
+        for (var entry : totals.entrySet()) {
+            TransactionCategory category = entry.getKey() == null ? null : categoryTree.findById(entry.getKey()).orElse(null);
+            amounts.add(new Pair<>(category, entry.getValue()));
+        }
+        return prepareAmountsByCategory(amounts);
+    }
+
+    /**
+     * A query for amounts from the rollup, for whole days.
+     */
+    private interface RollupQuery {
+        Map<Long, BigDecimal> sum(LocalDate firstDay, LocalDate endDay);
+    }
+
+    /**
+     * A query for amounts directly from transactions, which must use the
+     * given operator ("&lt;" or "&lt;=") to compare against the end timestamp.
+     */
+    private interface TransactionQuery {
+        Map<Long, BigDecimal> sum(LocalDateTime start, LocalDateTime end, String endOperator);
+    }
+
+    /**
+     * Sums up amounts in a range of time, using the rollup for any whole days
+     * in the range, and the transactions themselves for the partial days at
+     * either end of it.
+     * @param range The range of time, including both its start and end.
+     * @param rollupQuery The query to use for whole days.
+     * @param transactionQuery The query to use for partial days.
+     * @return A map of amounts by id.
+     */
+    private static Map<Long, BigDecimal> sumFromRollupAndTransactions(
+            TimestampRange range,
+            RollupQuery rollupQuery,
+            TransactionQuery transactionQuery
+    ) {
+        LocalDate firstDay = range.start().toLocalDate();
+        if (!range.start().toLocalTime().equals(LocalTime.MIDNIGHT)) firstDay = firstDay.plusDays(1);
+        LocalDate endDay = range.end().toLocalDate();
+        if (!firstDay.isBefore(endDay)) {
+            return transactionQuery.sum(range.start(), range.end(), "<=");
+        }
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        List<Map<Long, BigDecimal>> parts = List.of(
+                transactionQuery.sum(range.start(), firstDay.atStartOfDay(), "<"),
+                rollupQuery.sum(firstDay, endDay),
+                transactionQuery.sum(endDay.atStartOfDay(), range.end(), "<=")
+        );
+        for (var part : parts) {
+            part.forEach((id, amount) -> totals.merge(id, amount, BigDecimal::add));
+        }
+        return totals;
+    }
+
+    /**
+     * Runs a query that selects a nullable id and an amount.
+     * @param query The query to run.
+     * @param args The query's arguments.
+     * @return A map of amounts by id, where the id may be null.
+     */
+    private Map<Long, BigDecimal> sumAmounts(String query, List<Object> args) {
+        Map<Long, BigDecimal> amounts = new HashMap<>();
+        for (var p : DbUtil.findAll(conn, query, args, rs -> new Pair<>(rs.getObject(1, Long.class), rs.getBigDecimal(2)))) {
+            if (p.second() != null) amounts.merge(p.first(), p.second(), BigDecimal::add);
+        }
+        return amounts;
     }
 
     private List<Pair<TransactionCategory, BigDecimal>> groupByRootCategory(List<Pair<TransactionCategory, BigDecimal>> spendByCategory) {
         List<Pair<TransactionCategory, BigDecimal>> result = new ArrayList<>();
         Map<TransactionCategory, BigDecimal> rootCategorySpend = new HashMap<>();
-        var categoryRepo = new JdbcTransactionCategoryRepository(conn);
+        CategoryTree categoryTree = new JdbcTransactionCategoryRepository(conn, referenceDataCache).getCategoryTree();
         BigDecimal uncategorizedSpend = BigDecimal.ZERO;
         for (var spend : spendByCategory) {
             if (spend.first() == null) {
                 uncategorizedSpend = uncategorizedSpend.add(spend.second());
             } else {
-                TransactionCategory rootCategory = categoryRepo.findRoot(spend.first().id);
+                TransactionCategory rootCategory = categoryTree.getRoot(spend.first().id);
                 if (rootCategory != null) {
                     BigDecimal categoryTotal = rootCategorySpend.getOrDefault(rootCategory, BigDecimal.ZERO);
                     rootCategorySpend.put(rootCategory, categoryTotal.add(spend.second()));
@@ -201,37 +263,27 @@ public record JdbcAnalyticsRepository(Connection conn) implements AnalyticsRepos
         return result;
     }
 
-    private Pair<TransactionCategory, BigDecimal> parseAmountAndCategory(ResultSet rs) throws SQLException {
-        BigDecimal amount = rs.getBigDecimal(1);
-        long categoryId = rs.getLong(2);
-        if (rs.wasNull()) {
-            return new Pair<>(null, amount);
-        }
-        Long parentId = rs.getLong(3);
-        if (rs.wasNull()) parentId = null;
-        String name = rs.getString(4);
-        Color color = Color.valueOf("#" + rs.getString(5));
-        return new Pair<>(new TransactionCategory(categoryId, parentId, name, color), amount);
-    }
-
-    private List<Pair<TransactionCategory, BigDecimal>> combineCategorizedAmounts(List<List<Pair<TransactionCategory, BigDecimal>>> lists) {
+    /**
+     * Prepares a list of amounts by category for display, making sure that
+     * there's always an entry for uncategorized amounts, and sorting by amount
+     * in descending order. Among equal amounts, the uncategorized amount
+     * comes first.
+     * @param amounts The amounts by category, with at most one per category.
+     * @return The list of amounts by category.
+     */
+    private List<Pair<TransactionCategory, BigDecimal>> prepareAmountsByCategory(List<Pair<TransactionCategory, BigDecimal>> amounts) {
         BigDecimal uncategorizedAmount = BigDecimal.ZERO;
-        Map<TransactionCategory, BigDecimal> categorizedAmounts = new HashMap<>();
-        for (var list : lists) {
-            for (var p : list) {
-                if (p.first() == null) {
-                    uncategorizedAmount = uncategorizedAmount.add(p.second());
-                } else {
-                    BigDecimal value = categorizedAmounts.computeIfAbsent(p.first(), category -> BigDecimal.ZERO);
-                    categorizedAmounts.put(p.first(), value.add(p.second()));
-                }
+        List<Pair<TransactionCategory, BigDecimal>> categorizedAmounts = new ArrayList<>();
+        for (var p : amounts) {
+            if (p.first() == null) {
+                uncategorizedAmount = uncategorizedAmount.add(p.second());
+            } else {
+                categorizedAmounts.add(p);
             }
         }
         List<Pair<TransactionCategory, BigDecimal>> amountsByCategory = new ArrayList<>();
         amountsByCategory.add(new Pair<>(null, uncategorizedAmount));
-        for (var entry : categorizedAmounts.entrySet()) {
-            amountsByCategory.add(new Pair<>(entry.getKey(), entry.getValue()));
-        }
+        amountsByCategory.addAll(categorizedAmounts);
         amountsByCategory.sort((p1, p2) -> p2.second().compareTo(p1.second()));
         return amountsByCategory;
     }
@@ -4,6 +4,7 @@ import com.andrewlalis.perfin.data.AttachmentRepository;
 import com.andrewlalis.perfin.data.ulid.UlidCreator;
 import com.andrewlalis.perfin.data.util.DbUtil;
 import com.andrewlalis.perfin.data.util.FileUtil;
+import com.andrewlalis.perfin.data.util.ThumbnailStore;
 import com.andrewlalis.perfin.model.Attachment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -107,11 +108,13 @@ public record JdbcAttachmentRepository(Connection conn, Path contentDir) impleme
     /**
      * Internal method that's used when deleting attachments, to also remove the
      * actual file contents from the Perfin profile's content directory. This
-     * will delete the file, and also remove the parent directory if it's empty.
+     * will delete the file and its thumbnails, and also remove the parent
+     * directory if it's empty.
      * @param attachment The attachment to delete the file for.
      */
     private void deleteFileOnDisk(Attachment attachment) {
         Path filePath = attachment.getPath(contentDir);
+        new ThumbnailStore(contentDir).delete(attachment);
         if (Files.exists(filePath)) {
             try {
                 Files.delete(filePath);
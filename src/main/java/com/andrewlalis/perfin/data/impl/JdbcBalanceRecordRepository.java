@@ -34,6 +34,7 @@ public record JdbcBalanceRecordRepository(Connection conn, Path contentDir) impl
                     stmt.executeUpdate();
                 }
             }
+            new JdbcAccountBalanceSnapshotRepository(conn).balanceRecordChanged(accountId);
             return recordId;
         });
     }
@@ -95,7 +96,18 @@ public record JdbcBalanceRecordRepository(Connection conn, Path contentDir) impl
 
     @Override
     public void deleteById(long id) {
-        DbUtil.updateOne(conn, "DELETE FROM balance_record WHERE id = ?", List.of(id));
+        DbUtil.doTransaction(conn, () -> {
+            Optional<Long> accountId = DbUtil.findOne(
+                    conn,
+                    "SELECT account_id FROM balance_record WHERE id = ?",
+                    List.of(id),
+                    rs -> rs.getLong(1)
+            );
+            DbUtil.updateOne(conn, "DELETE FROM balance_record WHERE id = ?", List.of(id));
+            if (accountId.isPresent()) {
+                new JdbcAccountBalanceSnapshotRepository(conn).balanceRecordChanged(accountId.get());
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,554 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.StatementCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A simple, bounded pool of JDBC connections to a single database URL. Instead
+ * of opening a new physical connection every time one is requested, the pool
+ * hands out a lightweight handle to an already-open connection. Calling
+ * {@link Connection#close()} on that handle returns the physical connection to
+ * the pool, so repositories which close their connection when they're done
+ * don't need to know that they're using a pool at all.
+ * <p>
+ *     The pool keeps at least {@link Config#minIdle()} connections open, never
+ *     opens more than {@link Config#maxSize()}, validates connections before
+ *     handing them out, evicts connections that have been idle for too long,
+ *     and logs a warning (with the borrower's stack trace) for any connection
+ *     that's held for longer than the configured leak detection threshold.
+ * </p>
+ * <p>
+ *     Each physical connection also has its own {@link StatementCache}, which
+ *     outlives individual borrows, so that frequently-used SQL is only parsed
+ *     once per connection.
+ * </p>
+ */
+public class JdbcConnectionPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(JdbcConnectionPool.class);
+
+    /**
+     * Configuration options for a connection pool.
+     * @param minIdle The minimum number of connections to keep open.
+     * @param maxSize The maximum number of connections that may be open.
+     * @param maxWait The maximum time to wait for a connection to be available.
+     * @param idleTimeout The time after which idle connections above the
+     *                    minimum are closed.
+     * @param leakDetectionThreshold The time after which a borrowed connection
+     *                               is reported as a possible leak. Zero
+     *                               disables leak detection.
+     * @param validationTimeout The time to wait for a connection to respond
+     *                          when validating it.
+     * @param statementCacheSize The maximum number of prepared statements to
+     *                           cache for each connection. Zero disables the
+     *                           statement cache.
+     */
+    public record Config(
+            int minIdle,
+            int maxSize,
+            Duration maxWait,
+            Duration idleTimeout,
+            Duration leakDetectionThreshold,
+            Duration validationTimeout,
+            int statementCacheSize
+    ) {
+        public Config {
+            if (minIdle < 0) throw new IllegalArgumentException("minIdle must be non-negative.");
+            if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1.");
+            if (minIdle > maxSize) throw new IllegalArgumentException("minIdle cannot be greater than maxSize.");
+            if (statementCacheSize < 0) throw new IllegalArgumentException("statementCacheSize must be non-negative.");
+        }
+
+        public static Config defaults() {
+            return new Config(
+                    1,
+                    10,
+                    Duration.ofSeconds(30),
+                    Duration.ofMinutes(5),
+                    Duration.ofSeconds(30),
+                    Duration.ofSeconds(2),
+                    64
+            );
+        }
+
+        /**
+         * Reads a configuration from a set of properties, using the default
+         * value for anything that's not specified.
+         * @param props The properties to read from.
+         * @return The configuration.
+         */
+        public static Config fromProperties(Properties props) {
+            Config d = defaults();
+            return new Config(
+                    Integer.parseInt(props.getProperty("jdbc-pool.min-idle", Integer.toString(d.minIdle))),
+                    Integer.parseInt(props.getProperty("jdbc-pool.max-size", Integer.toString(d.maxSize))),
+                    Duration.ofMillis(Long.parseLong(props.getProperty("jdbc-pool.max-wait-ms", Long.toString(d.maxWait.toMillis())))),
+                    Duration.ofMillis(Long.parseLong(props.getProperty("jdbc-pool.idle-timeout-ms", Long.toString(d.idleTimeout.toMillis())))),
+                    Duration.ofMillis(Long.parseLong(props.getProperty("jdbc-pool.leak-detection-threshold-ms", Long.toString(d.leakDetectionThreshold.toMillis())))),
+                    Duration.ofMillis(Long.parseLong(props.getProperty("jdbc-pool.validation-timeout-ms", Long.toString(d.validationTimeout.toMillis())))),
+                    Integer.parseInt(props.getProperty("jdbc-pool.statement-cache-size", Integer.toString(d.statementCacheSize)))
+            );
+        }
+    }
+
+    /**
+     * A snapshot of the pool's state and usage statistics.
+     * @param activeCount The number of connections currently borrowed.
+     * @param idleCount The number of open connections waiting to be borrowed.
+     * @param borrowCount The total number of times a connection was borrowed.
+     * @param createdCount The total number of physical connections opened.
+     * @param destroyedCount The total number of physical connections closed.
+     * @param timeoutCount The number of borrow attempts that timed out.
+     * @param leakCount The number of connections reported as possible leaks.
+     * @param totalWaitTime The total time that borrowers spent waiting.
+     * @param maxWaitTime The longest time that any borrower spent waiting.
+     * @param statementCacheHits The number of prepared statements that were
+     *                           reused from a connection's statement cache.
+     * @param statementCacheMisses The number of prepared statements that had
+     *                             to be prepared from scratch.
+     */
+    public record Metrics(
+            int activeCount,
+            int idleCount,
+            long borrowCount,
+            long createdCount,
+            long destroyedCount,
+            long timeoutCount,
+            long leakCount,
+            Duration totalWaitTime,
+            Duration maxWaitTime,
+            long statementCacheHits,
+            long statementCacheMisses
+    ) {
+        public Duration averageWaitTime() {
+            if (borrowCount == 0) return Duration.ZERO;
+            return totalWaitTime.dividedBy(borrowCount);
+        }
+    }
+
+    private final String jdbcUrl;
+    private final Config config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionAvailable = lock.newCondition();
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final Set<PooledConnection> activeConnections = new HashSet<>();
+    private int pendingCount = 0;
+    private boolean closed = false;
+
+    private long borrowCount = 0;
+    private long createdCount = 0;
+    private long destroyedCount = 0;
+    private long timeoutCount = 0;
+    private long leakCount = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long destroyedStatementCacheHits = 0;
+    private long destroyedStatementCacheMisses = 0;
+
+    private final ScheduledExecutorService housekeeper;
+
+    public JdbcConnectionPool(String jdbcUrl, Config config) {
+        this.jdbcUrl = jdbcUrl;
+        this.config = config;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "perfin-jdbc-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::doHousekeeping, 5, 5, TimeUnit.SECONDS);
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the configured maximum
+     * wait time for one to become available. The returned connection must be
+     * closed to give it back to the pool.
+     * @return A connection.
+     * @throws SQLException If the pool is closed, no connection became
+     * available in time, or a new connection couldn't be opened.
+     */
+    public Connection borrow() throws SQLException {
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos = startNanos + config.maxWait().toNanos();
+        while (true) {
+            PooledConnection candidate = null;
+            boolean shouldCreate = false;
+            lock.lock();
+            try {
+                if (closed) throw new SQLException("The connection pool has been closed.");
+                if (!idleConnections.isEmpty()) {
+                    candidate = idleConnections.pop();
+                    activeConnections.add(candidate);
+                } else if (totalCount() < config.maxSize()) {
+                    pendingCount++;
+                    shouldCreate = true;
+                } else {
+                    long remainingNanos = deadlineNanos - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        timeoutCount++;
+                        throw new SQLException(
+                                "Timed out after " + config.maxWait().toMillis() + " ms waiting for a connection. " +
+                                "All " + config.maxSize() + " connections are in use."
+                        );
+                    }
+                    connectionAvailable.awaitNanos(remainingNanos);
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection.", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (shouldCreate) {
+                try {
+                    candidate = new PooledConnection(DriverManager.getConnection(jdbcUrl));
+                } finally {
+                    lock.lock();
+                    try {
+                        pendingCount--;
+                        if (candidate != null) {
+                            createdCount++;
+                            activeConnections.add(candidate);
+                        } else {
+                            connectionAvailable.signal();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } else if (!isValid(candidate)) {
+                log.debug("Discarding invalid pooled connection.");
+                lock.lock();
+                try {
+                    activeConnections.remove(candidate);
+                    connectionAvailable.signal();
+                } finally {
+                    lock.unlock();
+                }
+                destroy(candidate);
+                continue;
+            }
+            return checkOut(candidate, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the pool's current metrics.
+     * @return The pool's metrics.
+     */
+    public Metrics getMetrics() {
+        lock.lock();
+        try {
+            long cacheHits = destroyedStatementCacheHits;
+            long cacheMisses = destroyedStatementCacheMisses;
+            for (var pc : idleConnections) {
+                cacheHits += pc.statementCache.getHitCount();
+                cacheMisses += pc.statementCache.getMissCount();
+            }
+            for (var pc : activeConnections) {
+                cacheHits += pc.statementCache.getHitCount();
+                cacheMisses += pc.statementCache.getMissCount();
+            }
+            return new Metrics(
+                    activeConnections.size(),
+                    idleConnections.size(),
+                    borrowCount,
+                    createdCount,
+                    destroyedCount,
+                    timeoutCount,
+                    leakCount,
+                    Duration.ofNanos(totalWaitNanos),
+                    Duration.ofNanos(maxWaitNanos),
+                    cacheHits,
+                    cacheMisses
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the pool, and all idle connections in it. Any connections which
+     * are still borrowed will be closed when they're returned.
+     */
+    @Override
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(idleConnections);
+            idleConnections.clear();
+            connectionAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (var pc : toClose) destroy(pc);
+        log.debug("Closed connection pool for {}. Final metrics: {}", jdbcUrl, getMetrics());
+    }
+
+    private int totalCount() {
+        return idleConnections.size() + activeConnections.size() + pendingCount;
+    }
+
+    private Connection checkOut(PooledConnection pc, long waitNanos) {
+        lock.lock();
+        try {
+            borrowCount++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        } finally {
+            lock.unlock();
+        }
+        pc.borrowedAtNanos = System.nanoTime();
+        pc.leakReported = false;
+        pc.borrowTrace = config.leakDetectionThreshold().isZero() ? null : new Exception("Connection borrowed here");
+        return pc.newHandle();
+    }
+
+    private void checkIn(PooledConnection pc) {
+        boolean reusable = resetState(pc);
+        boolean shouldDestroy;
+        lock.lock();
+        try {
+            activeConnections.remove(pc);
+            if (pc.leakReported) {
+                log.info(
+                        "Connection previously reported as a possible leak was returned after {} ms.",
+                        Duration.ofNanos(System.nanoTime() - pc.borrowedAtNanos).toMillis()
+                );
+            }
+            shouldDestroy = closed || !reusable;
+            if (!shouldDestroy) {
+                pc.lastUsedAtNanos = System.nanoTime();
+                pc.borrowTrace = null;
+                idleConnections.push(pc);
+            }
+            connectionAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (shouldDestroy) destroy(pc);
+    }
+
+    /**
+     * Puts a connection back into a clean state, so that the next borrower
+     * doesn't inherit an open transaction or modified settings.
+     * @param pc The connection to reset.
+     * @return True if the connection can be reused, or false if not.
+     */
+    private boolean resetState(PooledConnection pc) {
+        try {
+            if (pc.physical.isClosed()) return false;
+            if (!pc.physical.getAutoCommit()) {
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+            if (pc.physical.isReadOnly()) pc.physical.setReadOnly(false);
+            pc.physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            log.warn("Failed to reset pooled connection state. It will be discarded.", e);
+            return false;
+        }
+    }
+
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.physical.isValid((int) Math.max(1, config.validationTimeout().toSeconds()));
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        pc.statementCache.close();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            log.warn("Failed to close physical connection.", e);
+        }
+        lock.lock();
+        try {
+            destroyedCount++;
+            destroyedStatementCacheHits += pc.statementCache.getHitCount();
+            destroyedStatementCacheMisses += pc.statementCache.getMissCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Periodic maintenance task that evicts idle connections, tops the pool up
+     * to its minimum size, and reports possibly-leaked connections.
+     */
+    private void doHousekeeping() {
+        try {
+            final long now = System.nanoTime();
+            List<PooledConnection> toEvict = new ArrayList<>();
+            int toCreate;
+            lock.lock();
+            try {
+                if (closed) return;
+                // Evict the oldest idle connections, which sit at the bottom of the stack.
+                var it = idleConnections.descendingIterator();
+                while (it.hasNext() && idleConnections.size() - toEvict.size() > config.minIdle()) {
+                    PooledConnection pc = it.next();
+                    if (now - pc.lastUsedAtNanos > config.idleTimeout().toNanos()) {
+                        toEvict.add(pc);
+                    }
+                }
+                idleConnections.removeAll(toEvict);
+                if (!config.leakDetectionThreshold().isZero()) {
+                    for (var pc : activeConnections) {
+                        if (!pc.leakReported && now - pc.borrowedAtNanos > config.leakDetectionThreshold().toNanos()) {
+                            pc.leakReported = true;
+                            leakCount++;
+                            log.warn(
+                                    "Connection has been borrowed for more than {} ms and may have leaked.",
+                                    config.leakDetectionThreshold().toMillis(),
+                                    pc.borrowTrace
+                            );
+                        }
+                    }
+                }
+                toCreate = Math.max(0, Math.min(config.minIdle() - idleConnections.size(), config.maxSize() - totalCount()));
+                pendingCount += toCreate;
+            } finally {
+                lock.unlock();
+            }
+            for (var pc : toEvict) destroy(pc);
+            for (int i = 0; i < toCreate; i++) {
+                PooledConnection pc = null;
+                try {
+                    pc = new PooledConnection(DriverManager.getConnection(jdbcUrl));
+                } catch (SQLException e) {
+                    log.warn("Failed to open connection to maintain minimum idle pool size.", e);
+                }
+                lock.lock();
+                try {
+                    pendingCount--;
+                    if (pc != null) {
+                        createdCount++;
+                        if (closed) {
+                            pc.statementCache.close();
+                            pc.physical.close();
+                            destroyedCount++;
+                        } else {
+                            idleConnections.addLast(pc);
+                            connectionAvailable.signal();
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Connection pool housekeeping failed.", e);
+        }
+    }
+
+    /**
+     * Wrapper around a physical connection that tracks its pool bookkeeping.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long borrowedAtNanos;
+        private volatile long lastUsedAtNanos;
+        private volatile boolean leakReported;
+        private volatile Exception borrowTrace;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(physical, config.statementCacheSize());
+            this.lastUsedAtNanos = System.nanoTime();
+        }
+
+        /**
+         * Creates a new connection handle that's given to the borrower. Each
+         * borrow gets its own handle, so that a handle which has been closed
+         * can't be used to interfere with the connection's next borrower.
+         * @return The connection handle.
+         */
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    JdbcConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class, StatementCache.Holder.class},
+                    new HandleInvocationHandler(this)
+            );
+        }
+    }
+
+    private final class HandleInvocationHandler implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean handleClosed = false;
+
+        private HandleInvocationHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        checkIn(pc);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return handleClosed || pc.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + pc.physical + (handleClosed ? ", closed" : "") + "]";
+                }
+            }
+            if (handleClosed) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            if (method.getDeclaringClass() == StatementCache.Holder.class) {
+                return pc.statementCache;
+            }
+            try {
+                return method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.*;
+import com.andrewlalis.perfin.data.util.StatementCache;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+
+/**
+ * A data session whose repositories all use the same JDBC connection. The
+ * repositories are given a handle to the connection that ignores calls to
+ * {@link Connection#close()}, so closing one of them doesn't end the session
+ * for the others; only the data source closes the real connection.
+ */
+public class JdbcDataSession implements DataSession {
+    private final Connection conn;
+    private final Path contentDir;
+    private final ReferenceDataCache referenceDataCache;
+    private final Options options;
+
+    public JdbcDataSession(Connection conn, Path contentDir, ReferenceDataCache referenceDataCache, Options options) {
+        this.conn = unclosable(conn);
+        this.contentDir = contentDir;
+        this.referenceDataCache = referenceDataCache;
+        this.options = options;
+    }
+
+    @Override
+    public Options getOptions() {
+        return options;
+    }
+
+    @Override
+    public AccountRepository getAccountRepository() {
+        return new JdbcAccountRepository(conn, contentDir, referenceDataCache);
+    }
+
+    @Override
+    public BalanceRecordRepository getBalanceRecordRepository() {
+        return new JdbcBalanceRecordRepository(conn, contentDir);
+    }
+
+    @Override
+    public TransactionRepository getTransactionRepository() {
+        return new JdbcTransactionRepository(conn, contentDir, referenceDataCache);
+    }
+
+    @Override
+    public TransactionVendorRepository getTransactionVendorRepository() {
+        return new JdbcTransactionVendorRepository(conn, referenceDataCache);
+    }
+
+    @Override
+    public TransactionCategoryRepository getTransactionCategoryRepository() {
+        return new JdbcTransactionCategoryRepository(conn, referenceDataCache);
+    }
+
+    @Override
+    public TransactionLineItemRepository getTransactionLineItemRepository() {
+        return new JdbcTransactionLineItemRepository(conn);
+    }
+
+    @Override
+    public AttachmentRepository getAttachmentRepository() {
+        return new JdbcAttachmentRepository(conn, contentDir);
+    }
+
+    @Override
+    public HistoryRepository getHistoryRepository() {
+        return new JdbcHistoryRepository(conn);
+    }
+
+    @Override
+    public AccountBalanceSnapshotRepository getAccountBalanceSnapshotRepository() {
+        return new JdbcAccountBalanceSnapshotRepository(conn);
+    }
+
+    @Override
+    public TransactionRollupRepository getTransactionRollupRepository() {
+        return new JdbcTransactionRollupRepository(conn);
+    }
+
+    @Override
+    public AnalyticsRepository getAnalyticsRepository() {
+        return new JdbcAnalyticsRepository(conn, referenceDataCache);
+    }
+
+    private static Connection unclosable(Connection conn) {
+        // Keep the pool's statement cache visible to DbUtil through the proxy.
+        Class<?>[] interfaces = conn instanceof StatementCache.Holder
+                ? new Class<?>[]{Connection.class, StatementCache.Holder.class}
+                : new Class<?>[]{Connection.class};
+        return (Connection) Proxy.newProxyInstance(
+                JdbcDataSession.class.getClassLoader(),
+                interfaces,
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) return null;
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+        );
+    }
+}
@@ -1,42 +1,107 @@
 package com.andrewlalis.perfin.data.impl;
 
 import com.andrewlalis.perfin.data.*;
+import com.andrewlalis.perfin.data.util.DbUtil;
 import com.andrewlalis.perfin.data.util.UncheckedSqlException;
 
 import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.function.Function;
 
 /**
- * A basic data source implementation that gets a new SQL connection using a
- * pre-defined JDBC connection URL.
+ * A basic data source implementation that gets SQL connections from a pool of
+ * connections to a pre-defined JDBC connection URL. Closing a connection that
+ * was obtained from this data source returns it to the pool.
  */
-public class JdbcDataSource implements DataSource {
-    private final String jdbcUrl;
+public class JdbcDataSource implements DataSource, AutoCloseable {
+    private final JdbcConnectionPool connectionPool;
     private final Path contentDir;
+    private final ReferenceDataCache referenceDataCache = new ReferenceDataCache();
+    /**
+     * Runs async repository work. This uses fewer threads than the pool has
+     * connections, so that searches and other direct users of connections
+     * can still get one.
+     */
+    private final RepositoryExecutor repositoryExecutor = new RepositoryExecutor(4, 100);
 
     public JdbcDataSource(String jdbcUrl, Path contentDir) {
-        this.jdbcUrl = jdbcUrl;
+        this(jdbcUrl, contentDir, JdbcConnectionPool.Config.defaults());
+    }
+
+    public JdbcDataSource(String jdbcUrl, Path contentDir, JdbcConnectionPool.Config poolConfig) {
+        this.connectionPool = new JdbcConnectionPool(jdbcUrl, poolConfig);
         this.contentDir = contentDir;
     }
 
     public Connection getConnection() {
         try {
-            return DriverManager.getConnection(jdbcUrl);
+            return connectionPool.borrow();
         } catch (SQLException e) {
             throw new UncheckedSqlException(e);
         }
     }
 
+    public JdbcConnectionPool.Metrics getConnectionPoolMetrics() {
+        return connectionPool.getMetrics();
+    }
+
+    /**
+     * Gets the reference data cache that's shared by this data source's
+     * repositories. Any repository that's made directly with one of this data
+     * source's connections should use it too, so that its changes invalidate
+     * the shared cache.
+     * @return The reference data cache.
+     */
+    public ReferenceDataCache getReferenceDataCache() {
+        return referenceDataCache;
+    }
+
+    public ReferenceDataCache.Metrics getReferenceDataCacheMetrics() {
+        return referenceDataCache.getMetrics();
+    }
+
+    /**
+     * Closes this data source's repository executor and connection pool. Once
+     * closed, no more connections can be obtained from it.
+     */
+    @Override
+    public void close() {
+        repositoryExecutor.close();
+        connectionPool.close();
+    }
+
     @Override
     public Path getContentDir() {
         return contentDir;
     }
 
+    @Override
+    public <T> T withSession(DataSession.Options options, Function<DataSession, T> action) {
+        try (Connection conn = getConnection()) {
+            // The pool resets this when the connection is returned.
+            if (options.readOnly()) conn.setReadOnly(true);
+            DataSession session = new JdbcDataSession(conn, contentDir, referenceDataCache, options);
+            if (options.transactional()) {
+                var versionsBefore = referenceDataCache.getVersions();
+                T result = DbUtil.doTransaction(conn, () -> action.apply(session));
+                // Repositories invalidate reference data before the transaction
+                // commits, so another connection may have cached the old data
+                // in the meantime. Invalidate those keys again now.
+                referenceDataCache.getVersions().forEach((key, version) -> {
+                    if (!version.equals(versionsBefore.get(key))) referenceDataCache.invalidate(key);
+                });
+                return result;
+            }
+            return action.apply(session);
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
     @Override
     public AccountRepository getAccountRepository() {
-        return new JdbcAccountRepository(getConnection(), contentDir);
+        return new JdbcAccountRepository(getConnection(), contentDir, referenceDataCache);
     }
 
     @Override
@@ -46,17 +111,17 @@ public class JdbcDataSource implements DataSource {
 
     @Override
     public TransactionRepository getTransactionRepository() {
-        return new JdbcTransactionRepository(getConnection(), contentDir);
+        return new JdbcTransactionRepository(getConnection(), contentDir, referenceDataCache);
     }
 
     @Override
     public TransactionVendorRepository getTransactionVendorRepository() {
-        return new JdbcTransactionVendorRepository(getConnection());
+        return new JdbcTransactionVendorRepository(getConnection(), referenceDataCache);
     }
 
     @Override
     public TransactionCategoryRepository getTransactionCategoryRepository() {
-        return new JdbcTransactionCategoryRepository(getConnection());
+        return new JdbcTransactionCategoryRepository(getConnection(), referenceDataCache);
     }
 
     @Override
@@ -74,8 +139,23 @@ public class JdbcDataSource implements DataSource {
         return new JdbcHistoryRepository(getConnection());
     }
 
+    @Override
+    public AccountBalanceSnapshotRepository getAccountBalanceSnapshotRepository() {
+        return new JdbcAccountBalanceSnapshotRepository(getConnection());
+    }
+
+    @Override
+    public TransactionRollupRepository getTransactionRollupRepository() {
+        return new JdbcTransactionRollupRepository(getConnection());
+    }
+
+    @Override
+    public RepositoryExecutor getRepositoryExecutor() {
+        return repositoryExecutor;
+    }
+
     @Override
     public AnalyticsRepository getAnalyticsRepository() {
-        return new JdbcAnalyticsRepository(getConnection());
+        return new JdbcAnalyticsRepository(getConnection(), referenceDataCache);
     }
 }
@@ -22,6 +22,7 @@ import java.nio.file.Path;
 import java.sql.*;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 
 /**
  * Component that's responsible for obtaining a JDBC data source for a profile.
@@ -35,7 +36,7 @@ public class JdbcDataSourceFactory implements DataSourceFactory {
      * the profile has a newer schema version, we'll exit and prompt the user
      * to update their app.
      */
-    public static final int SCHEMA_VERSION = 4;
+    public static final int SCHEMA_VERSION = 10;
 
     public DataSource getDataSource(String profileName) throws ProfileLoadException {
         final boolean dbExists = Files.exists(getDatabaseFile(profileName));
@@ -59,13 +60,37 @@ public class JdbcDataSourceFactory implements DataSourceFactory {
                 throw new ProfileLoadException("Profile " + profileName + " has a database with an unsupported schema version.");
             }
         }
-        var dataSource = new JdbcDataSource(getJdbcUrl(profileName), Profile.getContentDir(profileName));
+        var dataSource = new JdbcDataSource(
+                getJdbcUrl(profileName),
+                Profile.getContentDir(profileName),
+                getConnectionPoolConfig(profileName)
+        );
         if (!testConnection(dataSource)) {
+            dataSource.close();
             throw new ProfileLoadException("Unabled to connect to the profile's database.");
         }
         return dataSource;
     }
 
+    /**
+     * Gets the connection pool configuration to use for a profile's data
+     * source, using any "jdbc-pool.*" overrides from the profile's settings.
+     * @param profileName The name of the profile.
+     * @return The connection pool configuration.
+     */
+    private static JdbcConnectionPool.Config getConnectionPoolConfig(String profileName) {
+        Path settingsFile = Profile.getSettingsFile(profileName);
+        if (Files.notExists(settingsFile)) return JdbcConnectionPool.Config.defaults();
+        Properties settings = new Properties();
+        try (var in = Files.newInputStream(settingsFile)) {
+            settings.load(in);
+            return JdbcConnectionPool.Config.fromProperties(settings);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Failed to read connection pool settings for profile {}. Using defaults.", profileName, e);
+            return JdbcConnectionPool.Config.defaults();
+        }
+    }
+
     public SchemaStatus getSchemaStatus(String profileName) throws IOException {
         int existingSchemaVersion = getSchemaVersion(profileName);
         if (existingSchemaVersion == SCHEMA_VERSION) return SchemaStatus.UP_TO_DATE;
@@ -75,7 +100,12 @@ public class JdbcDataSourceFactory implements DataSourceFactory {
 
     private void createNewDatabase(String profileName) throws ProfileLoadException {
         log.info("Creating new database for profile {}.", profileName);
-        JdbcDataSource dataSource = new JdbcDataSource(getJdbcUrl(profileName), Profile.getContentDir(profileName));
+        try (JdbcDataSource dataSource = new JdbcDataSource(getJdbcUrl(profileName), Profile.getContentDir(profileName))) {
+            initializeDatabase(profileName, dataSource);
+        }
+    }
+
+    private void initializeDatabase(String profileName, JdbcDataSource dataSource) throws ProfileLoadException {
         try (
                 InputStream in = JdbcDataSourceFactory.class.getResourceAsStream("/sql/schema.sql");
                 Connection conn = dataSource.getConnection()
@@ -91,14 +121,17 @@ public class JdbcDataSourceFactory implements DataSourceFactory {
             }
         } catch (IOException e) {
             log.error("IO Exception when trying to create database.", e);
+            dataSource.close();
             FileUtil.deleteIfPossible(getDatabaseFile(profileName));
             throw new ProfileLoadException("Failed to read SQL data to create database schema.", e);
         } catch (SQLException e) {
             log.error("SQL Exception when trying to create database.", e);
+            dataSource.close();
             FileUtil.deleteIfPossible(getDatabaseFile(profileName));
             throw new ProfileLoadException("Failed to create the database due to an SQL error.", e);
         }
         if (!testConnection(dataSource)) {
+            dataSource.close();
             FileUtil.deleteIfPossible(getDatabaseFile(profileName));
             throw new ProfileLoadException("Testing the database connection failed.");
         }
@@ -191,6 +224,7 @@ public class JdbcDataSourceFactory implements DataSourceFactory {
                 version++;
             } catch (Exception e) {
                 log.error("Migration from version " + version + " to " + (version+1) + " failed!", e);
+                dataSource.close(); // Release all pooled connections before touching the database file.
                 log.debug("Restoring database from pre-migration backup.");
                 FileUtil.deleteIfPossible(getDatabaseFile(profileName));
                 try {
@@ -203,6 +237,7 @@ public class JdbcDataSourceFactory implements DataSourceFactory {
                 throw new ProfileLoadException("Migration failed and data restored to pre-migration state.", e);
             }
         }
+        dataSource.close();
         try {
             writeCurrentSchemaVersion(profileName);
         } catch (IOException e) {
@@ -234,7 +269,7 @@ public class JdbcDataSourceFactory implements DataSourceFactory {
         return Profile.getDir(profileName).resolve("database.mv.db");
     }
 
-    private static String getJdbcUrl(String profileName) {
+    static String getJdbcUrl(String profileName) {
         String dbPathAbs = getDatabaseFile(profileName).toAbsolutePath().toString();
         return "jdbc:h2:" + dbPathAbs.substring(0, dbPathAbs.length() - 6);
     }
@@ -15,6 +15,14 @@ import java.util.List;
 import java.util.Optional;
 
 public record JdbcHistoryRepository(Connection conn) implements HistoryRepository {
+    /**
+     * Selects history items together with their type-specific data, as is
+     * expected by {@link #parseItem(ResultSet)}.
+     */
+    private static final String ITEM_SELECT = """
+            SELECT hi.*, (SELECT hit.description FROM history_item_text hit WHERE hit.id = hi.id) AS description
+            FROM history_item hi""";
+
     @Override
     public long getOrCreateHistoryForAccount(long accountId) {
         return getOrCreateHistoryForEntity(accountId, "history_account", "account_id");
@@ -70,7 +78,7 @@ public record JdbcHistoryRepository(Connection conn) implements HistoryRepositor
     public Optional<HistoryItem> getItem(long id) {
         return DbUtil.findById(
                 conn,
-                "SELECT * FROM history_item WHERE id = ?",
+                ITEM_SELECT + " WHERE hi.id = ?",
                 id,
                 JdbcHistoryRepository::parseItem
         );
@@ -90,7 +98,7 @@ public record JdbcHistoryRepository(Connection conn) implements HistoryRepositor
     public Page<HistoryItem> getItems(long historyId, PageRequest pagination) {
         return DbUtil.findAll(
                 conn,
-                "SELECT * FROM history_item WHERE history_id = ?",
+                ITEM_SELECT + " WHERE hi.history_id = ?",
                 pagination,
                 List.of(historyId),
                 JdbcHistoryRepository::parseItem
@@ -101,11 +109,7 @@ public record JdbcHistoryRepository(Connection conn) implements HistoryRepositor
     public List<HistoryItem> getNItemsBefore(long historyId, int n, LocalDateTime timestamp) {
         return DbUtil.findAll(
                 conn,
-                """
-                        SELECT *
-                        FROM history_item
-                        WHERE history_id = ? AND timestamp <= ?
-                        ORDER BY timestamp DESC""",
+                ITEM_SELECT + " WHERE hi.history_id = ? AND hi.timestamp <= ? ORDER BY hi.timestamp DESC",
                 List.of(historyId, DbUtil.timestampFromUtcLDT(timestamp)),
                 JdbcHistoryRepository::parseItem
         );
@@ -116,19 +120,20 @@ public record JdbcHistoryRepository(Connection conn) implements HistoryRepositor
         conn.close();
     }
 
+    /**
+     * Parses a history item from a row that includes its type-specific data,
+     * like those selected with {@link #ITEM_SELECT}.
+     * @param rs The result set to parse from.
+     * @return The history item.
+     * @throws SQLException If the item's type is unknown.
+     */
     public static HistoryItem parseItem(ResultSet rs) throws SQLException {
-        long id = rs.getLong(1);
-        long historyId = rs.getLong(2);
-        LocalDateTime timestamp = DbUtil.utcLDTFromTimestamp(rs.getTimestamp(3));
-        String type = rs.getString(4);
+        long id = rs.getLong("id");
+        long historyId = rs.getLong("history_id");
+        LocalDateTime timestamp = DbUtil.utcLDTFromTimestamp(rs.getTimestamp("timestamp"));
+        String type = rs.getString("type");
         if (type.equalsIgnoreCase(HistoryItem.Type.TEXT.name())) {
-            String description = DbUtil.findOne(
-                    rs.getStatement().getConnection(),
-                    "SELECT description FROM history_item_text WHERE id = ?",
-                    List.of(id),
-                    r -> r.getString(1)
-            ).orElseThrow();
-            return new HistoryTextItem(id, historyId, timestamp, description);
+            return new HistoryTextItem(id, historyId, timestamp, rs.getString("description"));
         }
         throw new SQLException("Unknown history item type: " + type);
     }
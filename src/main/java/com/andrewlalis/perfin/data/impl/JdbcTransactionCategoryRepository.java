@@ -1,5 +1,6 @@
 package com.andrewlalis.perfin.data.impl;
 
+import com.andrewlalis.perfin.data.CategoryTree;
 import com.andrewlalis.perfin.data.TransactionCategoryRepository;
 import com.andrewlalis.perfin.data.util.ColorUtil;
 import com.andrewlalis.perfin.data.util.DbUtil;
@@ -9,11 +10,18 @@ import javafx.scene.paint.Color;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
-public record JdbcTransactionCategoryRepository(Connection conn) implements TransactionCategoryRepository {
+/**
+ * JDBC implementation of the transaction category repository. Tree lookups go
+ * through a {@link ReferenceDataCache} that's shared with the rest of the data
+ * source, which is invalidated by every write to the categories.
+ * @param conn The connection to use.
+ * @param cache The reference data cache to use.
+ */
+public record JdbcTransactionCategoryRepository(Connection conn, ReferenceDataCache cache) implements TransactionCategoryRepository {
     @Override
     public Optional<TransactionCategory> findById(long id) {
         return DbUtil.findById(
@@ -54,27 +62,29 @@ public record JdbcTransactionCategoryRepository(Connection conn) implements Tran
 
     @Override
     public TransactionCategory findRoot(long categoryId) {
-        TransactionCategory category = findById(categoryId).orElse(null);
-        if (category == null || category.getParentId() == null) return category;
-        return findRoot(category.getParentId());
+        return getCategoryTree().getRoot(categoryId);
     }
 
     @Override
     public long insert(long parentId, String name, Color color) {
-        return DbUtil.insertOne(
+        long id = DbUtil.insertOne(
                 conn,
                 "INSERT INTO transaction_category (parent_id, name, color) VALUES (?, ?, ?)",
                 List.of(parentId, name, ColorUtil.toHex(color))
         );
+        cache.invalidate(ReferenceDataCache.CATEGORY_TREE);
+        return id;
     }
 
     @Override
     public long insert(String name, Color color) {
-        return DbUtil.insertOne(
+        long id = DbUtil.insertOne(
                 conn,
                 "INSERT INTO transaction_category (name, color) VALUES (?, ?)",
                 List.of(name, ColorUtil.toHex(color))
         );
+        cache.invalidate(ReferenceDataCache.CATEGORY_TREE);
+        return id;
     }
 
     @Override
@@ -88,6 +98,8 @@ public record JdbcTransactionCategoryRepository(Connection conn) implements Tran
                         name,
                         id
                 );
+                var searchIndex = new JdbcTransactionSearchIndex(conn);
+                searchIndex.transactionsChanged(searchIndex.findTransactionIds("t.category_id = ?", id));
             }
             if (!category.getColor().equals(color)) {
                 DbUtil.updateOne(
@@ -97,45 +109,52 @@ public record JdbcTransactionCategoryRepository(Connection conn) implements Tran
                         id
                 );
             }
+            cache.invalidate(ReferenceDataCache.CATEGORY_TREE);
         });
+        // Invalidate again once committed, in case the tree was loaded in the meantime.
+        cache.invalidate(ReferenceDataCache.CATEGORY_TREE);
     }
 
     @Override
     public void deleteById(long id) {
-        DbUtil.updateOne(conn, "DELETE FROM transaction_category WHERE id = ?", id);
+        DbUtil.doTransaction(conn, () -> {
+            // Deleting a category also deletes its subcategories, so re-index the transactions of all of them.
+            Long[] categoryIds = getCategoryTree().getDescendantIds(id).toArray(Long[]::new);
+            var searchIndex = new JdbcTransactionSearchIndex(conn);
+            var rollupRepo = new JdbcTransactionRollupRepository(conn);
+            // Transactions lose the category, and line items in it are deleted.
+            String affectedCondition = """
+                    t.category_id = ANY(?) OR t.id IN (
+                        SELECT tli.transaction_id FROM transaction_line_item tli WHERE tli.category_id = ANY(?)
+                    )""";
+            List<Long> transactionIds = List.of();
+            List<LocalDate> affectedDays = List.of();
+            if (categoryIds.length > 0) {
+                transactionIds = searchIndex.findTransactionIds(affectedCondition, categoryIds, categoryIds);
+                affectedDays = rollupRepo.findDays(affectedCondition, categoryIds, categoryIds);
+            }
+            DbUtil.updateOne(conn, "DELETE FROM transaction_category WHERE id = ?", id);
+            searchIndex.transactionsChanged(transactionIds);
+            rollupRepo.daysChanged(affectedDays);
+            cache.invalidate(ReferenceDataCache.CATEGORY_TREE);
+        });
+        cache.invalidate(ReferenceDataCache.CATEGORY_TREE);
     }
 
     @Override
     public List<CategoryTreeNode> findTree() {
-        List<TransactionCategory> rootCategories = DbUtil.findAll(
-                conn,
-                "SELECT * FROM transaction_category WHERE parent_id IS NULL ORDER BY name ASC",
-                JdbcTransactionCategoryRepository::parseCategory
-        );
-        List<CategoryTreeNode> rootNodes = new ArrayList<>(rootCategories.size());
-        for (var category : rootCategories) {
-            rootNodes.add(findTreeRecursive(category));
-        }
-        return rootNodes;
+        return getCategoryTree().getRootNodes();
     }
 
     @Override
     public CategoryTreeNode findTree(TransactionCategory root) {
-        return findTreeRecursive(root);
+        return getCategoryTree().findNode(root.id)
+                .orElseGet(() -> new CategoryTreeNode(root, List.of()));
     }
 
-    private CategoryTreeNode findTreeRecursive(TransactionCategory root) {
-        CategoryTreeNode node = new CategoryTreeNode(root, new ArrayList<>());
-        List<TransactionCategory> childCategories = DbUtil.findAll(
-                conn,
-                "SELECT * FROM transaction_category WHERE parent_id = ? ORDER BY name ASC",
-                List.of(root.id),
-                JdbcTransactionCategoryRepository::parseCategory
-        );
-        for (var childCategory : childCategories) {
-            node.children().add(findTreeRecursive(childCategory));
-        }
-        return node;
+    @Override
+    public CategoryTree getCategoryTree() {
+        return cache.get(conn, ReferenceDataCache.CATEGORY_TREE, () -> CategoryTree.of(findAll()));
     }
 
     @Override
@@ -6,6 +6,7 @@ import com.andrewlalis.perfin.data.pagination.PageRequest;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
 import com.andrewlalis.perfin.data.util.DateUtil;
 import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.data.util.Pair;
 import com.andrewlalis.perfin.data.util.UncheckedSqlException;
 import com.andrewlalis.perfin.model.*;
 import javafx.scene.paint.Color;
@@ -14,11 +15,12 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public record JdbcTransactionRepository(Connection conn, Path contentDir) implements TransactionRepository {
+public record JdbcTransactionRepository(Connection conn, Path contentDir, ReferenceDataCache referenceDataCache) implements TransactionRepository {
     @Override
     public long insert(
             LocalDateTime utcTimestamp,
@@ -32,7 +34,7 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
             List<TransactionLineItem> lineItems,
             List<Path> attachments
     ) {
-        return DbUtil.doTransaction(conn, () -> {
+        long id = DbUtil.doTransaction(conn, () -> {
             Long vendorId = null;
             if (vendor != null && !vendor.isBlank()) {
                 vendorId = getOrCreateVendorId(vendor.strip());
@@ -95,12 +97,19 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
             TransactionLineItemRepository lineItemRepo = new JdbcTransactionLineItemRepository(conn);
             lineItemRepo.saveItems(txId, lineItems);
 
+            new JdbcTransactionRollupRepository(conn).daysChanged(List.of(
+                    JdbcTransactionRollupRepository.rollupDay(utcTimestamp)
+            ));
+            new JdbcTransactionSearchIndex(conn).transactionsChanged(List.of(txId));
             return txId;
         });
+        // A new category, vendor or tag may have been created, so invalidate those once committed.
+        invalidateReferenceData(vendor, category, tags);
+        return id;
     }
 
     private long getOrCreateVendorId(String name) {
-        var repo = new JdbcTransactionVendorRepository(conn);
+        var repo = new JdbcTransactionVendorRepository(conn, referenceDataCache);
         TransactionVendor vendor = repo.findByName(name).orElse(null);
         if (vendor != null) {
             return vendor.id;
@@ -109,7 +118,7 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
     }
 
     private long getOrCreateCategoryId(String name) {
-        var repo = new JdbcTransactionCategoryRepository(conn);
+        var repo = new JdbcTransactionCategoryRepository(conn, referenceDataCache);
         TransactionCategory category = repo.findByName(name).orElse(null);
         if (category != null) {
             return category.id;
@@ -219,6 +228,88 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
         return new CreditAndDebitAccounts(creditAccount, debitAccount);
     }
 
+    @Override
+    public List<TransactionSummary> findSummaries(List<Transaction> transactions) {
+        if (transactions.isEmpty()) return Collections.emptyList();
+        Object ids = transactions.stream().map(tx -> tx.id).distinct().toArray(Long[]::new);
+        record Details(TransactionVendor vendor, TransactionCategory category, List<String> tags, int attachmentCount) {}
+        List<Pair<Long, Details>> detailsRows = DbUtil.findAll(
+                conn,
+                """
+                SELECT t.id,
+                    v.id, v.name, v.description,
+                    c.id, c.parent_id, c.name, c.color,
+                    ARRAY(
+                        SELECT tt.name
+                        FROM transaction_tag_join ttj
+                        JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                        WHERE ttj.transaction_id = t.id
+                        ORDER BY tt.name
+                    ),
+                    (SELECT COUNT(ta.attachment_id) FROM transaction_attachment ta WHERE ta.transaction_id = t.id)
+                FROM transaction t
+                LEFT JOIN transaction_vendor v ON v.id = t.vendor_id
+                LEFT JOIN transaction_category c ON c.id = t.category_id
+                WHERE t.id = ANY(?)""",
+                List.of(ids),
+                rs -> {
+                    TransactionVendor vendor = null;
+                    long vendorId = rs.getLong(2);
+                    if (!rs.wasNull()) vendor = new TransactionVendor(vendorId, rs.getString(3), rs.getString(4));
+                    TransactionCategory category = null;
+                    long categoryId = rs.getLong(5);
+                    if (!rs.wasNull()) {
+                        Long parentId = rs.getLong(6);
+                        if (rs.wasNull()) parentId = null;
+                        category = new TransactionCategory(categoryId, parentId, rs.getString(7), Color.valueOf("#" + rs.getString(8)));
+                    }
+                    List<String> tags = new ArrayList<>();
+                    for (Object tag : (Object[]) rs.getArray(9).getArray()) {
+                        tags.add((String) tag);
+                    }
+                    return new Pair<>(rs.getLong(1), new Details(vendor, category, tags, rs.getInt(10)));
+                }
+        );
+        Map<Long, Details> detailsById = new HashMap<>();
+        for (var row : detailsRows) {
+            detailsById.put(row.first(), row.second());
+        }
+        record LinkedAccountRow(long transactionId, AccountEntry.Type type, Account account) {}
+        List<LinkedAccountRow> linkedAccountRows = DbUtil.findAll(
+                conn,
+                """
+                SELECT account_entry.transaction_id, account_entry.type, account.*
+                FROM account_entry
+                JOIN account ON account.id = account_entry.account_id
+                WHERE account_entry.transaction_id = ANY(?)""",
+                List.of(ids),
+                rs -> new LinkedAccountRow(
+                        rs.getLong(1),
+                        AccountEntry.Type.valueOf(rs.getString(2)),
+                        JdbcAccountRepository.parseAccount(rs)
+                )
+        );
+        Map<Long, Account> creditAccounts = new HashMap<>();
+        Map<Long, Account> debitAccounts = new HashMap<>();
+        for (var row : linkedAccountRows) {
+            var accounts = row.type() == AccountEntry.Type.CREDIT ? creditAccounts : debitAccounts;
+            accounts.put(row.transactionId(), row.account());
+        }
+        List<TransactionSummary> summaries = new ArrayList<>(transactions.size());
+        for (var tx : transactions) {
+            Details details = detailsById.getOrDefault(tx.id, new Details(null, null, Collections.emptyList(), 0));
+            summaries.add(new TransactionSummary(
+                    tx,
+                    new CreditAndDebitAccounts(creditAccounts.get(tx.id), debitAccounts.get(tx.id)),
+                    details.category(),
+                    details.vendor(),
+                    Collections.unmodifiableList(details.tags()),
+                    details.attachmentCount()
+            ));
+        }
+        return summaries;
+    }
+
     @Override
     public List<Attachment> findAttachments(long transactionId) {
         return DbUtil.findAll(
@@ -251,20 +342,51 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
 
     @Override
     public List<String> findAllTags() {
-        return DbUtil.findAll(
+        return referenceDataCache.get(conn, ReferenceDataCache.TAGS, () -> List.copyOf(DbUtil.findAll(
                 conn,
                 "SELECT name FROM transaction_tag ORDER BY name ASC",
                 rs -> rs.getString(1)
-        );
+        )));
     }
 
     @Override
     public void deleteTag(String name) {
-        DbUtil.update(
-                conn,
-                "DELETE FROM transaction_tag WHERE name = ?",
-                name
-        );
+        DbUtil.doTransaction(conn, () -> {
+            var rollupRepo = new JdbcTransactionRollupRepository(conn);
+            List<LocalDate> affectedDays = Collections.emptyList();
+            if (name.equals("!exclude")) {
+                // Transactions with this tag will now show up in analytics.
+                affectedDays = rollupRepo.findDays(
+                        """
+                        EXISTS (
+                            SELECT ttj.tag_id
+                            FROM transaction_tag_join ttj
+                            JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                            WHERE ttj.transaction_id = t.id AND tt.name = ?
+                        )""",
+                        name
+                );
+            }
+            var searchIndex = new JdbcTransactionSearchIndex(conn);
+            List<Long> taggedTransactionIds = searchIndex.findTransactionIds(
+                    """
+                    t.id IN (
+                        SELECT ttj.transaction_id
+                        FROM transaction_tag_join ttj
+                        JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                        WHERE tt.name = ?
+                    )""",
+                    name
+            );
+            DbUtil.update(
+                    conn,
+                    "DELETE FROM transaction_tag WHERE name = ?",
+                    name
+            );
+            rollupRepo.daysChanged(affectedDays);
+            searchIndex.transactionsChanged(taggedTransactionIds);
+        });
+        referenceDataCache.invalidate(ReferenceDataCache.TAGS);
     }
 
     @Override
@@ -282,8 +404,11 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
     @Override
     public void delete(long transactionId) {
         DbUtil.doTransaction(conn, () -> {
+            var rollupRepo = new JdbcTransactionRollupRepository(conn);
+            List<LocalDate> affectedDays = rollupRepo.findDays("t.id = ?", transactionId);
+            new JdbcAccountEntryRepository(conn).deleteAllByTransactionId(transactionId);
             DbUtil.updateOne(conn, "DELETE FROM transaction WHERE id = ?", List.of(transactionId));
-            DbUtil.update(conn, "DELETE FROM account_entry WHERE transaction_id = ?", List.of(transactionId));
+            rollupRepo.daysChanged(affectedDays);
         });
         new JdbcAttachmentRepository(conn, contentDir).deleteAllOrphans();
     }
@@ -306,8 +431,8 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
         DbUtil.doTransaction(conn, () -> {
             var entryRepo = new JdbcAccountEntryRepository(conn);
             var attachmentRepo = new JdbcAttachmentRepository(conn, contentDir);
-            var vendorRepo = new JdbcTransactionVendorRepository(conn);
-            var categoryRepo = new JdbcTransactionCategoryRepository(conn);
+            var vendorRepo = new JdbcTransactionVendorRepository(conn, referenceDataCache);
+            var categoryRepo = new JdbcTransactionCategoryRepository(conn, referenceDataCache);
 
             Transaction tx = findById(id).orElseThrow();
             CreditAndDebitAccounts currentLinkedAccounts = findLinkedAccounts(id);
@@ -342,7 +467,7 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
                     !currentLinkedAccounts.equals(linkedAccounts);
             if (shouldUpdateAccountEntries) {
                 // Delete all entries and re-write them correctly.
-                DbUtil.update(conn, "DELETE FROM account_entry WHERE transaction_id = ?", id);
+                entryRepo.deleteAllByTransactionId(id);
                 linkedAccounts.ifCredit(acc -> entryRepo.insert(utcTimestamp, acc.id, id, scaledAmount, AccountEntry.Type.CREDIT, currency));
                 linkedAccounts.ifDebit(acc -> entryRepo.insert(utcTimestamp, acc.id, id, scaledAmount, AccountEntry.Type.DEBIT, currency));
                 updateMessages.add("Updated linked accounts.");
@@ -403,6 +528,11 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
                 lineItemRepo.saveItems(tx.id, lineItems);
                 updateMessages.add("Updated line items.");
             }
+            new JdbcTransactionRollupRepository(conn).daysChanged(List.of(
+                    JdbcTransactionRollupRepository.rollupDay(tx.getTimestamp()),
+                    JdbcTransactionRollupRepository.rollupDay(utcTimestamp)
+            ));
+            new JdbcTransactionSearchIndex(conn).transactionsChanged(List.of(tx.id));
 
             // Add a text history item to any linked accounts detailing the changes.
             String updateMessageStr = "Transaction #" + tx.id + " was updated:\n" + String.join("\n", updateMessages);
@@ -410,6 +540,18 @@ public record JdbcTransactionRepository(Connection conn, Path contentDir) implem
             long historyId = historyRepo.getOrCreateHistoryForTransaction(id);
             historyRepo.addTextItem(historyId, updateMessageStr);
         });
+        invalidateReferenceData(vendor, category, tags);
+    }
+
+    private void invalidateReferenceData(String vendor, String category, Set<String> tags) {
+        if (vendor != null) referenceDataCache.invalidate(ReferenceDataCache.VENDORS);
+        if (category != null) referenceDataCache.invalidate(ReferenceDataCache.CATEGORY_TREE);
+        if (!tags.isEmpty()) referenceDataCache.invalidate(ReferenceDataCache.TAGS);
+    }
+
+    @Override
+    public void rebuildSearchIndex() {
+        new JdbcTransactionSearchIndex(conn).rebuildAll();
     }
 
     @Override
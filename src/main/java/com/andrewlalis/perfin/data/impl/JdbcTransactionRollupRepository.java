@@ -0,0 +1,182 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.TransactionRollupRepository;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.AccountEntry;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * JDBC implementation of the transaction rollup repository. Besides the public
+ * repository methods, this class offers a few methods that other JDBC
+ * repositories call to keep the rollup up-to-date, from within the same
+ * transaction as the change that they make.
+ * <p>
+ *     Rollup days are the dates of the timestamps <em>as stored in the
+ *     database</em>, so that they line up exactly with the timestamps that
+ *     the {@link JdbcAnalyticsRepository} compares against. Whenever anything
+ *     about a transaction changes, we simply re-compute the rollup for the
+ *     day(s) it's on, since a day's worth of transactions is cheap to read.
+ * </p>
+ */
+public record JdbcTransactionRollupRepository(Connection conn) implements TransactionRollupRepository {
+    /**
+     * Query that computes rollup rows from transactions. Each transaction
+     * counts towards each of its account entries' types, where any line items
+     * count towards their own category, and the rest of the transaction's
+     * amount towards the transaction's category. Transactions tagged with
+     * "!exclude" are left out entirely.
+     */
+    private static final String ROLLUP_QUERY = """
+            SELECT CAST(part.timestamp AS DATE), part.currency, ae.type, part.category_id, part.vendor_id, SUM(part.amount)
+            FROM (
+                SELECT
+                    t.id AS transaction_id, t.timestamp, t.currency, t.category_id, t.vendor_id,
+                    t.amount - COALESCE(
+                        (
+                            SELECT SUM(tli.value_per_item * tli.quantity)
+                            FROM transaction_line_item tli
+                            WHERE tli.transaction_id = t.id
+                        ),
+                        0
+                    ) AS amount
+                FROM transaction t
+                WHERE
+                    %1$s
+                    NOT EXISTS (
+                        SELECT ttj.tag_id
+                        FROM transaction_tag_join ttj
+                        JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                        WHERE ttj.transaction_id = t.id AND tt.name = '!exclude'
+                    )
+                    UNION ALL
+                SELECT
+                    t.id, t.timestamp, t.currency, tli.category_id, t.vendor_id,
+                    tli.value_per_item * tli.quantity
+                FROM transaction_line_item tli
+                JOIN transaction t ON t.id = tli.transaction_id
+                WHERE
+                    %1$s
+                    NOT EXISTS (
+                        SELECT ttj.tag_id
+                        FROM transaction_tag_join ttj
+                        JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                        WHERE ttj.transaction_id = t.id AND tt.name = '!exclude'
+                    )
+            ) part
+            JOIN account_entry ae ON ae.transaction_id = part.transaction_id
+            GROUP BY CAST(part.timestamp AS DATE), part.currency, ae.type, part.category_id, part.vendor_id
+            HAVING SUM(part.amount) <> 0""";
+    private static final String INSERT = "INSERT INTO transaction_rollup (transaction_date, currency, type, category_id, vendor_id, amount)\n";
+
+    @Override
+    public void rebuildAll() {
+        DbUtil.doTransaction(conn, () -> {
+            DbUtil.update(conn, "DELETE FROM transaction_rollup");
+            DbUtil.update(conn, INSERT + ROLLUP_QUERY.formatted(""));
+        });
+    }
+
+    @Override
+    public List<Inconsistency> findInconsistencies() {
+        Map<RollupKey, BigDecimal> rollupAmounts = new HashMap<>();
+        for (var row : DbUtil.findAll(conn, "SELECT transaction_date, currency, type, category_id, vendor_id, amount FROM transaction_rollup", JdbcTransactionRollupRepository::parseRow)) {
+            rollupAmounts.merge(row.key(), row.amount(), BigDecimal::add);
+        }
+        Map<RollupKey, BigDecimal> transactionAmounts = new HashMap<>();
+        for (var row : DbUtil.findAll(conn, ROLLUP_QUERY.formatted(""), JdbcTransactionRollupRepository::parseRow)) {
+            transactionAmounts.merge(row.key(), row.amount(), BigDecimal::add);
+        }
+        Set<RollupKey> keys = new HashSet<>(rollupAmounts.keySet());
+        keys.addAll(transactionAmounts.keySet());
+        List<Inconsistency> inconsistencies = new ArrayList<>();
+        for (var key : keys) {
+            BigDecimal rollupAmount = rollupAmounts.getOrDefault(key, BigDecimal.ZERO);
+            BigDecimal transactionAmount = transactionAmounts.getOrDefault(key, BigDecimal.ZERO);
+            if (rollupAmount.compareTo(transactionAmount) != 0) {
+                inconsistencies.add(new Inconsistency(
+                        key.day(), key.currency(), key.type(), key.categoryId(), key.vendorId(),
+                        rollupAmount, transactionAmount
+                ));
+            }
+        }
+        inconsistencies.sort(Comparator.comparing(Inconsistency::day));
+        return inconsistencies;
+    }
+
+    @Override
+    public long countAll() {
+        return DbUtil.count(conn, "SELECT COUNT(transaction_date) FROM transaction_rollup");
+    }
+
+    @Override
+    public void close() throws Exception {
+        conn.close();
+    }
+
+    /**
+     * Gets the rollup day that a transaction with the given timestamp belongs
+     * to.
+     * @param utcTimestamp The transaction's timestamp.
+     * @return The rollup day.
+     */
+    static LocalDate rollupDay(LocalDateTime utcTimestamp) {
+        return DbUtil.timestampFromUtcLDT(utcTimestamp).toLocalDateTime().toLocalDate();
+    }
+
+    /**
+     * Re-computes the rollup for the given days. This should be called after
+     * any transactions on those days have been changed or removed.
+     * @param days The days to re-compute.
+     */
+    void daysChanged(Collection<LocalDate> days) {
+        for (LocalDate day : new HashSet<>(days)) {
+            var start = day.atStartOfDay();
+            var end = day.plusDays(1).atStartOfDay();
+            DbUtil.update(conn, "DELETE FROM transaction_rollup WHERE transaction_date = ?", day);
+            DbUtil.update(
+                    conn,
+                    INSERT + ROLLUP_QUERY.formatted("t.timestamp >= ? AND t.timestamp < ? AND"),
+                    start, end, start, end
+            );
+        }
+    }
+
+    /**
+     * Finds the rollup days of all transactions that match a condition.
+     * @param condition An SQL condition on the transaction, aliased as "t".
+     * @param args The arguments to the condition.
+     * @return The list of distinct days.
+     */
+    List<LocalDate> findDays(String condition, Object... args) {
+        return DbUtil.findAll(
+                conn,
+                "SELECT DISTINCT CAST(t.timestamp AS DATE) FROM transaction t WHERE " + condition,
+                List.of(args),
+                rs -> rs.getObject(1, LocalDate.class)
+        );
+    }
+
+    private record RollupKey(LocalDate day, Currency currency, AccountEntry.Type type, Long categoryId, Long vendorId) {}
+
+    private record RollupRow(RollupKey key, BigDecimal amount) {}
+
+    private static RollupRow parseRow(ResultSet rs) throws SQLException {
+        return new RollupRow(
+                new RollupKey(
+                        rs.getObject(1, LocalDate.class),
+                        Currency.getInstance(rs.getString(2)),
+                        AccountEntry.Type.valueOf(rs.getString(3)),
+                        rs.getObject(4, Long.class),
+                        rs.getObject(5, Long.class)
+                ),
+                rs.getBigDecimal(6)
+        );
+    }
+}
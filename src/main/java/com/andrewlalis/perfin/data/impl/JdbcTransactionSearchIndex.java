@@ -0,0 +1,179 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.data.util.UncheckedSqlException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * An inverted index of the words that appear in each transaction's
+ * description, vendor name, category name, tags and line item descriptions.
+ * Each word that's found for a transaction is stored once, with a weight that
+ * depends on where it was found, so that searching for a word (or the start
+ * of one) is an index lookup instead of a scan over all transactions. The
+ * weights are used to rank search results, with {@link #rankQuery(int)}.
+ * <p>
+ *     The JDBC repositories that change any of the indexed text re-index the
+ *     affected transactions from within the same transaction as the change.
+ * </p>
+ */
+public record JdbcTransactionSearchIndex(Connection conn) {
+    public static final int TERM_MAX_LENGTH = 63;
+
+    private static final int VENDOR_WEIGHT = 4;
+    private static final int CATEGORY_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 2;
+    private static final int LINE_ITEM_WEIGHT = 1;
+
+    /**
+     * The number of transactions to index at once when rebuilding the index.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Splits some text into the lowercase words that we index, ignoring any
+     * punctuation and whitespace.
+     * @param text The text to split.
+     * @return The list of terms, in the order they appear.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return Collections.emptyList();
+        List<String> terms = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            terms.add(word.length() > TERM_MAX_LENGTH ? word.substring(0, TERM_MAX_LENGTH) : word);
+        }
+        return terms;
+    }
+
+    /**
+     * Discards and re-computes the entire index.
+     */
+    public void rebuildAll() {
+        DbUtil.doTransaction(conn, () -> {
+            DbUtil.update(conn, "DELETE FROM transaction_search_term");
+            List<Long> ids = DbUtil.findAll(conn, "SELECT id FROM transaction ORDER BY id", rs -> rs.getLong(1));
+            for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+                insertTerms(ids.subList(i, Math.min(i + BATCH_SIZE, ids.size())));
+            }
+        });
+    }
+
+    /**
+     * Re-indexes the given transactions. This should be called after anything
+     * that's indexed has changed for them. Transactions that no longer exist
+     * are simply removed from the index.
+     * @param transactionIds The ids of the transactions to re-index.
+     */
+    public void transactionsChanged(Collection<Long> transactionIds) {
+        List<Long> ids = List.copyOf(new HashSet<>(transactionIds));
+        for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+            var batch = ids.subList(i, Math.min(i + BATCH_SIZE, ids.size()));
+            DbUtil.update(conn, "DELETE FROM transaction_search_term WHERE transaction_id IN (" + idList(batch) + ")");
+            insertTerms(batch);
+        }
+    }
+
+    /**
+     * Finds the ids of all transactions that match a condition, so that they
+     * can be re-indexed after a change.
+     * @param condition An SQL condition on the transaction, aliased as "t".
+     * @param args The arguments to the condition.
+     * @return The list of transaction ids.
+     */
+    public List<Long> findTransactionIds(String condition, Object... args) {
+        return DbUtil.findAll(
+                conn,
+                "SELECT t.id FROM transaction t WHERE " + condition,
+                List.of(args),
+                rs -> rs.getLong(1)
+        );
+    }
+
+    /**
+     * Gets a query that scores the transactions matching a search, where
+     * every term in the search must match the start of a word in the
+     * transaction. Each term adds the weight of the best place that it was
+     * found, so vendor names count the most, then categories and tags, then
+     * descriptions and line items. The query gives "transaction_id" and
+     * "score" columns, and takes one "term%" pattern argument per term.
+     * @param termCount The number of distinct terms in the search.
+     * @return The query.
+     */
+    public static String rankQuery(int termCount) {
+        if (termCount < 1) throw new IllegalArgumentException("At least one term is needed.");
+        String termQuery = "SELECT transaction_id, MAX(weight) AS weight FROM transaction_search_term WHERE term LIKE ? GROUP BY transaction_id";
+        return """
+                SELECT m.transaction_id, SUM(m.weight) AS score
+                FROM (%s) m
+                GROUP BY m.transaction_id
+                HAVING COUNT(*) = %d""".formatted(String.join(" UNION ALL ", Collections.nCopies(termCount, termQuery)), termCount);
+    }
+
+    private void insertTerms(List<Long> transactionIds) {
+        if (transactionIds.isEmpty()) return;
+        String ids = idList(transactionIds);
+        Map<Long, Map<String, Integer>> weights = new HashMap<>();
+        DbUtil.findAll(
+                conn,
+                """
+                SELECT t.id, t.description, v.name, c.name
+                FROM transaction t
+                LEFT JOIN transaction_vendor v ON v.id = t.vendor_id
+                LEFT JOIN transaction_category c ON c.id = t.category_id
+                WHERE t.id IN (%s)""".formatted(ids),
+                rs -> {
+                    long id = rs.getLong(1);
+                    addTerms(weights, id, rs.getString(2), DESCRIPTION_WEIGHT);
+                    addTerms(weights, id, rs.getString(3), VENDOR_WEIGHT);
+                    addTerms(weights, id, rs.getString(4), CATEGORY_WEIGHT);
+                    return null;
+                }
+        );
+        DbUtil.findAll(
+                conn,
+                """
+                SELECT ttj.transaction_id, tt.name
+                FROM transaction_tag_join ttj
+                JOIN transaction_tag tt ON tt.id = ttj.tag_id
+                WHERE ttj.transaction_id IN (%s)""".formatted(ids),
+                rs -> {
+                    addTerms(weights, rs.getLong(1), rs.getString(2), TAG_WEIGHT);
+                    return null;
+                }
+        );
+        DbUtil.findAll(
+                conn,
+                "SELECT transaction_id, description FROM transaction_line_item WHERE transaction_id IN (%s)".formatted(ids),
+                rs -> {
+                    addTerms(weights, rs.getLong(1), rs.getString(2), LINE_ITEM_WEIGHT);
+                    return null;
+                }
+        );
+        try (var stmt = conn.prepareStatement("INSERT INTO transaction_search_term (transaction_id, term, weight) VALUES (?, ?, ?)")) {
+            for (var entry : weights.entrySet()) {
+                for (var termWeight : entry.getValue().entrySet()) {
+                    DbUtil.setArgs(stmt, entry.getKey(), termWeight.getKey(), termWeight.getValue());
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    private static void addTerms(Map<Long, Map<String, Integer>> weights, long transactionId, String text, int weight) {
+        for (String term : tokenize(text)) {
+            weights.computeIfAbsent(transactionId, id -> new HashMap<>()).merge(term, weight, Math::max);
+        }
+    }
+
+    private static String idList(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
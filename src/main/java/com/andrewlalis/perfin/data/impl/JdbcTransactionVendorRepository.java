@@ -11,7 +11,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
-public record JdbcTransactionVendorRepository(Connection conn) implements TransactionVendorRepository {
+public record JdbcTransactionVendorRepository(Connection conn, ReferenceDataCache cache) implements TransactionVendorRepository {
     @Override
     public Optional<TransactionVendor> findById(long id) {
         return DbUtil.findById(
@@ -34,29 +34,33 @@ public record JdbcTransactionVendorRepository(Connection conn) implements Transa
 
     @Override
     public List<TransactionVendor> findAll() {
-        return DbUtil.findAll(
+        return cache.get(conn, ReferenceDataCache.VENDORS, () -> List.copyOf(DbUtil.findAll(
                 conn,
                 "SELECT * FROM transaction_vendor ORDER BY name ASC",
                 JdbcTransactionVendorRepository::parseVendor
-        );
+        )));
     }
 
     @Override
     public long insert(String name, String description) {
-        return DbUtil.insertOne(
+        long id = DbUtil.insertOne(
                 conn,
                 "INSERT INTO transaction_vendor (name, description) VALUES (?, ?)",
                 List.of(name, description)
         );
+        cache.invalidate(ReferenceDataCache.VENDORS);
+        return id;
     }
 
     @Override
     public long insert(String name) {
-        return DbUtil.insertOne(
+        long id = DbUtil.insertOne(
                 conn,
                 "INSERT INTO transaction_vendor (name) VALUES (?)",
                 List.of(name)
         );
+        cache.invalidate(ReferenceDataCache.VENDORS);
+        return id;
     }
 
     @Override
@@ -70,6 +74,8 @@ public record JdbcTransactionVendorRepository(Connection conn) implements Transa
                         name,
                         id
                 );
+                var searchIndex = new JdbcTransactionSearchIndex(conn);
+                searchIndex.transactionsChanged(searchIndex.findTransactionIds("t.vendor_id = ?", id));
             }
             if (!Objects.equals(vendor.getDescription(), description)) {
                 DbUtil.updateOne(
@@ -80,11 +86,18 @@ public record JdbcTransactionVendorRepository(Connection conn) implements Transa
                 );
             }
         });
+        cache.invalidate(ReferenceDataCache.VENDORS);
     }
 
     @Override
     public void deleteById(long id) {
-        DbUtil.update(conn, "DELETE FROM transaction_vendor WHERE id = ?", List.of(id));
+        DbUtil.doTransaction(conn, () -> {
+            var searchIndex = new JdbcTransactionSearchIndex(conn);
+            List<Long> transactionIds = searchIndex.findTransactionIds("t.vendor_id = ?", id);
+            DbUtil.update(conn, "DELETE FROM transaction_vendor WHERE id = ?", List.of(id));
+            searchIndex.transactionsChanged(transactionIds);
+        });
+        cache.invalidate(ReferenceDataCache.VENDORS);
     }
 
     @Override
@@ -0,0 +1,150 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.CategoryTree;
+import com.andrewlalis.perfin.data.util.UncheckedSqlException;
+import com.andrewlalis.perfin.model.Account;
+import com.andrewlalis.perfin.model.TransactionVendor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Holds immutable snapshots of the small sets of reference data that the UI
+ * asks for all the time, like all accounts or all vendors, so that they're
+ * only loaded from the database once, and again after they're changed. A
+ * single instance is shared by all repositories of a data source, and any
+ * repository that changes one of these sets must invalidate its key.
+ * <p>
+ *     Repositories shouldn't use the cache while they're in a transaction,
+ *     since it might then hold or see changes that aren't committed yet.
+ * </p>
+ */
+public class ReferenceDataCache {
+    /**
+     * A key for one set of reference data.
+     * @param name The key's name, for debugging.
+     * @param <T> The type of the cached snapshot.
+     */
+    public record Key<T>(String name) {}
+
+    public static final Key<CategoryTree> CATEGORY_TREE = new Key<>("category tree");
+    /**
+     * All accounts which aren't archived, ordered by name.
+     */
+    public static final Key<List<Account>> ACCOUNTS = new Key<>("accounts");
+    /**
+     * All vendors, ordered by name.
+     */
+    public static final Key<List<TransactionVendor>> VENDORS = new Key<>("vendors");
+    /**
+     * All tag names, in alphabetical order.
+     */
+    public static final Key<List<String>> TAGS = new Key<>("tags");
+
+    /**
+     * A cached value, with the version of its key at the time it was loaded.
+     */
+    private record Snapshot<T>(T value, long version) {}
+
+    /**
+     * Statistics about how well the cache is doing.
+     * @param hits The number of requests served from the cache.
+     * @param misses The number of requests that had to load data.
+     * @param invalidations The number of times that a key was invalidated.
+     */
+    public record Metrics(long hits, long misses, long invalidations) {}
+
+    private final Map<Key<?>, Snapshot<?>> snapshots = new HashMap<>();
+    private final Map<Key<?>, Long> versions = new HashMap<>();
+    private long hits = 0;
+    private long misses = 0;
+    private long invalidations = 0;
+
+    /**
+     * Gets the cached snapshot for a key, or loads it if there isn't one.
+     * @param key The key to get.
+     * @param loader The loader to use if nothing is cached. It should return
+     *               an immutable value.
+     * @return The snapshot.
+     * @param <T> The type of the snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key, Supplier<T> loader) {
+        long loadVersion;
+        synchronized (this) {
+            Snapshot<?> snapshot = snapshots.get(key);
+            if (snapshot != null) {
+                hits++;
+                return (T) snapshot.value();
+            }
+            misses++;
+            loadVersion = versions.getOrDefault(key, 0L);
+        }
+        T loaded = loader.get();
+        synchronized (this) {
+            // Don't keep a snapshot if the data was changed while we loaded it.
+            if (versions.getOrDefault(key, 0L) == loadVersion) {
+                snapshots.put(key, new Snapshot<>(loaded, loadVersion));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Gets the cached snapshot for a key like {@link #get(Key, Supplier)},
+     * unless the given connection is in a transaction, in which case the
+     * cache is skipped entirely.
+     * @param conn The connection that the loader uses.
+     * @param key The key to get.
+     * @param loader The loader to use.
+     * @return The snapshot.
+     * @param <T> The type of the snapshot.
+     */
+    public <T> T get(Connection conn, Key<T> key, Supplier<T> loader) {
+        try {
+            // Within a transaction we might see uncommitted changes, so don't cache those.
+            if (!conn.getAutoCommit()) return loader.get();
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+        return get(key, loader);
+    }
+
+    /**
+     * Discards the cached snapshots for some keys, so that the next call to
+     * {@link #get(Key, Supplier)} loads them again.
+     * @param keys The keys to invalidate.
+     */
+    public synchronized void invalidate(Key<?>... keys) {
+        for (var key : keys) {
+            snapshots.remove(key);
+            versions.merge(key, 1L, Long::sum);
+            invalidations++;
+        }
+    }
+
+    /**
+     * Gets the version of a key, which increases each time it's invalidated.
+     * @param key The key.
+     * @return The key's version.
+     */
+    public synchronized long getVersion(Key<?> key) {
+        return versions.getOrDefault(key, 0L);
+    }
+
+    /**
+     * Gets the current version of every key that has been invalidated.
+     * @return A copy of the versions of all keys.
+     */
+    public synchronized Map<Key<?>, Long> getVersions() {
+        return Map.copyOf(versions);
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(hits, misses, invalidations);
+    }
+}
@@ -4,4 +4,16 @@ import com.andrewlalis.perfin.data.DataSource;
 
 public interface Migration {
     void migrate(DataSource dataSource) throws Exception;
+
+    /**
+     * Gets a migration that runs this migration, followed by another.
+     * @param next The migration to run after this one.
+     * @return The combined migration.
+     */
+    default Migration andThen(Migration next) {
+        return dataSource -> {
+            migrate(dataSource);
+            next.migrate(dataSource);
+        };
+    }
 }
@@ -1,5 +1,9 @@
 package com.andrewlalis.perfin.data.impl.migration;
 
+import com.andrewlalis.perfin.data.AccountBalanceSnapshotRepository;
+import com.andrewlalis.perfin.data.TransactionRepository;
+import com.andrewlalis.perfin.data.TransactionRollupRepository;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +23,24 @@ public class Migrations {
         migrations.put(1, new PlainSQLMigration("/sql/migration/M001_AddTransactionProperties.sql"));
         migrations.put(2, new PlainSQLMigration("/sql/migration/M002_RefactorHistories.sql"));
         migrations.put(3, new PlainSQLMigration("/sql/migration/M003_AddLineItemCategoryAndAccountDescription.sql"));
+        migrations.put(4, new PlainSQLMigration("/sql/migration/M004_AddAccountBalanceSnapshot.sql")
+                .andThen(dataSource -> dataSource.useRepo(
+                        AccountBalanceSnapshotRepository.class,
+                        AccountBalanceSnapshotRepository::rebuildAll
+                )));
+        migrations.put(5, new PlainSQLMigration("/sql/migration/M005_AddIndexes.sql"));
+        migrations.put(6, new PlainSQLMigration("/sql/migration/M006_AddTransactionRollup.sql")
+                .andThen(dataSource -> dataSource.useRepo(
+                        TransactionRollupRepository.class,
+                        TransactionRollupRepository::rebuildAll
+                )));
+        migrations.put(7, new PlainSQLMigration("/sql/migration/M007_AddTransactionKeysetIndexes.sql"));
+        migrations.put(8, new PlainSQLMigration("/sql/migration/M008_AddTransactionSearchTerm.sql")
+                .andThen(dataSource -> dataSource.useRepo(
+                        TransactionRepository.class,
+                        TransactionRepository::rebuildSearchIndex
+                )));
+        migrations.put(9, new PlainSQLMigration("/sql/migration/M009_AddAccountEventIndexes.sql"));
         return migrations;
     }
 
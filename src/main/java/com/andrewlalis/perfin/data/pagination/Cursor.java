@@ -0,0 +1,35 @@
+package com.andrewlalis.perfin.data.pagination;
+
+import java.util.List;
+
+/**
+ * A continuation token for keyset pagination. It holds the values of the sort
+ * properties of a single row, and where to continue relative to that row. Use
+ * it with a {@link KeysetPageRequest} to seek directly to a position in a
+ * sorted list of results, instead of skipping over a number of rows.
+ * @param keys The values of the row's sort properties, in the same order as
+ *             the request's sorts.
+ * @param position Where to continue relative to the row.
+ */
+public record Cursor(List<Object> keys, Position position) {
+    public enum Position {
+        /** The page starts right after the row. */
+        AFTER,
+        /** The page ends right before the row. */
+        BEFORE,
+        /** The page starts with the row itself. */
+        AT
+    }
+
+    public static Cursor after(List<Object> keys) {
+        return new Cursor(keys, Position.AFTER);
+    }
+
+    public static Cursor before(List<Object> keys) {
+        return new Cursor(keys, Position.BEFORE);
+    }
+
+    public static Cursor at(List<Object> keys) {
+        return new Cursor(keys, Position.AT);
+    }
+}
@@ -0,0 +1,62 @@
+package com.andrewlalis.perfin.data.pagination;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A page of results that was fetched with keyset pagination.
+ * @param items The items in the page.
+ * @param request The request that was used to fetch the page.
+ * @param firstKeys The sort keys of the first item, or null if empty.
+ * @param lastKeys The sort keys of the last item, or null if empty.
+ * @param hasPrevious Whether there are any results before this page.
+ * @param hasNext Whether there are any results after this page.
+ * @param <T> The type of item.
+ */
+public record KeysetPage<T>(
+        List<T> items,
+        KeysetPageRequest request,
+        List<Object> firstKeys,
+        List<Object> lastKeys,
+        boolean hasPrevious,
+        boolean hasNext
+) {
+    public Stream<T> stream() {
+        return items.stream();
+    }
+
+    public <U> KeysetPage<U> map(Function<T, U> mapper) {
+        return new KeysetPage<>(items.stream().map(mapper).toList(), request, firstKeys, lastKeys, hasPrevious, hasNext);
+    }
+
+    /**
+     * Gets a copy of this page with different items, like when the items are
+     * all converted at once.
+     * @param newItems The new items, in the same order as this page's items.
+     * @return The new page.
+     * @param <U> The new type of item.
+     */
+    public <U> KeysetPage<U> withItems(List<U> newItems) {
+        if (newItems.size() != items.size()) throw new IllegalArgumentException("A page's items can only be replaced by the same number of items.");
+        return new KeysetPage<>(newItems, request, firstKeys, lastKeys, hasPrevious, hasNext);
+    }
+
+    /**
+     * Gets the request for the page after this one.
+     * @return The next page's request.
+     */
+    public KeysetPageRequest next() {
+        if (lastKeys == null) return request;
+        return request.withCursor(Cursor.after(lastKeys));
+    }
+
+    /**
+     * Gets the request for the page before this one.
+     * @return The previous page's request.
+     */
+    public KeysetPageRequest previous() {
+        if (firstKeys == null) return request;
+        return request.withCursor(Cursor.before(firstKeys));
+    }
+}
@@ -0,0 +1,109 @@
+package com.andrewlalis.perfin.data.pagination;
+
+import com.andrewlalis.perfin.data.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A request for a page of results using keyset (or "seek") pagination. Unlike
+ * a {@link PageRequest}, which skips over all the rows before the requested
+ * page, this seeks directly to the rows after (or before) a {@link Cursor}, so
+ * every page is just as fast to fetch as the first.
+ * <p>
+ *     The sorts must be on non-null properties, and together they must
+ *     uniquely identify a row, usually by ending with the id. The properties
+ *     should be qualified with their table name, since they're also used in
+ *     the WHERE clause of the query.
+ * </p>
+ * @param size The maximum number of items in the page.
+ * @param sorts The sorts that define the order of results.
+ * @param cursor The cursor to continue from, or null for the first page.
+ */
+public record KeysetPageRequest(int size, List<Sort> sorts, Cursor cursor) {
+    public KeysetPageRequest {
+        if (sorts.isEmpty()) throw new IllegalArgumentException("Keyset pagination requires at least one sort.");
+        if (cursor != null && cursor.keys().size() != sorts.size()) {
+            throw new IllegalArgumentException("Cursor has " + cursor.keys().size() + " keys, but there are " + sorts.size() + " sorts.");
+        }
+        sorts = List.copyOf(sorts);
+    }
+
+    public static KeysetPageRequest first(int size, List<Sort> sorts) {
+        return new KeysetPageRequest(size, sorts, null);
+    }
+
+    public KeysetPageRequest withCursor(Cursor cursor) {
+        return new KeysetPageRequest(size, sorts, cursor);
+    }
+
+    public KeysetPageRequest withSize(int size) {
+        return new KeysetPageRequest(size, sorts, cursor);
+    }
+
+    /**
+     * Determines if the results for this request are fetched in the reverse
+     * of the sort order, which is the case when paging backwards.
+     * @return True if results are fetched in reverse order.
+     */
+    public boolean isReversed() {
+        return cursor != null && cursor.position() == Cursor.Position.BEFORE;
+    }
+
+    /**
+     * Gets an SQL condition that selects only the rows on the cursor's side of
+     * the cursor, together with the arguments it needs.
+     * @return The condition and its arguments, or null if there's no cursor.
+     */
+    public Pair<String, List<Object>> toSeekSQL() {
+        if (cursor == null) return null;
+        boolean forward = cursor.position() != Cursor.Position.BEFORE;
+        boolean inclusive = cursor.position() == Cursor.Position.AT;
+        StringBuilder sb = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        if (sorts.size() > 1) {
+            // Add a simple range on the first property, so that an index on it can be used.
+            Sort first = sorts.getFirst();
+            sb.append(first.property()).append(' ').append(operator(first, forward, true)).append(" ? AND (");
+            args.add(cursor.keys().getFirst());
+            appendSeekSQL(sb, args, 0, forward, inclusive);
+            sb.append(')');
+        } else {
+            appendSeekSQL(sb, args, 0, forward, inclusive);
+        }
+        return new Pair<>(sb.toString(), args);
+    }
+
+    private void appendSeekSQL(StringBuilder sb, List<Object> args, int index, boolean forward, boolean inclusive) {
+        Sort sort = sorts.get(index);
+        Object key = cursor.keys().get(index);
+        boolean last = index == sorts.size() - 1;
+        sb.append(sort.property()).append(' ').append(operator(sort, forward, last && inclusive)).append(" ?");
+        args.add(key);
+        if (!last) {
+            sb.append(" OR (").append(sort.property()).append(" = ? AND (");
+            args.add(key);
+            appendSeekSQL(sb, args, index + 1, forward, inclusive);
+            sb.append("))");
+        }
+    }
+
+    private static String operator(Sort sort, boolean forward, boolean inclusive) {
+        boolean greater = (sort.direction() == Sort.Direction.ASC) == forward;
+        return (greater ? ">" : "<") + (inclusive ? "=" : "");
+    }
+
+    /**
+     * Gets the ORDER BY and LIMIT clauses for this request. One more row than
+     * the page size is fetched, to check if there are more results.
+     * @return The SQL clauses.
+     */
+    public String toSQL() {
+        String orderBy = sorts.stream()
+                .map(s -> isReversed() ? new Sort(s.property(), s.direction() == Sort.Direction.ASC ? Sort.Direction.DESC : Sort.Direction.ASC) : s)
+                .map(Sort::toSQL)
+                .collect(Collectors.joining(", "));
+        return "ORDER BY " + orderBy + " LIMIT " + (size + 1);
+    }
+}
@@ -0,0 +1,444 @@
+package com.andrewlalis.perfin.data.pagination;
+
+import com.andrewlalis.perfin.data.RepositoryExecutor;
+import com.andrewlalis.perfin.data.util.QueryCanceller;
+import javafx.collections.ObservableListBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * An observable list of search results that's loaded lazily, in chunks, as
+ * its rows are accessed. It's meant to back a virtualized control like a
+ * {@link javafx.scene.control.ListView}, which only asks for the rows that
+ * are visible, so that scrolling through any number of results only ever
+ * loads and keeps a few chunks.
+ * <p>
+ *     A list made with the constructor starts at the first result, and its
+ *     size is known up-front (usually from a count query). Rows that aren't
+ *     loaded yet are null. Accessing a row loads its chunk in the
+ *     background, and accessing a row in the second half of a chunk also
+ *     prefetches the next one. Once a chunk is loaded, its rows are reported
+ *     as replaced, so that the control refreshes them.
+ * </p>
+ * <p>
+ *     Chunks are fetched with keyset pagination, continuing from the end of
+ *     the previous chunk, when that's known. Otherwise, like after jumping
+ *     to the middle of the list, a chunk is fetched by its offset. Only the
+ *     most recently used chunks are kept in memory.
+ * </p>
+ * <p>
+ *     A list made with {@link #startingAt(Chunk, int, int, List, ChunkFetcher, RepositoryExecutor, Executor)}
+ *     instead starts at some row in the middle of the results, without
+ *     knowing where that is. It only contains the rows that were fetched so
+ *     far, and grows in both directions as rows near its ends are accessed,
+ *     fetching the rows before its first row with backward keyset
+ *     pagination. Rows that are added to its start are reported as added,
+ *     so the control should keep its scroll position when that happens.
+ * </p>
+ * <p>
+ *     Chunks are fetched as background work on the data source's
+ *     {@link RepositoryExecutor}, so fast scrolling can't start more queries
+ *     than it allows. A fetch that's rejected because its queue is full is
+ *     simply tried again the next time one of its rows is accessed. A fetch
+ *     that fails is also tried again on a later access, but only after a
+ *     delay that grows with each failure.
+ * </p>
+ * <p>
+ *     Apart from the fetcher, this list must only be used from a single
+ *     thread, normally the JavaFX application thread, and the publisher
+ *     given to it must run tasks on that thread.
+ * </p>
+ * @param <T> The type of row.
+ */
+public class LazyKeysetList<T> extends ObservableListBase<T> {
+    private static final Logger log = LoggerFactory.getLogger(LazyKeysetList.class);
+    /**
+     * How long to wait before fetching a chunk again after it failed the
+     * first time. The delay doubles after each failure, up to the maximum.
+     */
+    static final long RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    /**
+     * A chunk of fetched rows.
+     * @param items The rows.
+     * @param previous A cursor for continuing before the first row, or null
+     *                 if there are no rows.
+     * @param next A cursor for continuing after the last row, or null if
+     *             there are no rows.
+     * @param <T> The type of row.
+     */
+    public record Chunk<T>(List<T> items, Cursor previous, Cursor next) {}
+
+    /**
+     * A chunk's failed fetches.
+     * @param count The number of fetches in a row that failed.
+     * @param retryAt The {@link System#nanoTime()} after which to try again.
+     */
+    private record Failure(int count, long retryAt) {}
+
+    /**
+     * Fetches chunks of rows. This is called from the repository executor's
+     * threads.
+     * @param <T> The type of row.
+     */
+    public interface ChunkFetcher<T> {
+        /**
+         * Fetches a chunk that continues from the previous chunk, or, if the
+         * request's cursor is {@link Cursor.Position#BEFORE before} a row,
+         * the chunk that ends right before it. In that case, the chunk must
+         * only contain rows before the cursor, even if there are fewer of
+         * them than the request's size.
+         * @param request The keyset page request for the chunk.
+         * @param canceller A canceller that's cancelled if the list is
+         *                  disposed. Any queries should be registered with it.
+         * @return The chunk.
+         * @throws Exception If fetching failed.
+         */
+        Chunk<T> fetch(KeysetPageRequest request, QueryCanceller canceller) throws Exception;
+
+        /**
+         * Fetches a chunk by its offset, when the end of the previous chunk
+         * isn't known.
+         * @param request The offset-based page request for the chunk.
+         * @param canceller A canceller that's cancelled if the list is
+         *                  disposed. Any queries should be registered with it.
+         * @return The chunk.
+         * @throws Exception If fetching failed.
+         */
+        Chunk<T> fetch(PageRequest request, QueryCanceller canceller) throws Exception;
+    }
+
+    private final int chunkSize;
+    private final List<Sort> sorts;
+    private final ChunkFetcher<T> fetcher;
+    private final RepositoryExecutor executor;
+    private final Executor publisher;
+    private final QueryCanceller canceller = new QueryCanceller();
+
+    /**
+     * The loaded chunks, by index, in order of least to most recently used.
+     * Chunk 0 starts at the list's first row, or, for a list that started in
+     * the middle of the results, at that row. Chunks before it have negative
+     * indexes.
+     */
+    private final LinkedHashMap<Integer, List<T>> chunks;
+    /**
+     * Cursors for the start of each chunk that we know of. These are kept
+     * even when their chunks are evicted, since they're small, and they let
+     * us fetch chunks with keyset pagination instead of offsets. A null
+     * cursor means the chunk starts at the first result.
+     */
+    private final Map<Integer, Cursor> chunkStarts = new HashMap<>();
+    /**
+     * The fetches that are queued or running, by chunk index.
+     */
+    private final Map<Integer, CompletableFuture<Chunk<T>>> loading = new HashMap<>();
+    /**
+     * Chunks whose last fetch failed, by index. They aren't fetched again
+     * until their retry time has passed.
+     */
+    private final Map<Integer, Failure> failures = new HashMap<>();
+    /**
+     * The number of rows before chunk 0.
+     */
+    private int front = 0;
+    /**
+     * The number of rows from the start of chunk 0 to the end of the list.
+     */
+    private int end;
+    private boolean startReached = true;
+    private boolean endReached = true;
+    /**
+     * A cursor for fetching the rows before the list's first row, when the
+     * start hasn't been reached yet.
+     */
+    private Cursor frontCursor = null;
+    private boolean disposed = false;
+    private long fetchCount = 0;
+
+    /**
+     * Creates a lazily-loaded list, starting at the first result.
+     * @param size The total number of rows.
+     * @param chunkSize The number of rows to fetch at once.
+     * @param maxChunks The maximum number of chunks to keep in memory.
+     * @param sorts The sorts that define the order of rows.
+     * @param fetcher The fetcher to load chunks with.
+     * @param executor The executor to run fetches on.
+     * @param publisher The executor that runs tasks on this list's thread,
+     *                  like {@code Platform::runLater}.
+     */
+    public LazyKeysetList(
+            int size,
+            int chunkSize,
+            int maxChunks,
+            List<Sort> sorts,
+            ChunkFetcher<T> fetcher,
+            RepositoryExecutor executor,
+            Executor publisher
+    ) {
+        if (chunkSize < 1 || maxChunks < 2) throw new IllegalArgumentException("Invalid chunk size or count.");
+        this.end = size;
+        this.chunkSize = chunkSize;
+        this.sorts = List.copyOf(sorts);
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.publisher = publisher;
+        this.chunks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxChunks;
+            }
+        };
+        chunkStarts.put(0, null);
+    }
+
+    /**
+     * Creates a lazily-loaded list that starts at a row somewhere in the
+     * middle of the results, like one that the user navigated to. The list
+     * initially only contains the given chunk, and grows as it's scrolled.
+     * @param firstChunk The chunk that was fetched with a cursor
+     *                   {@link Cursor.Position#AT at} the row. If it's empty,
+     *                   the list is too.
+     * @param chunkSize The number of rows to fetch at once. This should be
+     *                  the size that the first chunk was fetched with.
+     * @param maxChunks The maximum number of chunks to keep in memory.
+     * @param sorts The sorts that define the order of rows.
+     * @param fetcher The fetcher to load chunks with.
+     * @param executor The executor to run fetches on.
+     * @param publisher The executor that runs tasks on this list's thread,
+     *                  like {@code Platform::runLater}.
+     * @return The list.
+     * @param <T> The type of row.
+     */
+    public static <T> LazyKeysetList<T> startingAt(
+            Chunk<T> firstChunk,
+            int chunkSize,
+            int maxChunks,
+            List<Sort> sorts,
+            ChunkFetcher<T> fetcher,
+            RepositoryExecutor executor,
+            Executor publisher
+    ) {
+        var list = new LazyKeysetList<>(0, chunkSize, maxChunks, sorts, fetcher, executor, publisher);
+        List<T> items = List.copyOf(firstChunk.items());
+        if (items.isEmpty()) return list;
+        list.chunks.put(0, items);
+        list.chunkStarts.put(0, Cursor.at(firstChunk.previous().keys()));
+        list.chunkStarts.put(1, firstChunk.next());
+        list.end = items.size();
+        list.endReached = items.size() < chunkSize;
+        list.startReached = false;
+        list.frontCursor = firstChunk.previous();
+        return list;
+    }
+
+    /**
+     * Gets a row, and starts loading it if it isn't loaded yet.
+     * @param index The index of the row.
+     * @return The row, or null if it's not loaded yet.
+     */
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size());
+        int position = index - front;
+        int chunkIndex = Math.floorDiv(position, chunkSize);
+        List<T> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            load(chunkIndex);
+            return null;
+        }
+        if (position - chunkIndex * chunkSize >= chunkSize / 2) {
+            load(chunkIndex + 1);
+        } else if (chunkIndex == firstChunkIndex()) {
+            loadPrevious();
+        }
+        int i = position - chunkFrom(chunkIndex);
+        return i < chunk.size() ? chunk.get(i) : null;
+    }
+
+    @Override
+    public int size() {
+        return front + end;
+    }
+
+    /**
+     * Sets the first chunk, if it was already fetched together with this
+     * list's size.
+     * @param chunk The first chunk.
+     */
+    public void setFirstChunk(Chunk<T> chunk) {
+        loaded(0, chunk);
+    }
+
+    /**
+     * Stops loading this list's rows, and cancels any ongoing fetches. Call
+     * this once the list is no longer shown.
+     */
+    public void dispose() {
+        disposed = true;
+        canceller.cancel();
+        // Remove any fetches that haven't started yet from the queue.
+        List.copyOf(loading.values()).forEach(cf -> cf.cancel(false));
+    }
+
+    /**
+     * Gets the number of chunks that are currently loaded.
+     * @return The number of chunks.
+     */
+    public int getLoadedChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Gets the number of chunk fetches that this list has started.
+     * @return The number of fetches.
+     */
+    public long getFetchCount() {
+        return fetchCount;
+    }
+
+    private int firstChunkIndex() {
+        return Math.floorDiv(-front, chunkSize);
+    }
+
+    /**
+     * Gets the position of a chunk's first row, relative to chunk 0.
+     */
+    private int chunkFrom(int chunkIndex) {
+        return Math.max(chunkIndex * chunkSize, -front);
+    }
+
+    /**
+     * Gets the position after a chunk's last row, relative to chunk 0.
+     */
+    private int chunkTo(int chunkIndex) {
+        return Math.min((chunkIndex + 1) * chunkSize, end);
+    }
+
+    private void load(int chunkIndex) {
+        if (
+                disposed ||
+                chunks.containsKey(chunkIndex) ||
+                loading.containsKey(chunkIndex) ||
+                isWaitingToRetry(chunkIndex)
+        ) return;
+        boolean growing = chunkIndex * chunkSize >= end;
+        // We can only grow the list from the end of its last chunk.
+        if (growing && (endReached || !chunkStarts.containsKey(chunkIndex))) return;
+        if (chunkStarts.containsKey(chunkIndex)) {
+            Cursor start = chunkStarts.get(chunkIndex);
+            int size = growing ? chunkSize : chunkTo(chunkIndex) - chunkFrom(chunkIndex);
+            fetch(chunkIndex, "keyset", c -> fetcher.fetch(new KeysetPageRequest(size, sorts, start), c), chunk -> loaded(chunkIndex, chunk));
+        } else {
+            fetch(chunkIndex, "offset", c -> fetcher.fetch(new PageRequest(chunkIndex, chunkSize, sorts), c), chunk -> loaded(chunkIndex, chunk));
+        }
+    }
+
+    /**
+     * Loads the chunk before the list's first row, if the start of the
+     * results hasn't been reached yet.
+     */
+    private void loadPrevious() {
+        int chunkIndex = firstChunkIndex() - 1;
+        if (
+                disposed ||
+                startReached ||
+                loading.containsKey(chunkIndex) ||
+                isWaitingToRetry(chunkIndex)
+        ) return;
+        Cursor before = frontCursor;
+        fetch(chunkIndex, "keyset, backward", c -> fetcher.fetch(new KeysetPageRequest(chunkSize, sorts, before), c), chunk -> loadedBefore(chunkIndex, chunk));
+    }
+
+    private interface FetchFunction<T> {
+        Chunk<T> fetch(QueryCanceller canceller) throws Exception;
+    }
+
+    private void fetch(int chunkIndex, String method, FetchFunction<T> fetchFunction, Consumer<Chunk<T>> onLoaded) {
+        fetchCount++;
+        CompletableFuture<Chunk<T>> cf = executor.submit(RepositoryExecutor.Priority.BACKGROUND, () -> {
+            long startTime = System.nanoTime();
+            Chunk<T> chunk = fetchFunction.fetch(canceller);
+            log.debug(
+                    "Fetched chunk {} ({}) in {} ms.",
+                    chunkIndex,
+                    method,
+                    String.format("%.2f", (System.nanoTime() - startTime) / 1_000_000.0)
+            );
+            return chunk;
+        });
+        loading.put(chunkIndex, cf);
+        cf.whenComplete((chunk, e) -> publisher.execute(() -> {
+            loading.remove(chunkIndex);
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause == null) {
+                if (disposed) return;
+                failures.remove(chunkIndex);
+                onLoaded.accept(chunk);
+            } else if (!(cause instanceof CancellationException || cause instanceof RejectedExecutionException)) {
+                Failure failure = failures.get(chunkIndex);
+                int count = failure == null ? 1 : failure.count() + 1;
+                long delay = Math.min(RETRY_DELAY_MILLIS << Math.min(count - 1, 16), MAX_RETRY_DELAY_MILLIS);
+                log.error("Failed to fetch chunk " + chunkIndex + ". Retrying in " + delay + " ms.", cause);
+                failures.put(chunkIndex, new Failure(count, System.nanoTime() + delay * 1_000_000));
+            }
+        }));
+    }
+
+    private boolean isWaitingToRetry(int chunkIndex) {
+        Failure failure = failures.get(chunkIndex);
+        return failure != null && System.nanoTime() - failure.retryAt() < 0;
+    }
+
+    private void loaded(int chunkIndex, Chunk<T> chunk) {
+        List<T> items = List.copyOf(chunk.items());
+        if (chunkIndex * chunkSize >= end) {
+            // The chunk continues past the end of the list, so the list grows.
+            if (endReached) return;
+            if (items.size() < chunkSize || chunk.next() == null) endReached = true;
+            if (items.isEmpty()) return;
+            chunks.put(chunkIndex, items);
+            if (chunk.next() != null) chunkStarts.put(chunkIndex + 1, chunk.next());
+            int from = size();
+            end += items.size();
+            beginChange();
+            nextAdd(from, size());
+            endChange();
+            return;
+        }
+        chunks.put(chunkIndex, items);
+        if (chunk.next() != null) chunkStarts.put(chunkIndex + 1, chunk.next());
+        int from = front + chunkFrom(chunkIndex);
+        int to = Math.min(from + items.size(), front + chunkTo(chunkIndex));
+        if (from >= to) return;
+        beginChange();
+        for (int i = from; i < to; i++) {
+            // The row was null (not loaded) before.
+            nextSet(i, null);
+        }
+        endChange();
+    }
+
+    private void loadedBefore(int chunkIndex, Chunk<T> chunk) {
+        List<T> items = List.copyOf(chunk.items());
+        if (items.size() < chunkSize) startReached = true;
+        if (items.isEmpty()) return;
+        chunks.put(chunkIndex, items);
+        // The first chunk is fetched from the start of the results, since it may be partial.
+        chunkStarts.put(chunkIndex, startReached ? null : Cursor.at(chunk.previous().keys()));
+        frontCursor = chunk.previous();
+        front += items.size();
+        beginChange();
+        nextAdd(0, items.size());
+        endChange();
+    }
+}
@@ -1,7 +1,10 @@
 package com.andrewlalis.perfin.data.search;
 
+import com.andrewlalis.perfin.data.pagination.KeysetPage;
+import com.andrewlalis.perfin.data.pagination.KeysetPageRequest;
 import com.andrewlalis.perfin.data.pagination.Page;
 import com.andrewlalis.perfin.data.pagination.PageRequest;
+import com.andrewlalis.perfin.data.util.Pair;
 
 import java.util.List;
 
@@ -18,6 +21,16 @@ public interface EntitySearcher<T> {
      */
     Page<T> search(PageRequest pageRequest, List<SearchFilter> filters);
 
+    /**
+     * Gets a page of results that match the given filters, using keyset
+     * pagination. This takes the same time for any page, no matter how many
+     * results come before it.
+     * @param pageRequest The keyset page request.
+     * @param filters The filters to apply.
+     * @return A page of results.
+     */
+    KeysetPage<T> search(KeysetPageRequest pageRequest, List<SearchFilter> filters);
+
     /**
      * Gets the number of results that would be returned for a given set of
      * filters.
@@ -25,4 +38,26 @@ public interface EntitySearcher<T> {
      * @return The number of entities that match.
      */
     long resultCount(List<SearchFilter> filters);
+
+    /**
+     * Gets a page of results together with the total number of results that
+     * match the given filters, in a single call.
+     * @param pageRequest The page request.
+     * @param filters The filters to apply.
+     * @return A pair containing the page of results, and the total count.
+     */
+    default Pair<Page<T>, Long> searchWithCount(PageRequest pageRequest, List<SearchFilter> filters) {
+        return new Pair<>(search(pageRequest, filters), resultCount(filters));
+    }
+
+    /**
+     * Gets a keyset page of results together with the total number of results
+     * that match the given filters, in a single call.
+     * @param pageRequest The keyset page request.
+     * @param filters The filters to apply.
+     * @return A pair containing the page of results, and the total count.
+     */
+    default Pair<KeysetPage<T>, Long> searchWithCount(KeysetPageRequest pageRequest, List<SearchFilter> filters) {
+        return new Pair<>(search(pageRequest, filters), resultCount(filters));
+    }
 }
@@ -1,9 +1,16 @@
 package com.andrewlalis.perfin.data.search;
 
+import com.andrewlalis.perfin.data.pagination.Cursor;
+import com.andrewlalis.perfin.data.pagination.KeysetPage;
+import com.andrewlalis.perfin.data.pagination.KeysetPageRequest;
 import com.andrewlalis.perfin.data.pagination.Page;
 import com.andrewlalis.perfin.data.pagination.PageRequest;
+import com.andrewlalis.perfin.data.pagination.Sort;
+import com.andrewlalis.perfin.data.util.DbUtil;
 import com.andrewlalis.perfin.data.util.Pair;
+import com.andrewlalis.perfin.data.util.QueryCanceller;
 import com.andrewlalis.perfin.data.util.ResultSetMapper;
+import com.andrewlalis.perfin.data.util.UncheckedSqlException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,8 +19,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 public class JdbcEntitySearcher<T> implements EntitySearcher<T> {
@@ -23,12 +32,39 @@ public class JdbcEntitySearcher<T> implements EntitySearcher<T> {
     private final String countExpression;
     private final String selectExpression;
     private final ResultSetMapper<T> resultSetMapper;
+    private final SearchCountCache countCache;
+    private final QueryCanceller canceller;
 
     public JdbcEntitySearcher(Connection conn, String countExpression, String selectExpression, ResultSetMapper<T> resultSetMapper) {
+        this(conn, countExpression, selectExpression, resultSetMapper, null, null);
+    }
+
+    /**
+     * Creates a searcher that remembers result counts in the given cache.
+     * @param conn The connection to use.
+     * @param countExpression The SELECT expression to count results.
+     * @param selectExpression The SELECT expression to get results.
+     * @param resultSetMapper The mapper to parse results.
+     * @param countCache The cache to keep result counts in, or null to always
+     *                   count the results.
+     * @param canceller A canceller that can stop this searcher's queries from
+     *                  another thread, or null. Once it's cancelled, searches
+     *                  throw a {@link CancellationException}.
+     */
+    public JdbcEntitySearcher(
+            Connection conn,
+            String countExpression,
+            String selectExpression,
+            ResultSetMapper<T> resultSetMapper,
+            SearchCountCache countCache,
+            QueryCanceller canceller
+    ) {
         this.conn = conn;
         this.countExpression = countExpression;
         this.selectExpression = selectExpression;
         this.resultSetMapper = resultSetMapper;
+        this.countCache = countCache;
+        this.canceller = canceller;
     }
 
     private Pair<String, List<Pair<Integer, Object>>> buildSearchQuery(List<SearchFilter> filters) {
@@ -36,11 +72,14 @@ public class JdbcEntitySearcher<T> implements EntitySearcher<T> {
         StringBuilder sb = new StringBuilder();
         List<Pair<Integer, Object>> args = new ArrayList<>();
         for (var filter : filters) {
-            args.addAll(filter.args());
+            args.addAll(filter.joinArgs());
             for (var joinClause : filter.joinClauses()) {
                 sb.append(joinClause).append('\n');
             }
         }
+        for (var filter : filters) {
+            args.addAll(filter.args());
+        }
         sb.append("WHERE\n");
         for (int i = 0; i < filters.size(); i++) {
             sb.append(filters.get(i).whereClause());
@@ -57,12 +96,70 @@ public class JdbcEntitySearcher<T> implements EntitySearcher<T> {
             Pair<Integer, Object> arg = args.get(i - 1);
             if (arg.second() == null) {
                 stmt.setNull(i, arg.first());
+            } else if (arg.first() == null) {
+                // No SQL type was given, so let the driver decide.
+                stmt.setObject(i, arg.second());
             } else {
                 stmt.setObject(i, arg.second(), arg.first());
             }
         }
     }
 
+    /**
+     * A prepared statement that, when closed, is also unregistered from our
+     * canceller, if we have one.
+     */
+    private record SearchStatement(PreparedStatement stmt, QueryCanceller canceller) implements AutoCloseable {
+        @Override
+        public void close() throws SQLException {
+            if (canceller != null) {
+                canceller.close(stmt);
+            } else {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Prepares a statement and sets its arguments, registering it with our
+     * canceller, if we have one. The statement comes from the connection's
+     * statement cache, if it has one, and since filters give their values as
+     * parameters, searches with the same kinds of filters share statements.
+     */
+    private SearchStatement prepare(String sql, List<Pair<Integer, Object>> args) throws SQLException {
+        PreparedStatement stmt = DbUtil.prepareStatement(conn, sql);
+        try {
+            applyArgs(stmt, args);
+            if (canceller != null) canceller.register(stmt);
+        } catch (SQLException | CancellationException e) {
+            stmt.close();
+            throw e;
+        }
+        return new SearchStatement(stmt, canceller);
+    }
+
+    /**
+     * Executes a query, logging how long it took.
+     */
+    private ResultSet executeQuery(PreparedStatement stmt, String description) throws SQLException {
+        long start = System.nanoTime();
+        ResultSet rs = stmt.executeQuery();
+        logger.debug("{} query took {} ms.", description, String.format("%.2f", (System.nanoTime() - start) / 1_000_000.0));
+        return rs;
+    }
+
+    /**
+     * Handles an exception thrown while searching. If our canceller was
+     * cancelled, then that's most likely the cause, so we throw a
+     * {@link CancellationException} instead of giving an empty result.
+     */
+    private void handleSearchException(Exception e, String message) {
+        if (canceller != null && canceller.isCancelled()) {
+            throw new CancellationException("Search was cancelled.");
+        }
+        logger.error(message, e);
+    }
+
     @Override
     public Page<T> search(PageRequest pageRequest, List<SearchFilter> filters) {
         var baseQueryAndArgs = buildSearchQuery(filters);
@@ -80,35 +177,154 @@ public class JdbcEntitySearcher<T> implements EntitySearcher<T> {
                 sql,
                 baseQueryAndArgs.second().stream()
                         .map(Pair::second)
-                        .map(Object::toString)
+                        .map(JdbcEntitySearcher::argToString)
                         .collect(Collectors.joining(", "))
         );
-        try (var stmt = conn.prepareStatement(sql)) {
-            applyArgs(stmt, baseQueryAndArgs.second());
-            ResultSet rs = stmt.executeQuery();
+        try (var stmt = prepare(sql, baseQueryAndArgs.second())) {
+            ResultSet rs = executeQuery(stmt.stmt(), "Search");
             List<T> results = new ArrayList<>(pageRequest.size());
             while (rs.next() && results.size() < pageRequest.size()) {
                 results.add(resultSetMapper.map(rs));
             }
             return new Page<>(results, pageRequest);
         } catch (SQLException e) {
-            logger.error("Search failed.", e);
+            handleSearchException(e, "Search failed.");
             return new Page<>(Collections.emptyList(), pageRequest);
         }
     }
 
+    @Override
+    public KeysetPage<T> search(KeysetPageRequest pageRequest, List<SearchFilter> filters) {
+        var baseQueryAndArgs = buildSearchQuery(withSeekFilter(filters, pageRequest));
+        String sql = selectExpression + "\n" + baseQueryAndArgs.first() + "\n" + pageRequest.toSQL();
+        logger.debug(
+                "Searching with query:\n{}\nWith arguments: {}",
+                sql,
+                baseQueryAndArgs.second().stream()
+                        .map(Pair::second)
+                        .map(JdbcEntitySearcher::argToString)
+                        .collect(Collectors.joining(", "))
+        );
+        try (var stmt = prepare(sql, baseQueryAndArgs.second())) {
+            ResultSet rs = executeQuery(stmt.stmt(), "Search");
+            List<T> items = new ArrayList<>(pageRequest.size() + 1);
+            List<List<Object>> keys = new ArrayList<>(pageRequest.size() + 1);
+            while (rs.next() && items.size() <= pageRequest.size()) {
+                items.add(resultSetMapper.map(rs));
+                List<Object> rowKeys = new ArrayList<>(pageRequest.sorts().size());
+                for (Sort sort : pageRequest.sorts()) {
+                    rowKeys.add(rs.getObject(columnLabel(sort.property())));
+                }
+                keys.add(rowKeys);
+            }
+            // We fetch one extra row to know if there's more in the direction that we're going.
+            boolean more = items.size() > pageRequest.size();
+            if (more) {
+                items.removeLast();
+                keys.removeLast();
+            }
+            if (pageRequest.isReversed()) {
+                Collections.reverse(items);
+                Collections.reverse(keys);
+            }
+            Cursor cursor = pageRequest.cursor();
+            boolean hasPrevious;
+            boolean hasNext;
+            if (cursor == null) {
+                hasPrevious = false;
+                hasNext = more;
+            } else if (cursor.position() == Cursor.Position.BEFORE) {
+                // If we went back past the start, show a full first page instead.
+                if (!more && items.size() < pageRequest.size()) {
+                    return search(KeysetPageRequest.first(pageRequest.size(), pageRequest.sorts()), filters);
+                }
+                hasPrevious = more;
+                hasNext = true;
+            } else if (cursor.position() == Cursor.Position.AT) {
+                hasPrevious = anyMatch(withSeekFilter(filters, pageRequest.withCursor(Cursor.before(cursor.keys()))));
+                hasNext = more;
+            } else {
+                hasPrevious = true;
+                hasNext = more;
+            }
+            return new KeysetPage<>(
+                    items,
+                    pageRequest,
+                    keys.isEmpty() ? null : keys.getFirst(),
+                    keys.isEmpty() ? null : keys.getLast(),
+                    hasPrevious,
+                    hasNext
+            );
+        } catch (SQLException e) {
+            handleSearchException(e, "Search failed.");
+            return new KeysetPage<>(Collections.emptyList(), pageRequest, null, null, false, false);
+        }
+    }
+
+    private boolean anyMatch(List<SearchFilter> filters) throws SQLException {
+        var baseQueryAndArgs = buildSearchQuery(filters);
+        String sql = selectExpression + "\n" + baseQueryAndArgs.first() + "\nLIMIT 1";
+        try (var stmt = prepare(sql, baseQueryAndArgs.second())) {
+            return executeQuery(stmt.stmt(), "Search").next();
+        }
+    }
+
+    /**
+     * Adds a filter for a keyset page request's cursor to a list of filters.
+     * @param filters The filters to add to.
+     * @param pageRequest The page request.
+     * @return The new list of filters.
+     */
+    private static List<SearchFilter> withSeekFilter(List<SearchFilter> filters, KeysetPageRequest pageRequest) {
+        var seek = pageRequest.toSeekSQL();
+        if (seek == null) return filters;
+        List<Pair<Integer, Object>> args = seek.second().stream()
+                .map(key -> new Pair<Integer, Object>(null, key))
+                .toList();
+        List<SearchFilter> allFilters = new ArrayList<>(filters);
+        allFilters.add(new SearchFilter.Impl("(" + seek.first() + ")", args, Collections.emptyList()));
+        return allFilters;
+    }
+
+    private static String argToString(Object arg) {
+        return arg instanceof Object[] array ? Arrays.toString(array) : String.valueOf(arg);
+    }
+
+    /**
+     * Gets the label of the result set column for a sort property, which is
+     * the property without its table name.
+     */
+    private static String columnLabel(String property) {
+        return property.substring(property.lastIndexOf('.') + 1);
+    }
+
     @Override
     public long resultCount(List<SearchFilter> filters) {
         var baseQueryAndArgs = buildSearchQuery(filters);
         String sql = countExpression + "\n" + baseQueryAndArgs.first();
-        try (var stmt = conn.prepareStatement(sql)) {
-            applyArgs(stmt, baseQueryAndArgs.second());
-            ResultSet rs = stmt.executeQuery();
+        try {
+            if (countCache == null) return count(sql, baseQueryAndArgs.second());
+            String key = sql + "\n" + baseQueryAndArgs.second().stream()
+                    .map(arg -> arg.first() + ":" + argToString(arg.second()))
+                    .collect(Collectors.joining(","));
+            return countCache.get(key, () -> {
+                try {
+                    return count(sql, baseQueryAndArgs.second());
+                } catch (SQLException e) {
+                    throw new UncheckedSqlException(e);
+                }
+            });
+        } catch (SQLException | UncheckedSqlException e) {
+            handleSearchException(e, "Failed to get search result count.");
+            return 0L;
+        }
+    }
+
+    private long count(String sql, List<Pair<Integer, Object>> args) throws SQLException {
+        try (var stmt = prepare(sql, args)) {
+            ResultSet rs = executeQuery(stmt.stmt(), "Count");
             if (!rs.next()) throw new SQLException("No count result.");
             return rs.getLong(1);
-        } catch (SQLException e) {
-            logger.error("Failed to get search result count.", e);
-            return 0L;
         }
     }
 
@@ -1,7 +1,13 @@
 package com.andrewlalis.perfin.data.search;
 
+import com.andrewlalis.perfin.data.CategoryTree;
 import com.andrewlalis.perfin.data.TransactionCategoryRepository;
+import com.andrewlalis.perfin.data.impl.JdbcTransactionSearchIndex;
+import com.andrewlalis.perfin.data.pagination.Cursor;
+import com.andrewlalis.perfin.data.pagination.Sort;
 import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.data.util.Pair;
+import com.andrewlalis.perfin.data.util.QueryCanceller;
 import com.andrewlalis.perfin.model.*;
 
 import java.math.BigDecimal;
@@ -11,18 +17,58 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
+    /**
+     * Sorts for keyset pagination of transactions, from newest to oldest.
+     */
+    public static final List<Sort> NEWEST_FIRST = List.of(
+            Sort.desc("transaction.timestamp"),
+            Sort.desc("transaction.id")
+    );
+
+    /**
+     * Sorts for pagination of text search results, from most to least
+     * relevant, and then newest to oldest. These can only be used with
+     * offset-based page requests, and with filters from
+     * {@link FilterBuilder#byRankedText(String)}, which provide the score.
+     */
+    public static final List<Sort> MOST_RELEVANT_FIRST = List.of(
+            Sort.desc("search_rank.score"),
+            Sort.desc("transaction.timestamp"),
+            Sort.desc("transaction.id")
+    );
+
     public JdbcTransactionSearcher(Connection conn) {
+        this(conn, null);
+    }
+
+    public JdbcTransactionSearcher(Connection conn, SearchCountCache countCache) {
+        this(conn, countCache, null);
+    }
+
+    public JdbcTransactionSearcher(Connection conn, SearchCountCache countCache, QueryCanceller canceller) {
         super(
                 conn,
                 "SELECT COUNT(transaction.id) FROM transaction",
                 "SELECT transaction.* FROM transaction",
-                JdbcTransactionSearcher::parseResultSet
+                JdbcTransactionSearcher::parseResultSet,
+                countCache,
+                canceller
         );
     }
 
+    /**
+     * Gets a cursor that seeks to the page starting with the given transaction,
+     * when sorted by {@link #NEWEST_FIRST}.
+     * @param transaction The transaction to seek to.
+     * @return The cursor.
+     */
+    public static Cursor cursorAt(Transaction transaction) {
+        return Cursor.at(List.of(DbUtil.timestampFromUtcLDT(transaction.getTimestamp()), transaction.id));
+    }
+
     private static Transaction parseResultSet(ResultSet rs) throws SQLException {
         long id = rs.getLong(1);
         LocalDateTime timestamp = DbUtil.utcLDTFromTimestamp(rs.getTimestamp(2));
@@ -36,22 +82,66 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
         return new Transaction(id, timestamp, amount, currency, description, vendorId, categoryId);
     }
 
+    /**
+     * Builds the filters for a transaction search. Values are always given as
+     * bind parameters, and lists of values as a single array parameter, so
+     * that the SQL only depends on which kinds of filters are used. The
+     * filters are also put in a consistent order, so equivalent filters give
+     * identical SQL, and searches can reuse the same prepared statements.
+     */
     public static class FilterBuilder {
+        /**
+         * The join clauses that filters may need, in the order they must
+         * appear in.
+         */
+        private static final Map<String, String> JOINS = new LinkedHashMap<>();
+        static {
+            JOINS.put("account_entry", "LEFT JOIN account_entry ON account_entry.transaction_id = transaction.id");
+            JOINS.put("account", "LEFT JOIN account ON account.id = account_entry.account_id");
+            JOINS.put("transaction_category", "LEFT JOIN transaction_category ON transaction_category.id = transaction.category_id");
+            JOINS.put("transaction_tag_join", "LEFT JOIN transaction_tag_join ON transaction_tag_join.transaction_id = transaction.id");
+        }
+
         private final List<SearchFilter> filters = new ArrayList<>();
         private final Set<String> joinTables = new HashSet<>();
+        /**
+         * The join that scores the transactions for a ranked text search, or
+         * null if there isn't one.
+         */
+        private SearchFilter rankJoin = null;
 
         public List<SearchFilter> build() {
-            return filters;
+            List<SearchFilter> sorted = new ArrayList<>(filters);
+            sorted.sort(Comparator.comparing(SearchFilter::whereClause));
+            List<String> joins = new ArrayList<>();
+            List<Pair<Integer, Object>> joinArgs = new ArrayList<>();
+            if (rankJoin != null) {
+                joins.addAll(rankJoin.joinClauses());
+                joinArgs.addAll(rankJoin.joinArgs());
+            }
+            JOINS.entrySet().stream()
+                    .filter(entry -> joinTables.contains(entry.getKey()))
+                    .map(Map.Entry::getValue)
+                    .forEach(joins::add);
+            List<SearchFilter> result = new ArrayList<>(sorted.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                SearchFilter filter = sorted.get(i);
+                // All joins are given with the first filter, in the order they're needed.
+                result.add(new SearchFilter.Impl(
+                        filter.whereClause(),
+                        filter.args(),
+                        i == 0 ? joins : Collections.emptyList(),
+                        i == 0 ? joinArgs : Collections.emptyList()
+                ));
+            }
+            return result;
         }
 
         public FilterBuilder byAccounts(Collection<Account> accounts, boolean exclude) {
             if (accounts.isEmpty()) return this;
             var builder = new SearchFilter.Builder();
-            addAccountEntryJoin(builder);
-            String idsString = accounts.stream()
-                    .map(a -> Long.toString(a.id)).distinct()
-                    .collect(Collectors.joining(","));
-            addInClause(builder, "account_entry.account_id", idsString, exclude);
+            addAccountEntryJoin();
+            addInClause(builder, "account_entry.account_id", idArray(accounts.stream().map(a -> a.id)), exclude);
             filters.add(builder.build());
             return this;
         }
@@ -59,11 +149,8 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
         public FilterBuilder byAccountTypes(Collection<AccountType> types, boolean exclude) {
             if (types.isEmpty()) return this;
             var builder = new SearchFilter.Builder();
-            addAccountJoin(builder);
-            String typesString = types.stream()
-                    .map(t -> "'" + t.name() + "'").distinct()
-                    .collect(Collectors.joining(","));
-            addInClause(builder, "account.account_type", typesString, exclude);
+            addAccountJoin();
+            addInClause(builder, "account.account_type", stringArray(types.stream().map(AccountType::name)), exclude);
             filters.add(builder.build());
             return this;
         }
@@ -71,18 +158,16 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
         public FilterBuilder byCategories(Collection<TransactionCategory> categories, boolean exclude) {
             if (categories.isEmpty()) return this;
             var builder = new SearchFilter.Builder();
-            Set<Long> ids = Profile.getCurrent().dataSource().mapRepo(TransactionCategoryRepository.class, repo -> {
-                Set<Long> categoryIds = new HashSet<>();
-                for (var category : categories) {
-                    var treeNode = repo.findTree(category);
-                    categoryIds.addAll(treeNode.allIds());
-                }
-                return categoryIds;
-            });
-            String idsString = ids.stream()
-                    .map(id -> Long.toString(id)).distinct()
-                    .collect(Collectors.joining(","));
-            addInClause(builder, "transaction.category_id", idsString, exclude);
+            CategoryTree tree = Profile.getCurrent().dataSource().mapRepo(
+                    TransactionCategoryRepository.class,
+                    TransactionCategoryRepository::getCategoryTree
+            );
+            Set<Long> ids = new HashSet<>();
+            for (var category : categories) {
+                ids.add(category.id);
+                ids.addAll(tree.getDescendantIds(category.id));
+            }
+            addInClause(builder, "transaction.category_id", idArray(ids.stream()), exclude);
             filters.add(builder.build());
             return this;
         }
@@ -90,10 +175,7 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
         public FilterBuilder byVendors(Collection<TransactionVendor> vendors, boolean exclude) {
              if (vendors.isEmpty()) return this;
              var builder = new SearchFilter.Builder();
-             String idsString = vendors.stream()
-                     .map(v -> Long.toString(v.id)).distinct()
-                     .collect(Collectors.joining(","));
-             addInClause(builder, "transaction.vendor_id", idsString, exclude);
+             addInClause(builder, "transaction.vendor_id", idArray(vendors.stream().map(v -> v.id)), exclude);
              filters.add(builder.build());
              return this;
         }
@@ -101,11 +183,8 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
         public FilterBuilder byTags(Collection<TransactionTag> tags, boolean exclude) {
             if (tags.isEmpty()) return this;
             var builder = new SearchFilter.Builder();
-            addTagJoin(builder);
-            var tagIdsString = tags.stream()
-                    .map(t -> Long.toString(t.id)).distinct()
-                    .collect(Collectors.joining(","));
-            addInClause(builder, "transaction_tag_join.tag_id", tagIdsString, exclude);
+            addTagJoin();
+            addInClause(builder, "transaction_tag_join.tag_id", idArray(tags.stream().map(t -> t.id)), exclude);
             filters.add(builder.build());
             return this;
         }
@@ -136,7 +215,7 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
 
         public FilterBuilder byEntryType(AccountEntry.Type type) {
             var builder = new SearchFilter.Builder();
-            addAccountEntryJoin(builder);
+            addAccountEntryJoin();
             builder.where("account_entry.type = ?");
             builder.withArg(Types.VARCHAR, type.name());
             filters.add(builder.build());
@@ -155,6 +234,52 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
             return this;
         }
 
+        /**
+         * Filters to transactions where each term of a search query matches
+         * the start of a word in the transaction's description, vendor,
+         * category, tags or line items. This uses the transaction search
+         * index, so it doesn't need to look at every transaction.
+         * @param query The search query.
+         * @return This builder.
+         */
+        public FilterBuilder byText(String query) {
+            List<String> terms = JdbcTransactionSearchIndex.tokenize(query).stream().distinct().sorted().toList();
+            if (terms.isEmpty()) return this;
+            var builder = new SearchFilter.Builder();
+            List<String> clauses = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                clauses.add("transaction.id IN (SELECT sst.transaction_id FROM transaction_search_term sst WHERE sst.term LIKE ?)");
+                builder.withArg(term + "%");
+            }
+            builder.where(String.join(" AND ", clauses));
+            filters.add(builder.build());
+            return this;
+        }
+
+        /**
+         * Filters to transactions that match a search query, like
+         * {@link #byText(String)}, and also scores them by how well they
+         * match, so that they can be sorted with {@link #MOST_RELEVANT_FIRST}.
+         * @param query The search query.
+         * @return This builder.
+         */
+        public FilterBuilder byRankedText(String query) {
+            List<String> terms = JdbcTransactionSearchIndex.tokenize(query).stream().distinct().sorted().toList();
+            if (terms.isEmpty()) return this;
+            List<Pair<Integer, Object>> args = terms.stream()
+                    .map(term -> new Pair<Integer, Object>(Types.VARCHAR, term + "%"))
+                    .toList();
+            rankJoin = new SearchFilter.Impl(
+                    null,
+                    Collections.emptyList(),
+                    List.of("JOIN (" + JdbcTransactionSearchIndex.rankQuery(terms.size()) + ") search_rank ON search_rank.transaction_id = transaction.id"),
+                    args
+            );
+            // The join already excludes non-matching transactions, but every filter needs a condition.
+            filters.add(new SearchFilter.Builder().where("search_rank.score > 0").build());
+            return this;
+        }
+
         public FilterBuilder byHasLineItems(boolean hasLineItems) {
             var builder = new SearchFilter.Builder();
             String subQuery = "(SELECT COUNT(id) FROM transaction_line_item WHERE transaction_id = transaction.id)";
@@ -170,49 +295,39 @@ public class JdbcTransactionSearcher extends JdbcEntitySearcher<Transaction> {
         public FilterBuilder byCurrencies(Collection<Currency> currencies, boolean exclude) {
             if (currencies.isEmpty()) return this;
             var builder = new SearchFilter.Builder();
-            String currenciesString = currencies.stream()
-                    .map(c -> "'" + c.getCurrencyCode() + "'").distinct()
-                    .collect(Collectors.joining(","));
-            addInClause(builder, "transaction.currency", currenciesString, exclude);
+            addInClause(builder, "transaction.currency", stringArray(currencies.stream().map(Currency::getCurrencyCode)), exclude);
             filters.add(builder.build());
             return this;
         }
 
-        private void addAccountEntryJoin(SearchFilter.Builder builder) {
-            if (!joinTables.contains("account_entry")) {
-                builder.withJoin("LEFT JOIN account_entry ON account_entry.transaction_id = transaction.id");
-                joinTables.add("account_entry");
-            }
-        }
-
-        private void addAccountJoin(SearchFilter.Builder builder) {
-            addAccountEntryJoin(builder);
-            if (!joinTables.contains("account")) {
-                builder.withJoin("LEFT JOIN account ON account.id = account_entry.account_id");
-                joinTables.add("account");
-            }
+        private void addAccountEntryJoin() {
+            joinTables.add("account_entry");
         }
 
-        private void addCategoryJoin(SearchFilter.Builder builder) {
-            if (!joinTables.contains("transaction_category")) {
-                builder.withJoin("LEFT JOIN transaction_category ON transaction_category.id = transaction.category_id");
-                joinTables.add("transaction_category");
-            }
+        private void addAccountJoin() {
+            addAccountEntryJoin();
+            joinTables.add("account");
         }
 
-        private void addTagJoin(SearchFilter.Builder builder) {
-            if (!joinTables.contains("transaction_tag_join")) {
-                builder.withJoin("LEFT JOIN transaction_tag_join ON transaction_tag_join.transaction_id = transaction.id");
-                joinTables.add("transaction_tag_join");
-            }
+        private void addTagJoin() {
+            joinTables.add("transaction_tag_join");
         }
 
-        private void addInClause(SearchFilter.Builder builder, String valueExpr, String inExpr, boolean exclude) {
+        private void addInClause(SearchFilter.Builder builder, String valueExpr, Object[] values, boolean exclude) {
             if (exclude) {
-                builder.where(valueExpr + " NOT IN (" + inExpr + ")");
+                builder.where("NOT (" + valueExpr + " = ANY(?))");
             } else {
-                builder.where(valueExpr + " IN (" + inExpr + ")");
+                builder.where(valueExpr + " = ANY(?)");
             }
+            builder.withArrayArg(values);
+        }
+
+        private static Long[] idArray(Stream<Long> ids) {
+            return ids.distinct().sorted().toArray(Long[]::new);
+        }
+
+        private static String[] stringArray(Stream<String> values) {
+            return values.distinct().sorted().toArray(String[]::new);
         }
     }
 }
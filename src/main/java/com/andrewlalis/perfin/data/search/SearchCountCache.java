@@ -0,0 +1,52 @@
+package com.andrewlalis.perfin.data.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the number of results for recently used sets of search filters,
+ * so that flipping through the pages of a search doesn't count all matching
+ * results again for each page. Whoever owns the cache must invalidate it when
+ * the searched data changes.
+ */
+public class SearchCountCache {
+    private static final int MAX_ENTRIES = 32;
+
+    private final Map<String, Long> counts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private long version;
+
+    /**
+     * Gets the cached count for a search, or loads it if there isn't one.
+     * @param key A key that uniquely identifies the search's query and arguments.
+     * @param loader The loader to use if no count is cached.
+     * @return The number of results.
+     */
+    public long get(String key, LongSupplier loader) {
+        long loadVersion;
+        synchronized (this) {
+            Long count = counts.get(key);
+            if (count != null) return count;
+            loadVersion = version;
+        }
+        long loaded = loader.getAsLong();
+        synchronized (this) {
+            // Don't keep a count if the data was changed while we loaded it.
+            if (version == loadVersion) counts.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Discards all cached counts.
+     */
+    public synchronized void invalidate() {
+        counts.clear();
+        version++;
+    }
+}
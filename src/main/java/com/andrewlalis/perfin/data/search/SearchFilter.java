@@ -16,7 +16,26 @@ public interface SearchFilter {
         return Collections.emptyList();
     }
 
-    record Impl(String whereClause, List<Pair<Integer, Object>> args, List<String> joinClauses) implements SearchFilter {}
+    /**
+     * Gets the arguments for any parameters in the join clauses. These come
+     * before the arguments of all where clauses, since joins come first in
+     * the query.
+     * @return The join arguments.
+     */
+    default List<Pair<Integer, Object>> joinArgs() {
+        return Collections.emptyList();
+    }
+
+    record Impl(
+            String whereClause,
+            List<Pair<Integer, Object>> args,
+            List<String> joinClauses,
+            List<Pair<Integer, Object>> joinArgs
+    ) implements SearchFilter {
+        public Impl(String whereClause, List<Pair<Integer, Object>> args, List<String> joinClauses) {
+            this(whereClause, args, joinClauses, Collections.emptyList());
+        }
+    }
 
     class Builder {
         private String whereClause;
@@ -49,6 +68,15 @@ public interface SearchFilter {
             return withArg(Types.TIMESTAMP, DbUtil.timestampFromUtcLDT(utcTimestamp));
         }
 
+        /**
+         * Adds an array argument, for use with conditions like "x = ANY(?)".
+         * @param values The array's elements.
+         * @return This builder.
+         */
+        public Builder withArrayArg(Object[] values) {
+            return withArg(Types.ARRAY, values);
+        }
+
         public Builder withJoin(String joinClause) {
             joinClauses.add(joinClause);
             return this;
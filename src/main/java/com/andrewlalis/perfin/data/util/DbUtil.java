@@ -37,6 +37,31 @@ public final class DbUtil {
         }
     }
 
+    /**
+     * Prepares a statement for the given SQL. If the connection has a
+     * {@link StatementCache} attached to it (as pooled connections do), a
+     * cached statement is reused if possible. Either way, the statement should
+     * be closed by the caller when it's no longer needed.
+     * @param conn The connection to use.
+     * @param query The SQL query to prepare.
+     * @param autoGeneratedKeys Whether to return generated keys.
+     * @return The prepared statement.
+     * @throws SQLException If the statement couldn't be prepared.
+     */
+    public static PreparedStatement prepareStatement(Connection conn, String query, int autoGeneratedKeys) throws SQLException {
+        if (conn instanceof StatementCache.Holder holder) {
+            return holder.getStatementCache().prepare(query, autoGeneratedKeys);
+        }
+        if (autoGeneratedKeys == Statement.NO_GENERATED_KEYS) {
+            return conn.prepareStatement(query);
+        }
+        return conn.prepareStatement(query, autoGeneratedKeys);
+    }
+
+    public static PreparedStatement prepareStatement(Connection conn, String query) throws SQLException {
+        return prepareStatement(conn, query, Statement.NO_GENERATED_KEYS);
+    }
+
     public static long getGeneratedId(PreparedStatement stmt) {
         try (ResultSet rs = stmt.getGeneratedKeys()) {
             if (!rs.next()) throw new SQLException("No generated keys available.");
@@ -47,7 +72,7 @@ public final class DbUtil {
     }
 
     public static <T> List<T> findAll(Connection conn, String query, List<Object> args, ResultSetMapper<T> mapper) {
-        try (var stmt = conn.prepareStatement(query)) {
+        try (var stmt = prepareStatement(conn, query)) {
             setArgs(stmt, args);
             var rs = stmt.executeQuery();
             List<T> results = new ArrayList<>();
@@ -74,7 +99,7 @@ public final class DbUtil {
     }
 
     public static long count(Connection conn, String query, Object... args) {
-        try (var stmt = conn.prepareStatement(query)) {
+        try (var stmt = prepareStatement(conn, query)) {
             setArgs(stmt, args);
             var rs = stmt.executeQuery();
             if (!rs.next()) throw new UncheckedSqlException("No count result available.");
@@ -85,7 +110,7 @@ public final class DbUtil {
     }
 
     public static <T> Optional<T> findOne(Connection conn, String query, List<Object> args, ResultSetMapper<T> mapper) {
-        try (var stmt = conn.prepareStatement(query)) {
+        try (var stmt = prepareStatement(conn, query)) {
             setArgs(stmt, args);
             var rs = stmt.executeQuery();
             if (!rs.next()) return Optional.empty();
@@ -100,7 +125,7 @@ public final class DbUtil {
     }
 
     public static int update(Connection conn, String query, List<Object> args) {
-        try (var stmt = conn.prepareStatement(query)) {
+        try (var stmt = prepareStatement(conn, query)) {
             setArgs(stmt, args);
             return stmt.executeUpdate();
         } catch (SQLException e) {
@@ -118,7 +143,7 @@ public final class DbUtil {
     }
 
     public static void updateOne(Connection conn, String query, Object... args) {
-        try (var stmt = conn.prepareStatement(query)) {
+        try (var stmt = prepareStatement(conn, query)) {
             setArgs(stmt, args);
             int updateCount = stmt.executeUpdate();
             if (updateCount != 1) throw new UncheckedSqlException("Update count is " + updateCount + "; expected 1.");
@@ -133,7 +158,7 @@ public final class DbUtil {
     }
 
     public static long insertOne(Connection conn, String query, Object... args) {
-        try (var stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (var stmt = prepareStatement(conn, query, Statement.RETURN_GENERATED_KEYS)) {
             setArgs(stmt, args);
             int result = stmt.executeUpdate();
             if (result != 1) throw new UncheckedSqlException("Insert query did not update 1 row.");
@@ -168,6 +193,12 @@ public final class DbUtil {
     }
 
     public static <T> T doTransaction(Connection conn, SQLSupplier<T> supplier) {
+        try {
+            // If we're already inside a transaction, just take part in it.
+            if (!conn.getAutoCommit()) return supplier.offer();
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
         try {
             conn.setAutoCommit(false);
             T result = supplier.offer();
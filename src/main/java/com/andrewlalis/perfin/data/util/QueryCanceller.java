@@ -0,0 +1,70 @@
+package com.andrewlalis.perfin.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A handle for cancelling the statements of some unit of work, like a single
+ * search, from another thread. Code that runs statements registers each one
+ * before executing it, and {@link #cancel()} then calls
+ * {@link Statement#cancel()} on them, so that the database actually stops
+ * working on them, instead of us just ignoring their results. Registered
+ * statements should be closed with {@link #close(Statement)}.
+ */
+public class QueryCanceller {
+    private static final Logger log = LoggerFactory.getLogger(QueryCanceller.class);
+
+    private final List<Statement> statements = new ArrayList<>();
+    private boolean cancelled = false;
+
+    /**
+     * Registers a statement that's about to be executed, so that it can be
+     * cancelled.
+     * @param stmt The statement.
+     * @throws CancellationException If this canceller was already cancelled,
+     * in which case the statement shouldn't be executed at all.
+     */
+    public synchronized void register(Statement stmt) {
+        if (cancelled) throw new CancellationException("Query was cancelled.");
+        statements.add(stmt);
+    }
+
+    /**
+     * Unregisters a statement and closes it. This is done while holding the
+     * same lock as {@link #cancel()}, so that we never cancel a statement that
+     * has already been closed, and which might already be in use somewhere
+     * else, like a cached statement that was handed out again.
+     * @param stmt The statement to close.
+     * @throws SQLException If the statement couldn't be closed.
+     */
+    public synchronized void close(Statement stmt) throws SQLException {
+        statements.remove(stmt);
+        stmt.close();
+    }
+
+    /**
+     * Cancels all registered statements, and any that are registered later.
+     */
+    public synchronized void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+        for (var stmt : statements) {
+            try {
+                if (!stmt.isClosed()) stmt.cancel();
+            } catch (SQLException e) {
+                log.warn("Failed to cancel statement.", e);
+            }
+        }
+        statements.clear();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,212 @@
+package com.andrewlalis.perfin.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of prepared statements belonging to a single
+ * connection, keyed by their SQL text. Preparing the same SQL over and over
+ * again (like in a loop of lookups by id) will then only parse and plan the
+ * query once.
+ * <p>
+ *     Statements obtained from the cache are handles which, when closed, give
+ *     the underlying statement back to the cache instead of closing it. While
+ *     a statement is in use it's removed from the cache, so requesting the
+ *     same SQL again before the first handle is closed (for example, from a
+ *     nested lookup) simply prepares an additional statement.
+ * </p>
+ */
+public class StatementCache implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(StatementCache.class);
+
+    /**
+     * Interface for connections which have a statement cache attached to them.
+     * {@link DbUtil} will use the cache of any connection that implements it.
+     */
+    public interface Holder {
+        StatementCache getStatementCache();
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {}
+
+    private final Connection conn;
+    private final int maxSize;
+    private final LinkedHashMap<Key, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean closed = false;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public StatementCache(Connection conn, int maxSize) {
+        this.conn = conn;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets a prepared statement for the given SQL, reusing a cached one if
+     * possible. The returned statement should be closed when the caller is
+     * done with it, which returns it to the cache.
+     * @param sql The SQL to prepare.
+     * @param autoGeneratedKeys Either {@link Statement#RETURN_GENERATED_KEYS}
+     *                          or {@link Statement#NO_GENERATED_KEYS}.
+     * @return The prepared statement.
+     * @throws SQLException If the statement couldn't be prepared.
+     */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        final Key key = new Key(sql, autoGeneratedKeys);
+        PreparedStatement stmt;
+        synchronized (this) {
+            stmt = statements.remove(key);
+            if (stmt != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+        if (stmt == null || stmt.isClosed()) {
+            stmt = autoGeneratedKeys == Statement.NO_GENERATED_KEYS
+                    ? conn.prepareStatement(sql)
+                    : conn.prepareStatement(sql, autoGeneratedKeys);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new HandleInvocationHandler(key, stmt)
+        );
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes all cached statements. Statements which are currently in use are
+     * closed when they're released.
+     */
+    @Override
+    public void close() {
+        List<PreparedStatement> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(statements.values());
+            statements.clear();
+        }
+        toClose.forEach(StatementCache::closeQuietly);
+    }
+
+    private void release(Key key, PreparedStatement stmt) {
+        try {
+            ResultSet rs = stmt.getResultSet();
+            if (rs != null) rs.close();
+            stmt.clearParameters();
+        } catch (SQLException e) {
+            log.debug("Failed to reset cached statement. It will be discarded.", e);
+            closeQuietly(stmt);
+            return;
+        }
+        List<PreparedStatement> toClose = new ArrayList<>(1);
+        synchronized (this) {
+            if (closed || maxSize < 1) {
+                toClose.add(stmt);
+            } else {
+                PreparedStatement displaced = statements.put(key, stmt);
+                if (displaced != null) toClose.add(displaced);
+                Iterator<Map.Entry<Key, PreparedStatement>> it = statements.entrySet().iterator();
+                while (statements.size() > maxSize && it.hasNext()) {
+                    toClose.add(it.next().getValue());
+                    it.remove();
+                    evictionCount++;
+                }
+            }
+        }
+        toClose.forEach(StatementCache::closeQuietly);
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close cached statement.", e);
+        }
+    }
+
+    private class HandleInvocationHandler implements InvocationHandler {
+        private final Key key;
+        private final PreparedStatement stmt;
+        private volatile boolean handleClosed = false;
+
+        private HandleInvocationHandler(Key key, PreparedStatement stmt) {
+            this.key = key;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        release(key, stmt);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return handleClosed || stmt.isClosed();
+                }
+                case "cancel" -> {
+                    // Once released, the statement may belong to someone else.
+                    if (handleClosed) return null;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "CachedStatement[" + key.sql() + "]";
+                }
+            }
+            if (handleClosed) {
+                throw new SQLException("Statement has already been returned to the cache.");
+            }
+            try {
+                return method.invoke(stmt, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.andrewlalis.perfin.data.util;
+
+import com.andrewlalis.perfin.model.Attachment;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Generates small PNG thumbnails of image attachments, and keeps them in the
+ * profile's content directory so that they only have to be generated once.
+ * Thumbnails are stored at {@code thumbnails/<size>/<identifier>.png}, and
+ * they're simply generated again if they're deleted.
+ * <p>
+ *     Generating a thumbnail reads a subsampled version of the original
+ *     image, so even for very large images, only a bit more than the
+ *     thumbnail's pixels are ever decoded. This is slow enough that it
+ *     should only be done on background threads.
+ * </p>
+ */
+public record ThumbnailStore(Path contentDir) {
+    public static final int SMALL_SIZE = 64;
+    public static final int LARGE_SIZE = 128;
+    public static final String THUMBNAILS_DIR = "thumbnails";
+    private static final Set<String> IMAGE_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/bmp");
+
+    /**
+     * Determines if an attachment can have a thumbnail.
+     * @param attachment The attachment.
+     * @return True if it's an image that we can generate a thumbnail of.
+     */
+    public static boolean isSupported(Attachment attachment) {
+        return IMAGE_TYPES.contains(attachment.getContentType());
+    }
+
+    /**
+     * Gets the path where an attachment's thumbnail is stored, whether it
+     * exists or not.
+     * @param attachment The attachment.
+     * @param size The thumbnail's size, in pixels.
+     * @return The path to the thumbnail.
+     */
+    public Path getPath(Attachment attachment, int size) {
+        return contentDir.resolve(THUMBNAILS_DIR)
+                .resolve(Integer.toString(size))
+                .resolve(attachment.getIdentifier() + ".png");
+    }
+
+    /**
+     * Gets the path to an attachment's thumbnail, and generates it first if
+     * it doesn't exist yet.
+     * @param attachment The attachment.
+     * @param size The maximum width and height of the thumbnail, in pixels.
+     * @return The path to the thumbnail, or an empty optional if the
+     * attachment isn't an image that can be read.
+     * @throws IOException If the attachment couldn't be read, or the
+     * thumbnail couldn't be written.
+     */
+    public Optional<Path> getOrCreate(Attachment attachment, int size) throws IOException {
+        if (!isSupported(attachment)) return Optional.empty();
+        Path path = getPath(attachment, size);
+        if (Files.exists(path)) return Optional.of(path);
+        BufferedImage source = readSubsampled(attachment.getPath(contentDir), size);
+        if (source == null) return Optional.empty();
+        BufferedImage thumbnail = scale(source, size);
+        Files.createDirectories(path.getParent());
+        // Write to a temporary file first, so that nobody ever sees a half-written thumbnail.
+        Path tmp = Files.createTempFile(path.getParent(), attachment.getIdentifier(), ".tmp");
+        try {
+            ImageIO.write(thumbnail, "png", tmp.toFile());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return Optional.of(path);
+    }
+
+    /**
+     * Deletes all thumbnails of an attachment, if there are any.
+     * @param attachment The attachment.
+     */
+    public void delete(Attachment attachment) {
+        for (int size : new int[]{SMALL_SIZE, LARGE_SIZE}) {
+            FileUtil.deleteIfPossible(getPath(attachment, size));
+        }
+    }
+
+    /**
+     * Reads an image, skipping rows and columns of pixels so that it's still
+     * at least twice the size of the thumbnail, for good quality scaling.
+     */
+    private static BufferedImage readSubsampled(Path file, int size) throws IOException {
+        if (!Files.exists(file)) return null;
+        try (var in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) return null;
+            var readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int largestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, largestSide / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int size) {
+        double scale = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+}
@@ -36,6 +36,13 @@ import java.util.function.Consumer;
 public record Profile(String name, Properties settings, DataSource dataSource) {
     private static final Logger log = LoggerFactory.getLogger(Profile.class);
 
+    /**
+     * The directory where the app keeps all of its files. It's defined here,
+     * rather than in {@link PerfinApp}, so that profiles can be used without
+     * initializing the JavaFX application, like in benchmarks.
+     */
+    public static final Path APP_DIR = Path.of(System.getProperty("user.home", "."), ".perfin");
+
     private static Profile current;
     private static final Set<WeakReference<Consumer<Profile>>> currentProfileListeners = new HashSet<>();
 
@@ -60,7 +67,7 @@ public record Profile(String name, Properties settings, DataSource dataSource) {
     }
 
     public static Path getProfilesDir() {
-        return PerfinApp.APP_DIR.resolve("profiles");
+        return APP_DIR.resolve("profiles");
     }
 
     public static Path getDir(String name) {
@@ -80,7 +87,16 @@ public record Profile(String name, Properties settings, DataSource dataSource) {
     }
 
     public static void setCurrent(Profile profile) {
+        Profile previous = current;
         current = profile;
+        // Release any resources (like pooled database connections) held by the previous profile.
+        if (previous != null && previous != profile && previous.dataSource() instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Failed to close data source for profile {}.", previous.name(), e);
+            }
+        }
         for (var ref : currentProfileListeners) {
             Consumer<Profile> consumer = ref.get();
             if (consumer != null) {
@@ -1,6 +1,5 @@
 package com.andrewlalis.perfin.model;
 
-import com.andrewlalis.perfin.PerfinApp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,7 +21,7 @@ public class ProfileBackups {
     private static final Logger log = LoggerFactory.getLogger(ProfileBackups.class);
 
     public static Path getBackupDir(String profileName) {
-        return PerfinApp.APP_DIR.resolve("backups").resolve(profileName);
+        return Profile.APP_DIR.resolve("backups").resolve(profileName);
     }
 
     public static Path makeBackup(String name) throws IOException {
@@ -1,6 +1,5 @@
 package com.andrewlalis.perfin.model;
 
-import com.andrewlalis.perfin.PerfinApp;
 import com.andrewlalis.perfin.control.Popups;
 import com.andrewlalis.perfin.data.DataSource;
 import com.andrewlalis.perfin.data.DataSourceFactory;
@@ -102,7 +101,7 @@ public class ProfileLoader {
     }
 
     public static String getLastProfile() {
-        Path lastProfileFile = PerfinApp.APP_DIR.resolve("last-profile.txt");
+        Path lastProfileFile = Profile.APP_DIR.resolve("last-profile.txt");
         if (Files.exists(lastProfileFile)) {
             try {
                 String s = Files.readString(lastProfileFile).strip().toLowerCase();
@@ -115,7 +114,7 @@ public class ProfileLoader {
     }
 
     public static void saveLastProfile(String name) {
-        Path lastProfileFile = PerfinApp.APP_DIR.resolve("last-profile.txt");
+        Path lastProfileFile = Profile.APP_DIR.resolve("last-profile.txt");
         try {
             Files.writeString(lastProfileFile, name);
         } catch (IOException e) {
@@ -0,0 +1,22 @@
+package com.andrewlalis.perfin.model;
+
+import java.util.List;
+
+/**
+ * A read-only view of a transaction together with everything that's needed
+ * to show it in a list, so that it can be displayed without any more queries.
+ * @param transaction The transaction.
+ * @param linkedAccounts The accounts that the transaction credits and debits.
+ * @param category The transaction's category, or null.
+ * @param vendor The transaction's vendor, or null.
+ * @param tags The names of the transaction's tags, sorted by name.
+ * @param attachmentCount The number of attachments the transaction has.
+ */
+public record TransactionSummary(
+        Transaction transaction,
+        CreditAndDebitAccounts linkedAccounts,
+        TransactionCategory category,
+        TransactionVendor vendor,
+        List<String> tags,
+        int attachmentCount
+) {}
@@ -4,25 +4,186 @@ import javafx.scene.image.Image;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
+/**
+ * A cache of decoded images, like icons and attachment thumbnails. Images are
+ * kept in memory until the total size of their decoded pixels (4 bytes per
+ * pixel) exceeds a budget, after which the least recently used ones are
+ * evicted. Evicted images are still held by soft references, so they can be
+ * reused until the JVM actually needs the memory.
+ * <p>
+ *     If several threads ask for the same image at once, only one of them
+ *     loads it, and the others wait for it.
+ * </p>
+ */
 public class ImageCache {
-    public static final ImageCache instance = new ImageCache();
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
 
-    private final Map<String, Image> images = new ConcurrentHashMap<>();
+    public static final ImageCache instance = new ImageCache(DEFAULT_MAX_BYTES);
+
+    /**
+     * Statistics about the cache.
+     * @param hits The number of requests served from memory.
+     * @param misses The number of requests that weren't served from memory.
+     * @param evictions The number of images evicted to stay within budget.
+     * @param residentBytes The decoded size of all images that are strongly
+     *                      held by the cache.
+     * @param maxBytes The cache's budget.
+     */
+    public record Metrics(long hits, long misses, long evictions, long residentBytes, long maxBytes) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private static class SoftEntry extends SoftReference<Image> {
+        final String key;
+
+        SoftEntry(String key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+
+    private final long maxBytes;
+    /**
+     * Images that are strongly held, in order of least to most recently used.
+     */
+    private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, SoftEntry> evictedImages = new HashMap<>();
+    private final ReferenceQueue<Image> clearedImages = new ReferenceQueue<>();
+    private final Map<String, CompletableFuture<Image>> loading = new HashMap<>();
+    private long residentBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates an image cache.
+     * @param maxBytes The maximum decoded size of all images to keep.
+     */
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
 
     public Image get(String resource, double width, double height, boolean preserveRatio, boolean smooth) {
         final String cacheKey = getCacheKey(resource, width, height, preserveRatio, smooth);
-        Image stored = images.get(cacheKey);
-        if (stored != null) return stored;
-        try (var in = ImageCache.class.getResourceAsStream(resource)) {
-            if (in == null) throw new IOException("Could not load resource " + resource);
-            Image img = new Image(in, width, height, preserveRatio, smooth);
-            images.put(cacheKey, img);
-            return img;
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        return get(cacheKey, () -> {
+            try (var in = ImageCache.class.getResourceAsStream(resource)) {
+                if (in == null) throw new IOException("Could not load resource " + resource);
+                return new Image(in, width, height, preserveRatio, smooth);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Gets an image from the cache, or loads it if it's not cached. The
+     * loader should load the image synchronously, so that its size is known.
+     * @param key The image's unique key.
+     * @param loader The loader to use if the image isn't cached. It may
+     *               return null if there's no image, which isn't cached.
+     * @return The image, or null if the loader didn't give one.
+     */
+    public Image get(String key, Supplier<Image> loader) {
+        CompletableFuture<Image> cf;
+        boolean isLoader = false;
+        synchronized (this) {
+            Image cached = getIfPresent(key);
+            if (cached != null) return cached;
+            misses++;
+            cf = loading.get(key);
+            if (cf == null) {
+                cf = new CompletableFuture<>();
+                loading.put(key, cf);
+                isLoader = true;
+            }
+        }
+        // Another thread is already loading this image, so wait for it.
+        if (!isLoader) return join(cf);
+        try {
+            Image image = loader.get();
+            synchronized (this) {
+                loading.remove(key);
+                if (image != null) put(key, image);
+            }
+            cf.complete(image);
+            return image;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loading.remove(key);
+            }
+            cf.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets an image from the cache, if it's there.
+     * @param key The image's unique key.
+     * @return The image, or null if it isn't cached.
+     */
+    public synchronized Image getIfPresent(String key) {
+        purgeClearedImages();
+        Image image = images.get(key);
+        if (image == null) {
+            SoftEntry entry = evictedImages.remove(key);
+            if (entry != null) image = entry.get();
+            if (image != null) put(key, image);
+        }
+        if (image != null) hits++;
+        return image;
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(hits, misses, evictions, residentBytes, maxBytes);
+    }
+
+    private void put(String key, Image image) {
+        Image previous = images.put(key, image);
+        if (previous != null) residentBytes -= sizeOf(previous);
+        residentBytes += sizeOf(image);
+        Iterator<Map.Entry<String, Image>> it = images.entrySet().iterator();
+        while (residentBytes > maxBytes && it.hasNext()) {
+            var eldest = it.next();
+            it.remove();
+            residentBytes -= sizeOf(eldest.getValue());
+            evictedImages.put(eldest.getKey(), new SoftEntry(eldest.getKey(), eldest.getValue(), clearedImages));
+            evictions++;
+        }
+    }
+
+    /**
+     * Forgets about any evicted images that were garbage-collected.
+     */
+    private void purgeClearedImages() {
+        SoftEntry entry;
+        while ((entry = (SoftEntry) clearedImages.poll()) != null) {
+            evictedImages.remove(entry.key, entry);
+        }
+    }
+
+    private static long sizeOf(Image image) {
+        return (long) Math.ceil(image.getWidth()) * (long) Math.ceil(image.getHeight()) * 4;
+    }
+
+    private static Image join(CompletableFuture<Image> cf) {
+        try {
+            return cf.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
         }
     }
 
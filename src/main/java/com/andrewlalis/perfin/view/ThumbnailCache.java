@@ -0,0 +1,88 @@
+package com.andrewlalis.perfin.view;
+
+import com.andrewlalis.perfin.data.util.ThumbnailStore;
+import com.andrewlalis.perfin.model.Attachment;
+import javafx.scene.image.Image;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads attachment thumbnails in the background, and keeps them in an
+ * {@link ImageCache}. Thumbnails are generated and read by a small, fixed
+ * number of threads, so that opening a view with lots of image attachments
+ * doesn't decode them all at once.
+ */
+public class ThumbnailCache {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailCache.class);
+    private static final int THREADS = 2;
+
+    public static final ThumbnailCache instance = new ThumbnailCache(ImageCache.instance, THREADS);
+
+    private final ImageCache images;
+    private final Map<Path, CompletableFuture<Optional<Image>>> loading = new HashMap<>();
+    private final ExecutorService executor;
+
+    public ThumbnailCache(ImageCache images, int threads) {
+        this.images = images;
+        this.executor = Executors.newFixedThreadPool(
+                threads,
+                Thread.ofPlatform().name("thumbnail-loader-", 0).daemon().factory()
+        );
+    }
+
+    /**
+     * Gets an attachment's thumbnail, loading it in the background (and
+     * generating it, if needed) if it's not in memory.
+     * @param contentDir The content directory of the attachment's profile.
+     * @param attachment The attachment.
+     * @param size The thumbnail's size, like {@link ThumbnailStore#SMALL_SIZE}.
+     * @return A future that completes with the thumbnail, or an empty
+     * optional if the attachment doesn't have one. It's completed from a
+     * background thread, unless the thumbnail was already in memory.
+     */
+    public synchronized CompletableFuture<Optional<Image>> get(Path contentDir, Attachment attachment, int size) {
+        if (!ThumbnailStore.isSupported(attachment)) return CompletableFuture.completedFuture(Optional.empty());
+        ThumbnailStore store = new ThumbnailStore(contentDir);
+        Path path = store.getPath(attachment, size);
+        Image cached = images.getIfPresent(getCacheKey(path));
+        if (cached != null) return CompletableFuture.completedFuture(Optional.of(cached));
+        // Share a single load between everyone who asks for the same thumbnail.
+        var existing = loading.get(path);
+        if (existing != null) return existing;
+        CompletableFuture<Optional<Image>> cf = CompletableFuture.supplyAsync(
+                () -> Optional.ofNullable(images.get(getCacheKey(path), () -> load(store, attachment, size))),
+                executor
+        );
+        loading.put(path, cf);
+        cf.whenComplete((image, e) -> {
+            synchronized (this) {
+                loading.remove(path);
+            }
+        });
+        return cf;
+    }
+
+    private Image load(ThumbnailStore store, Attachment attachment, int size) {
+        try {
+            return store.getOrCreate(attachment, size)
+                    .map(p -> new Image(p.toUri().toString()))
+                    .filter(img -> !img.isError())
+                    .orElse(null);
+        } catch (Exception e) {
+            log.warn("Failed to load thumbnail for attachment {}.", attachment.id, e);
+            return null;
+        }
+    }
+
+    private static String getCacheKey(Path thumbnailPath) {
+        return "thumbnail:" + thumbnailPath.toAbsolutePath();
+    }
+}
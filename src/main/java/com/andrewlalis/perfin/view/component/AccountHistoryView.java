@@ -4,7 +4,6 @@ import com.andrewlalis.perfin.control.TransactionsViewController;
 import com.andrewlalis.perfin.data.AccountRepository;
 import com.andrewlalis.perfin.data.DataSource;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
-import com.andrewlalis.perfin.data.util.DateUtil;
 import com.andrewlalis.perfin.model.AccountEntry;
 import com.andrewlalis.perfin.model.BalanceRecord;
 import com.andrewlalis.perfin.model.Profile;
@@ -25,13 +24,12 @@ import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 import static com.andrewlalis.perfin.PerfinApp.router;
 
 public class AccountHistoryView extends ScrollPane {
-    private LocalDateTime lastTimestamp = null;
+    private Timestamped lastEvent = null;
     private final BooleanProperty canLoadMore = new SimpleBooleanProperty(true);
     private final VBox itemsVBox = new VBox();
     private final LongProperty accountIdProperty = new SimpleLongProperty(-1L);
@@ -58,15 +56,16 @@ public class AccountHistoryView extends ScrollPane {
     public void loadMoreHistory() {
         long accountId = accountIdProperty.get();
         int maxItems = initialItemsToLoadProperty.get();
+        Timestamped after = lastEvent;
         DataSource ds = Profile.getCurrent().dataSource();
-        ds.mapRepoAsync(AccountRepository.class, repo -> repo.findEventsBefore(accountId, lastTimestamp(), maxItems))
+        ds.mapRepoAsync(AccountRepository.class, repo -> repo.findOlderEvents(accountId, after, maxItems))
                 .thenAccept(entities -> Platform.runLater(() -> addEntitiesToHistory(entities, maxItems)));
     }
 
     public void clear() {
         itemsVBox.getChildren().clear();
         canLoadMore.set(true);
-        lastTimestamp = null;
+        lastEvent = null;
     }
 
     public void setAccountId(long accountId) {
@@ -86,11 +85,6 @@ public class AccountHistoryView extends ScrollPane {
         initialItemsToLoadProperty.set(value);
     }
 
-    private LocalDateTime lastTimestamp() {
-        if (lastTimestamp == null) return DateUtil.nowAsUTC();
-        return lastTimestamp;
-    }
-
     private Node makeTile(Timestamped entity) {
         switch (entity) {
             case HistoryTextItem textItem -> {
@@ -140,7 +134,7 @@ public class AccountHistoryView extends ScrollPane {
             itemsVBox.getChildren().add(endMarker);
         }
         if (!entities.isEmpty()) {
-            lastTimestamp = entities.getLast().getTimestamp();
+            lastEvent = entities.getLast();
         }
     }
 }
@@ -31,11 +31,10 @@ public class AccountSelectionBox extends ComboBox<Account> {
     }
 
     public void setAccounts(List<Account> accounts) {
-        if (getAllowNone() && !accounts.contains(null)) {
-            accounts.add(null);
+        getItems().setAll(accounts);
+        if (getAllowNone() && !getItems().contains(null)) {
+            getItems().add(null);
         }
-        getItems().clear();
-        getItems().addAll(accounts);
         if (getAllowNone()) {
             getSelectionModel().select(null);
         } else {
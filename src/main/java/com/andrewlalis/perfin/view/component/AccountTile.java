@@ -1,12 +1,9 @@
 package com.andrewlalis.perfin.view.component;
 
-import com.andrewlalis.perfin.data.AccountRepository;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
 import com.andrewlalis.perfin.model.Account;
 import com.andrewlalis.perfin.model.AccountType;
 import com.andrewlalis.perfin.model.MoneyValue;
-import com.andrewlalis.perfin.model.Profile;
-import javafx.application.Platform;
 import javafx.geometry.HPos;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
@@ -32,7 +29,7 @@ public class AccountTile extends BorderPane {
             AccountType.BROKERAGE, "-fx-theme-account-type-brokerage"
     );
 
-    public AccountTile(Account account) {
+    public AccountTile(Account account, BigDecimal balance) {
         setMinWidth(300.0);
         setPrefWidth(350.0);
         setMaxWidth(400.0);
@@ -40,7 +37,7 @@ public class AccountTile extends BorderPane {
 
         setTop(getHeader(account));
         setBottom(getFooter(account));
-        setCenter(getBody(account));
+        setCenter(getBody(account, balance));
 
         this.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> router.navigate("account", account));
     }
@@ -59,7 +56,7 @@ public class AccountTile extends BorderPane {
         return footerHBox;
     }
 
-    private Node getBody(Account account) {
+    private Node getBody(Account account, BigDecimal balance) {
         PropertiesPane propertiesPane = new PropertiesPane();
         propertiesPane.setHgap(3);
         propertiesPane.setVgap(3);
@@ -79,22 +76,13 @@ public class AccountTile extends BorderPane {
         accountTypeLabel.getStyleClass().add("bold-text");
         accountTypeLabel.setStyle("-fx-text-fill: " + ACCOUNT_TYPE_COLORS.get(account.getType()));
 
-        Label balanceLabel = new Label("Computing balance...");
+        Label balanceLabel = new Label(CurrencyUtil.formatMoney(new MoneyValue(balance, account.getCurrency())));
         balanceLabel.getStyleClass().addAll("mono-font");
-        balanceLabel.setDisable(true);
-        Profile.getCurrent().dataSource().useRepoAsync(AccountRepository.class, repo -> {
-            BigDecimal balance = repo.deriveCurrentBalance(account.id);
-            String text = CurrencyUtil.formatMoney(new MoneyValue(balance, account.getCurrency()));
-            Platform.runLater(() -> {
-                balanceLabel.setText(text);
-                if (account.getType().areDebitsPositive() && balance.compareTo(BigDecimal.ZERO) < 0) {
-                    balanceLabel.getStyleClass().add("negative-color-text-fill");
-                } else if (!account.getType().areDebitsPositive() && balance.compareTo(BigDecimal.ZERO) < 0) {
-                    balanceLabel.getStyleClass().add("positive-color-text-fill");
-                }
-                balanceLabel.setDisable(false);
-            });
-        });
+        if (account.getType().areDebitsPositive() && balance.compareTo(BigDecimal.ZERO) < 0) {
+            balanceLabel.getStyleClass().add("negative-color-text-fill");
+        } else if (!account.getType().areDebitsPositive() && balance.compareTo(BigDecimal.ZERO) < 0) {
+            balanceLabel.getStyleClass().add("positive-color-text-fill");
+        }
 
         propertiesPane.getChildren().addAll(
                 newPropertyLabel("Account Number"),
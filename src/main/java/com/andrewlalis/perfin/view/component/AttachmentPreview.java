@@ -1,24 +1,24 @@
 package com.andrewlalis.perfin.view.component;
 
 import com.andrewlalis.perfin.PerfinApp;
+import com.andrewlalis.perfin.data.util.ThumbnailStore;
 import com.andrewlalis.perfin.model.Attachment;
 import com.andrewlalis.perfin.model.Profile;
 import com.andrewlalis.perfin.view.ImageCache;
+import com.andrewlalis.perfin.view.ThumbnailCache;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
+import javafx.stage.Screen;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Set;
 
 /**
  * A small component that shows the basic information about an attachment,
@@ -43,19 +43,20 @@ public class AttachmentPreview extends BorderPane {
         BorderPane.setAlignment(nameLabel, Pos.CENTER);
         contentContainer.setBottom(nameLabel);
 
-        boolean showDocIcon = true;
-        Set<String> imageTypes = Set.of("image/png", "image/jpeg", "image/gif", "image/bmp");
-        if (imageTypes.contains(attachment.getContentType())) {
-            try (var in = Files.newInputStream(attachment.getPath(Profile.getContentDir(Profile.getCurrent().name())))) {
-                Image img = new Image(in, IMAGE_SIZE, IMAGE_SIZE, true, true);
-                contentContainer.setCenter(new ImageView(img));
-                showDocIcon = false;
-            } catch (IOException e) {
-                e.printStackTrace(System.err);
-            }
-        }
-        if (showDocIcon) {
-            contentContainer.setCenter(new ImageView(ImageCache.instance.get("/images/doc-icon.png", 64, 64, true, true)));
+        // Show a document icon until the thumbnail is loaded, if there is one.
+        ImageView imageView = new ImageView(ImageCache.instance.get("/images/doc-icon.png", 64, 64, true, true));
+        imageView.setFitWidth(IMAGE_SIZE);
+        imageView.setFitHeight(IMAGE_SIZE);
+        imageView.setPreserveRatio(true);
+        imageView.setSmooth(true);
+        contentContainer.setCenter(imageView);
+        if (ThumbnailStore.isSupported(attachment)) {
+            // Use the larger thumbnail on high-DPI screens, so it's still sharp.
+            int size = Screen.getPrimary().getOutputScaleX() > 1
+                    ? ThumbnailStore.LARGE_SIZE
+                    : ThumbnailStore.SMALL_SIZE;
+            ThumbnailCache.instance.get(Profile.getContentDir(Profile.getCurrent().name()), attachment, size)
+                    .thenAccept(thumbnail -> thumbnail.ifPresent(img -> Platform.runLater(() -> imageView.setImage(img))));
         }
 
         BorderPane hoverIndicatorPane = new BorderPane();
@@ -68,15 +68,22 @@ public class TransactionLineItemTile extends BorderPane {
                 return CompletableFuture.completedFuture(tile);
             } else {
                 CompletableFuture<TransactionLineItemTile> cf = new CompletableFuture<>();
+                // The category tree is cached, so this doesn't usually need a query.
                 Profile.getCurrent().dataSource().mapRepoAsync(
                         TransactionCategoryRepository.class,
-                        repo -> repo.findById(item.getCategoryId()).orElse(null)
-                ).thenAccept(category -> Platform.runLater(() -> {
-                    propertiesPane.getChildren().addAll(
-                            boldLabelMaker.apply("Category"), new CategoryLabel(category, 5)
-                    );
-                    cf.complete(tile);
-                }));
+                        repo -> repo.getCategoryTree().findById(item.getCategoryId())
+                )
+                        .whenComplete((category, e) -> Platform.runLater(() -> {
+                            if (e != null) {
+                                log.error("Failed to load category for line item.", e);
+                            } else {
+                                category.ifPresent(c -> propertiesPane.getChildren().addAll(
+                                        boldLabelMaker.apply("Category"), new CategoryLabel(c, 5)
+                                ));
+                            }
+                            // Show the tile without its category if it couldn't be loaded.
+                            cf.complete(tile);
+                        }));
                 return cf;
             }
         } else {
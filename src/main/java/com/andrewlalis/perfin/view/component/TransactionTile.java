@@ -1,13 +1,9 @@
 package com.andrewlalis.perfin.view.component;
 
-import com.andrewlalis.perfin.data.TransactionCategoryRepository;
-import com.andrewlalis.perfin.data.TransactionRepository;
-import com.andrewlalis.perfin.data.TransactionVendorRepository;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
 import com.andrewlalis.perfin.data.util.DateUtil;
-import com.andrewlalis.perfin.model.Profile;
 import com.andrewlalis.perfin.model.Transaction;
-import javafx.application.Platform;
+import com.andrewlalis.perfin.model.TransactionSummary;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.scene.Node;
@@ -16,26 +12,29 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 
+import java.util.stream.Collectors;
+
 import static com.andrewlalis.perfin.PerfinApp.router;
 
 /**
- * A tile that displays a transaction's basic information.
+ * A tile that displays a transaction's basic information. It's built entirely
+ * from a {@link TransactionSummary}, so showing it doesn't need any queries.
+ * The same tile can be reused to show different transactions, like in the
+ * cells of a list.
  */
 public class TransactionTile extends BorderPane {
     public final BooleanProperty selected = new SimpleBooleanProperty(false);
 
-    public TransactionTile(Transaction transaction) {
-        getStyleClass().addAll("tile", "hand-cursor");
-
-        setTop(getHeader(transaction));
-        setCenter(getBody(transaction));
-        setBottom(getFooter(transaction));
-        setRight(getExtra(transaction));
+    public TransactionTile(TransactionSummary summary) {
+        this();
+        setSummary(summary);
+    }
 
+    public TransactionTile() {
+        getStyleClass().addAll("tile", "hand-cursor");
         selected.addListener((observable, oldValue, newValue) -> {
             if (newValue) {
                 getStyleClass().add("tile-selected");
@@ -45,13 +44,25 @@ public class TransactionTile extends BorderPane {
         });
     }
 
+    /**
+     * Shows a transaction in this tile, replacing whatever it showed before.
+     * @param summary The transaction's summary.
+     */
+    public void setSummary(TransactionSummary summary) {
+        setTop(getHeader(summary.transaction()));
+        setCenter(getBody(summary));
+        setBottom(getFooter(summary));
+        setRight(getExtra(summary));
+    }
+
     private Node getHeader(Transaction transaction) {
         Label headerLabel = new Label("Transaction #" + transaction.id);
         headerLabel.getStyleClass().addAll("bold-text");
         return headerLabel;
     }
 
-    private Node getBody(Transaction transaction) {
+    private Node getBody(TransactionSummary summary) {
+        Transaction transaction = summary.transaction();
         PropertiesPane propertiesPane = new PropertiesPane(150);
         Label amountLabel = new Label("Amount");
         amountLabel.getStyleClass().add("bold-text");
@@ -72,58 +83,49 @@ public class TransactionTile extends BorderPane {
         VBox bodyVBox = new VBox(
                 propertiesPane
         );
-        Profile.getCurrent().dataSource().mapRepoAsync(
-                TransactionRepository.class,
-                repo -> repo.findLinkedAccounts(transaction.id)
-        ).thenAccept(accounts -> {
-            accounts.ifCredit(acc -> {
-                Hyperlink link = new Hyperlink(acc.getShortName());
-                link.setOnAction(event -> router.navigate("account", acc));
-                Text prefix = new Text("Credited from");
-                prefix.getStyleClass().add("negative-color-fill");
-                Platform.runLater(() -> bodyVBox.getChildren().add(new TextFlow(prefix, link)));
-            });
-            accounts.ifDebit(acc -> {
-                Hyperlink link = new Hyperlink(acc.getShortName());
-                link.setOnAction(event -> router.navigate("account", acc));
-                Text prefix = new Text("Debited to");
-                prefix.getStyleClass().add("positive-color-fill");
-                Platform.runLater(() -> bodyVBox.getChildren().add(new TextFlow(prefix, link)));
-            });
+        summary.linkedAccounts().ifCredit(acc -> {
+            Hyperlink link = new Hyperlink(acc.getShortName());
+            link.setOnAction(event -> router.navigate("account", acc));
+            Text prefix = new Text("Credited from");
+            prefix.getStyleClass().add("negative-color-fill");
+            bodyVBox.getChildren().add(new TextFlow(prefix, link));
+        });
+        summary.linkedAccounts().ifDebit(acc -> {
+            Hyperlink link = new Hyperlink(acc.getShortName());
+            link.setOnAction(event -> router.navigate("account", acc));
+            Text prefix = new Text("Debited to");
+            prefix.getStyleClass().add("positive-color-fill");
+            bodyVBox.getChildren().add(new TextFlow(prefix, link));
         });
         return bodyVBox;
     }
 
-    private Node getFooter(Transaction transaction) {
-        Label timestampLabel = new Label(DateUtil.formatUTCAsLocalWithZone(transaction.getTimestamp()));
+    private Node getFooter(TransactionSummary summary) {
+        Label timestampLabel = new Label(DateUtil.formatUTCAsLocalWithZone(summary.transaction().getTimestamp()));
         HBox footerHBox = new HBox(
                 timestampLabel
         );
+        if (!summary.tags().isEmpty()) {
+            footerHBox.getChildren().add(new Label(summary.tags().stream()
+                    .map(tag -> "#" + tag)
+                    .collect(Collectors.joining(" "))));
+        }
+        if (summary.attachmentCount() > 0) {
+            footerHBox.getChildren().add(new Label(
+                    summary.attachmentCount() + (summary.attachmentCount() == 1 ? " attachment" : " attachments")
+            ));
+        }
         footerHBox.getStyleClass().addAll("std-spacing", "small-font");
         return footerHBox;
     }
 
-    private Node getExtra(Transaction transaction) {
-        VBox categoryContainer = new VBox();
-        VBox vendorContainer = new VBox();
-        VBox content = new VBox(categoryContainer, vendorContainer);
-        if (transaction.getCategoryId() != null) {
-            Profile.getCurrent().dataSource().mapRepoAsync(
-                    TransactionCategoryRepository.class,
-                    repo -> repo.findById(transaction.getCategoryId()).orElse(null)
-            ).thenAccept(category -> {
-                if (category == null) return;
-                Platform.runLater(() -> categoryContainer.getChildren().add(new CategoryLabel(category)));
-            });
+    private Node getExtra(TransactionSummary summary) {
+        VBox content = new VBox();
+        if (summary.category() != null) {
+            content.getChildren().add(new CategoryLabel(summary.category()));
         }
-        if (transaction.getVendorId() != null) {
-            Profile.getCurrent().dataSource().mapRepoAsync(
-                    TransactionVendorRepository.class,
-                    repo -> repo.findById(transaction.getVendorId()).orElse(null)
-            ).thenAccept(vendor -> {
-                if (vendor == null) return;
-                Platform.runLater(() -> vendorContainer.getChildren().add(new Text("@ " + vendor.getName())));
-            });
+        if (summary.vendor() != null) {
+            content.getChildren().add(new Text("@ " + summary.vendor().getName()));
         }
         return content;
     }
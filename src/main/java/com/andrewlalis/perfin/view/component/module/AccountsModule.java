@@ -14,6 +14,9 @@ import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.*;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.andrewlalis.perfin.PerfinApp.router;
 
@@ -62,9 +65,16 @@ public class AccountsModule extends DashboardModule {
     public void refreshContents() {
         Profile.getCurrent().dataSource().mapRepoAsync(
             AccountRepository.class,
-            AccountRepository::findAllOrderedByRecentHistory
+            repo -> {
+                List<Account> accounts = repo.findAllOrderedByRecentHistory();
+                Map<Long, BigDecimal> balances = repo.deriveCurrentBalances(
+                        accounts.stream().map(a -> a.id).collect(Collectors.toSet())
+                );
+                return accounts.stream()
+                        .map(account -> buildMiniAccountTile(account, balances.get(account.id)))
+                        .toList();
+            }
         )
-            .thenApply(accounts -> accounts.stream().map(AccountsModule::buildMiniAccountTile).toList())
             .thenAccept(nodes -> Platform.runLater(() -> {
                 accountsVBox.getChildren().clear();
                 accountsVBox.getChildren().addAll(nodes);
@@ -79,7 +89,7 @@ public class AccountsModule extends DashboardModule {
                 }));
     }
 
-    private static Node buildMiniAccountTile(Account account) {
+    private static Node buildMiniAccountTile(Account account, BigDecimal balance) {
         BorderPane borderPane = new BorderPane();
         borderPane.getStyleClass().addAll("tile", "hand-cursor");
         borderPane.setOnMouseClicked(event -> router.navigate("account", account));
@@ -91,23 +101,13 @@ public class AccountsModule extends DashboardModule {
         Label typeLabel = new Label(account.getType().toString());
         typeLabel.getStyleClass().add("bold-text");
         typeLabel.setStyle("-fx-text-fill: " + AccountTile.ACCOUNT_TYPE_COLORS.get(account.getType()));
-        Label balanceLabel = new Label("Computing balance...");
+        Label balanceLabel = new Label(CurrencyUtil.formatMoneyWithCurrencyPrefix(new MoneyValue(balance, account.getCurrency())));
         balanceLabel.getStyleClass().addAll("mono-font");
-        balanceLabel.setDisable(true);
-
-        Profile.getCurrent().dataSource().mapRepoAsync(
-                AccountRepository.class,
-                repo -> repo.deriveCurrentBalance(account.id)
-        ).thenAccept(bal -> Platform.runLater(() -> {
-            String text = CurrencyUtil.formatMoneyWithCurrencyPrefix(new MoneyValue(bal, account.getCurrency()));
-            balanceLabel.setText(text);
-            if (account.getType().areDebitsPositive() && bal.compareTo(BigDecimal.ZERO) < 0) {
-                balanceLabel.getStyleClass().add("negative-color-text-fill");
-            } else if (!account.getType().areDebitsPositive() && bal.compareTo(BigDecimal.ZERO) < 0) {
-                balanceLabel.getStyleClass().add("positive-color-text-fill");
-            }
-            balanceLabel.setDisable(false);
-        }));
+        if (account.getType().areDebitsPositive() && balance.compareTo(BigDecimal.ZERO) < 0) {
+            balanceLabel.getStyleClass().add("negative-color-text-fill");
+        } else if (!account.getType().areDebitsPositive() && balance.compareTo(BigDecimal.ZERO) < 0) {
+            balanceLabel.getStyleClass().add("positive-color-text-fill");
+        }
 
         VBox contentBox = new VBox(nameLabel, numberLabel, typeLabel);
         borderPane.setCenter(contentBox);
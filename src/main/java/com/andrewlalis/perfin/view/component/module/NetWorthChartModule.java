@@ -0,0 +1,228 @@
+package com.andrewlalis.perfin.view.component.module;
+
+import com.andrewlalis.perfin.data.AccountRepository;
+import com.andrewlalis.perfin.data.TimeGranularity;
+import com.andrewlalis.perfin.data.TimestampRange;
+import com.andrewlalis.perfin.data.util.DateUtil;
+import com.andrewlalis.perfin.data.util.Pair;
+import com.andrewlalis.perfin.model.Account;
+import com.andrewlalis.perfin.model.AccountType;
+import com.andrewlalis.perfin.model.Profile;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.util.StringConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * A dashboard module that shows a line chart of the combined balance of all
+ * accounts in a selected currency, over a selected time window.
+ */
+public class NetWorthChartModule extends DashboardModule {
+    private static final Logger log = LoggerFactory.getLogger(NetWorthChartModule.class);
+
+    private static final Map<String, Supplier<TimestampRange>> TIMESTAMP_RANGES = Map.of(
+            "Last 30 days", () -> TimestampRange.lastNDays(30),
+            "Last 90 days", () -> TimestampRange.lastNDays(90),
+            "Last 365 days", () -> TimestampRange.lastNDays(365),
+            "This Year", TimestampRange::thisYear,
+            "All Time", TimestampRange::unbounded
+    );
+    private static final String[] RANGE_CHOICES = {
+            "Last 30 days",
+            "Last 90 days",
+            "Last 365 days",
+            "This Year",
+            "All Time"
+    };
+    private static final String PREFERRED_CURRENCY_SETTING = "charts.net-worth.default-currency";
+    private static final String TIME_RANGE_SETTING = "charts.net-worth.default-time-range";
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final ObservableList<XYChart.Data<Number, Number>> chartData = FXCollections.observableArrayList();
+    private final ChoiceBox<Currency> currencyChoiceBox = new ChoiceBox<>();
+    private final ChoiceBox<String> timeRangeChoiceBox = new ChoiceBox<>();
+    /**
+     * Incremented each time the chart is rendered, so that a slow, outdated
+     * render doesn't overwrite the results of a newer one.
+     */
+    private long renderCount = 0;
+
+    public NetWorthChartModule(Pane parent) {
+        super(parent);
+        timeRangeChoiceBox.getItems().addAll(RANGE_CHOICES);
+        timeRangeChoiceBox.getSelectionModel().select("Last 365 days");
+
+        // Points are plotted by their time in (fractional) days since the epoch.
+        NumberAxis timeAxis = new NumberAxis();
+        timeAxis.setForceZeroInRange(false);
+        timeAxis.setMinorTickVisible(false);
+        timeAxis.setTickLabelFormatter(new StringConverter<>() {
+            @Override
+            public String toString(Number epochDays) {
+                long epochSecond = Math.round(epochDays.doubleValue() * SECONDS_PER_DAY);
+                return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC)
+                        .atOffset(ZoneOffset.UTC)
+                        .atZoneSameInstant(ZoneId.systemDefault())
+                        .format(DateUtil.DEFAULT_DATE_FORMAT);
+            }
+
+            @Override
+            public Number fromString(String string) {
+                try {
+                    long epochSecond = LocalDate.parse(string, DateUtil.DEFAULT_DATE_FORMAT)
+                            .atStartOfDay(ZoneId.systemDefault())
+                            .toEpochSecond();
+                    return epochSecond / (double) SECONDS_PER_DAY;
+                } catch (DateTimeParseException e) {
+                    return null;
+                }
+            }
+        });
+        LineChart<Number, Number> chart = new LineChart<>(timeAxis, new NumberAxis());
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.setLegendVisible(false);
+        chart.getData().add(new XYChart.Series<>(chartData));
+        VBox.setVgrow(chart, Priority.ALWAYS);
+
+        this.getChildren().add(new ModuleHeader(
+                "Net Worth",
+                timeRangeChoiceBox,
+                currencyChoiceBox
+        ));
+        this.getChildren().add(chart);
+        currencyChoiceBox.valueProperty().addListener((observable, oldValue, newValue) -> renderChart());
+        timeRangeChoiceBox.valueProperty().addListener((observable, oldValue, newValue) -> renderChart());
+    }
+
+    @Override
+    public void refreshContents() {
+        refreshCurrencies();
+        String savedTimeRangeLabel = Profile.getCurrent().getSetting(TIME_RANGE_SETTING).orElse(null);
+        if (savedTimeRangeLabel != null && TIMESTAMP_RANGES.containsKey(savedTimeRangeLabel)) {
+            timeRangeChoiceBox.getSelectionModel().select(savedTimeRangeLabel);
+        }
+    }
+
+    private void renderChart() {
+        final long renderId = ++renderCount;
+        final Currency currency = currencyChoiceBox.getValue();
+        final String timeRangeLabel = timeRangeChoiceBox.getValue();
+        if (currency == null || timeRangeLabel == null || !TIMESTAMP_RANGES.containsKey(timeRangeLabel)) {
+            chartData.clear();
+            return;
+        }
+        final TimestampRange range = TIMESTAMP_RANGES.get(timeRangeLabel).get();
+        Profile.getCurrent().dataSource().mapRepoAsync(
+                AccountRepository.class,
+                repo -> getNetWorthSeries(repo, currency, range)
+        )
+                .exceptionally(throwable -> {
+                    log.error("Failed to get net worth series.", throwable);
+                    return Collections.emptyList();
+                })
+                .thenAccept(series -> {
+                    List<XYChart.Data<Number, Number>> data = series.stream()
+                            .map(point -> new XYChart.Data<Number, Number>(
+                                    point.first().toEpochSecond(ZoneOffset.UTC) / (double) SECONDS_PER_DAY,
+                                    point.second().doubleValue()
+                            ))
+                            .toList();
+                    Platform.runLater(() -> {
+                        if (renderId == renderCount) chartData.setAll(data);
+                    });
+                });
+        Profile.getCurrent().setSettingAndSave(PREFERRED_CURRENCY_SETTING, currency.getCurrencyCode());
+        Profile.getCurrent().setSettingAndSave(TIME_RANGE_SETTING, timeRangeLabel);
+    }
+
+    private void refreshCurrencies() {
+        Profile.getCurrent().dataSource().mapRepoAsync(
+                AccountRepository.class,
+                AccountRepository::findAllUsedCurrencies
+        )
+            .thenAccept(currencies -> {
+                final List<Currency> orderedCurrencies = currencies.stream()
+                        .sorted(Comparator.comparing(Currency::getCurrencyCode))
+                        .toList();
+                final Currency preferredCurrency = Profile.getCurrent().getSetting(PREFERRED_CURRENCY_SETTING)
+                        .map(Currency::getInstance).orElse(null);
+                Platform.runLater(() -> {
+                    currencyChoiceBox.getItems().setAll(orderedCurrencies);
+                    if (preferredCurrency != null && currencies.contains(preferredCurrency)) {
+                        currencyChoiceBox.getSelectionModel().select(preferredCurrency);
+                    } else {
+                        currencyChoiceBox.getSelectionModel().selectFirst();
+                    }
+                });
+            });
+    }
+
+    /**
+     * Sums up the balance series of all accounts in a currency. Like with the
+     * combined balances elsewhere, credit card balances count as liabilities.
+     * @param repo The account repository to use.
+     * @param currency The currency to get the net worth for.
+     * @param range The range of time to get the net worth over.
+     * @return The list of (UTC timestamp, net worth) points, in order.
+     */
+    private static List<Pair<LocalDateTime, BigDecimal>> getNetWorthSeries(
+            AccountRepository repo,
+            Currency currency,
+            TimestampRange range
+    ) {
+        List<Account> accounts = repo.findAllByCurrency(currency);
+        if (accounts.isEmpty()) return Collections.emptyList();
+        // Don't bother showing the time before any account existed.
+        LocalDateTime earliestCreatedAt = accounts.stream()
+                .map(Account::getCreatedAt)
+                .min(LocalDateTime::compareTo).orElseThrow();
+        if (earliestCreatedAt.isAfter(range.start())) {
+            if (!earliestCreatedAt.isBefore(range.end())) return Collections.emptyList();
+            range = new TimestampRange(earliestCreatedAt, range.end());
+        }
+        TimeGranularity granularity = chooseGranularity(range);
+        Map<LocalDateTime, BigDecimal> totals = new TreeMap<>();
+        for (var account : accounts) {
+            for (var point : repo.getBalanceSeries(account.id, range, granularity)) {
+                BigDecimal balance = point.second();
+                if (account.getType() == AccountType.CREDIT_CARD) balance = balance.negate();
+                totals.merge(point.first(), balance, BigDecimal::add);
+            }
+        }
+        return totals.entrySet().stream()
+                .map(entry -> Pair.of(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * Picks a granularity that gives a reasonable number of points to plot.
+     * @param range The range of time to plot.
+     * @return The granularity to use.
+     */
+    private static TimeGranularity chooseGranularity(TimestampRange range) {
+        long days = Duration.between(range.start(), range.end()).toDays();
+        if (days <= 120) return TimeGranularity.DAY;
+        if (days <= 3 * 365) return TimeGranularity.WEEK;
+        return TimeGranularity.MONTH;
+    }
+}
@@ -1,12 +1,13 @@
 package com.andrewlalis.perfin.view.component.module;
 
 import com.andrewlalis.perfin.control.TransactionsViewController;
-import com.andrewlalis.perfin.data.TransactionCategoryRepository;
 import com.andrewlalis.perfin.data.TransactionRepository;
 import com.andrewlalis.perfin.data.util.CurrencyUtil;
 import com.andrewlalis.perfin.data.util.DateUtil;
+import com.andrewlalis.perfin.model.CreditAndDebitAccounts;
 import com.andrewlalis.perfin.model.Profile;
 import com.andrewlalis.perfin.model.Transaction;
+import com.andrewlalis.perfin.model.TransactionSummary;
 import com.andrewlalis.perfin.view.BindingUtil;
 import com.andrewlalis.perfin.view.component.CategoryLabel;
 import com.andrewlalis.perfin.view.component.StyledText;
@@ -60,7 +61,7 @@ public class RecentTransactionsModule extends DashboardModule {
     public void refreshContents() {
         Profile.getCurrent().dataSource().mapRepoAsync(
                 TransactionRepository.class,
-                repo -> repo.findRecentN(5)
+                repo -> repo.findSummaries(repo.findRecentN(5))
         )
             .thenApply(transactions -> transactions.stream().map(RecentTransactionsModule::buildMiniTransactionTile).toList())
             .thenAccept(nodes -> Platform.runLater(() -> {
@@ -69,7 +70,8 @@ public class RecentTransactionsModule extends DashboardModule {
             }));
     }
 
-    private static Node buildMiniTransactionTile(Transaction tx) {
+    private static Node buildMiniTransactionTile(TransactionSummary summary) {
+        Transaction tx = summary.transaction();
         BorderPane borderPane = new BorderPane();
         borderPane.getStyleClass().addAll("tile", "hand-cursor");
         borderPane.setOnMouseClicked(event -> router.navigate("transactions", new TransactionsViewController.RouteContext(tx.id)));
@@ -78,21 +80,16 @@ public class RecentTransactionsModule extends DashboardModule {
         dateLabel.getStyleClass().addAll("mono-font", "small-font", "secondary-color-text-fill");
         StyledText linkedAccountsLabel = new StyledText();
         linkedAccountsLabel.getStyleClass().addAll("small-font");
-        Profile.getCurrent().dataSource().mapRepoAsync(
-                TransactionRepository.class,
-                repo -> repo.findLinkedAccounts(tx.id)
-        )
-            .thenAccept(accounts -> Platform.runLater(() -> {
-                StringBuilder sb = new StringBuilder();
-                if (accounts.hasCredit()) {
-                    sb.append("Credited from **").append(accounts.creditAccount().getName()).append("**");
-                    if (accounts.hasDebit()) sb.append(". ");
-                }
-                if (accounts.hasDebit()) {
-                    sb.append("Debited to **").append(accounts.debitAccount().getName()).append("**");
-                }
-                linkedAccountsLabel.setText(sb.toString());
-            }));
+        CreditAndDebitAccounts accounts = summary.linkedAccounts();
+        StringBuilder sb = new StringBuilder();
+        if (accounts.hasCredit()) {
+            sb.append("Credited from **").append(accounts.creditAccount().getName()).append("**");
+            if (accounts.hasDebit()) sb.append(". ");
+        }
+        if (accounts.hasDebit()) {
+            sb.append("Debited to **").append(accounts.debitAccount().getName()).append("**");
+        }
+        linkedAccountsLabel.setText(sb.toString());
         Label descriptionLabel = new Label(tx.getDescription());
         BindingUtil.bindManagedAndVisible(descriptionLabel, descriptionLabel.textProperty().isNotEmpty());
 
@@ -100,13 +97,8 @@ public class RecentTransactionsModule extends DashboardModule {
         Label balanceLabel = new Label(CurrencyUtil.formatMoneyWithCurrencyPrefix(tx.getMoneyAmount()));
         balanceLabel.getStyleClass().addAll("mono-font");
         VBox rightPanel = new VBox(balanceLabel);
-        if (tx.getCategoryId() != null) {
-            Profile.getCurrent().dataSource().mapRepoAsync(
-                    TransactionCategoryRepository.class,
-                    repo -> repo.findById(tx.getCategoryId()).orElse(null)
-            ).thenAccept(category -> {
-                if (category != null) Platform.runLater(() -> rightPanel.getChildren().add(new CategoryLabel(category)));
-            });
+        if (summary.category() != null) {
+            rightPanel.getChildren().add(new CategoryLabel(summary.category()));
         }
 
         VBox contentBox = new VBox(dateLabel, descriptionLabel, linkedAccountsLabel);
@@ -8,6 +8,7 @@ module com.andrewlalis.perfin {
     requires com.fasterxml.jackson.databind;
 
     requires java.sql;
+    requires java.desktop;
 
     requires org.slf4j;
 
@@ -0,0 +1,15 @@
+/*
+This migration adds the `account_balance_snapshot` table, which stores the
+derived balance of each account at the end of every day on which it had any
+activity, so that balances can be found without summing over all of the
+account's entries. The snapshots are populated after this script runs.
+*/
+CREATE TABLE account_balance_snapshot (
+    account_id BIGINT NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    balance NUMERIC(12, 4) NOT NULL,
+    PRIMARY KEY (account_id, timestamp),
+    CONSTRAINT fk_account_balance_snapshot_account
+        FOREIGN KEY (account_id) REFERENCES account(id)
+            ON UPDATE CASCADE ON DELETE CASCADE
+);
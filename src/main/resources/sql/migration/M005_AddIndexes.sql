@@ -0,0 +1,23 @@
+/*
+This migration adds indexes for the columns that the most frequent queries
+filter and order by, so that things like balance derivation, account history
+and the analytics charts don't need to scan whole tables.
+Note that H2 already creates an index for each foreign key that isn't covered
+by another index, so single-column lookups like `account_entry.transaction_id`,
+`transaction_tag_join.tag_id` and `transaction_line_item.transaction_id` are
+already indexed. We only add the composite and non-key indexes here.
+*/
+CREATE INDEX idx_account_entry_account_timestamp
+    ON account_entry(account_id, timestamp);
+
+CREATE INDEX idx_balance_record_account_timestamp
+    ON balance_record(account_id, timestamp);
+
+CREATE INDEX idx_transaction_timestamp
+    ON transaction(timestamp);
+
+CREATE INDEX idx_transaction_currency_timestamp
+    ON transaction(currency, timestamp);
+
+CREATE INDEX idx_history_item_history_timestamp
+    ON history_item(history_id, timestamp);
@@ -0,0 +1,26 @@
+/*
+This migration adds the `transaction_rollup` table, which stores the total
+amount of transactions per day, currency, account entry type, category and
+vendor, so that analytics don't need to aggregate over every transaction. The
+rollup is populated after this script runs.
+*/
+CREATE TABLE transaction_rollup (
+    transaction_date DATE NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    type ENUM('CREDIT', 'DEBIT') NOT NULL,
+    category_id BIGINT DEFAULT NULL,
+    vendor_id BIGINT DEFAULT NULL,
+    amount NUMERIC(18, 4) NOT NULL,
+    CONSTRAINT fk_transaction_rollup_category
+        FOREIGN KEY (category_id) REFERENCES transaction_category(id)
+            ON UPDATE CASCADE ON DELETE SET NULL,
+    CONSTRAINT fk_transaction_rollup_vendor
+        FOREIGN KEY (vendor_id) REFERENCES transaction_vendor(id)
+            ON UPDATE CASCADE ON DELETE SET NULL
+);
+
+CREATE INDEX idx_transaction_rollup_currency_type_date
+    ON transaction_rollup(currency, type, transaction_date);
+
+CREATE INDEX idx_transaction_rollup_date
+    ON transaction_rollup(transaction_date);
@@ -0,0 +1,14 @@
+/*
+This migration replaces the transaction timestamp index with indexes on
+(timestamp, id) in both directions, which is the order that the transactions
+view pages through. H2 can only read an index in its own order, so with these
+a page of transactions only needs to read the rows on that page, no matter
+how far into the list it is.
+*/
+DROP INDEX idx_transaction_timestamp;
+
+CREATE INDEX idx_transaction_timestamp_id
+    ON transaction(timestamp, id);
+
+CREATE INDEX idx_transaction_timestamp_id_desc
+    ON transaction(timestamp DESC, id DESC);
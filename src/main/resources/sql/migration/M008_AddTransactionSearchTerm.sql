@@ -0,0 +1,15 @@
+/*
+This migration adds the `transaction_search_term` table, which is an inverted
+index of the words in each transaction's description, vendor, category, tags
+and line items, so that searching transactions doesn't need to scan them all.
+The index is populated after this script runs.
+*/
+CREATE TABLE transaction_search_term (
+    term VARCHAR(63) NOT NULL,
+    transaction_id BIGINT NOT NULL,
+    weight INT NOT NULL,
+    PRIMARY KEY (term, transaction_id),
+    CONSTRAINT fk_transaction_search_term_transaction
+        FOREIGN KEY (transaction_id) REFERENCES transaction(id)
+            ON UPDATE CASCADE ON DELETE CASCADE
+);
@@ -0,0 +1,15 @@
+/*
+This migration adds descending indexes for the account history view, which
+lists an account's entries, balance records and history items newest first.
+H2 can only read an index in its own order, and only uses it for sorting if
+the ORDER BY starts with the index's first column, so these lead with the
+account (or history) id, in the same direction as the rest of the index.
+*/
+CREATE INDEX idx_account_entry_account_timestamp_id_desc
+    ON account_entry(account_id DESC, timestamp DESC, id DESC);
+
+CREATE INDEX idx_balance_record_account_timestamp_id_desc
+    ON balance_record(account_id DESC, timestamp DESC, id DESC);
+
+CREATE INDEX idx_history_item_history_timestamp_id_desc
+    ON history_item(history_id DESC, timestamp DESC, id DESC);
@@ -114,6 +114,31 @@ CREATE TABLE transaction_line_item (
         CHECK quantity > 0
 );
 
+CREATE TABLE transaction_rollup (
+    transaction_date DATE NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    type ENUM('CREDIT', 'DEBIT') NOT NULL,
+    category_id BIGINT DEFAULT NULL,
+    vendor_id BIGINT DEFAULT NULL,
+    amount NUMERIC(18, 4) NOT NULL,
+    CONSTRAINT fk_transaction_rollup_category
+        FOREIGN KEY (category_id) REFERENCES transaction_category(id)
+            ON UPDATE CASCADE ON DELETE SET NULL,
+    CONSTRAINT fk_transaction_rollup_vendor
+        FOREIGN KEY (vendor_id) REFERENCES transaction_vendor(id)
+            ON UPDATE CASCADE ON DELETE SET NULL
+);
+
+CREATE TABLE transaction_search_term (
+    term VARCHAR(63) NOT NULL,
+    transaction_id BIGINT NOT NULL,
+    weight INT NOT NULL,
+    PRIMARY KEY (term, transaction_id),
+    CONSTRAINT fk_transaction_search_term_transaction
+        FOREIGN KEY (transaction_id) REFERENCES transaction(id)
+            ON UPDATE CASCADE ON DELETE CASCADE
+);
+
 /* BALANCE RECORD ENTITIES */
 
 CREATE TABLE balance_record (
@@ -139,6 +164,16 @@ CREATE TABLE balance_record_attachment (
             ON UPDATE CASCADE ON DELETE CASCADE
 );
 
+CREATE TABLE account_balance_snapshot (
+    account_id BIGINT NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    balance NUMERIC(12, 4) NOT NULL,
+    PRIMARY KEY (account_id, timestamp),
+    CONSTRAINT fk_account_balance_snapshot_account
+        FOREIGN KEY (account_id) REFERENCES account(id)
+            ON UPDATE CASCADE ON DELETE CASCADE
+);
+
 /* HISTORY */
 CREATE TABLE history (
     id BIGINT PRIMARY KEY AUTO_INCREMENT
@@ -185,3 +220,37 @@ CREATE TABLE history_transaction (
         FOREIGN KEY (history_id) REFERENCES history(id)
             ON UPDATE CASCADE ON DELETE CASCADE
 );
+
+/* INDEXES */
+CREATE INDEX idx_account_entry_account_timestamp
+    ON account_entry(account_id, timestamp);
+
+CREATE INDEX idx_account_entry_account_timestamp_id_desc
+    ON account_entry(account_id DESC, timestamp DESC, id DESC);
+
+CREATE INDEX idx_balance_record_account_timestamp
+    ON balance_record(account_id, timestamp);
+
+CREATE INDEX idx_balance_record_account_timestamp_id_desc
+    ON balance_record(account_id DESC, timestamp DESC, id DESC);
+
+CREATE INDEX idx_transaction_timestamp_id
+    ON transaction(timestamp, id);
+
+CREATE INDEX idx_transaction_timestamp_id_desc
+    ON transaction(timestamp DESC, id DESC);
+
+CREATE INDEX idx_transaction_currency_timestamp
+    ON transaction(currency, timestamp);
+
+CREATE INDEX idx_history_item_history_timestamp
+    ON history_item(history_id, timestamp);
+
+CREATE INDEX idx_history_item_history_timestamp_id_desc
+    ON history_item(history_id DESC, timestamp DESC, id DESC);
+
+CREATE INDEX idx_transaction_rollup_currency_type_date
+    ON transaction_rollup(currency, type, transaction_date);
+
+CREATE INDEX idx_transaction_rollup_date
+    ON transaction_rollup(transaction_date);
@@ -0,0 +1,93 @@
+package com.andrewlalis.perfin.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RepositoryExecutorTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private RepositoryExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) executor.close();
+    }
+
+    /**
+     * Occupies the executor's only thread until {@link #release} is counted
+     * down.
+     */
+    private CompletableFuture<Object> block() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        var cf = executor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        started.await();
+        return cf;
+    }
+
+    @Test
+    public void testInteractiveTasksRunFirst() throws Exception {
+        executor = new RepositoryExecutor(1, 10);
+        var blocker = block();
+        List<String> order = new CopyOnWriteArrayList<>();
+        var background = executor.submit(RepositoryExecutor.Priority.BACKGROUND, () -> order.add("background"));
+        var first = executor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> order.add("first"));
+        var second = executor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> order.add("second"));
+        assertEquals(3, executor.getMetrics().queued());
+        release.countDown();
+        CompletableFuture.allOf(blocker, background, first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("first", "second", "background"), order);
+        var metrics = executor.getMetrics();
+        assertEquals(4, metrics.completed());
+        assertEquals(0, metrics.queued());
+        assertTrue(metrics.maxWaitMillis() > 0);
+    }
+
+    @Test
+    public void testFailuresArePropagated() {
+        executor = new RepositoryExecutor(2, 10);
+        var cf = executor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> {
+            throw new IllegalStateException("Query failed.");
+        });
+        var e = assertThrows(ExecutionException.class, () -> cf.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(1, executor.getMetrics().failed());
+    }
+
+    @Test
+    public void testCancelQueuedTask() throws Exception {
+        executor = new RepositoryExecutor(1, 10);
+        var blocker = block();
+        var cf = executor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> fail("Cancelled tasks shouldn't run."));
+        assertTrue(cf.cancel(false));
+        assertEquals(0, executor.getMetrics().queued());
+        assertEquals(1, executor.getMetrics().cancelled());
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        assertEquals(1, executor.getMetrics().completed());
+    }
+
+    @Test
+    public void testBackgroundTasksAreRejectedWhenQueueIsFull() throws Exception {
+        executor = new RepositoryExecutor(1, 1);
+        block();
+        var queued = executor.submit(RepositoryExecutor.Priority.BACKGROUND, () -> "queued");
+        var rejected = executor.submit(RepositoryExecutor.Priority.BACKGROUND, () -> "rejected");
+        var e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        // Interactive tasks are always accepted.
+        var interactive = executor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> "interactive");
+        release.countDown();
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+        assertEquals("interactive", interactive.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getMetrics().rejected());
+    }
+}
@@ -0,0 +1,156 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.TimestampRange;
+import com.andrewlalis.perfin.data.util.DbUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A simple benchmark that compares the latency of some of the most frequent
+ * queries with and without the secondary indexes from the schema, on a large
+ * profile made by the {@link ProfileGenerator}. For the "before" run, every
+ * index that doesn't back a primary key or other constraint is dropped, and
+ * they're all re-created from schema.sql for the "after" run. This isn't run
+ * as part of the tests; run its main method directly.
+ */
+public class IndexBenchmark {
+    private static final String SCHEMA = "/sql/schema.sql";
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final int TRANSACTIONS = 200_000;
+    private static final int DAYS = 4 * 365;
+    private static final int ITERATIONS = 10;
+    private static final ProfileGenerator.Options OPTIONS = ProfileGenerator.Options.builder()
+            .startDate(LocalDate.of(2020, 1, 1))
+            .days(DAYS)
+            .transactionsPerDay((double) TRANSACTIONS / DAYS)
+            .currencyWeights(Map.of(USD, 1.0))
+            .vendors(50)
+            .categories(50)
+            .tags(10)
+            .tagRatio(0.02)
+            // No attachments are generated, so nothing is written to the content directory.
+            .attachmentRatio(0)
+            .historyItemsPerAccount(100)
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        try (Connection conn = JdbcTestUtil.newDatabase()) {
+            System.out.println("Generating a profile with " + TRANSACTIONS + " transactions...");
+            List<Long> accountIds = new ProfileGenerator(OPTIONS).generate(conn, Path.of("content")).accountIds();
+
+            for (String index : findSecondaryIndexNames(conn)) {
+                DbUtil.update(conn, "DROP INDEX " + index);
+            }
+            Map<String, Double> before = runQueries(conn, accountIds);
+            for (String sql : readSchemaIndexes()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(sql);
+                }
+            }
+            Map<String, Double> after = runQueries(conn, accountIds);
+
+            System.out.printf("%-32s %12s %12s%n", "Query", "Before (ms)", "After (ms)");
+            for (String name : before.keySet()) {
+                System.out.printf("%-32s %12.3f %12.3f%n", name, before.get(name), after.get(name));
+            }
+        }
+    }
+
+    private static Map<String, Double> runQueries(Connection conn, List<Long> accountIds) {
+        ReferenceDataCache cache = new ReferenceDataCache();
+        JdbcAccountRepository accountRepo = new JdbcAccountRepository(conn, null, cache);
+        JdbcAnalyticsRepository analyticsRepo = new JdbcAnalyticsRepository(conn, cache);
+        LocalDateTime end = OPTIONS.startDate().plusDays(DAYS).atStartOfDay();
+        Set<Long> allAccounts = new HashSet<>(accountIds);
+        Map<String, Double> results = new LinkedHashMap<>();
+        results.put("findEventsBefore", time(i -> accountRepo.findEventsBefore(
+                accountIds.get(i % accountIds.size()), end.minusDays(i), 50
+        )));
+        results.put("deriveBalance", time(i -> accountRepo.deriveBalance(
+                accountIds.get(i % accountIds.size()), end.minusDays(i).toInstant(ZoneOffset.UTC)
+        )));
+        results.put("deriveBalances (no snapshots)", time(i -> accountRepo.deriveBalances(
+                allAccounts, end.minusDays(i).toInstant(ZoneOffset.UTC), false
+        )));
+        results.put("getSpendByCategory", time(i -> analyticsRepo.getSpendByCategory(monthBefore(end, i), USD)));
+        results.put("getIncomeByCategory", time(i -> analyticsRepo.getIncomeByCategory(monthBefore(end, i), USD)));
+        results.put("getSpendByVendor", time(i -> analyticsRepo.getSpendByVendor(monthBefore(end, i), USD)));
+        return results;
+    }
+
+    /**
+     * Gets a 30-day range ending a few days before the given time. Each
+     * iteration uses a different range, since H2 caches the results of
+     * repeated identical queries.
+     */
+    private static TimestampRange monthBefore(LocalDateTime end, int iteration) {
+        return new TimestampRange(end.minusDays(30 + iteration), end.minusDays(iteration));
+    }
+
+    private interface Query {
+        Object run(int iteration);
+    }
+
+    /**
+     * Runs a query a few times to warm up, and then gets its average latency.
+     * @param query The query to run.
+     * @return The average latency in milliseconds.
+     */
+    private static double time(Query query) {
+        for (int i = 0; i < 3; i++) query.run(i);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) query.run(i);
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    /**
+     * Finds the names of all indexes that aren't used by a primary key, unique
+     * or foreign key constraint, and so can be dropped.
+     * @param conn The connection to use.
+     * @return The index names.
+     */
+    private static List<String> findSecondaryIndexNames(Connection conn) {
+        return DbUtil.findAll(
+                conn,
+                """
+                SELECT i.INDEX_NAME
+                FROM INFORMATION_SCHEMA.INDEXES i
+                WHERE i.TABLE_SCHEMA = 'PUBLIC' AND i.INDEX_TYPE_NAME = 'INDEX'
+                    AND i.INDEX_NAME NOT IN (
+                        SELECT tc.INDEX_NAME
+                        FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc
+                        WHERE tc.INDEX_NAME IS NOT NULL
+                    )
+                ORDER BY i.INDEX_NAME""",
+                rs -> rs.getString(1)
+        );
+    }
+
+    /**
+     * Reads all the CREATE INDEX statements from the schema.
+     * @return The statements.
+     * @throws IOException If the schema couldn't be read.
+     */
+    private static List<String> readSchemaIndexes() throws IOException {
+        String schema;
+        try (InputStream in = IndexBenchmark.class.getResourceAsStream(SCHEMA)) {
+            if (in == null) throw new IOException("Could not load " + SCHEMA);
+            schema = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Matcher m = Pattern.compile("CREATE INDEX [^;]+").matcher(schema);
+        List<String> statements = new ArrayList<>();
+        while (m.find()) statements.add(m.group().strip());
+        return statements;
+    }
+}
@@ -0,0 +1,152 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.AccountEntry;
+import com.andrewlalis.perfin.model.AccountType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcAccountBalanceSnapshotRepositoryTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private Connection conn;
+    private JdbcAccountBalanceSnapshotRepository snapshotRepo;
+    private JdbcAccountEntryRepository entryRepo;
+    private JdbcBalanceRecordRepository recordRepo;
+    private JdbcAccountRepository accountRepo;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        snapshotRepo = new JdbcAccountBalanceSnapshotRepository(conn);
+        entryRepo = new JdbcAccountEntryRepository(conn);
+        recordRepo = new JdbcBalanceRecordRepository(conn, null);
+        accountRepo = new JdbcAccountRepository(conn, null, new ReferenceDataCache());
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testSnapshotsCreatedForEntries() {
+        long id = insertAccount(AccountType.CHECKING, "1");
+        insertEntry(id, T0.plusHours(5), AccountEntry.Type.DEBIT, "100");
+        insertEntry(id, T0.plusHours(6), AccountEntry.Type.CREDIT, "20");
+        insertEntry(id, T0.plusDays(3), AccountEntry.Type.DEBIT, "5");
+        assertEquals(2, snapshotRepo.countAll());
+        assertTrue(snapshotRepo.findInconsistencies().isEmpty());
+        assertBalancesMatch(Set.of(id), T0.plusDays(2));
+        assertBalancesMatch(Set.of(id), T0.plusDays(3).plusHours(1));
+    }
+
+    @Test
+    public void testEntryAtSnapshotTimestamp() {
+        long id = insertAccount(AccountType.CHECKING, "1");
+        recordRepo.insert(T0.plusHours(1), id, new BigDecimal("50"), USD, Collections.emptyList());
+        recordRepo.insert(T0.plusDays(5), id, new BigDecimal("50"), USD, Collections.emptyList());
+        insertEntry(id, T0.plusHours(3), AccountEntry.Type.DEBIT, "10");
+        // This entry is exactly at the end of the first day, so it's part of that day's snapshot.
+        insertEntry(id, T0.plusDays(1), AccountEntry.Type.DEBIT, "7");
+        assertEquals(Collections.emptyList(), snapshotRepo.findInconsistencies());
+        assertBalancesMatch(Set.of(id), T0.plusDays(1));
+        assertBalancesMatch(Set.of(id), T0.plusDays(1).plusHours(2));
+    }
+
+    @Test
+    public void testSnapshotsStayConsistent() {
+        Random rand = new Random(42);
+        List<Long> accountIds = List.of(
+                insertAccount(AccountType.CHECKING, "1"),
+                insertAccount(AccountType.SAVINGS, "2"),
+                insertAccount(AccountType.CREDIT_CARD, "3")
+        );
+        List<Long> transactionIds = new ArrayList<>();
+        List<Long> recordIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            long accountId = accountIds.get(rand.nextInt(accountIds.size()));
+            // Use whole hours so that entries often land on day boundaries and balance record timestamps.
+            LocalDateTime timestamp = T0.plusHours(rand.nextInt(24 * 30));
+            int op = rand.nextInt(10);
+            if (op < 6) {
+                AccountEntry.Type type = rand.nextBoolean() ? AccountEntry.Type.DEBIT : AccountEntry.Type.CREDIT;
+                transactionIds.add(insertEntry(accountId, timestamp, type, Integer.toString(rand.nextInt(1000))));
+            } else if (op < 8 && !transactionIds.isEmpty()) {
+                entryRepo.deleteAllByTransactionId(transactionIds.remove(rand.nextInt(transactionIds.size())));
+            } else if (op < 9) {
+                recordIds.add(recordRepo.insert(timestamp, accountId, BigDecimal.valueOf(rand.nextInt(5000)), USD, Collections.emptyList()));
+            } else if (!recordIds.isEmpty()) {
+                recordRepo.deleteById(recordIds.remove(rand.nextInt(recordIds.size())));
+            }
+            if (i % 20 == 0) {
+                assertEquals(Collections.emptyList(), snapshotRepo.findInconsistencies());
+            }
+        }
+        assertEquals(Collections.emptyList(), snapshotRepo.findInconsistencies());
+        for (int i = 0; i < 50; i++) {
+            assertBalancesMatch(new HashSet<>(accountIds), T0.plusMinutes(rand.nextInt(60 * 24 * 32)));
+        }
+
+        long count = snapshotRepo.countAll();
+        snapshotRepo.rebuildAll();
+        assertTrue(snapshotRepo.countAll() <= count);
+        assertEquals(Collections.emptyList(), snapshotRepo.findInconsistencies());
+    }
+
+    @Test
+    public void testFindInconsistencies() {
+        long id = insertAccount(AccountType.CHECKING, "1");
+        insertEntry(id, T0.plusHours(5), AccountEntry.Type.DEBIT, "100");
+        assertTrue(snapshotRepo.findInconsistencies().isEmpty());
+        DbUtil.update(conn, "UPDATE account_balance_snapshot SET balance = 1");
+        var inconsistencies = snapshotRepo.findInconsistencies();
+        assertEquals(1, inconsistencies.size());
+        assertEquals(0, new BigDecimal("100").compareTo(inconsistencies.getFirst().derivedBalance()));
+        snapshotRepo.rebuild(id);
+        assertTrue(snapshotRepo.findInconsistencies().isEmpty());
+    }
+
+    private void assertBalancesMatch(Set<Long> accountIds, LocalDateTime timestamp) {
+        var t = timestamp.toInstant(ZoneOffset.UTC);
+        Map<Long, BigDecimal> withSnapshots = accountRepo.deriveBalances(accountIds, t, true);
+        Map<Long, BigDecimal> withoutSnapshots = accountRepo.deriveBalances(accountIds, t, false);
+        for (long id : accountIds) {
+            assertEquals(
+                    0,
+                    withoutSnapshots.get(id).compareTo(withSnapshots.get(id)),
+                    "Balance of account " + id + " at " + timestamp + " should be " + withoutSnapshots.get(id) + " but was " + withSnapshots.get(id)
+            );
+        }
+    }
+
+    private long insertAccount(AccountType type, String number) {
+        return DbUtil.insertOne(
+                conn,
+                "INSERT INTO account (created_at, account_type, account_number, name, currency) VALUES (?, ?, ?, ?, ?)",
+                DbUtil.timestampFromUtcLDT(T0), type.name(), number, "Account " + number, "USD"
+        );
+    }
+
+    private long insertEntry(long accountId, LocalDateTime timestamp, AccountEntry.Type type, String amount) {
+        long txId = DbUtil.insertOne(
+                conn,
+                "INSERT INTO transaction (timestamp, amount, currency) VALUES (?, ?, ?)",
+                DbUtil.timestampFromUtcLDT(timestamp), new BigDecimal(amount), "USD"
+        );
+        entryRepo.insert(timestamp, accountId, txId, new BigDecimal(amount), type, USD);
+        return txId;
+    }
+}
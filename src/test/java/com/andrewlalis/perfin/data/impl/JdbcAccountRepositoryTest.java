@@ -0,0 +1,219 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.TimeGranularity;
+import com.andrewlalis.perfin.data.TimestampRange;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.*;
+import com.andrewlalis.perfin.model.history.HistoryTextItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcAccountRepositoryTest {
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    private Connection conn;
+    private JdbcAccountRepository repo;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        repo = new JdbcAccountRepository(conn, null, new ReferenceDataCache());
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testDeriveBalanceWithoutRecords() {
+        long id = insertAccount(AccountType.CHECKING, "1");
+        insertEntry(id, days(1), "DEBIT", "100");
+        insertEntry(id, days(2), "CREDIT", "30");
+        insertEntry(id, days(5), "DEBIT", "1000");
+        assertBalance("70", id, days(3));
+        assertBalance("0", id, T0);
+    }
+
+    @Test
+    public void testDeriveBalanceFromPreviousRecord() {
+        long id = insertAccount(AccountType.CHECKING, "1");
+        insertEntry(id, days(1), "DEBIT", "100");
+        insertRecord(id, days(2), "500");
+        insertEntry(id, days(2), "DEBIT", "1"); // Same time as the record, so already counted.
+        insertEntry(id, days(3), "CREDIT", "50");
+        insertEntry(id, days(4), "DEBIT", "25");
+        assertBalance("450", id, days(3));
+        assertBalance("500", id, days(2));
+        assertBalance("475", id, days(4));
+    }
+
+    @Test
+    public void testDeriveBalanceFromNextRecord() {
+        long id = insertAccount(AccountType.CHECKING, "1");
+        insertEntry(id, days(1), "DEBIT", "100");
+        insertEntry(id, days(2), "DEBIT", "20");
+        insertRecord(id, days(3), "500");
+        assertBalance("380", id, days(1));
+        assertBalance("480", id, days(1).plusSeconds(1));
+        assertBalance("500", id, days(2).plusSeconds(1));
+    }
+
+    @Test
+    public void testDeriveBalanceForCreditCard() {
+        long id = insertAccount(AccountType.CREDIT_CARD, "1");
+        insertRecord(id, days(1), "200");
+        insertEntry(id, days(2), "CREDIT", "50");
+        insertEntry(id, days(3), "DEBIT", "30");
+        assertBalance("220", id, days(4));
+    }
+
+    @Test
+    public void testDeriveBalancesForMultipleAccounts() {
+        long a = insertAccount(AccountType.CHECKING, "1");
+        long b = insertAccount(AccountType.SAVINGS, "2");
+        long c = insertAccount(AccountType.CREDIT_CARD, "3");
+        insertRecord(a, days(1), "10");
+        insertEntry(a, days(2), "DEBIT", "5");
+        insertEntry(b, days(2), "DEBIT", "7");
+        insertEntry(c, days(2), "CREDIT", "9");
+        Map<Long, BigDecimal> balances = repo.deriveBalances(Set.of(a, b, c, 12345L), days(3));
+        assertEquals(3, balances.size());
+        for (long id : Set.of(a, b, c)) {
+            assertEquals(0, repo.deriveBalance(id, days(3)).compareTo(balances.get(id)));
+        }
+        assertEquals(0, new BigDecimal("15").compareTo(balances.get(a)));
+        assertEquals(0, new BigDecimal("7").compareTo(balances.get(b)));
+        assertEquals(0, new BigDecimal("9").compareTo(balances.get(c)));
+        assertTrue(repo.deriveBalances(Set.of(), days(3)).isEmpty());
+    }
+
+    @Test
+    public void testGetBalanceSeries() {
+        Random rand = new Random(7);
+        long a = insertAccount(AccountType.CHECKING, "1");
+        long b = insertAccount(AccountType.CREDIT_CARD, "2");
+        long c = insertAccount(AccountType.SAVINGS, "3");
+        long d = insertAccount(AccountType.CHECKING, "4");
+        insertRecord(d, days(50), "1234"); // Balances before this are derived backwards.
+        for (int i = 0; i < 400; i++) {
+            long id = List.of(a, b, c, d).get(rand.nextInt(4));
+            Instant t = T0.plusSeconds(3600L * rand.nextInt(24 * 120));
+            if (rand.nextInt(10) == 0 && id != c && id != d) {
+                insertRecord(id, t, Integer.toString(rand.nextInt(1000)));
+            } else {
+                insertEntry(id, t, rand.nextBoolean() ? "DEBIT" : "CREDIT", Integer.toString(rand.nextInt(100)));
+            }
+        }
+        LocalDateTime start = LocalDateTime.ofInstant(days(10), ZoneOffset.UTC).plusHours(5);
+        LocalDateTime end = LocalDateTime.ofInstant(days(100), ZoneOffset.UTC);
+        for (var granularity : TimeGranularity.values()) {
+            for (long id : List.of(a, b, c, d)) {
+                var series = repo.getBalanceSeries(id, new TimestampRange(start, end), granularity);
+                assertEquals(start, series.getFirst().first());
+                assertEquals(end, series.getLast().first());
+                for (var point : series) {
+                    assertBalance(point.second().toPlainString(), id, point.first().toInstant(ZoneOffset.UTC));
+                }
+            }
+        }
+        assertEquals(91, repo.getBalanceSeries(a, new TimestampRange(start, end), TimeGranularity.DAY).size());
+    }
+
+    private void assertBalance(String expected, long accountId, Instant timestamp) {
+        BigDecimal actual = repo.deriveBalance(accountId, timestamp);
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), "Expected " + expected + " but got " + actual);
+    }
+
+    private static Instant days(int n) {
+        return T0.plusSeconds(n * 86400L);
+    }
+
+    @Test
+    public void testFindOlderEvents() {
+        long id = insertAccount(AccountType.CHECKING, "1");
+        long otherId = insertAccount(AccountType.CHECKING, "2");
+        var historyRepo = new JdbcHistoryRepository(conn);
+        long historyId = historyRepo.getOrCreateHistoryForAccount(id);
+        historyRepo.addTextItem(historyId, LocalDateTime.ofInstant(days(1), ZoneOffset.UTC), "Created.");
+        historyRepo.addTextItem(historyId, LocalDateTime.ofInstant(days(2), ZoneOffset.UTC), "Renamed.");
+        historyRepo.addTextItem(historyRepo.getOrCreateHistoryForAccount(otherId), LocalDateTime.ofInstant(days(2), ZoneOffset.UTC), "Other.");
+        insertEntry(id, days(2), "DEBIT", "10");
+        insertEntry(id, days(2), "CREDIT", "5");
+        insertEntry(otherId, days(2), "DEBIT", "1");
+        insertRecord(id, days(2), "5");
+        insertRecord(id, days(3), "6");
+
+        List<Timestamped> all = repo.findOlderEvents(id, null, 100);
+        assertEquals(6, all.size());
+        // Newest first, and at the same timestamp, history items, then balance records, then entries.
+        assertInstanceOf(BalanceRecord.class, all.get(0));
+        assertEquals("Renamed.", assertInstanceOf(HistoryTextItem.class, all.get(1)).getDescription());
+        assertEquals(new BigDecimal("5.0000"), assertInstanceOf(BalanceRecord.class, all.get(2)).getBalance());
+        AccountEntry credit = assertInstanceOf(AccountEntry.class, all.get(3));
+        assertEquals(AccountEntry.Type.CREDIT, credit.getType());
+        assertEquals(id, credit.getAccountId());
+        assertEquals(AccountEntry.Type.DEBIT, assertInstanceOf(AccountEntry.class, all.get(4)).getType());
+        assertEquals("Created.", assertInstanceOf(HistoryTextItem.class, all.get(5)).getDescription());
+
+        // Paging through gives the same events, even when a page ends in the middle of a timestamp.
+        List<Timestamped> paged = new ArrayList<>();
+        List<Timestamped> page = repo.findOlderEvents(id, null, 2);
+        while (!page.isEmpty()) {
+            paged.addAll(page);
+            page = repo.findOlderEvents(id, page.getLast(), 2);
+        }
+        assertEquals(all.stream().map(Object::getClass).toList(), paged.stream().map(Object::getClass).toList());
+        assertEquals(
+                all.stream().map(e -> ((IdEntity) e).id).toList(),
+                paged.stream().map(e -> ((IdEntity) e).id).toList()
+        );
+
+        assertEquals(5, repo.findEventsBefore(id, LocalDateTime.ofInstant(days(2), ZoneOffset.UTC), 100).size());
+    }
+
+    private long insertAccount(AccountType type, String number) {
+        return DbUtil.insertOne(
+                conn,
+                "INSERT INTO account (created_at, account_type, account_number, name, currency) VALUES (?, ?, ?, ?, ?)",
+                DbUtil.timestampFromInstant(T0), type.name(), number, "Account " + number, "USD"
+        );
+    }
+
+    private void insertEntry(long accountId, Instant timestamp, String type, String amount) {
+        long txId = DbUtil.insertOne(
+                conn,
+                "INSERT INTO transaction (timestamp, amount, currency) VALUES (?, ?, ?)",
+                DbUtil.timestampFromInstant(timestamp), new BigDecimal(amount), "USD"
+        );
+        DbUtil.insertOne(
+                conn,
+                "INSERT INTO account_entry (timestamp, account_id, transaction_id, amount, type, currency) VALUES (?, ?, ?, ?, ?, ?)",
+                DbUtil.timestampFromInstant(timestamp), accountId, txId, new BigDecimal(amount), type, "USD"
+        );
+    }
+
+    private void insertRecord(long accountId, Instant timestamp, String balance) {
+        DbUtil.insertOne(
+                conn,
+                "INSERT INTO balance_record (timestamp, account_id, balance, currency) VALUES (?, ?, ?, ?)",
+                DbUtil.timestampFromInstant(timestamp), accountId, new BigDecimal(balance), "USD"
+        );
+    }
+}
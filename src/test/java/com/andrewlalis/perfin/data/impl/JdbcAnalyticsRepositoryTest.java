@@ -0,0 +1,275 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.TimestampRange;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.data.util.Pair;
+import com.andrewlalis.perfin.data.util.ResultSetMapper;
+import com.andrewlalis.perfin.model.AccountEntry;
+import com.andrewlalis.perfin.model.TransactionCategory;
+import com.andrewlalis.perfin.model.TransactionVendor;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcAnalyticsRepositoryTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final TimestampRange RANGE = new TimestampRange(T0, T0.plusDays(30));
+
+    private Connection conn;
+    private JdbcAnalyticsRepository repo;
+    private long accountId;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        repo = new JdbcAnalyticsRepository(conn, new ReferenceDataCache());
+        accountId = DbUtil.insertOne(
+                conn,
+                "INSERT INTO account (created_at, account_type, account_number, name, currency) VALUES (?, ?, ?, ?, ?)",
+                DbUtil.timestampFromUtcLDT(T0), "CHECKING", "1", "Account 1", "USD"
+        );
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testExcludedTransactionsAreIgnored() {
+        long vendorId = DbUtil.insertOne(conn, "INSERT INTO transaction_vendor (name) VALUES (?)", "Vendor");
+        long excludeTagId = DbUtil.insertOne(conn, "INSERT INTO transaction_tag (name) VALUES (?)", "!exclude");
+        long otherTagId = DbUtil.insertOne(conn, "INSERT INTO transaction_tag (name) VALUES (?)", "other");
+        insertTransaction(T0.plusDays(1), "10", "CREDIT", vendorId);
+        long tx2 = insertTransaction(T0.plusDays(2), "20", "CREDIT", vendorId);
+        long tx3 = insertTransaction(T0.plusDays(3), "40", "CREDIT", vendorId);
+        insertTransaction(T0.plusDays(4), "80", "DEBIT", vendorId);
+        insertTransaction(T0.plusDays(40), "160", "CREDIT", vendorId);
+        DbUtil.insertOne(conn, "INSERT INTO transaction_tag_join (transaction_id, tag_id) VALUES (?, ?)", tx2, otherTagId);
+        DbUtil.insertOne(conn, "INSERT INTO transaction_tag_join (transaction_id, tag_id) VALUES (?, ?)", tx3, otherTagId);
+        DbUtil.insertOne(conn, "INSERT INTO transaction_tag_join (transaction_id, tag_id) VALUES (?, ?)", tx3, excludeTagId);
+        new JdbcTransactionRollupRepository(conn).rebuildAll();
+
+        List<Pair<TransactionVendor, BigDecimal>> spendByVendor = repo.getSpendByVendor(RANGE, USD);
+        assertEquals(1, spendByVendor.size());
+        assertEquals(0, new BigDecimal("30").compareTo(spendByVendor.getFirst().second()));
+
+        List<Pair<TransactionCategory, BigDecimal>> spendByCategory = repo.getSpendByCategory(RANGE, USD);
+        assertEquals(0, new BigDecimal("30").compareTo(total(spendByCategory)));
+        List<Pair<TransactionCategory, BigDecimal>> incomeByCategory = repo.getIncomeByCategory(RANGE, USD);
+        assertEquals(0, new BigDecimal("80").compareTo(total(incomeByCategory)));
+    }
+
+    @Test
+    public void testAmountsByCategoryMatchLegacyQueries() {
+        Random rand = new Random(42);
+        List<Long> categoryIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Long parentId = categoryIds.isEmpty() || rand.nextBoolean() ? null : categoryIds.get(rand.nextInt(categoryIds.size()));
+            categoryIds.add(DbUtil.insertOne(
+                    conn,
+                    "INSERT INTO transaction_category (parent_id, name, color) VALUES (?, ?, ?)",
+                    parentId, "Category " + i, "FFFFFF"
+            ));
+        }
+        long excludeTagId = DbUtil.insertOne(conn, "INSERT INTO transaction_tag (name) VALUES (?)", "!exclude");
+        long otherTagId = DbUtil.insertOne(conn, "INSERT INTO transaction_tag (name) VALUES (?)", "other");
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime timestamp = T0.plusHours(rand.nextInt(24 * 60));
+            String currency = rand.nextInt(5) == 0 ? "EUR" : "USD";
+            BigDecimal amount = BigDecimal.valueOf(rand.nextInt(100_000), 2);
+            Long categoryId = rand.nextInt(3) == 0 ? null : categoryIds.get(rand.nextInt(categoryIds.size()));
+            long txId = DbUtil.insertOne(
+                    conn,
+                    "INSERT INTO transaction (timestamp, amount, currency, category_id) VALUES (?, ?, ?, ?)",
+                    DbUtil.timestampFromUtcLDT(timestamp), amount, currency, categoryId
+            );
+            String type = rand.nextBoolean() ? "DEBIT" : "CREDIT";
+            DbUtil.insertOne(
+                    conn,
+                    "INSERT INTO account_entry (timestamp, account_id, transaction_id, amount, type, currency) VALUES (?, ?, ?, ?, ?, ?)",
+                    DbUtil.timestampFromUtcLDT(timestamp), accountId, txId, amount, type, currency
+            );
+            if (rand.nextInt(4) == 0) {
+                int lineItemCount = 1 + rand.nextInt(3);
+                for (int j = 0; j < lineItemCount; j++) {
+                    Long lineItemCategoryId = rand.nextBoolean() ? null : categoryIds.get(rand.nextInt(categoryIds.size()));
+                    DbUtil.insertOne(
+                            conn,
+                            "INSERT INTO transaction_line_item (transaction_id, value_per_item, quantity, idx, description, category_id) VALUES (?, ?, ?, ?, ?, ?)",
+                            txId, BigDecimal.valueOf(rand.nextInt(10_000), 2), 1 + rand.nextInt(3), j, "Item " + j, lineItemCategoryId
+                    );
+                }
+            }
+            if (rand.nextInt(10) == 0) {
+                long tagId = rand.nextBoolean() ? excludeTagId : otherTagId;
+                DbUtil.insertOne(conn, "INSERT INTO transaction_tag_join (transaction_id, tag_id) VALUES (?, ?)", txId, tagId);
+            }
+        }
+
+        new JdbcTransactionRollupRepository(conn).rebuildAll();
+
+        List<TimestampRange> ranges = List.of(
+                RANGE,
+                new TimestampRange(T0.plusDays(10), T0.plusDays(11)),
+                new TimestampRange(T0.plusHours(37).plusMinutes(13), T0.plusDays(20).plusHours(5)),
+                new TimestampRange(T0.plusHours(3), T0.plusHours(20)),
+                TimestampRange.unbounded()
+        );
+        for (var range : ranges) {
+            for (var currency : List.of(USD, Currency.getInstance("EUR"))) {
+                assertEquals(
+                        legacyAmountsByCategory(range, currency, AccountEntry.Type.CREDIT),
+                        totalsById(repo.getSpendByCategory(range, currency))
+                );
+                assertEquals(
+                        legacyAmountsByCategory(range, currency, AccountEntry.Type.DEBIT),
+                        totalsById(repo.getIncomeByCategory(range, currency))
+                );
+            }
+        }
+    }
+
+    private long insertTransaction(LocalDateTime timestamp, String amount, String type, long vendorId) {
+        long txId = DbUtil.insertOne(
+                conn,
+                "INSERT INTO transaction (timestamp, amount, currency, vendor_id) VALUES (?, ?, ?, ?)",
+                DbUtil.timestampFromUtcLDT(timestamp), new BigDecimal(amount), "USD", vendorId
+        );
+        DbUtil.insertOne(
+                conn,
+                "INSERT INTO account_entry (timestamp, account_id, transaction_id, amount, type, currency) VALUES (?, ?, ?, ?, ?, ?)",
+                DbUtil.timestampFromUtcLDT(timestamp), accountId, txId, new BigDecimal(amount), type, "USD"
+        );
+        return txId;
+    }
+
+    /**
+     * Maps amounts by category to a map of category id to amount, with
+     * trailing zeros removed, for easy comparison. Uncategorized amounts have
+     * the id -1.
+     */
+    private static Map<Long, BigDecimal> totalsById(List<Pair<TransactionCategory, BigDecimal>> amounts) {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        for (var p : amounts) {
+            long id = p.first() == null ? -1 : p.first().id;
+            totals.merge(id, p.second(), BigDecimal::add);
+        }
+        totals.replaceAll((id, amount) -> amount.stripTrailingZeros());
+        totals.values().removeIf(amount -> amount.signum() == 0);
+        return totals;
+    }
+
+    /**
+     * The original implementation of amounts by category, which ran three
+     * separate queries and combined their results, for comparison.
+     * @return A map of category id (or -1 for uncategorized) to amount.
+     */
+    private Map<Long, BigDecimal> legacyAmountsByCategory(TimestampRange range, Currency currency, AccountEntry.Type type) {
+        List<Object> args = List.of(currency.getCurrencyCode(), type.name(), range.start(), range.end());
+        ResultSetMapper<Pair<TransactionCategory, BigDecimal>> mapper = rs -> {
+            long categoryId = rs.getLong(2);
+            TransactionCategory category = rs.wasNull() ? null : new TransactionCategory(categoryId, null, "", Color.WHITE);
+            return new Pair<>(category, rs.getBigDecimal(1));
+        };
+        List<Pair<TransactionCategory, BigDecimal>> amounts = new ArrayList<>();
+        amounts.addAll(DbUtil.findAll(
+                conn,
+                """
+                SELECT SUM(transaction.amount) AS total, tc.id
+                FROM transaction
+                LEFT JOIN transaction_category tc ON tc.id = transaction.category_id
+                LEFT JOIN account_entry ae ON ae.transaction_id = transaction.id
+                WHERE
+                    transaction.currency = ? AND
+                    ae.type = ? AND
+                    transaction.timestamp >= ? AND
+                    transaction.timestamp <= ? AND
+                    '!exclude' NOT IN (
+                        SELECT tt.name
+                        FROM transaction_tag tt
+                        LEFT JOIN transaction_tag_join ttj ON tt.id = ttj.tag_id
+                        WHERE ttj.transaction_id = transaction.id
+                    ) AND
+                    (
+                        SELECT COUNT(tli.id) = 0
+                        FROM transaction_line_item tli
+                        WHERE tli.transaction_id = transaction.id
+                    )
+                GROUP BY tc.id""",
+                args,
+                mapper
+        ));
+        amounts.addAll(DbUtil.findAll(
+                conn,
+                """
+                SELECT SUM(tli.value_per_item * tli.quantity) AS s, tc.id
+                FROM transaction_line_item tli
+                LEFT JOIN transaction_category tc ON tc.id = tli.category_id
+                LEFT JOIN transaction t ON t.id = tli.transaction_id
+                LEFT JOIN account_entry ae ON ae.transaction_id = t.id
+                WHERE
+                    t.currency = ? AND
+                    ae.type = ? AND
+                    t.timestamp >= ? AND
+                    t.timestamp <= ? AND
+                    '!exclude' NOT IN (
+                        SELECT tt.name
+                        FROM transaction_tag tt
+                        LEFT JOIN transaction_tag_join ttj ON tt.id = ttj.tag_id
+                        WHERE ttj.transaction_id = t.id
+                    )
+                GROUP BY tli.category_id""",
+                args,
+                mapper
+        ));
+        amounts.addAll(DbUtil.findAll(
+                conn,
+                """
+                SELECT SUM(s), c_id
+                FROM (
+                    SELECT transaction.amount - SUM(tli.value_per_item * tli.quantity) AS s, tc.id AS c_id
+                    FROM transaction
+                    LEFT JOIN transaction_line_item tli ON tli.transaction_id = transaction.id
+                    LEFT JOIN transaction_category tc ON tc.id = transaction.category_id
+                    LEFT JOIN account_entry ae ON ae.transaction_id = transaction.id
+                    WHERE
+                        transaction.currency = ? AND
+                        ae.type = ? AND
+                        transaction.timestamp >= ? AND
+                        transaction.timestamp <= ? AND
+                        '!exclude' NOT IN (
+                            SELECT tt.name
+                            FROM transaction_tag tt
+                            LEFT JOIN transaction_tag_join ttj ON tt.id = ttj.tag_id
+                            WHERE ttj.transaction_id = transaction.id
+                        ) AND
+                        (
+                            SELECT COUNT(tli.id) > 0
+                            FROM transaction_line_item tli
+                            WHERE tli.transaction_id = transaction.id
+                        )
+                    GROUP BY transaction.id
+                )
+                GROUP BY c_id""",
+                args,
+                mapper
+        ));
+        return totalsById(amounts);
+    }
+
+    private static BigDecimal total(List<Pair<TransactionCategory, BigDecimal>> amounts) {
+        return amounts.stream().map(Pair::second).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,103 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcConnectionPoolTest {
+    private static JdbcConnectionPool.Config testConfig(int maxSize) {
+        return new JdbcConnectionPool.Config(
+                0,
+                maxSize,
+                Duration.ofMillis(100),
+                Duration.ofMinutes(1),
+                Duration.ZERO,
+                Duration.ofSeconds(1),
+                8
+        );
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws SQLException {
+        try (var pool = new JdbcConnectionPool("jdbc:h2:mem:pool_reuse", testConfig(2))) {
+            for (int i = 0; i < 5; i++) {
+                try (Connection conn = pool.borrow(); var stmt = conn.createStatement()) {
+                    assertTrue(stmt.execute("SELECT 1"));
+                }
+            }
+            var metrics = pool.getMetrics();
+            assertEquals(5, metrics.borrowCount());
+            assertEquals(1, metrics.createdCount());
+            assertEquals(0, metrics.activeCount());
+            assertEquals(1, metrics.idleCount());
+        }
+    }
+
+    @Test
+    public void testClosedHandleCannotBeUsed() throws SQLException {
+        try (var pool = new JdbcConnectionPool("jdbc:h2:mem:pool_handle", testConfig(1))) {
+            Connection conn = pool.borrow();
+            conn.close();
+            assertTrue(conn.isClosed());
+            assertThrows(SQLException.class, conn::createStatement);
+            conn.close(); // Closing twice must not return the connection twice.
+            assertEquals(1, pool.getMetrics().idleCount());
+        }
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenExhausted() throws SQLException {
+        try (var pool = new JdbcConnectionPool("jdbc:h2:mem:pool_timeout", testConfig(1))) {
+            try (Connection ignored = pool.borrow()) {
+                assertThrows(SQLException.class, pool::borrow);
+            }
+            assertEquals(1, pool.getMetrics().timeoutCount());
+            try (Connection conn = pool.borrow()) {
+                assertFalse(conn.isClosed());
+            }
+        }
+    }
+
+    @Test
+    public void testStatementsAreCachedAcrossBorrows() throws SQLException {
+        try (var pool = new JdbcConnectionPool("jdbc:h2:mem:pool_statements", testConfig(1))) {
+            for (int i = 0; i < 3; i++) {
+                try (Connection conn = pool.borrow()) {
+                    assertEquals(i, DbUtil.count(conn, "SELECT CAST(? AS BIGINT)", i));
+                }
+            }
+            var metrics = pool.getMetrics();
+            assertEquals(1, metrics.statementCacheMisses());
+            assertEquals(2, metrics.statementCacheHits());
+        }
+    }
+
+    @Test
+    public void testReturnedConnectionIsReset() throws SQLException {
+        try (var pool = new JdbcConnectionPool("jdbc:h2:mem:pool_reset", testConfig(1))) {
+            try (Connection conn = pool.borrow()) {
+                conn.setAutoCommit(false);
+            }
+            try (Connection conn = pool.borrow()) {
+                assertTrue(conn.getAutoCommit());
+            }
+        }
+    }
+
+    @Test
+    public void testConfigFromProperties() {
+        Properties props = new Properties();
+        props.setProperty("jdbc-pool.max-size", "4");
+        props.setProperty("jdbc-pool.validation-timeout-ms", "500");
+        var config = JdbcConnectionPool.Config.fromProperties(props);
+        assertEquals(4, config.maxSize());
+        assertEquals(Duration.ofMillis(500), config.validationTimeout());
+        assertEquals(JdbcConnectionPool.Config.defaults().maxWait(), config.maxWait());
+    }
+}
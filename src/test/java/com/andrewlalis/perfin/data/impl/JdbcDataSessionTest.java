@@ -0,0 +1,114 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.DataSession;
+import com.andrewlalis.perfin.model.AccountType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDataSessionTest {
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @TempDir
+    Path contentDir;
+    private JdbcDataSource ds;
+
+    @BeforeEach
+    public void setUp(TestInfo info) throws SQLException, IOException {
+        ds = JdbcTestUtil.newDataSource("session_" + info.getTestMethod().orElseThrow().getName(), contentDir);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ds.close();
+    }
+
+    @Test
+    public void testRepositoriesShareOneConnection() throws Exception {
+        long borrowsBefore = ds.getConnectionPoolMetrics().borrowCount();
+        long accountId = ds.withSession(DataSession.Options.READ_WRITE, session -> {
+            long id = session.getAccountRepository().insert(AccountType.CHECKING, "1", "Checking", USD, null);
+            // Closing a session's repository doesn't close the session's connection.
+            try (var balanceRepo = session.getBalanceRecordRepository()) {
+                balanceRepo.insert(LocalDateTime.of(2024, 1, 1, 0, 0), id, BigDecimal.TEN, USD, List.of());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            assertEquals(BigDecimal.TEN.setScale(4), session.getAccountRepository().deriveCurrentBalance(id).setScale(4));
+            return id;
+        });
+        assertEquals(1, ds.getConnectionPoolMetrics().borrowCount() - borrowsBefore);
+        assertEquals(0, ds.getConnectionPoolMetrics().activeCount());
+
+        var name = ds.withSessionAsync(
+                DataSession.Options.READ_ONLY,
+                session -> session.getAccountRepository().findById(accountId).orElseThrow().getName()
+        ).get(5, TimeUnit.SECONDS);
+        assertEquals("Checking", name);
+    }
+
+    @Test
+    public void testRepositoriesUseStatementCache() {
+        long accountId = ds.withSession(session ->
+                session.getAccountRepository().insert(AccountType.CHECKING, "1", "Checking", USD, null)
+        );
+        long hitsBefore = ds.getConnectionPoolMetrics().statementCacheHits();
+        ds.withSession(DataSession.Options.READ_ONLY, session -> {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(session.getAccountRepository().findById(accountId).isPresent());
+            }
+            return null;
+        });
+        // The first lookup prepares the statement, and the others reuse it.
+        assertTrue(ds.getConnectionPoolMetrics().statementCacheHits() - hitsBefore >= 2);
+    }
+
+    @Test
+    public void testTransactionIsRolledBackOnFailure() {
+        assertThrows(RuntimeException.class, () -> ds.withSession(DataSession.Options.TRANSACTION, session -> {
+            session.getAccountRepository().insert(AccountType.CHECKING, "1", "Checking", USD, null);
+            throw new IllegalStateException("Something went wrong.");
+        }));
+        assertEquals(List.of(), ds.withSession(session -> session.getAccountRepository().findAllOrderedByName()));
+
+        ds.withSession(DataSession.Options.TRANSACTION, session ->
+                session.getAccountRepository().insert(AccountType.CHECKING, "1", "Checking", USD, null)
+        );
+        assertEquals(1, ds.withSession(session -> session.getAccountRepository().findAllOrderedByName()).size());
+    }
+
+    @Test
+    public void testReferenceDataIsInvalidatedAfterCommit() {
+        ds.withSession(DataSession.Options.TRANSACTION, session -> {
+            session.getTransactionVendorRepository().insert("Grocery Store");
+            // Another connection reloads the vendors before this transaction is committed.
+            assertEquals(List.of(), ds.withSession(s -> s.getTransactionVendorRepository().findAll()));
+            return null;
+        });
+        var vendors = ds.withSession(session -> session.getTransactionVendorRepository().findAll());
+        assertEquals(1, vendors.size());
+        assertEquals("Grocery Store", vendors.getFirst().getName());
+    }
+
+    @Test
+    public void testReadOnlyOptions() {
+        assertThrows(IllegalArgumentException.class, () -> new DataSession.Options(true, true));
+        assertEquals(
+                DataSession.Options.READ_ONLY,
+                ds.withSession(DataSession.Options.READ_ONLY, DataSession::getOptions)
+        );
+    }
+}
@@ -0,0 +1,55 @@
+package com.andrewlalis.perfin.data.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Helpers for tests that need a real database.
+ */
+public class JdbcTestUtil {
+    /**
+     * Gets a connection to a new, empty in-memory database with the app's
+     * schema. The database is discarded once the connection is closed.
+     * @return The connection.
+     */
+    public static Connection newDatabase() throws SQLException, IOException {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:");
+        applySchema(conn);
+        return conn;
+    }
+
+    /**
+     * Gets a data source for a new in-memory database with the app's schema.
+     * The database lives until the end of the test run, so each test should
+     * use its own name.
+     * @param name The database's name.
+     * @param contentDir The content directory to use.
+     * @return The data source.
+     */
+    public static JdbcDataSource newDataSource(String name, Path contentDir) throws SQLException, IOException {
+        String url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url)) {
+            applySchema(conn);
+        }
+        return new JdbcDataSource(url, contentDir);
+    }
+
+    private static void applySchema(Connection conn) throws SQLException, IOException {
+        try (InputStream in = JdbcTestUtil.class.getResourceAsStream("/sql/schema.sql")) {
+            if (in == null) throw new IOException("Could not load database schema SQL file.");
+            String script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            for (String sql : script.split(";")) {
+                if (sql.isBlank()) continue;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(sql.strip());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.CategoryTree;
+import com.andrewlalis.perfin.model.CreditAndDebitAccounts;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcTransactionCategoryRepositoryTest {
+    private Connection conn;
+    private ReferenceDataCache cache;
+    private JdbcTransactionCategoryRepository repo;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        cache = new ReferenceDataCache();
+        repo = new JdbcTransactionCategoryRepository(conn, cache);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testCategoryTree() {
+        long food = repo.insert("Food", Color.RED);
+        long groceries = repo.insert(food, "Groceries", Color.RED);
+        long produce = repo.insert(groceries, "Produce", Color.GREEN);
+        long restaurants = repo.insert(food, "Restaurants", Color.RED);
+        long rent = repo.insert("Rent", Color.BLUE);
+
+        CategoryTree tree = repo.getCategoryTree();
+        assertEquals(food, tree.getRoot(produce).id);
+        assertEquals(food, tree.getRoot(food).id);
+        assertEquals(rent, repo.findRoot(rent).id);
+        assertNull(tree.getRoot(12345));
+        assertEquals(groceries, tree.getParent(produce).id);
+        assertNull(tree.getParent(food));
+        assertEquals(Set.of(food, groceries, produce, restaurants), tree.getDescendantIds(food));
+        assertEquals(Set.of(produce), tree.getDescendantIds(produce));
+        assertEquals(Set.of(), tree.getDescendantIds(12345));
+
+        var rootNodes = repo.findTree();
+        assertEquals(List.of("Food", "Rent"), rootNodes.stream().map(n -> n.category().getName()).toList());
+        assertEquals(
+                List.of("Groceries", "Restaurants"),
+                rootNodes.getFirst().children().stream().map(n -> n.category().getName()).toList()
+        );
+        assertEquals(Set.of(groceries, produce), repo.findTree(tree.findById(groceries).orElseThrow()).allIds());
+    }
+
+    @Test
+    public void testCategoryTreeIsCachedUntilCategoriesChange() {
+        long food = repo.insert("Food", Color.RED);
+        CategoryTree tree = repo.getCategoryTree();
+        assertSame(tree, repo.getCategoryTree());
+        // Other repositories sharing the cache see the same tree.
+        assertSame(tree, new JdbcTransactionCategoryRepository(conn, cache).getCategoryTree());
+
+        long groceries = repo.insert(food, "Groceries", Color.RED);
+        assertEquals(Set.of(food, groceries), repo.getCategoryTree().getDescendantIds(food));
+
+        repo.update(groceries, "Supermarket", Color.RED);
+        assertEquals("Supermarket", repo.getCategoryTree().findById(groceries).orElseThrow().getName());
+
+        repo.deleteById(food);
+        assertTrue(repo.getCategoryTree().getAll().isEmpty());
+
+        // Creating a category through a transaction also invalidates the tree.
+        repo.getCategoryTree();
+        new JdbcTransactionRepository(conn, null, cache).insert(
+                LocalDateTime.of(2024, 1, 1, 0, 0), BigDecimal.ONE, Currency.getInstance("USD"), null,
+                new CreditAndDebitAccounts(null, null),
+                null, "Rent", Set.of(), List.of(), List.of()
+        );
+        assertEquals(1, repo.getCategoryTree().getAll().size());
+    }
+}
@@ -0,0 +1,97 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.CreditAndDebitAccounts;
+import com.andrewlalis.perfin.model.Transaction;
+import com.andrewlalis.perfin.model.TransactionSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcTransactionRepositoryTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private Connection conn;
+    private ReferenceDataCache cache;
+    private JdbcTransactionRepository repo;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        cache = new ReferenceDataCache();
+        repo = new JdbcTransactionRepository(conn, null, cache);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testFindSummaries() {
+        var accountRepo = new JdbcAccountRepository(conn, null, cache);
+        long checkingId = insertAccount("Checking");
+        long savingsId = insertAccount("Savings");
+        var checking = accountRepo.findById(checkingId).orElseThrow();
+        var savings = accountRepo.findById(savingsId).orElseThrow();
+        long tx1 = repo.insert(
+                T0, BigDecimal.TEN, USD, "Transfer", new CreditAndDebitAccounts(checking, savings),
+                "Bank", "Savings", Set.of("b", "a"), List.of(), List.of()
+        );
+        long tx2 = repo.insert(
+                T0, BigDecimal.ONE, USD, null, new CreditAndDebitAccounts(null, checking),
+                null, null, Set.of(), List.of(), List.of()
+        );
+        long attachmentId = DbUtil.insertOne(
+                conn,
+                "INSERT INTO attachment (uploaded_at, identifier, filename, content_type) VALUES (?, ?, ?, ?)",
+                DbUtil.timestampFromUtcLDT(T0), "abc", "receipt.png", "image/png"
+        );
+        DbUtil.update(conn, "INSERT INTO transaction_attachment (transaction_id, attachment_id) VALUES (?, ?)", tx1, attachmentId);
+
+        Transaction t1 = repo.findById(tx1).orElseThrow();
+        Transaction t2 = repo.findById(tx2).orElseThrow();
+        List<TransactionSummary> summaries = repo.findSummaries(List.of(t2, t1));
+        assertEquals(2, summaries.size());
+
+        TransactionSummary s2 = summaries.get(0);
+        assertSame(t2, s2.transaction());
+        assertNull(s2.linkedAccounts().creditAccount());
+        assertEquals(checkingId, s2.linkedAccounts().debitAccount().id);
+        assertNull(s2.category());
+        assertNull(s2.vendor());
+        assertEquals(List.of(), s2.tags());
+        assertEquals(0, s2.attachmentCount());
+
+        TransactionSummary s1 = summaries.get(1);
+        assertSame(t1, s1.transaction());
+        assertEquals(checkingId, s1.linkedAccounts().creditAccount().id);
+        assertEquals(savingsId, s1.linkedAccounts().debitAccount().id);
+        assertEquals("Savings", s1.category().getName());
+        assertEquals("Bank", s1.vendor().getName());
+        assertEquals(List.of("a", "b"), s1.tags());
+        assertEquals(1, s1.attachmentCount());
+
+        assertEquals(List.of(), repo.findSummaries(List.of()));
+    }
+
+    private long insertAccount(String name) {
+        return DbUtil.insertOne(
+                conn,
+                "INSERT INTO account (created_at, account_type, account_number, name, currency) VALUES (?, ?, ?, ?, ?)",
+                DbUtil.timestampFromUtcLDT(T0), "CHECKING", name, name, "USD"
+        );
+    }
+}
@@ -0,0 +1,136 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.*;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcTransactionRollupRepositoryTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private Connection conn;
+    private ReferenceDataCache cache;
+    private JdbcTransactionRollupRepository rollupRepo;
+    private JdbcTransactionRepository transactionRepo;
+    private JdbcAccountRepository accountRepo;
+    private Account checking;
+    private Account creditCard;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        rollupRepo = new JdbcTransactionRollupRepository(conn);
+        cache = new ReferenceDataCache();
+        transactionRepo = new JdbcTransactionRepository(conn, null, cache);
+        accountRepo = new JdbcAccountRepository(conn, null, cache);
+        checking = accountRepo.findById(accountRepo.insert(AccountType.CHECKING, "1", "Checking", USD, null)).orElseThrow();
+        creditCard = accountRepo.findById(accountRepo.insert(AccountType.CREDIT_CARD, "2", "Credit Card", USD, null)).orElseThrow();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testRollupFollowsTransactionChanges() {
+        long tx1 = insert(T0.plusHours(5), "100", new CreditAndDebitAccounts(checking, null), "Food", Set.of(), List.of());
+        long tx2 = insert(T0.plusHours(30), "50", new CreditAndDebitAccounts(creditCard, checking), null, Set.of("other"), List.of(
+                new TransactionLineItem(-1, -1, new BigDecimal("10"), 2, 0, "Item", null)
+        ));
+        long tx3 = insert(T0.plusDays(3), "25", new CreditAndDebitAccounts(checking, null), "Rent", Set.of("!exclude"), List.of());
+        assertTrue(rollupRepo.countAll() > 0);
+        assertConsistent();
+
+        // Move a transaction to another day, and change its category, tags and line items.
+        transactionRepo.update(
+                tx2, T0.plusDays(4), new BigDecimal("60"), USD, null,
+                new CreditAndDebitAccounts(creditCard, checking), "Vendor", "Food", Set.of("!exclude"),
+                List.of(new TransactionLineItem(-1, tx2, new BigDecimal("5"), 1, 0, "Item", null)),
+                List.of(), List.of()
+        );
+        assertConsistent();
+        transactionRepo.update(
+                tx2, T0.plusDays(4), new BigDecimal("60"), USD, null,
+                new CreditAndDebitAccounts(creditCard, checking), "Vendor", "Food", Set.of(),
+                List.of(new TransactionLineItem(-1, tx2, new BigDecimal("5"), 1, 0, "Item", null)),
+                List.of(), List.of()
+        );
+        assertConsistent();
+
+        transactionRepo.delete(tx1);
+        assertConsistent();
+        transactionRepo.deleteTag("!exclude");
+        assertConsistent();
+        new JdbcTransactionCategoryRepository(conn, cache).deleteById(
+                new JdbcTransactionCategoryRepository(conn, cache).findByName("Food").orElseThrow().id
+        );
+        assertConsistent();
+        accountRepo.delete(creditCard);
+        assertConsistent();
+        transactionRepo.delete(tx2);
+        transactionRepo.delete(tx3);
+        assertConsistent();
+        assertEquals(0, rollupRepo.countAll());
+    }
+
+    @Test
+    public void testDeletingCategoryWithLineItems() {
+        var categoryRepo = new JdbcTransactionCategoryRepository(conn, cache);
+        long groceries = categoryRepo.insert("Groceries", Color.WHITE);
+        long produce = categoryRepo.insert(groceries, "Produce", Color.WHITE);
+        insert(T0.plusHours(5), "100", new CreditAndDebitAccounts(checking, null), "Rent", Set.of(), List.of(
+                new TransactionLineItem(-1, -1, new BigDecimal("40"), 1, 0, "Apples", produce)
+        ));
+        insert(T0.plusDays(2), "30", new CreditAndDebitAccounts(checking, null), "Groceries", Set.of(), List.of());
+        insert(T0.plusDays(5), "20", new CreditAndDebitAccounts(checking, null), "Rent", Set.of(), List.of());
+        assertConsistent();
+        categoryRepo.deleteById(groceries);
+        assertConsistent();
+    }
+
+    @Test
+    public void testFindInconsistencies() {
+        insert(T0.plusHours(5), "100", new CreditAndDebitAccounts(checking, null), "Food", Set.of(), List.of());
+        assertConsistent();
+        DbUtil.update(conn, "UPDATE transaction_rollup SET amount = 1");
+        var inconsistencies = rollupRepo.findInconsistencies();
+        assertEquals(1, inconsistencies.size());
+        assertEquals(0, new BigDecimal("100").compareTo(inconsistencies.getFirst().transactionAmount()));
+        rollupRepo.rebuildAll();
+        assertConsistent();
+    }
+
+    private long insert(
+            LocalDateTime timestamp,
+            String amount,
+            CreditAndDebitAccounts accounts,
+            String category,
+            Set<String> tags,
+            List<TransactionLineItem> lineItems
+    ) {
+        if (category != null && new JdbcTransactionCategoryRepository(conn, cache).findByName(category).isEmpty()) {
+            new JdbcTransactionCategoryRepository(conn, cache).insert(category, Color.WHITE);
+        }
+        return transactionRepo.insert(
+                timestamp, new BigDecimal(amount), USD, null, accounts,
+                null, category, tags, lineItems, Collections.emptyList()
+        );
+    }
+
+    private void assertConsistent() {
+        assertEquals(Collections.emptyList(), rollupRepo.findInconsistencies());
+    }
+}
@@ -0,0 +1,160 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.pagination.KeysetPageRequest;
+import com.andrewlalis.perfin.data.pagination.PageRequest;
+import com.andrewlalis.perfin.data.search.JdbcTransactionSearcher;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.CreditAndDebitAccounts;
+import com.andrewlalis.perfin.model.TransactionLineItem;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcTransactionSearchIndexTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private Connection conn;
+    private ReferenceDataCache cache;
+    private JdbcTransactionSearchIndex searchIndex;
+    private JdbcTransactionRepository transactionRepo;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        searchIndex = new JdbcTransactionSearchIndex(conn);
+        cache = new ReferenceDataCache();
+        transactionRepo = new JdbcTransactionRepository(conn, null, cache);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(List.of("joe", "s", "coffee", "café", "2024"), JdbcTransactionSearchIndex.tokenize("  Joe's COFFEE, Café #2024!"));
+        assertEquals(List.of(), JdbcTransactionSearchIndex.tokenize(" -- "));
+        assertEquals(List.of(), JdbcTransactionSearchIndex.tokenize(null));
+        assertEquals(JdbcTransactionSearchIndex.TERM_MAX_LENGTH, JdbcTransactionSearchIndex.tokenize("a".repeat(100)).getFirst().length());
+    }
+
+    @Test
+    public void testIndexFollowsChanges() {
+        long tx1 = insert("Morning coffee", "Starbucks", "Food", Set.of("work"), List.of("Latte", "Muffin"));
+        long tx2 = insert("Monthly rent", null, "Housing", Set.of(), List.of());
+        long tx3 = insert(null, "Stardust Books", null, Set.of("gift"), List.of());
+        assertIndexConsistent();
+        assertEquals(Set.of(tx1, tx3), search("star"));
+        assertEquals(Set.of(tx1), search("star cof"));
+        assertEquals(Set.of(tx1), search("muff"));
+        assertEquals(Set.of(tx2), search("HOUS"));
+        assertEquals(Set.of(tx3), search("gift"));
+        assertEquals(Set.of(), search("starx"));
+
+        transactionRepo.update(
+                tx2, T0, BigDecimal.ONE, USD, "Apartment rent",
+                new CreditAndDebitAccounts(null, null), "Landlord", "Housing", Set.of("home"),
+                List.of(), List.of(), List.of()
+        );
+        assertIndexConsistent();
+        assertEquals(Set.of(tx2), search("apart land home"));
+        assertEquals(Set.of(), search("monthly"));
+
+        var vendorRepo = new JdbcTransactionVendorRepository(conn, cache);
+        vendorRepo.update(vendorRepo.findByName("Starbucks").orElseThrow().id, "Peet's", null);
+        assertIndexConsistent();
+        assertEquals(Set.of(tx3), search("star"));
+        assertEquals(Set.of(tx1), search("peet"));
+        vendorRepo.deleteById(vendorRepo.findByName("Peet's").orElseThrow().id);
+        assertIndexConsistent();
+        assertEquals(Set.of(), search("peet"));
+
+        var categoryRepo = new JdbcTransactionCategoryRepository(conn, cache);
+        categoryRepo.update(categoryRepo.findByName("Food").orElseThrow().id, "Dining", Color.WHITE);
+        assertIndexConsistent();
+        assertEquals(Set.of(tx1), search("dining"));
+        categoryRepo.deleteById(categoryRepo.findByName("Housing").orElseThrow().id);
+        assertIndexConsistent();
+        assertEquals(Set.of(), search("housing"));
+
+        transactionRepo.deleteTag("gift");
+        assertIndexConsistent();
+        assertEquals(Set.of(), search("gift"));
+
+        transactionRepo.delete(tx1);
+        assertIndexConsistent();
+        assertEquals(Set.of(), search("coffee"));
+    }
+
+    @Test
+    public void testRanking() {
+        long inDescription = insert("Coffee beans", null, null, Set.of(), List.of());
+        long inVendor = insert(null, "Coffee Corner", null, Set.of(), List.of());
+        long inLineItem = insert(null, null, null, Set.of(), List.of("Coffee"));
+        long inTwoPlaces = insert("Cake", "Coffee Corner", null, Set.of(), List.of());
+        insert("Tea", null, null, Set.of(), List.of());
+        assertEquals(List.of(inTwoPlaces, inVendor, inDescription, inLineItem), rankedSearch("coffee", 0, 10));
+        assertEquals(List.of(inTwoPlaces), rankedSearch("coffee cake", 0, 10));
+        assertEquals(List.of(inTwoPlaces, inVendor), rankedSearch("co", 0, 2));
+        assertEquals(List.of(inDescription, inLineItem), rankedSearch("co", 1, 2));
+        assertEquals(4, new JdbcTransactionSearcher(conn).resultCount(
+                new JdbcTransactionSearcher.FilterBuilder().byRankedText("coffee").build()
+        ));
+    }
+
+    private long insert(String description, String vendor, String category, Set<String> tags, List<String> lineItems) {
+        List<TransactionLineItem> items = new ArrayList<>();
+        for (int i = 0; i < lineItems.size(); i++) {
+            items.add(new TransactionLineItem(-1, -1, BigDecimal.ONE, 1, i, lineItems.get(i), null));
+        }
+        return transactionRepo.insert(
+                T0, BigDecimal.TEN, USD, description, new CreditAndDebitAccounts(null, null),
+                vendor, category, tags, items, List.of()
+        );
+    }
+
+    private Set<Long> search(String query) {
+        var searcher = new JdbcTransactionSearcher(conn);
+        var filters = new JdbcTransactionSearcher.FilterBuilder().byText(query).build();
+        Set<Long> ids = new HashSet<>();
+        searcher.search(KeysetPageRequest.first(100, JdbcTransactionSearcher.NEWEST_FIRST), filters)
+                .items().forEach(tx -> ids.add(tx.id));
+        return ids;
+    }
+
+    private List<Long> rankedSearch(String query, int page, int size) {
+        var searcher = new JdbcTransactionSearcher(conn);
+        var filters = new JdbcTransactionSearcher.FilterBuilder().byRankedText(query).build();
+        return searcher.search(new PageRequest(page, size, JdbcTransactionSearcher.MOST_RELEVANT_FIRST), filters)
+                .items().stream().map(tx -> tx.id).toList();
+    }
+
+    /**
+     * Checks that the index is exactly what we'd get from rebuilding it.
+     */
+    private void assertIndexConsistent() {
+        List<String> rows = findIndexRows();
+        searchIndex.rebuildAll();
+        assertEquals(findIndexRows(), rows);
+    }
+
+    private List<String> findIndexRows() {
+        return DbUtil.findAll(
+                conn,
+                "SELECT transaction_id, term, weight FROM transaction_search_term ORDER BY transaction_id, term",
+                rs -> rs.getLong(1) + ":" + rs.getString(2) + ":" + rs.getInt(3)
+        );
+    }
+}
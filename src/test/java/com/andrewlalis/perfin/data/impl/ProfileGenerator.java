@@ -0,0 +1,731 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.ulid.Ulid;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.AccountType;
+import com.andrewlalis.perfin.model.Attachment;
+import com.andrewlalis.perfin.model.Profile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates large profiles with realistic-looking data, for load testing and
+ * benchmarks. Data is bulk-loaded with batched inserts, and attachment files
+ * are written in parallel, so that even profiles with millions of
+ * transactions only take a few minutes to make. Everything is derived from a
+ * seeded random generator, so the same options always give the same data.
+ * <p>
+ *     Run the main method to create a profile that the app can open, giving
+ *     its name, and then any options as key=value pairs, like
+ *     {@code ProfileGenerator big accounts=100 transactions-per-day=1000}.
+ * </p>
+ */
+public class ProfileGenerator {
+    private static final int BATCH_SIZE = 1000;
+    private static final int COMMIT_INTERVAL = 50_000;
+    private static final int MIN_ATTACHMENT_BYTES = 1024;
+    private static final int MAX_ATTACHMENT_BYTES = 20 * 1024 * 1024;
+    private static final String[] DESCRIPTION_WORDS = {
+            "groceries", "fuel", "dinner", "lunch", "coffee", "rent", "utilities", "subscription",
+            "gift", "repair", "insurance", "tickets", "books", "clothes", "pharmacy", "parking"
+    };
+
+    /**
+     * Options for generating a profile.
+     * @param seed The seed for the random generator.
+     * @param accounts The number of accounts.
+     * @param startDate The date of the first transactions.
+     * @param days The number of days to generate transactions for.
+     * @param transactionsPerDay The average number of transactions per day.
+     *                           The actual number for each day follows a
+     *                           Poisson distribution.
+     * @param currencyWeights The relative weight of each currency, which
+     *                        determines how many accounts use it.
+     * @param vendors The number of vendors.
+     * @param categories The number of categories to add to the default ones,
+     *                   each nested under a random existing category.
+     * @param tags The number of tags.
+     * @param lineItemRatio The fraction of transactions with line items.
+     * @param tagRatio The fraction of transactions with tags.
+     * @param attachmentRatio The fraction of transactions with an attachment.
+     * @param attachmentMedianBytes The median attachment size. Sizes follow a
+     *                              log-normal distribution.
+     * @param attachmentSizeSigma The spread of attachment sizes, as the
+     *                            standard deviation of their logarithm.
+     * @param balanceRecordIntervalDays The number of days between each
+     *                                  account's balance records.
+     * @param historyItemsPerAccount The number of text items in each
+     *                               account's history.
+     */
+    public record Options(
+            long seed,
+            int accounts,
+            LocalDate startDate,
+            int days,
+            double transactionsPerDay,
+            Map<Currency, Double> currencyWeights,
+            int vendors,
+            int categories,
+            int tags,
+            double lineItemRatio,
+            double tagRatio,
+            double attachmentRatio,
+            int attachmentMedianBytes,
+            double attachmentSizeSigma,
+            int balanceRecordIntervalDays,
+            int historyItemsPerAccount
+    ) {
+        public Options {
+            if (accounts < 1) throw new IllegalArgumentException("accounts must be at least 1.");
+            if (days < 1) throw new IllegalArgumentException("days must be at least 1.");
+            if (transactionsPerDay < 0) throw new IllegalArgumentException("transactionsPerDay must be non-negative.");
+            if (currencyWeights.isEmpty()) throw new IllegalArgumentException("At least one currency is needed.");
+            if (vendors < 1) throw new IllegalArgumentException("vendors must be at least 1.");
+            if (balanceRecordIntervalDays < 1) throw new IllegalArgumentException("balanceRecordIntervalDays must be at least 1.");
+            currencyWeights = Collections.unmodifiableMap(new LinkedHashMap<>(currencyWeights));
+        }
+
+        public static Options defaults() {
+            return builder().build();
+        }
+
+        /**
+         * Gets a builder that starts with the default options.
+         * @return The builder.
+         */
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        /**
+         * Gets a builder that starts with these options.
+         * @return The builder.
+         */
+        public Builder toBuilder() {
+            return new Builder()
+                    .seed(seed)
+                    .accounts(accounts)
+                    .startDate(startDate)
+                    .days(days)
+                    .transactionsPerDay(transactionsPerDay)
+                    .currencyWeights(currencyWeights)
+                    .vendors(vendors)
+                    .categories(categories)
+                    .tags(tags)
+                    .lineItemRatio(lineItemRatio)
+                    .tagRatio(tagRatio)
+                    .attachmentRatio(attachmentRatio)
+                    .attachmentMedianBytes(attachmentMedianBytes)
+                    .attachmentSizeSigma(attachmentSizeSigma)
+                    .balanceRecordIntervalDays(balanceRecordIntervalDays)
+                    .historyItemsPerAccount(historyItemsPerAccount);
+        }
+
+        /**
+         * Reads options from a set of properties, using the default value for
+         * anything that's not specified. Currency weights are given like
+         * "USD:0.8,EUR:0.2".
+         * @param props The properties to read from.
+         * @return The options.
+         */
+        public static Options fromProperties(Properties props) {
+            Options d = defaults();
+            Map<Currency, Double> currencyWeights = d.currencyWeights;
+            String currencies = props.getProperty("currencies");
+            if (currencies != null) {
+                currencyWeights = new LinkedHashMap<>();
+                for (String part : currencies.split(",")) {
+                    String[] pair = part.strip().split(":");
+                    currencyWeights.put(Currency.getInstance(pair[0]), pair.length > 1 ? Double.parseDouble(pair[1]) : 1.0);
+                }
+            }
+            return builder()
+                    .seed(Long.parseLong(props.getProperty("seed", Long.toString(d.seed))))
+                    .accounts(Integer.parseInt(props.getProperty("accounts", Integer.toString(d.accounts))))
+                    .startDate(LocalDate.parse(props.getProperty("start-date", d.startDate.toString())))
+                    .days(Integer.parseInt(props.getProperty("days", Integer.toString(d.days))))
+                    .transactionsPerDay(Double.parseDouble(props.getProperty("transactions-per-day", Double.toString(d.transactionsPerDay))))
+                    .currencyWeights(currencyWeights)
+                    .vendors(Integer.parseInt(props.getProperty("vendors", Integer.toString(d.vendors))))
+                    .categories(Integer.parseInt(props.getProperty("categories", Integer.toString(d.categories))))
+                    .tags(Integer.parseInt(props.getProperty("tags", Integer.toString(d.tags))))
+                    .lineItemRatio(Double.parseDouble(props.getProperty("line-item-ratio", Double.toString(d.lineItemRatio))))
+                    .tagRatio(Double.parseDouble(props.getProperty("tag-ratio", Double.toString(d.tagRatio))))
+                    .attachmentRatio(Double.parseDouble(props.getProperty("attachment-ratio", Double.toString(d.attachmentRatio))))
+                    .attachmentMedianBytes(Integer.parseInt(props.getProperty("attachment-median-bytes", Integer.toString(d.attachmentMedianBytes))))
+                    .attachmentSizeSigma(Double.parseDouble(props.getProperty("attachment-size-sigma", Double.toString(d.attachmentSizeSigma))))
+                    .balanceRecordIntervalDays(Integer.parseInt(props.getProperty("balance-record-interval-days", Integer.toString(d.balanceRecordIntervalDays))))
+                    .historyItemsPerAccount(Integer.parseInt(props.getProperty("history-items-per-account", Integer.toString(d.historyItemsPerAccount))))
+                    .build();
+        }
+
+        /**
+         * A builder for {@link Options}, which starts with the default value
+         * of each option.
+         */
+        public static class Builder {
+            private long seed = 42;
+            private int accounts = 20;
+            private LocalDate startDate = LocalDate.of(2020, 1, 1);
+            private int days = 3 * 365;
+            private double transactionsPerDay = 20;
+            private Map<Currency, Double> currencyWeights = defaultCurrencyWeights();
+            private int vendors = 500;
+            private int categories = 50;
+            private int tags = 30;
+            private double lineItemRatio = 0.1;
+            private double tagRatio = 0.2;
+            private double attachmentRatio = 0.02;
+            private int attachmentMedianBytes = 200_000;
+            private double attachmentSizeSigma = 1.0;
+            private int balanceRecordIntervalDays = 30;
+            private int historyItemsPerAccount = 20;
+
+            private Builder() {}
+
+            private static Map<Currency, Double> defaultCurrencyWeights() {
+                Map<Currency, Double> weights = new LinkedHashMap<>();
+                weights.put(Currency.getInstance("USD"), 0.8);
+                weights.put(Currency.getInstance("EUR"), 0.15);
+                weights.put(Currency.getInstance("GBP"), 0.05);
+                return weights;
+            }
+
+            public Builder seed(long seed) {
+                this.seed = seed;
+                return this;
+            }
+
+            public Builder accounts(int accounts) {
+                this.accounts = accounts;
+                return this;
+            }
+
+            public Builder startDate(LocalDate startDate) {
+                this.startDate = startDate;
+                return this;
+            }
+
+            public Builder days(int days) {
+                this.days = days;
+                return this;
+            }
+
+            public Builder transactionsPerDay(double transactionsPerDay) {
+                this.transactionsPerDay = transactionsPerDay;
+                return this;
+            }
+
+            public Builder currencyWeights(Map<Currency, Double> currencyWeights) {
+                this.currencyWeights = currencyWeights;
+                return this;
+            }
+
+            public Builder vendors(int vendors) {
+                this.vendors = vendors;
+                return this;
+            }
+
+            public Builder categories(int categories) {
+                this.categories = categories;
+                return this;
+            }
+
+            public Builder tags(int tags) {
+                this.tags = tags;
+                return this;
+            }
+
+            public Builder lineItemRatio(double lineItemRatio) {
+                this.lineItemRatio = lineItemRatio;
+                return this;
+            }
+
+            public Builder tagRatio(double tagRatio) {
+                this.tagRatio = tagRatio;
+                return this;
+            }
+
+            public Builder attachmentRatio(double attachmentRatio) {
+                this.attachmentRatio = attachmentRatio;
+                return this;
+            }
+
+            public Builder attachmentMedianBytes(int attachmentMedianBytes) {
+                this.attachmentMedianBytes = attachmentMedianBytes;
+                return this;
+            }
+
+            public Builder attachmentSizeSigma(double attachmentSizeSigma) {
+                this.attachmentSizeSigma = attachmentSizeSigma;
+                return this;
+            }
+
+            public Builder balanceRecordIntervalDays(int balanceRecordIntervalDays) {
+                this.balanceRecordIntervalDays = balanceRecordIntervalDays;
+                return this;
+            }
+
+            public Builder historyItemsPerAccount(int historyItemsPerAccount) {
+                this.historyItemsPerAccount = historyItemsPerAccount;
+                return this;
+            }
+
+            public Options build() {
+                return new Options(
+                        seed,
+                        accounts,
+                        startDate,
+                        days,
+                        transactionsPerDay,
+                        currencyWeights,
+                        vendors,
+                        categories,
+                        tags,
+                        lineItemRatio,
+                        tagRatio,
+                        attachmentRatio,
+                        attachmentMedianBytes,
+                        attachmentSizeSigma,
+                        balanceRecordIntervalDays,
+                        historyItemsPerAccount
+                );
+            }
+        }
+    }
+
+    /**
+     * A summary of a generated profile. Transaction ids are consecutive.
+     * @param accountIds The ids of the generated accounts.
+     * @param firstTransactionId The id of the first generated transaction.
+     * @param transactionCount The number of generated transactions.
+     * @param lineItemCount The number of generated line items.
+     * @param attachmentCount The number of generated attachments.
+     * @param attachmentBytes The total size of the attachment files.
+     * @param elapsed The time it took to generate the profile.
+     */
+    public record Result(
+            List<Long> accountIds,
+            long firstTransactionId,
+            long transactionCount,
+            long lineItemCount,
+            long attachmentCount,
+            long attachmentBytes,
+            Duration elapsed
+    ) {}
+
+    private record GeneratedAccount(long id, AccountType type, Currency currency, BigDecimal[] balance) {}
+
+    private final Options options;
+
+    public ProfileGenerator(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: ProfileGenerator <profile-name> [option=value ...]");
+            return;
+        }
+        String profileName = args[0];
+        Properties props = new Properties();
+        for (int i = 1; i < args.length; i++) {
+            String[] pair = args[i].split("=", 2);
+            if (pair.length != 2) throw new IllegalArgumentException("Invalid option: " + args[i]);
+            props.setProperty(pair[0], pair[1]);
+        }
+        Options options = Options.fromProperties(props);
+        System.out.println("Generating profile " + profileName + " in " + Profile.getDir(profileName) + " with " + options);
+        Result result = new ProfileGenerator(options).generate(profileName);
+        System.out.printf(
+                "Generated %d accounts, %d transactions, %d line items, and %d attachments (%.1f MB) in %.1f seconds.%n",
+                result.accountIds().size(),
+                result.transactionCount(),
+                result.lineItemCount(),
+                result.attachmentCount(),
+                result.attachmentBytes() / (1024.0 * 1024.0),
+                result.elapsed().toMillis() / 1000.0
+        );
+    }
+
+    /**
+     * Creates a new profile under {@link Profile#getProfilesDir()}, and fills
+     * it with generated data.
+     * @param profileName The name of the profile, which must not exist yet.
+     * @return A summary of what was generated.
+     * @throws Exception If the profile couldn't be created.
+     */
+    public Result generate(String profileName) throws Exception {
+        if (!Profile.validateName(profileName)) throw new IllegalArgumentException("Invalid profile name.");
+        if (Files.exists(Profile.getDir(profileName))) {
+            throw new IllegalArgumentException("Profile " + profileName + " already exists.");
+        }
+        Files.createDirectories(Profile.getProfilesDir());
+        // Set up the profile's directory like a new profile, so the app can open it.
+        Files.createDirectory(Profile.getDir(profileName));
+        try (var in = ProfileGenerator.class.getResourceAsStream("/text/defaultProfileSettings.properties")) {
+            if (in == null) throw new IOException("Could not load the default profile settings.");
+            Files.copy(in, Profile.getSettingsFile(profileName));
+        }
+        Files.createDirectory(Profile.getContentDir(profileName));
+        // Create the database with the factory, and then connect without leak detection, since generating takes a while.
+        if (new JdbcDataSourceFactory().getDataSource(profileName) instanceof AutoCloseable c) c.close();
+        var config = JdbcConnectionPool.Config.defaults();
+        config = new JdbcConnectionPool.Config(
+                config.minIdle(), config.maxSize(), config.maxWait(), config.idleTimeout(),
+                Duration.ZERO, config.validationTimeout(), config.statementCacheSize()
+        );
+        try (
+                var dataSource = new JdbcDataSource(JdbcDataSourceFactory.getJdbcUrl(profileName), Profile.getContentDir(profileName), config);
+                var conn = dataSource.getConnection()
+        ) {
+            return generate(conn, dataSource.getContentDir());
+        }
+    }
+
+    /**
+     * Fills an existing, empty profile with generated data.
+     * @param conn The connection to the profile's database.
+     * @param contentDir The profile's content directory.
+     * @return A summary of what was generated.
+     * @throws SQLException If inserting data fails.
+     * @throws IOException If writing attachments fails.
+     */
+    public Result generate(Connection conn, Path contentDir) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Random rand = new Random(options.seed());
+        List<Long> categoryIds = generateCategories(conn, rand);
+        List<Long> vendorIds = new ArrayList<>(options.vendors());
+        for (int i = 0; i < options.vendors(); i++) {
+            vendorIds.add(DbUtil.insertOne(conn, "INSERT INTO transaction_vendor (name) VALUES (?)", "Vendor " + i));
+        }
+        List<Long> tagIds = new ArrayList<>(options.tags());
+        for (int i = 0; i < options.tags(); i++) {
+            tagIds.add(DbUtil.insertOne(conn, "INSERT INTO transaction_tag (name) VALUES (?)", "tag-" + i));
+        }
+        List<GeneratedAccount> accounts = generateAccounts(conn, rand);
+
+        // Transactions, line items, and attachments are given explicit ids, so they can be batched.
+        long firstTransactionId = nextId(conn, "transaction");
+        long nextTransactionId = firstTransactionId;
+        long nextLineItemId = nextId(conn, "transaction_line_item");
+        long nextAttachmentId = nextId(conn, "attachment");
+        long attachmentBytes = 0;
+        List<Future<?>> attachmentWrites = new ArrayList<>();
+
+        conn.setAutoCommit(false);
+        try (
+                ExecutorService fileWriter = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+                var txStmt = conn.prepareStatement(
+                        "INSERT INTO transaction (id, timestamp, amount, currency, description, vendor_id, category_id) VALUES (?, ?, ?, ?, ?, ?, ?)"
+                );
+                var entryStmt = conn.prepareStatement(
+                        "INSERT INTO account_entry (timestamp, account_id, transaction_id, amount, type, currency) VALUES (?, ?, ?, ?, ?, ?)"
+                );
+                var lineItemStmt = conn.prepareStatement(
+                        "INSERT INTO transaction_line_item (id, transaction_id, value_per_item, quantity, idx, description, category_id) VALUES (?, ?, ?, ?, ?, ?, ?)"
+                );
+                var tagStmt = conn.prepareStatement("INSERT INTO transaction_tag_join (transaction_id, tag_id) VALUES (?, ?)");
+                var attachmentStmt = conn.prepareStatement(
+                        "INSERT INTO attachment (id, uploaded_at, identifier, filename, content_type) VALUES (?, ?, ?, ?, ?)"
+                );
+                var attachmentLinkStmt = conn.prepareStatement(
+                        "INSERT INTO transaction_attachment (transaction_id, attachment_id) VALUES (?, ?)"
+                );
+                var balanceRecordStmt = conn.prepareStatement(
+                        "INSERT INTO balance_record (timestamp, account_id, balance, currency) VALUES (?, ?, ?, ?)"
+                )
+        ) {
+            List<PreparedStatement> batches = List.of(
+                    txStmt, entryStmt, lineItemStmt, tagStmt, attachmentStmt, attachmentLinkStmt, balanceRecordStmt
+            );
+            for (int day = 0; day < options.days(); day++) {
+                LocalDateTime dayStart = options.startDate().plusDays(day).atStartOfDay();
+                if (day > 0 && day % options.balanceRecordIntervalDays() == 0) {
+                    for (var account : accounts) {
+                        DbUtil.setArgs(
+                                balanceRecordStmt,
+                                DbUtil.timestampFromUtcLDT(dayStart), account.id(), account.balance()[0], account.currency().getCurrencyCode()
+                        );
+                        balanceRecordStmt.addBatch();
+                    }
+                }
+                int count = poisson(rand, options.transactionsPerDay());
+                int[] seconds = new int[count];
+                for (int i = 0; i < count; i++) seconds[i] = rand.nextInt(86_400);
+                Arrays.sort(seconds);
+                for (int second : seconds) {
+                    long txId = nextTransactionId++;
+                    LocalDateTime timestamp = dayStart.plusSeconds(second);
+                    var ts = DbUtil.timestampFromUtcLDT(timestamp);
+                    GeneratedAccount account = accounts.get(rand.nextInt(accounts.size()));
+                    String currency = account.currency().getCurrencyCode();
+                    int vendorIndex = skewedIndex(rand, vendorIds.size());
+                    long vendorId = vendorIds.get(vendorIndex);
+                    Long categoryId = categoryIds.isEmpty() ? null : categoryIds.get(skewedIndex(rand, categoryIds.size()));
+                    double kind = rand.nextDouble();
+                    BigDecimal amount = logNormalAmount(rand, kind < 0.9 ? 25 : 1500);
+                    String description = DESCRIPTION_WORDS[rand.nextInt(DESCRIPTION_WORDS.length)] + " at Vendor " + vendorIndex;
+                    DbUtil.setArgs(txStmt, txId, ts, amount, currency, description, vendorId, categoryId);
+                    txStmt.addBatch();
+
+                    if (kind < 0.8) {
+                        // An expense, paid from the account.
+                        addEntry(entryStmt, ts, account, txId, amount, "CREDIT");
+                    } else if (kind < 0.9) {
+                        // A transfer from the account to another with the same currency, if there is one.
+                        addEntry(entryStmt, ts, account, txId, amount, "CREDIT");
+                        GeneratedAccount other = accounts.get(rand.nextInt(accounts.size()));
+                        if (other != account && other.currency().equals(account.currency())) {
+                            addEntry(entryStmt, ts, other, txId, amount, "DEBIT");
+                        }
+                    } else {
+                        // Income, paid into the account.
+                        addEntry(entryStmt, ts, account, txId, amount, "DEBIT");
+                    }
+
+                    if (rand.nextDouble() < options.lineItemRatio()) {
+                        int itemCount = 1 + rand.nextInt(5);
+                        BigDecimal valuePerItem = amount.divide(BigDecimal.valueOf(itemCount), 2, RoundingMode.DOWN);
+                        for (int idx = 0; idx < itemCount; idx++) {
+                            DbUtil.setArgs(
+                                    lineItemStmt,
+                                    nextLineItemId++, txId, valuePerItem, 1, idx, "Item " + (idx + 1), categoryId
+                            );
+                            lineItemStmt.addBatch();
+                        }
+                    }
+                    if (!tagIds.isEmpty() && rand.nextDouble() < options.tagRatio()) {
+                        int tagCount = 1 + rand.nextInt(Math.min(3, tagIds.size()));
+                        Set<Long> txTagIds = new HashSet<>();
+                        while (txTagIds.size() < tagCount) txTagIds.add(tagIds.get(rand.nextInt(tagIds.size())));
+                        for (long tagId : txTagIds) {
+                            DbUtil.setArgs(tagStmt, txId, tagId);
+                            tagStmt.addBatch();
+                        }
+                    }
+                    if (rand.nextDouble() < options.attachmentRatio()) {
+                        long attachmentId = nextAttachmentId++;
+                        byte[] ulidRandom = new byte[10];
+                        rand.nextBytes(ulidRandom);
+                        String identifier = new Ulid(timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(), ulidRandom).toString();
+                        Attachment attachment = new Attachment(attachmentId, timestamp, identifier, "receipt-" + txId + ".pdf", "application/pdf");
+                        DbUtil.setArgs(
+                                attachmentStmt,
+                                attachmentId, ts, identifier, attachment.getFilename(), attachment.getContentType()
+                        );
+                        attachmentStmt.addBatch();
+                        DbUtil.setArgs(attachmentLinkStmt, txId, attachmentId);
+                        attachmentLinkStmt.addBatch();
+                        int size = attachmentSize(rand);
+                        attachmentBytes += size;
+                        long fileSeed = rand.nextLong();
+                        Path file = attachment.getPath(contentDir);
+                        attachmentWrites.add(fileWriter.submit(() -> writeAttachment(file, size, fileSeed)));
+                    }
+
+                    long generated = txId - firstTransactionId + 1;
+                    if (generated % BATCH_SIZE == 0) {
+                        for (var stmt : batches) stmt.executeBatch();
+                    }
+                    if (generated % COMMIT_INTERVAL == 0) conn.commit();
+                }
+            }
+            for (var stmt : batches) stmt.executeBatch();
+            conn.commit();
+            for (var write : attachmentWrites) {
+                try {
+                    write.get();
+                } catch (Exception e) {
+                    throw new IOException("Failed to write an attachment.", e);
+                }
+            }
+        } catch (SQLException | IOException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        JdbcHistoryRepository historyRepo = new JdbcHistoryRepository(conn);
+        for (var account : accounts) {
+            long historyId = historyRepo.getOrCreateHistoryForAccount(account.id());
+            for (int i = 0; i < options.historyItemsPerAccount(); i++) {
+                LocalDateTime ts = options.startDate().atStartOfDay().plusMinutes(rand.nextLong(options.days() * 1440L));
+                historyRepo.addTextItem(historyId, ts, "Note " + i);
+            }
+        }
+
+        restartIdentity(conn, "transaction", nextTransactionId);
+        restartIdentity(conn, "transaction_line_item", nextLineItemId);
+        restartIdentity(conn, "attachment", nextAttachmentId);
+        new JdbcAccountBalanceSnapshotRepository(conn).rebuildAll();
+        new JdbcTransactionRollupRepository(conn).rebuildAll();
+        new JdbcTransactionSearchIndex(conn).rebuildAll();
+
+        return new Result(
+                accounts.stream().map(GeneratedAccount::id).toList(),
+                firstTransactionId,
+                nextTransactionId - firstTransactionId,
+                DbUtil.count(conn, "SELECT COUNT(id) FROM transaction_line_item WHERE transaction_id >= ?", firstTransactionId),
+                attachmentWrites.size(),
+                attachmentBytes,
+                Duration.ofNanos(System.nanoTime() - start)
+        );
+    }
+
+    /**
+     * Adds some categories, each nested under a random existing one, or at
+     * the top level.
+     * @return The ids of all categories, including the existing ones.
+     */
+    private List<Long> generateCategories(Connection conn, Random rand) {
+        List<Long> categoryIds = new ArrayList<>(DbUtil.findAll(
+                conn,
+                "SELECT id FROM transaction_category ORDER BY id",
+                rs -> rs.getLong(1)
+        ));
+        for (int i = 0; i < options.categories(); i++) {
+            Long parentId = categoryIds.isEmpty() || rand.nextInt(4) == 0
+                    ? null
+                    : categoryIds.get(rand.nextInt(categoryIds.size()));
+            categoryIds.add(DbUtil.insertOne(
+                    conn,
+                    "INSERT INTO transaction_category (parent_id, name, color) VALUES (?, ?, ?)",
+                    parentId, "Generated Category " + i, String.format("%06X", rand.nextInt(0x1000000))
+            ));
+        }
+        return categoryIds;
+    }
+
+    private List<GeneratedAccount> generateAccounts(Connection conn, Random rand) {
+        List<Currency> currencies = new ArrayList<>(options.currencyWeights().keySet());
+        double totalWeight = options.currencyWeights().values().stream().mapToDouble(Double::doubleValue).sum();
+        List<GeneratedAccount> accounts = new ArrayList<>(options.accounts());
+        for (int i = 0; i < options.accounts(); i++) {
+            // Make sure that every currency has an account, and then choose by weight.
+            Currency currency = i < currencies.size() ? currencies.get(i) : weightedChoice(rand, totalWeight);
+            AccountType type = AccountType.values()[rand.nextInt(AccountType.values().length)];
+            long id = DbUtil.insertOne(
+                    conn,
+                    "INSERT INTO account (created_at, account_type, account_number, name, currency) VALUES (?, ?, ?, ?, ?)",
+                    DbUtil.timestampFromUtcLDT(options.startDate().atStartOfDay()),
+                    type.name(), "GEN-" + i, "Account " + i, currency.getCurrencyCode()
+            );
+            accounts.add(new GeneratedAccount(id, type, currency, new BigDecimal[]{BigDecimal.ZERO}));
+        }
+        return accounts;
+    }
+
+    private Currency weightedChoice(Random rand, double totalWeight) {
+        double r = rand.nextDouble() * totalWeight;
+        Currency last = null;
+        for (var entry : options.currencyWeights().entrySet()) {
+            last = entry.getKey();
+            r -= entry.getValue();
+            if (r < 0) break;
+        }
+        return last;
+    }
+
+    private static void addEntry(
+            PreparedStatement stmt,
+            Timestamp ts,
+            GeneratedAccount account,
+            long txId,
+            BigDecimal amount,
+            String type
+    ) throws SQLException {
+        DbUtil.setArgs(stmt, ts, account.id(), txId, amount, type, account.currency().getCurrencyCode());
+        stmt.addBatch();
+        // Keep a running balance, so that balance records agree with the entries.
+        boolean positive = type.equals("DEBIT") == account.type().areDebitsPositive();
+        account.balance()[0] = account.balance()[0].add(positive ? amount : amount.negate());
+    }
+
+    /**
+     * Gets a random index that favors lower indexes, so that some vendors and
+     * categories are used much more than others.
+     */
+    private static int skewedIndex(Random rand, int size) {
+        double r = rand.nextDouble();
+        return (int) (r * r * size);
+    }
+
+    private static BigDecimal logNormalAmount(Random rand, double median) {
+        double value = median * Math.exp(rand.nextGaussian());
+        return BigDecimal.valueOf(Math.max(1, Math.min(9_999_999, Math.round(value * 100))), 2);
+    }
+
+    private int attachmentSize(Random rand) {
+        double size = options.attachmentMedianBytes() * Math.exp(rand.nextGaussian() * options.attachmentSizeSigma());
+        return (int) Math.max(MIN_ATTACHMENT_BYTES, Math.min(MAX_ATTACHMENT_BYTES, size));
+    }
+
+    /**
+     * Gets a random number from a Poisson distribution. For large means, a
+     * normal approximation is used.
+     */
+    private static int poisson(Random rand, double mean) {
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean + rand.nextGaussian() * Math.sqrt(mean)));
+        }
+        double limit = Math.exp(-mean);
+        double product = rand.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= rand.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    private static long nextId(Connection conn, String table) {
+        return DbUtil.count(conn, "SELECT COALESCE(MAX(id), 0) + 1 FROM " + table);
+    }
+
+    private static void restartIdentity(Connection conn, String table, long nextId) {
+        DbUtil.update(conn, "ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + nextId);
+    }
+
+    private static Void writeAttachment(Path file, int size, long seed) {
+        byte[] buffer = new byte[64 * 1024];
+        SplittableRandom rand = new SplittableRandom(seed);
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = Files.newOutputStream(file)) {
+                byte[] header = "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII);
+                out.write(header);
+                int remaining = size - header.length;
+                while (remaining > 0) {
+                    int n = Math.min(buffer.length, remaining);
+                    rand.nextBytes(buffer);
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfileGeneratorTest {
+    @TempDir
+    Path tempDir;
+
+    private static ProfileGenerator.Options smallOptions() {
+        return ProfileGenerator.Options.builder()
+                .seed(7)
+                .accounts(5)
+                .days(90)
+                .transactionsPerDay(10)
+                .vendors(20)
+                .categories(10)
+                .tags(5)
+                .lineItemRatio(0.5)
+                .tagRatio(0.5)
+                .attachmentRatio(0.1)
+                .attachmentMedianBytes(4096)
+                .attachmentSizeSigma(0.5)
+                .historyItemsPerAccount(3)
+                .build();
+    }
+
+    private record Generated(ProfileGenerator.Result result, List<String> rows, long attachmentFiles) {}
+
+    private Generated generate(String name) throws Exception {
+        Path contentDir = tempDir.resolve(name);
+        try (
+                var ds = JdbcTestUtil.newDataSource(name, contentDir);
+                Connection conn = ds.getConnection()
+        ) {
+            var result = new ProfileGenerator(smallOptions()).generate(conn, contentDir);
+            assertEquals(result.transactionCount(), DbUtil.count(conn, "SELECT COUNT(id) FROM transaction"));
+            assertEquals(result.attachmentCount(), DbUtil.count(conn, "SELECT COUNT(attachment_id) FROM transaction_attachment"));
+            assertTrue(DbUtil.count(conn, "SELECT COUNT(id) FROM transaction_category WHERE parent_id IS NOT NULL") > 0);
+            assertTrue(DbUtil.count(conn, "SELECT COUNT(*) FROM transaction_search_term") > 0);
+            assertTrue(DbUtil.count(conn, "SELECT COUNT(*) FROM transaction_rollup") > 0);
+            // One for each account, every 30 days.
+            assertEquals(2 * 5, DbUtil.count(conn, "SELECT COUNT(id) FROM balance_record"));
+            assertEquals(3, DbUtil.count(conn, "SELECT COUNT(DISTINCT currency) FROM account"));
+            assertEquals(3 * 5, DbUtil.count(conn, "SELECT COUNT(id) FROM history_item_text"));
+
+            // New rows continue after the generated ids.
+            long newId = DbUtil.insertOne(
+                    conn,
+                    "INSERT INTO transaction (timestamp, amount, currency) VALUES (?, ?, ?)",
+                    DbUtil.timestampFromUtcNow(), 1, "USD"
+            );
+            assertEquals(result.firstTransactionId() + result.transactionCount(), newId);
+
+            List<String> rows = DbUtil.findAll(
+                    conn,
+                    "SELECT id, timestamp, amount, currency, description FROM transaction WHERE id < ? ORDER BY id",
+                    List.of(newId),
+                    rs -> rs.getLong(1) + " " + rs.getTimestamp(2) + " " + rs.getBigDecimal(3) + " " + rs.getString(4) + " " + rs.getString(5)
+            );
+            long attachmentFiles;
+            try (Stream<Path> files = Files.walk(contentDir)) {
+                attachmentFiles = files.filter(Files::isRegularFile).count();
+            }
+            return new Generated(result, rows, attachmentFiles);
+        }
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+        Generated first = generate("generator_a");
+        var result = first.result();
+        assertEquals(5, result.accountIds().size());
+        // About 10 transactions per day, for 90 days.
+        assertTrue(result.transactionCount() > 700 && result.transactionCount() < 1100, "Got " + result.transactionCount());
+        assertTrue(result.lineItemCount() > 0);
+        assertTrue(result.attachmentCount() > 0);
+        assertEquals(result.attachmentCount(), first.attachmentFiles());
+
+        // The same options always give the same data.
+        Generated second = generate("generator_b");
+        assertEquals(first.rows(), second.rows());
+        assertEquals(result.attachmentBytes(), second.result().attachmentBytes());
+    }
+}
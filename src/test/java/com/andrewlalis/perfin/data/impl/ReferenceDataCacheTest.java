@@ -0,0 +1,124 @@
+package com.andrewlalis.perfin.data.impl;
+
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.model.Account;
+import com.andrewlalis.perfin.model.AccountType;
+import com.andrewlalis.perfin.model.CreditAndDebitAccounts;
+import com.andrewlalis.perfin.model.TransactionVendor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceDataCacheTest {
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private Connection conn;
+    private ReferenceDataCache cache;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        cache = new ReferenceDataCache();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testGetAndInvalidate() {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(List.of("a"), cache.get(ReferenceDataCache.TAGS, () -> {
+            loads.incrementAndGet();
+            return List.of("a");
+        }));
+        assertEquals(List.of("a"), cache.get(ReferenceDataCache.TAGS, () -> List.of("b")));
+        assertEquals(1, loads.get());
+        assertEquals(new ReferenceDataCache.Metrics(1, 1, 0), cache.getMetrics());
+
+        cache.invalidate(ReferenceDataCache.TAGS);
+        assertEquals(1, cache.getVersion(ReferenceDataCache.TAGS));
+        assertEquals(0, cache.getVersion(ReferenceDataCache.VENDORS));
+        assertEquals(List.of("b"), cache.get(ReferenceDataCache.TAGS, () -> List.of("b")));
+        assertEquals(new ReferenceDataCache.Metrics(1, 2, 1), cache.getMetrics());
+    }
+
+    @Test
+    public void testSnapshotIsDiscardedIfInvalidatedWhileLoading() {
+        cache.get(ReferenceDataCache.TAGS, () -> {
+            cache.invalidate(ReferenceDataCache.TAGS);
+            return List.of("stale");
+        });
+        assertEquals(List.of("fresh"), cache.get(ReferenceDataCache.TAGS, () -> List.of("fresh")));
+    }
+
+    @Test
+    public void testAccountsAreInvalidatedByWrites() {
+        var repo = new JdbcAccountRepository(conn, null, cache);
+        long b = repo.insert(AccountType.CHECKING, "1", "B", USD, null);
+        assertEquals(List.of("B"), repo.findAllOrderedByName().stream().map(Account::getName).toList());
+        assertSame(repo.findAllOrderedByName(), repo.findAllOrderedByName());
+
+        long a = repo.insert(AccountType.SAVINGS, "2", "A", EUR, null);
+        assertEquals(List.of("A", "B"), repo.findAllOrderedByName().stream().map(Account::getName).toList());
+        assertEquals(Set.of(USD, EUR), repo.findAllUsedCurrencies());
+
+        repo.archive(a);
+        assertEquals(List.of(b), repo.findAllOrderedByName().stream().map(acc -> acc.id).toList());
+        assertEquals(Set.of(USD), repo.findAllUsedCurrencies());
+
+        repo.update(b, AccountType.CHECKING, "1", "C", USD, null);
+        assertEquals("C", repo.findAllOrderedByName().getFirst().getName());
+    }
+
+    @Test
+    public void testVendorsAndTagsAreInvalidatedByTransactions() {
+        var vendorRepo = new JdbcTransactionVendorRepository(conn, cache);
+        var transactionRepo = new JdbcTransactionRepository(conn, null, cache);
+        var accountRepo = new JdbcAccountRepository(conn, null, cache);
+        assertEquals(List.of(), vendorRepo.findAll());
+        assertEquals(List.of(), transactionRepo.findAllTags());
+
+        long accountId = accountRepo.insert(AccountType.CHECKING, "1", "Checking", USD, null);
+        var account = accountRepo.findById(accountId).orElseThrow();
+        transactionRepo.insert(
+                LocalDateTime.of(2024, 1, 1, 0, 0), BigDecimal.ONE, USD, null,
+                new CreditAndDebitAccounts(null, account),
+                "Store", null, Set.of("food"), List.of(), List.of()
+        );
+        assertEquals(List.of("Store"), vendorRepo.findAll().stream().map(TransactionVendor::getName).toList());
+        assertEquals(List.of("food"), transactionRepo.findAllTags());
+
+        vendorRepo.insert("Bakery");
+        assertEquals(List.of("Bakery", "Store"), vendorRepo.findAll().stream().map(TransactionVendor::getName).toList());
+        transactionRepo.deleteTag("food");
+        assertEquals(List.of(), transactionRepo.findAllTags());
+    }
+
+    @Test
+    public void testCacheIsSkippedInTransactions() {
+        var vendorRepo = new JdbcTransactionVendorRepository(conn, cache);
+        vendorRepo.insert("Store");
+        assertEquals(1, vendorRepo.findAll().size());
+        assertThrows(RuntimeException.class, () -> DbUtil.doTransaction(conn, () -> {
+            DbUtil.insertOne(conn, "INSERT INTO transaction_vendor (name) VALUES (?)", List.of("Uncommitted"));
+            assertEquals(2, vendorRepo.findAll().size());
+            throw new IllegalStateException("Roll back.");
+        }));
+        assertEquals(1, vendorRepo.findAll().size());
+    }
+}
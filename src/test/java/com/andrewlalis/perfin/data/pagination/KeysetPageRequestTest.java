@@ -0,0 +1,53 @@
+package com.andrewlalis.perfin.data.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeysetPageRequestTest {
+    @Test
+    public void testToSQL() {
+        var first = KeysetPageRequest.first(10, List.of(Sort.desc("t.timestamp"), Sort.desc("t.id")));
+        assertEquals("ORDER BY t.timestamp DESC, t.id DESC LIMIT 11", first.toSQL());
+        assertNull(first.toSeekSQL());
+        assertFalse(first.isReversed());
+
+        var previous = first.withCursor(Cursor.before(List.of(5, 7)));
+        assertTrue(previous.isReversed());
+        assertEquals("ORDER BY t.timestamp ASC, t.id ASC LIMIT 11", previous.toSQL());
+    }
+
+    @Test
+    public void testToSeekSQL() {
+        var request = KeysetPageRequest.first(10, List.of(Sort.desc("t.timestamp"), Sort.desc("t.id")));
+        var after = request.withCursor(Cursor.after(List.of(5, 7))).toSeekSQL();
+        assertEquals("t.timestamp <= ? AND (t.timestamp < ? OR (t.timestamp = ? AND (t.id < ?)))", after.first());
+        assertEquals(List.of(5, 5, 5, 7), after.second());
+
+        var before = request.withCursor(Cursor.before(List.of(5, 7))).toSeekSQL();
+        assertEquals("t.timestamp >= ? AND (t.timestamp > ? OR (t.timestamp = ? AND (t.id > ?)))", before.first());
+
+        var at = request.withCursor(Cursor.at(List.of(5, 7))).toSeekSQL();
+        assertEquals("t.timestamp <= ? AND (t.timestamp < ? OR (t.timestamp = ? AND (t.id <= ?)))", at.first());
+
+        var mixed = KeysetPageRequest.first(10, List.of(Sort.asc("name"), Sort.desc("id")))
+                .withCursor(Cursor.after(List.of("a", 1)))
+                .toSeekSQL();
+        assertEquals("name >= ? AND (name > ? OR (name = ? AND (id < ?)))", mixed.first());
+
+        var single = KeysetPageRequest.first(10, List.of(Sort.asc("id")))
+                .withCursor(Cursor.after(List.of(3)))
+                .toSeekSQL();
+        assertEquals("id > ?", single.first());
+        assertEquals(List.of(3), single.second());
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        var request = KeysetPageRequest.first(10, List.of(Sort.desc("t.timestamp"), Sort.desc("t.id")));
+        assertThrows(IllegalArgumentException.class, () -> request.withCursor(Cursor.after(List.of(1))));
+        assertThrows(IllegalArgumentException.class, () -> KeysetPageRequest.first(10, List.of()));
+    }
+}
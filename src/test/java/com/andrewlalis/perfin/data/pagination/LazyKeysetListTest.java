@@ -0,0 +1,273 @@
+package com.andrewlalis.perfin.data.pagination;
+
+import com.andrewlalis.perfin.data.RepositoryExecutor;
+import com.andrewlalis.perfin.data.util.QueryCanceller;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyKeysetListTest {
+    private static final List<Sort> SORTS = List.of(Sort.asc("id"));
+
+    /**
+     * A fetcher for a list of the integers 0 to size - 1, which records the
+     * requests it gets.
+     */
+    private static class NumberFetcher implements LazyKeysetList.ChunkFetcher<Integer> {
+        final int size;
+        final List<Object> requests = new CopyOnWriteArrayList<>();
+
+        NumberFetcher(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public LazyKeysetList.Chunk<Integer> fetch(KeysetPageRequest request, QueryCanceller canceller) {
+            requests.add(request);
+            if (request.cursor() == null) return chunk(0, request.size());
+            int key = ((Number) request.cursor().keys().getFirst()).intValue();
+            return switch (request.cursor().position()) {
+                case AFTER -> chunk(key + 1, request.size());
+                case AT -> chunk(key, request.size());
+                case BEFORE -> chunk(Math.max(0, key - request.size()), Math.min(key, request.size()));
+            };
+        }
+
+        @Override
+        public LazyKeysetList.Chunk<Integer> fetch(PageRequest request, QueryCanceller canceller) {
+            requests.add(request);
+            return chunk(request.page() * request.size(), request.size());
+        }
+
+        private LazyKeysetList.Chunk<Integer> chunk(int start, int count) {
+            List<Integer> items = IntStream.range(start, Math.min(start + count, size)).boxed().toList();
+            if (items.isEmpty()) return new LazyKeysetList.Chunk<>(items, null, null);
+            return new LazyKeysetList.Chunk<>(
+                    items,
+                    Cursor.before(List.of(items.getFirst())),
+                    Cursor.after(List.of(items.getLast()))
+            );
+        }
+    }
+
+    private final BlockingQueue<Runnable> published = new LinkedBlockingQueue<>();
+    private final RepositoryExecutor executor = new RepositoryExecutor(2, 100);
+
+    @AfterEach
+    public void tearDown() {
+        executor.close();
+    }
+
+    /**
+     * Runs the next task that a list published, like the JavaFX thread would.
+     */
+    private void runPublished() throws InterruptedException {
+        Runnable task = published.poll(5, TimeUnit.SECONDS);
+        assertNotNull(task, "Nothing was published.");
+        task.run();
+    }
+
+    @Test
+    public void testRowsAreLoadedOnAccess() throws InterruptedException {
+        var fetcher = new NumberFetcher(95);
+        var list = new LazyKeysetList<>(95, 10, 3, SORTS, fetcher, executor, published::add);
+        List<Integer> changedRows = new ArrayList<>();
+        list.addListener((ListChangeListener<Integer>) c -> {
+            while (c.next()) {
+                assertTrue(c.wasReplaced());
+                for (int i = c.getFrom(); i < c.getTo(); i++) changedRows.add(i);
+            }
+        });
+        assertEquals(95, list.size());
+        assertNull(list.get(3));
+        // Accessing a row again while its chunk is loading doesn't fetch it twice.
+        assertNull(list.get(4));
+        runPublished();
+        assertEquals(IntStream.range(0, 10).boxed().toList(), changedRows);
+        assertEquals(3, list.get(3));
+        assertEquals(1, list.getFetchCount());
+
+        // Accessing the second half of a chunk prefetches the next one.
+        assertEquals(7, list.get(7));
+        runPublished();
+        assertEquals(14, list.get(14));
+        assertEquals(2, list.getFetchCount());
+        // The next chunk continued from the end of the first one.
+        assertInstanceOf(KeysetPageRequest.class, fetcher.requests.get(1));
+        assertEquals(List.of(9), ((KeysetPageRequest) fetcher.requests.get(1)).cursor().keys());
+
+        // The last chunk is only partially full.
+        assertNull(list.get(94));
+        runPublished();
+        assertEquals(94, list.get(94));
+    }
+
+    @Test
+    public void testJumpingUsesOffsetsAndChunksAreBounded() throws InterruptedException {
+        var fetcher = new NumberFetcher(1000);
+        var list = new LazyKeysetList<>(1000, 10, 3, SORTS, fetcher, executor, published::add);
+        list.setFirstChunk(fetcher.chunk(0, 10));
+        assertEquals(0, list.get(0));
+        assertEquals(0, list.getFetchCount());
+
+        assertNull(list.get(500));
+        runPublished();
+        assertEquals(500, list.get(500));
+        assertEquals(new PageRequest(50, 10, SORTS), fetcher.requests.getFirst());
+
+        for (int i = 600; i < 1000; i += 100) {
+            assertNull(list.get(i));
+            runPublished();
+            assertTrue(list.getLoadedChunkCount() <= 3);
+        }
+        // The first chunk was evicted, so it's loaded again.
+        assertNull(list.get(0));
+        runPublished();
+        assertEquals(0, list.get(0));
+        assertEquals(3, list.getLoadedChunkCount());
+    }
+
+    @Test
+    public void testStartingInTheMiddle() throws InterruptedException {
+        var fetcher = new NumberFetcher(1000);
+        var list = LazyKeysetList.startingAt(fetcher.chunk(500, 10), 10, 3, SORTS, fetcher, executor, published::add);
+        List<String> changes = new ArrayList<>();
+        list.addListener((ListChangeListener<Integer>) c -> {
+            while (c.next()) {
+                changes.add((c.wasAdded() ? "added " : "replaced ") + c.getFrom() + "-" + c.getTo());
+            }
+        });
+        assertEquals(10, list.size());
+        assertEquals(0, list.getFetchCount());
+
+        // Accessing the start of the list fetches the rows before it.
+        assertEquals(500, list.get(0));
+        runPublished();
+        assertEquals(List.of("added 0-10"), changes);
+        assertEquals(20, list.size());
+        assertEquals(490, list.get(0));
+        assertEquals(500, list.get(10));
+        assertEquals(new KeysetPageRequest(10, SORTS, Cursor.before(List.of(500))), fetcher.requests.getFirst());
+        runPublished(); // The start of the list was accessed again.
+        assertEquals(30, list.size());
+
+        // Accessing the second half of the last chunk fetches the rows after it.
+        assertEquals(505, list.get(25));
+        runPublished();
+        assertEquals(40, list.size());
+        assertEquals(519, list.get(39));
+        assertEquals("added 30-40", changes.getLast());
+        assertTrue(fetcher.requests.stream().noneMatch(r -> r instanceof PageRequest));
+    }
+
+    @Test
+    public void testStartingInTheMiddleReachesEnds() throws InterruptedException {
+        var fetcher = new NumberFetcher(30);
+        var list = LazyKeysetList.startingAt(fetcher.chunk(15, 10), 10, 2, SORTS, fetcher, executor, published::add);
+        assertEquals(15, list.get(0));
+        runPublished();
+        assertEquals(5, list.get(0));
+        runPublished();
+        // Only 5 rows were left before the first chunk.
+        assertEquals(25, list.size());
+        assertEquals(0, list.get(0));
+        assertEquals(1, list.get(1));
+        assertEquals(2, list.getFetchCount());
+
+        // The first chunk was evicted, so it's fetched again from its first row, and the last 5 rows are fetched after it.
+        assertNull(list.get(20));
+        runPublished();
+        assertEquals(new KeysetPageRequest(10, SORTS, Cursor.at(List.of(15))), fetcher.requests.getLast());
+        assertEquals(20, list.get(20));
+        runPublished();
+        assertEquals(30, list.size());
+        assertEquals(29, list.get(29));
+        assertEquals(4, list.getFetchCount());
+
+        // The partial chunk at the start is fetched again from the first result.
+        assertNull(list.get(0));
+        assertEquals(5, list.getFetchCount());
+        runPublished();
+        assertEquals(new KeysetPageRequest(5, SORTS, null), fetcher.requests.getLast());
+        assertEquals(0, list.get(0));
+    }
+
+    @Test
+    public void testRejectedFetchIsRetried() throws Exception {
+        var busyExecutor = new RepositoryExecutor(1, 1);
+        try {
+            // Keep the executor's only thread busy, and fill its queue.
+            CountDownLatch latch = new CountDownLatch(1);
+            busyExecutor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> {
+                latch.await();
+                return null;
+            });
+            var queued = busyExecutor.submit(RepositoryExecutor.Priority.INTERACTIVE, () -> null);
+            var fetcher = new NumberFetcher(100);
+            var list = new LazyKeysetList<>(100, 10, 3, SORTS, fetcher, busyExecutor, published::add);
+            assertNull(list.get(0));
+            runPublished();
+            assertEquals(1, busyExecutor.getMetrics().rejected());
+
+            latch.countDown();
+            queued.get(5, TimeUnit.SECONDS);
+            assertNull(list.get(0));
+            runPublished();
+            assertEquals(0, list.get(0));
+            assertEquals(2, list.getFetchCount());
+        } finally {
+            busyExecutor.close();
+        }
+    }
+
+    @Test
+    public void testFailedFetchIsRetriedAfterDelay() throws Exception {
+        AtomicInteger failuresLeft = new AtomicInteger(1);
+        var fetcher = new NumberFetcher(100) {
+            @Override
+            public LazyKeysetList.Chunk<Integer> fetch(KeysetPageRequest request, QueryCanceller canceller) {
+                if (failuresLeft.getAndDecrement() > 0) throw new IllegalStateException("Database is busy.");
+                return super.fetch(request, canceller);
+            }
+        };
+        var list = new LazyKeysetList<>(100, 10, 3, SORTS, fetcher, executor, published::add);
+        long start = System.nanoTime();
+        assertNull(list.get(0));
+        runPublished();
+        // Right after failing, the chunk isn't fetched again.
+        assertNull(list.get(0));
+        if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(LazyKeysetList.RETRY_DELAY_MILLIS)) {
+            assertEquals(1, list.getFetchCount());
+        }
+
+        Thread.sleep(LazyKeysetList.RETRY_DELAY_MILLIS + 50);
+        assertNull(list.get(0));
+        runPublished();
+        assertEquals(0, list.get(0));
+        assertEquals(2, list.getFetchCount());
+    }
+
+    @Test
+    public void testDispose() throws InterruptedException {
+        var fetcher = new NumberFetcher(100);
+        var list = new LazyKeysetList<>(100, 10, 3, SORTS, fetcher, executor, published::add);
+        assertNull(list.get(0));
+        list.dispose();
+        runPublished();
+        assertNull(list.get(0));
+        assertEquals(0, list.getLoadedChunkCount());
+        assertEquals(1, list.getFetchCount());
+    }
+}
@@ -0,0 +1,240 @@
+package com.andrewlalis.perfin.data.search;
+
+import com.andrewlalis.perfin.data.impl.JdbcTestUtil;
+import com.andrewlalis.perfin.data.pagination.KeysetPage;
+import com.andrewlalis.perfin.data.pagination.KeysetPageRequest;
+import com.andrewlalis.perfin.data.util.DbUtil;
+import com.andrewlalis.perfin.data.util.Pair;
+import com.andrewlalis.perfin.data.util.QueryCanceller;
+import com.andrewlalis.perfin.model.AccountEntry;
+import com.andrewlalis.perfin.model.Transaction;
+import com.andrewlalis.perfin.model.TransactionTag;
+import com.andrewlalis.perfin.model.TransactionVendor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcTransactionSearcherTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private Connection conn;
+    private JdbcTransactionSearcher searcher;
+    private List<Transaction> allNewestFirst;
+
+    @BeforeEach
+    public void setUp() throws SQLException, IOException {
+        conn = JdbcTestUtil.newDatabase();
+        searcher = new JdbcTransactionSearcher(conn);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 53; i++) {
+            // Give some transactions the same timestamp, so that the id decides their order.
+            LocalDateTime timestamp = T0.plusHours(i / 3);
+            BigDecimal amount = BigDecimal.valueOf(i % 2 == 0 ? 10 : 20);
+            long id = DbUtil.insertOne(
+                    conn,
+                    "INSERT INTO transaction (timestamp, amount, currency) VALUES (?, ?, ?)",
+                    DbUtil.timestampFromUtcLDT(timestamp), amount, "USD"
+            );
+            transactions.add(new Transaction(id, timestamp, amount, null, null, null, null));
+        }
+        transactions.sort(Comparator.comparing(Transaction::getTimestamp).thenComparing(tx -> tx.id).reversed());
+        allNewestFirst = transactions;
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void testPagingForwardAndBackward() {
+        List<KeysetPage<Transaction>> pages = new ArrayList<>();
+        var page = searcher.search(KeysetPageRequest.first(10, JdbcTransactionSearcher.NEWEST_FIRST), List.of());
+        assertFalse(page.hasPrevious());
+        pages.add(page);
+        while (page.hasNext()) {
+            page = searcher.search(page.next(), List.of());
+            assertTrue(page.hasPrevious());
+            pages.add(page);
+        }
+        assertEquals(6, pages.size());
+        assertEquals(3, pages.getLast().items().size());
+        assertEquals(ids(allNewestFirst), pages.stream().flatMap(p -> ids(p.items()).stream()).toList());
+
+        // Go back from the last page to the first.
+        for (int i = pages.size() - 2; i >= 0; i--) {
+            page = searcher.search(page.previous(), List.of());
+            assertEquals(ids(pages.get(i).items()), ids(page.items()));
+            assertTrue(page.hasNext());
+            assertEquals(i > 0, page.hasPrevious());
+        }
+    }
+
+    @Test
+    public void testSeekToTransaction() {
+        Transaction target = allNewestFirst.get(25);
+        var page = searcher.search(
+                new KeysetPageRequest(10, JdbcTransactionSearcher.NEWEST_FIRST, JdbcTransactionSearcher.cursorAt(target)),
+                List.of()
+        );
+        assertEquals(ids(allNewestFirst.subList(25, 35)), ids(page.items()));
+        assertTrue(page.hasPrevious());
+        assertTrue(page.hasNext());
+
+        // Going back from a page that doesn't line up with the first page gives a full first page.
+        page = searcher.search(page.previous(), List.of());
+        assertEquals(ids(allNewestFirst.subList(15, 25)), ids(page.items()));
+        page = searcher.search(page.previous(), List.of());
+        page = searcher.search(page.previous(), List.of());
+        assertEquals(ids(allNewestFirst.subList(0, 10)), ids(page.items()));
+        assertFalse(page.hasPrevious());
+
+        var firstPage = searcher.search(
+                new KeysetPageRequest(10, JdbcTransactionSearcher.NEWEST_FIRST, JdbcTransactionSearcher.cursorAt(allNewestFirst.getFirst())),
+                List.of()
+        );
+        assertFalse(firstPage.hasPrevious());
+    }
+
+    @Test
+    public void testPagingWithFilters() {
+        var filters = new JdbcTransactionSearcher.FilterBuilder()
+                .byAmountGreaterThan(BigDecimal.valueOf(15))
+                .build();
+        List<Long> expected = allNewestFirst.stream()
+                .filter(tx -> tx.getAmount().compareTo(BigDecimal.valueOf(15)) > 0)
+                .map(tx -> tx.id)
+                .toList();
+        List<Long> actual = new ArrayList<>();
+        var page = searcher.search(KeysetPageRequest.first(7, JdbcTransactionSearcher.NEWEST_FIRST), filters);
+        actual.addAll(ids(page.items()));
+        while (page.hasNext()) {
+            page = searcher.search(page.next(), filters);
+            actual.addAll(ids(page.items()));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSearchWithCountUsesCachedCounts() {
+        var countCache = new SearchCountCache();
+        var cachingSearcher = new JdbcTransactionSearcher(conn, countCache);
+        var filters = new JdbcTransactionSearcher.FilterBuilder()
+                .byAmountGreaterThan(BigDecimal.valueOf(15))
+                .build();
+        var result = cachingSearcher.searchWithCount(KeysetPageRequest.first(10, JdbcTransactionSearcher.NEWEST_FIRST), filters);
+        assertEquals(26, result.second());
+        assertEquals(10, result.first().items().size());
+        assertEquals(53, cachingSearcher.searchWithCount(KeysetPageRequest.first(10, JdbcTransactionSearcher.NEWEST_FIRST), List.of()).second());
+
+        // The count for the same filters is remembered until the cache is invalidated.
+        DbUtil.update(conn, "DELETE FROM transaction WHERE id = ?", List.of(allNewestFirst.get(1).id));
+        result = cachingSearcher.searchWithCount(result.first().next(), filters);
+        assertEquals(26, result.second());
+        assertEquals(25, searcher.resultCount(filters));
+        countCache.invalidate();
+        assertEquals(25, cachingSearcher.searchWithCount(result.first().next(), filters).second());
+    }
+
+    @Test
+    public void testFiltersWithArrayParameters() {
+        long v1 = DbUtil.insertOne(conn, "INSERT INTO transaction_vendor (name) VALUES ('A')");
+        long v2 = DbUtil.insertOne(conn, "INSERT INTO transaction_vendor (name) VALUES ('B')");
+        DbUtil.update(conn, "UPDATE transaction SET vendor_id = ? WHERE MOD(id, 5) = 0", v1);
+        DbUtil.update(conn, "UPDATE transaction SET vendor_id = ? WHERE MOD(id, 5) = 1", v2);
+        var vendorA = new TransactionVendor(v1, "A", null);
+        var vendorB = new TransactionVendor(v2, "B", null);
+        long countA = allNewestFirst.stream().filter(tx -> tx.id % 5 == 0).count();
+        long countB = allNewestFirst.stream().filter(tx -> tx.id % 5 == 1).count();
+
+        assertEquals(countA, searcher.resultCount(new JdbcTransactionSearcher.FilterBuilder().byVendors(List.of(vendorA), false).build()));
+        assertEquals(countA + countB, searcher.resultCount(new JdbcTransactionSearcher.FilterBuilder().byVendors(List.of(vendorA, vendorB, vendorA), false).build()));
+        // Transactions without a vendor are neither included nor excluded.
+        assertEquals(countB, searcher.resultCount(new JdbcTransactionSearcher.FilterBuilder().byVendors(List.of(vendorA), true).build()));
+        assertEquals(53, searcher.resultCount(new JdbcTransactionSearcher.FilterBuilder().byCurrencies(List.of(Currency.getInstance("USD"), Currency.getInstance("EUR")), false).build()));
+        assertEquals(0, searcher.resultCount(new JdbcTransactionSearcher.FilterBuilder().byCurrencies(List.of(Currency.getInstance("USD")), true).build()));
+    }
+
+    @Test
+    public void testEquivalentFiltersGiveIdenticalSql() {
+        var vendorA = new TransactionVendor(1, "A", null);
+        var vendorB = new TransactionVendor(2, "B", null);
+        var tag = new TransactionTag(3, "t");
+        var filtersA = new JdbcTransactionSearcher.FilterBuilder()
+                .byVendors(List.of(vendorB, vendorA), false)
+                .byTags(List.of(tag), false)
+                .byText("star coffee")
+                .byEntryType(AccountEntry.Type.DEBIT)
+                .build();
+        var filtersB = new JdbcTransactionSearcher.FilterBuilder()
+                .byEntryType(AccountEntry.Type.DEBIT)
+                .byText("Coffee, Star")
+                .byTags(List.of(tag), false)
+                .byVendors(List.of(vendorA, vendorB, vendorA), false)
+                .build();
+        assertEquals(describe(filtersA), describe(filtersB));
+        var otherVendors = new JdbcTransactionSearcher.FilterBuilder()
+                .byEntryType(AccountEntry.Type.DEBIT)
+                .byText("coffee star")
+                .byTags(List.of(tag), false)
+                .byVendors(List.of(vendorA), false)
+                .build();
+        // Different values give the same SQL, with different arguments.
+        assertEquals(sqlOf(filtersA), sqlOf(otherVendors));
+        assertNotEquals(describe(filtersA), describe(otherVendors));
+    }
+
+    private static List<String> sqlOf(List<SearchFilter> filters) {
+        return filters.stream().map(f -> f.joinClauses() + " " + f.whereClause()).toList();
+    }
+
+    private static List<String> describe(List<SearchFilter> filters) {
+        return filters.stream()
+                .map(f -> f.joinClauses() + " " + f.whereClause() + " " + Arrays.deepToString(f.args().stream().map(Pair::second).toArray()))
+                .toList();
+    }
+
+    @Test
+    public void testCancelledSearch() throws Exception {
+        var canceller = new QueryCanceller();
+        var cancellableSearcher = new JdbcTransactionSearcher(conn, null, canceller);
+        // A filter that takes many seconds to check for each transaction.
+        var slowFilter = new SearchFilter.Builder()
+                .where("transaction.id > (SELECT COUNT(*) FROM SYSTEM_RANGE(1, 10000) a, SYSTEM_RANGE(1, 10000) b WHERE a.X * b.X = transaction.id)")
+                .build();
+        var result = CompletableFuture.supplyAsync(() -> cancellableSearcher.searchWithCount(
+                KeysetPageRequest.first(10, JdbcTransactionSearcher.NEWEST_FIRST),
+                List.of(slowFilter)
+        ));
+        Thread.sleep(200);
+        long start = System.nanoTime();
+        canceller.cancel();
+        var e = assertThrows(ExecutionException.class, () -> result.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, e.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+        // Once cancelled, searches don't run at all.
+        assertThrows(CancellationException.class, () -> cancellableSearcher.resultCount(List.of()));
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(tx -> tx.id).toList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.andrewlalis.perfin.data.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest {
+    @Test
+    public void testHitsAndMisses() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:");
+             var cache = new StatementCache(conn, 4)) {
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement stmt = cache.prepare("SELECT ?")) {
+                    stmt.setInt(1, i);
+                    var rs = stmt.executeQuery();
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                }
+            }
+            assertEquals(1, cache.getMissCount());
+            assertEquals(2, cache.getHitCount());
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testNestedUseOfSameSql() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:");
+             var cache = new StatementCache(conn, 4)) {
+            try (PreparedStatement outer = cache.prepare("SELECT 1")) {
+                try (PreparedStatement inner = cache.prepare("SELECT 1")) {
+                    assertTrue(inner.executeQuery().next());
+                }
+                assertTrue(outer.executeQuery().next());
+            }
+            assertEquals(2, cache.getMissCount());
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:");
+             var cache = new StatementCache(conn, 2)) {
+            cache.prepare("SELECT 1").close();
+            cache.prepare("SELECT 2").close();
+            cache.prepare("SELECT 1").close();
+            cache.prepare("SELECT 3").close(); // Evicts "SELECT 2".
+            assertEquals(1, cache.getEvictionCount());
+            cache.prepare("SELECT 1").close();
+            cache.prepare("SELECT 2").close();
+            assertEquals(2, cache.getHitCount());
+            assertEquals(4, cache.getMissCount());
+        }
+    }
+
+    @Test
+    public void testClosedHandleCannotBeUsed() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:");
+             var cache = new StatementCache(conn, 2)) {
+            PreparedStatement stmt = cache.prepare("SELECT 1");
+            stmt.close();
+            assertTrue(stmt.isClosed());
+            assertThrows(SQLException.class, stmt::executeQuery);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.andrewlalis.perfin.data.util;
+
+import com.andrewlalis.perfin.model.Attachment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailStoreTest {
+    @TempDir
+    Path contentDir;
+
+    private Attachment writeImage(String identifier, int width, int height) throws IOException {
+        Attachment attachment = new Attachment(1, LocalDateTime.of(2024, 1, 1, 0, 0), identifier, "receipt.png", "image/png");
+        Path path = attachment.getPath(contentDir);
+        Files.createDirectories(path.getParent());
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+        return attachment;
+    }
+
+    @Test
+    public void testGetOrCreate() throws IOException {
+        ThumbnailStore store = new ThumbnailStore(contentDir);
+        Attachment attachment = writeImage("A", 2000, 1000);
+        Path thumbnailPath = store.getOrCreate(attachment, ThumbnailStore.SMALL_SIZE).orElseThrow();
+        assertEquals(contentDir.resolve("thumbnails").resolve("64").resolve("A.png"), thumbnailPath);
+        BufferedImage thumbnail = ImageIO.read(thumbnailPath.toFile());
+        assertEquals(64, thumbnail.getWidth());
+        assertEquals(32, thumbnail.getHeight());
+
+        // Once it's generated, the thumbnail is used even if the original is gone.
+        Files.delete(attachment.getPath(contentDir));
+        assertEquals(Optional.of(thumbnailPath), store.getOrCreate(attachment, ThumbnailStore.SMALL_SIZE));
+        assertEquals(Optional.empty(), store.getOrCreate(attachment, ThumbnailStore.LARGE_SIZE));
+
+        store.delete(attachment);
+        assertFalse(Files.exists(thumbnailPath));
+    }
+
+    @Test
+    public void testSmallImagesAreNotEnlarged() throws IOException {
+        ThumbnailStore store = new ThumbnailStore(contentDir);
+        Attachment attachment = writeImage("B", 20, 40);
+        Path thumbnailPath = store.getOrCreate(attachment, ThumbnailStore.LARGE_SIZE).orElseThrow();
+        BufferedImage thumbnail = ImageIO.read(thumbnailPath.toFile());
+        assertEquals(20, thumbnail.getWidth());
+        assertEquals(40, thumbnail.getHeight());
+    }
+
+    @Test
+    public void testUnsupportedAttachments() throws IOException {
+        ThumbnailStore store = new ThumbnailStore(contentDir);
+        Attachment pdf = new Attachment(1, LocalDateTime.now(), "C", "statement.pdf", "application/pdf");
+        assertFalse(ThumbnailStore.isSupported(pdf));
+        assertEquals(Optional.empty(), store.getOrCreate(pdf, ThumbnailStore.SMALL_SIZE));
+
+        // A file that claims to be an image but isn't one.
+        Attachment broken = new Attachment(2, LocalDateTime.of(2024, 1, 1, 0, 0), "D", "broken.png", "image/png");
+        Files.createDirectories(broken.getPath(contentDir).getParent());
+        Files.writeString(broken.getPath(contentDir), "Not an image.");
+        assertEquals(Optional.empty(), store.getOrCreate(broken, ThumbnailStore.SMALL_SIZE));
+    }
+}
@@ -0,0 +1,78 @@
+package com.andrewlalis.perfin.view;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageCacheTest {
+    @Test
+    public void testEvictionByDecodedSize() {
+        // Each 10x10 image takes 400 bytes, so only two fit.
+        ImageCache cache = new ImageCache(1000);
+        Image a = cache.get("a", () -> new WritableImage(10, 10));
+        Image b = cache.get("b", () -> new WritableImage(10, 10));
+        assertSame(a, cache.get("a", () -> fail("Should be cached.")));
+        assertEquals(new ImageCache.Metrics(1, 2, 0, 800, 1000), cache.getMetrics());
+
+        // Adding a third image evicts the least recently used one, which is b.
+        cache.get("c", () -> new WritableImage(10, 10));
+        var metrics = cache.getMetrics();
+        assertEquals(1, metrics.evictions());
+        assertEquals(800, metrics.residentBytes());
+        assertEquals(1.0 / 4, metrics.hitRate());
+
+        // Evicted images are softly held, so they can still be reused.
+        Image softB = cache.getIfPresent("b");
+        if (softB != null) assertSame(b, softB);
+
+        // Images that don't fit the budget at all aren't held strongly.
+        cache.get("huge", () -> new WritableImage(100, 100));
+        assertTrue(cache.getMetrics().residentBytes() <= 1000);
+
+        assertNull(cache.get("missing", () -> null));
+        assertNull(cache.getIfPresent("missing"));
+    }
+
+    @Test
+    public void testConcurrentRequestsLoadOnce() throws Exception {
+        ImageCache cache = new ImageCache(10_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch finishLoading = new CountDownLatch(1);
+        var first = CompletableFuture.supplyAsync(() -> cache.get("a", () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            try {
+                finishLoading.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new WritableImage(5, 5);
+        }));
+        loaderStarted.await();
+        var second = CompletableFuture.supplyAsync(() -> cache.get("a", () -> {
+            loads.incrementAndGet();
+            return new WritableImage(5, 5);
+        }));
+        // Wait for the second request to be waiting on the first one's load.
+        while (cache.getMetrics().misses() < 2) Thread.onSpinWait();
+        finishLoading.countDown();
+        assertSame(first.get(), second.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        ImageCache cache = new ImageCache(10_000);
+        assertThrows(IllegalStateException.class, () -> cache.get("a", () -> {
+            throw new IllegalStateException("Corrupt image.");
+        }));
+        assertNotNull(cache.get("a", () -> new WritableImage(5, 5)));
+    }
+}